@@ -0,0 +1,341 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.rest.latest;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.servlet.ServletContext;
+
+import org.mockito.MockedStatic;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.zafarkhaja.semver.Version;
+import com.infiniteautomation.mango.permission.MangoPermission;
+import com.infiniteautomation.mango.spring.components.PublicUrlService;
+import com.infiniteautomation.mango.spring.components.pageresolver.PageResolver;
+import com.infiniteautomation.mango.spring.service.JsonDataService;
+import com.infiniteautomation.mango.spring.service.PermissionService;
+import com.ioconstructs.vui.VUICommon;
+import com.ioconstructs.vui.bootstrap.BootstrapExecutor;
+import com.ioconstructs.vui.bootstrap.PwaManifestCache;
+import com.ioconstructs.vui.bootstrap.TranslationBundleService;
+import com.ioconstructs.vui.bootstrap.TranslationBundleService.Bundle;
+import com.ioconstructs.vui.bootstrap.VuiBootstrapCache;
+import com.ioconstructs.vui.menu.MenuProjectionService;
+import com.ioconstructs.vui.pages.VuiPageStore;
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.ICoreLicense;
+import com.serotonin.m2m2.db.dao.InstalledModulesDao;
+import com.serotonin.m2m2.db.dao.JsonDataDao;
+import com.serotonin.m2m2.db.dao.PointValueDao;
+import com.serotonin.m2m2.db.dao.SystemSettingsDao;
+import com.serotonin.m2m2.module.Module;
+import com.serotonin.m2m2.module.ModuleRegistry;
+import com.serotonin.m2m2.vo.User;
+import com.serotonin.m2m2.vo.json.JsonDataVO;
+import com.serotonin.m2m2.vo.permission.PermissionHolder;
+import com.serotonin.m2m2.vo.role.Role;
+import com.serotonin.m2m2.web.mvc.spring.security.oauth2.OAuth2Information;
+import com.serotonin.provider.Providers;
+
+/**
+ * Benchmarks the VUI bootstrap endpoints with stubbed DAOs. The cached benchmarks measure the common case of a
+ * repeated bootstrap, the uncached benchmarks invalidate the bootstrap cache before every call and so measure building
+ * and serializing the payload.
+ *
+ * <p>The static accessors (Common, ModuleRegistry, Providers) are mocked per thread so the benchmarks must run with
+ * a single thread, and the parts of a payload which the controller assembles concurrently are built on the calling
+ * thread.</p>
+ *
+ * @author Matt Fox
+ */
+@State(Scope.Thread)
+@Threads(1)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VuiBootstrapControllerBenchmark {
+
+    /**
+     * Number of menu items and pages in the stores
+     */
+    @Param({"50", "500"})
+    int storeSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private MockedStatic<Common> common;
+    private MockedStatic<ModuleRegistry> moduleRegistry;
+    private MockedStatic<Providers> providers;
+    private MockedStatic<SystemSettingsDao> systemSettings;
+
+    private VuiBootstrapController controller;
+    private VuiBootstrapCache bootstrapCache;
+    private PwaManifestCache manifestCache;
+    private PermissionHolder anonymous;
+    private User user;
+    private String postLoginEtag;
+    private String combinedEtag;
+    private byte[] vuiSettingsFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        SystemSettingsDao systemSettingsDao = stub(SystemSettingsDao.class);
+        when(systemSettingsDao.getValue(SystemSettingsDao.INSTANCE_DESCRIPTION)).thenReturn("Benchmark instance");
+
+        Module coreModule = stub(Module.class);
+        when(coreModule.getLicenseType()).thenReturn("Free");
+        when(coreModule.getVendor()).thenReturn("Radix IoT");
+        ICoreLicense license = stub(ICoreLicense.class);
+        when(license.getGuid()).thenReturn("00000000-0000-0000-0000-000000000000");
+
+        systemSettings = mockStatic(SystemSettingsDao.class);
+        systemSettings.when(SystemSettingsDao::getInstance).thenReturn(systemSettingsDao);
+        common = mockStatic(Common.class);
+        common.when(Common::getLocale).thenReturn(Locale.ENGLISH);
+        common.when(Common::getVersion).thenReturn(Version.valueOf("4.5.2"));
+        moduleRegistry = mockStatic(ModuleRegistry.class);
+        moduleRegistry.when(() -> ModuleRegistry.getModule(ModuleRegistry.CORE_MODULE_NAME)).thenReturn(coreModule);
+        providers = mockStatic(Providers.class);
+        providers.when(() -> Providers.get(ICoreLicense.class)).thenReturn(license);
+
+        JsonDataDao jsonDataDao = stub(JsonDataDao.class);
+        when(jsonDataDao.getByXid(VUICommon.MA_VUI_SETTINGS_XID)).thenReturn(jsonData(VUICommon.MA_VUI_SETTINGS_XID, settings()));
+        when(jsonDataDao.getByXid(VUICommon.MA_VUI_MENU_XID)).thenReturn(jsonData(VUICommon.MA_VUI_MENU_XID, menu()));
+        when(jsonDataDao.getByXid(VUICommon.MA_VUI_PAGES_XID)).thenReturn(jsonData(VUICommon.MA_VUI_PAGES_XID, pages()));
+
+        PermissionService permissionService = stub(PermissionService.class);
+        when(permissionService.hasUserRole(any())).thenReturn(true);
+
+        PageResolver pageResolver = stub(PageResolver.class);
+        when(pageResolver.getLoginUri(any(), any())).thenReturn("/ui/login");
+        InstalledModulesDao installedModulesDao = stub(InstalledModulesDao.class);
+        when(installedModulesDao.lastUpgradeTime()).thenReturn(Instant.now());
+        PublicUrlService publicUrlService = stub(PublicUrlService.class);
+        when(publicUrlService.getUriComponentsBuilder(any())).thenAnswer(i -> i.getArgument(0));
+
+        vuiSettingsFile = objectMapper.writeValueAsBytes(defaultSettings());
+        ServletContext servletContext = stub(ServletContext.class);
+        when(servletContext.getResourceAsStream("/modules/mangoVUI/web/vuiSettings.json"))
+                .thenAnswer(i -> new ByteArrayInputStream(vuiSettingsFile));
+
+        Bundle bundle = stub(Bundle.class);
+        when(bundle.getHash()).thenReturn("bundle-hash");
+        TranslationBundleService translationBundleService = stub(TranslationBundleService.class);
+        when(translationBundleService.getBundle(any(), any(Locale.class))).thenReturn(bundle);
+
+        BootstrapExecutor bootstrapExecutor = stub(BootstrapExecutor.class);
+        when(bootstrapExecutor.submit(any()))
+                .thenAnswer(i -> CompletableFuture.completedFuture(i.<Supplier<?>>getArgument(0).get()));
+
+        MockEnvironment env = new MockEnvironment();
+        bootstrapCache = new VuiBootstrapCache(objectMapper, env);
+        manifestCache = new PwaManifestCache(objectMapper, env);
+        controller = new VuiBootstrapController(jsonDataDao, objectMapper, servletContext, publicUrlService, env,
+                permissionService, pageResolver, stub(OAuth2Information.class), installedModulesDao,
+                mock(PointValueDao.class, withSettings().stubOnly().defaultAnswer(RETURNS_DEEP_STUBS)),
+                bootstrapCache, translationBundleService, new VuiPageStore(stub(JsonDataService.class)),
+                new MenuProjectionService(jsonDataDao, permissionService), manifestCache, bootstrapExecutor);
+
+        anonymous = stub(PermissionHolder.class);
+        when(anonymous.getAllInheritedRoles()).thenReturn(Collections.singleton(PermissionHolder.ANONYMOUS_ROLE));
+
+        Set<Role> roles = new HashSet<>();
+        roles.add(PermissionHolder.USER_ROLE);
+        roles.add(PermissionHolder.ANONYMOUS_ROLE);
+        roles.add(new Role(100, "operators"));
+        user = stub(User.class);
+        when(user.getId()).thenReturn(1);
+        when(user.getUser()).thenReturn(user);
+        when(user.getLocaleObject()).thenReturn(Locale.ENGLISH);
+        when(user.getAllInheritedRoles()).thenReturn(roles);
+
+        postLoginEtag = controller.postLogin(user, null).getHeaders().getETag();
+        combinedEtag = controller.combined(user, null).getHeaders().getETag();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        providers.close();
+        moduleRegistry.close();
+        common.close();
+        systemSettings.close();
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> preLoginCached() {
+        return controller.preLogin(anonymous, null);
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> preLoginUncached() {
+        bootstrapCache.invalidate();
+        return controller.preLogin(anonymous, null);
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> postLoginCached() {
+        return controller.postLogin(user, null);
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> postLoginNotModified() {
+        return controller.postLogin(user, postLoginEtag);
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> postLoginUncached() {
+        bootstrapCache.invalidate();
+        return controller.postLogin(user, null);
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> combinedCached() {
+        return controller.combined(user, null);
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> combinedNotModified() {
+        return controller.combined(user, combinedEtag);
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> combinedUncached() {
+        bootstrapCache.invalidate();
+        return controller.combined(user, null);
+    }
+
+    @Benchmark
+    public void serializePreLoginData(Blackhole blackhole) throws IOException {
+        blackhole.consume(objectMapper.writeValueAsBytes(controller.buildPreLoginData(anonymous)));
+    }
+
+    @Benchmark
+    public void serializePostLoginData(Blackhole blackhole) throws IOException {
+        blackhole.consume(objectMapper.writeValueAsBytes(controller.buildPostLoginData(user)));
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> manifestCached() {
+        return controller.manifest(user, UriComponentsBuilder.fromHttpUrl("https://mango.example.com/vui/"), null);
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> manifestUncached() {
+        manifestCache.invalidate();
+        return controller.manifest(user, UriComponentsBuilder.fromHttpUrl("https://mango.example.com/vui/"), null);
+    }
+
+    private static <T> T stub(Class<T> type) {
+        // stub only mocks do not record invocations, so they do not grow while the benchmark runs
+        return mock(type, withSettings().stubOnly());
+    }
+
+    private JsonDataVO jsonData(String xid, ObjectNode data) {
+        JsonDataVO vo = new JsonDataVO();
+        vo.setXid(xid);
+        vo.setName(xid);
+        vo.setJsonData(data);
+        vo.setReadPermission(new MangoPermission());
+        vo.setEditPermission(new MangoPermission());
+        return vo;
+    }
+
+    private ObjectNode defaultSettings() {
+        ObjectNode settings = objectMapper.createObjectNode();
+        settings.put("pwaAutomaticName", "AUTO");
+        settings.put("pwaAutomaticNamePrefix", "Mango");
+        ObjectNode manifest = settings.putObject("pwaManifest");
+        manifest.put("name", "Mango");
+        manifest.put("short_name", "Mango");
+        manifest.put("start_url", "/vui/");
+        manifest.put("display", "standalone");
+        ArrayNode icons = manifest.putArray("icons");
+        for (int size : new int[] {48, 96, 144, 192, 512}) {
+            icons.addObject()
+                    .put("src", "/vui/img/icon" + size + ".png")
+                    .put("sizes", size + "x" + size)
+                    .put("type", "image/png");
+        }
+        ObjectNode palettes = settings.putObject("palettes");
+        palettes.putObject("primaryPalette").put("color", "indigo");
+        palettes.putObject("accentPalette").put("color", "pink");
+        return settings;
+    }
+
+    private ObjectNode settings() {
+        ObjectNode settings = objectMapper.createObjectNode();
+        settings.put("pwaAutomaticName", "INSTANCE_DESCRIPTION");
+        settings.putObject("pwaManifest").put("theme_color", "#3f51b5");
+        settings.putObject("palettes").putObject("primaryPalette").put("color", "blue");
+        return settings;
+    }
+
+    private ObjectNode menu() {
+        ObjectNode menu = objectMapper.createObjectNode();
+        ArrayNode items = menu.putArray(MenuProjectionService.MENU_ITEMS);
+        for (int i = 0; i < storeSize; i++) {
+            ObjectNode item = items.addObject();
+            item.put("name", "vui.custom" + (i / 10) + (i % 10 == 0 ? "" : ".page" + i));
+            item.put("url", "/custom/page-" + i);
+            item.put("menuText", "Page " + i);
+            if (i % 3 == 0) {
+                item.putArray("permission").add("operators");
+            } else if (i % 3 == 1) {
+                item.putArray("permission").addArray().add("superadmin").add("operators");
+            }
+        }
+        return menu;
+    }
+
+    private ObjectNode pages() {
+        ObjectNode pages = objectMapper.createObjectNode();
+        ArrayNode items = pages.putArray(VuiPageStore.PAGES);
+        StringBuilder markup = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            markup.append("<ma-point-value point-xid=\"DP_").append(i).append("\"></ma-point-value>\n");
+        }
+        for (int i = 0; i < storeSize; i++) {
+            ObjectNode page = items.addObject();
+            page.put("xid", "page-" + i);
+            page.put("name", "Page " + i);
+            page.put(VuiPageStore.MARKUP, markup.toString());
+        }
+        return pages;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.webapp;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.core.io.FileSystemResourceLoader;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockFilterConfig;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+
+import com.infiniteautomation.mango.monitor.MonitoredValues;
+
+/**
+ * Benchmarks the doFilter paths of the /vui and /user-vui forwarding filters against a web directory on the
+ * filesystem. The filters are benchmarked with the asset index / app registry enabled and disabled, the disabled case
+ * forwards to the servlet container like the filters did before the index existed.
+ *
+ * @author Matt Fox
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VUIForwardingFilterBenchmark {
+
+    private static final String ASSET = "/assets/index-4f3a9c2b.js";
+
+    @Param({"true", "false"})
+    boolean indexEnabled;
+
+    private Path webRoot;
+    private MockServletContext servletContext;
+    private VUIForwardingFilter filter;
+    private UserVUIForwardingFilter userFilter;
+    private final FilterChain chain = (request, response) -> { };
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, ServletException {
+        webRoot = Files.createTempDirectory("vui-benchmark");
+        Path web = webRoot.resolve("modules/mangoVUI/web");
+        writeApp(web);
+        writeApp(web.resolve("my-app"));
+
+        servletContext = new MockServletContext("file:" + webRoot.toAbsolutePath(), new FileSystemResourceLoader());
+
+        MockEnvironment env = new MockEnvironment()
+                .withProperty("vui.assetIndex.enabled", Boolean.toString(indexEnabled))
+                .withProperty("vui.userApps.registry.enabled", Boolean.toString(indexEnabled))
+                .withProperty("vui.userApps.watch", "false");
+        MonitoredValues monitoredValues = new MonitoredValues();
+
+        filter = new VUIForwardingFilter(env, monitoredValues);
+        filter.init(new MockFilterConfig(servletContext));
+        userFilter = new UserVUIForwardingFilter(env, monitoredValues);
+        userFilter.init(new MockFilterConfig(servletContext));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        userFilter.destroy();
+        filter.destroy();
+        try (Stream<Path> paths = Files.walk(webRoot)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public MockHttpServletResponse asset() throws IOException, ServletException {
+        return doFilter(filter, "/vui" + ASSET, false);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse index() throws IOException, ServletException {
+        return doFilter(filter, "/vui/", true);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse spaFallback() throws IOException, ServletException {
+        return doFilter(filter, "/vui/administration/users", true);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse notFound() throws IOException, ServletException {
+        return doFilter(filter, "/vui/assets/missing.js", false);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse passThrough() throws IOException, ServletException {
+        return doFilter(filter, "/rest/latest/users/current", false);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse userAppAsset() throws IOException, ServletException {
+        return doFilter(userFilter, "/user-vui/my-app" + ASSET, false);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse userAppFallback() throws IOException, ServletException {
+        return doFilter(userFilter, "/user-vui/my-app/dashboard/overview", true);
+    }
+
+    private MockHttpServletResponse doFilter(Filter target, String uri, boolean browser) throws IOException, ServletException {
+        MockHttpServletRequest request = new MockHttpServletRequest(servletContext, "GET", uri);
+        if (browser) {
+            request.addHeader(HttpHeaders.ACCEPT, "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8");
+            request.addHeader(HttpHeaders.USER_AGENT, "Mozilla/5.0");
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        target.doFilter(request, response, chain);
+        return response;
+    }
+
+    private static void writeApp(Path dir) throws IOException {
+        Files.createDirectories(dir.resolve("assets"));
+        Files.write(dir.resolve("index.html"), html().getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve(ASSET.substring(1)), script(64 * 1024).getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("assets/index-91c2d7e0.css"), script(8 * 1024).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String html() {
+        return "<!DOCTYPE html><html><head><script type=\"module\" src=\"" + ASSET + "\"></script></head>" +
+                "<body><div id=\"app\"></div></body></html>";
+    }
+
+    private static String script(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            builder.append("export const value").append(builder.length()).append(" = ").append(builder.length()).append(";\n");
+        }
+        return builder.toString();
+    }
+}
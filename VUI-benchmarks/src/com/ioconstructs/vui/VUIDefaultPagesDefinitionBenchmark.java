@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.serotonin.m2m2.db.dao.SystemSettingsDao;
+import com.serotonin.m2m2.vo.User;
+
+/**
+ * Benchmarks the page lookups done by the security filters for every login, logout and error redirect. The system
+ * settings DAO is stubbed so only the cost of the definition itself is measured.
+ *
+ * @author Matt Fox
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VUIDefaultPagesDefinitionBenchmark {
+
+    private VUIDefaultPagesDefinition definition;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private User user;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SystemSettingsDao systemSettingsDao = mock(SystemSettingsDao.class, withSettings().stubOnly());
+        when(systemSettingsDao.getValue(anyString())).thenAnswer(i -> "/vui/" + i.getArgument(0));
+        when(systemSettingsDao.getValue(VUICommon.VUI_NOT_FOUND_PAGE)).thenReturn("/vui/not-found");
+
+        definition = new VUIDefaultPagesDefinition();
+        definition.systemSettingsDao = systemSettingsDao;
+
+        request = new MockHttpServletRequest("GET", "/vui/some/missing/page");
+        response = new MockHttpServletResponse();
+        user = mock(User.class, withSettings().stubOnly());
+    }
+
+    @Benchmark
+    public String loginPage() {
+        return definition.getLoginPageUri(request, response);
+    }
+
+    @Benchmark
+    public String loggedInPage() {
+        return definition.getLoggedInPageUri(request, response, user);
+    }
+
+    @Benchmark
+    public String notFoundPage() {
+        return definition.getNotFoundPageUri(request, response);
+    }
+
+    /**
+     * The pages resolved for a typical login, i.e. login page, logged in page, then an unauthorized and a not found page
+     */
+    @Benchmark
+    public void loginSequence(Blackhole blackhole) {
+        blackhole.consume(definition.getLoginPageUri(request, response));
+        blackhole.consume(definition.getLoginErrorUri(request, response));
+        blackhole.consume(definition.getLoggedInPageUri(request, response, user));
+        blackhole.consume(definition.getLoggedInPageUriPreHome(request, response, user));
+        blackhole.consume(definition.getUnauthorizedPageUri(request, response, user));
+        blackhole.consume(definition.getNotFoundPageUri(request, response));
+    }
+}
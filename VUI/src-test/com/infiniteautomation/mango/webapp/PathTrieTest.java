@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.webapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.infiniteautomation.mango.webapp.PathTrie.Match;
+
+/**
+ * @author Matt Fox
+ */
+public class PathTrieTest {
+
+    @Test
+    public void longestPrefixWins() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("/customers/", "customers");
+        trie.put("/customers/acme/", "acme");
+
+        Match<String> match = trie.find("/customers/acme/assets/index-4f3a9c2b.js");
+        assertEquals("acme", match.getValue());
+        assertEquals("/customers/acme/", match.getPrefix());
+        assertEquals("/assets/index-4f3a9c2b.js", match.getRemainder());
+
+        match = trie.find("/customers/other/index.html");
+        assertEquals("customers", match.getValue());
+        assertEquals("/customers/", match.getPrefix());
+        assertEquals("/other/index.html", match.getRemainder());
+    }
+
+    @Test
+    public void prefixesAreNormalized() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("my-app", "app");
+
+        Match<String> match = trie.find("/my-app/index.html");
+        assertEquals("app", match.getValue());
+        assertEquals("/my-app/", match.getPrefix());
+        assertEquals("/index.html", match.getRemainder());
+    }
+
+    @Test
+    public void lastSegmentIsAFileName() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("/my-app/", "app");
+
+        assertNull(trie.find("/my-app"));
+        assertEquals("/", trie.find("/my-app/").getRemainder());
+    }
+
+    @Test
+    public void segmentsMustMatchExactly() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("/app/", "app");
+
+        assertNull(trie.find("/application/index.html"));
+        assertNull(trie.find("/ap/index.html"));
+        assertNull(trie.find("/other/app/index.html"));
+    }
+
+    @Test
+    public void repeatedSlashesAreIgnored() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("/a/b/", "b");
+
+        Match<String> match = trie.find("//a//b/file.js");
+        assertEquals("b", match.getValue());
+        assertEquals("/file.js", match.getRemainder());
+    }
+
+    @Test
+    public void rootPrefixMatchesEverything() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("/", "root");
+        trie.put("/my-app/", "app");
+
+        Match<String> match = trie.find("/favicon.ico");
+        assertEquals("root", match.getValue());
+        assertEquals("/", match.getPrefix());
+        assertEquals("/favicon.ico", match.getRemainder());
+
+        assertEquals("app", trie.find("/my-app/index.html").getValue());
+        assertEquals("root", trie.find("/other/index.html").getValue());
+    }
+
+    @Test
+    public void emptyTrie() {
+        assertNull(new PathTrie<String>().find("/my-app/index.html"));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.bootstrap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.core.env.StandardEnvironment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * @author Matt Fox
+ */
+public class PwaManifestCacheTest {
+
+    private final PwaManifestCache cache = new PwaManifestCache(new ObjectMapper(), new StandardEnvironment());
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void hostsAreLowerCased() {
+        assertEquals("mango.example.com", PwaManifestCache.normalizeHost("Mango.Example.COM"));
+        assertEquals("10.0.0.1", PwaManifestCache.normalizeHost("10.0.0.1"));
+        assertEquals("[::1]", PwaManifestCache.normalizeHost("[::1]"));
+        assertEquals("localhost", PwaManifestCache.normalizeHost("localhost"));
+    }
+
+    @Test
+    public void invalidHostsAreRejected() {
+        assertNull(PwaManifestCache.normalizeHost(null));
+        assertNull(PwaManifestCache.normalizeHost(""));
+        assertNull(PwaManifestCache.normalizeHost("-mango.example.com"));
+        assertNull(PwaManifestCache.normalizeHost("mango..example.com"));
+        assertNull(PwaManifestCache.normalizeHost("mango_example.com"));
+        assertNull(PwaManifestCache.normalizeHost("<script>"));
+        assertNull(PwaManifestCache.normalizeHost(repeat("a.", 127) + "com"));
+    }
+
+    @Test
+    public void hostsDifferingInCaseShareAnEntry() {
+        PwaManifestCache.Entry entry = get("Mango.Example.com", true, "Mango");
+        assertSame(entry, get("mango.example.com", true, "Mango"));
+        assertEquals(1, loads.get());
+
+        assertNotSame(entry, get("mango.example.com", false, "Mango"));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void invalidHostIsNotCached() {
+        get("bad host", true, "Mango");
+        get("bad host", true, "Mango");
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void entryIsRebuiltWhenDescriptionChanges() {
+        PwaManifestCache.Entry entry = get("mango.example.com", true, "Mango");
+        assertNotSame(entry, get("mango.example.com", true, "Boiler room"));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void invalidateDiscardsEntries() {
+        PwaManifestCache.Entry entry = get("mango.example.com", true, "Mango");
+        cache.invalidate();
+        assertNotSame(entry, get("mango.example.com", true, "Mango"));
+        assertEquals(2, loads.get());
+    }
+
+    private PwaManifestCache.Entry get(String host, boolean user, String instanceDescription) {
+        return cache.get(host, user, instanceDescription, () -> {
+            loads.incrementAndGet();
+            return host;
+        });
+    }
+
+    private static String repeat(String value, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.ioconstructs.vui.data.WidgetDataResult.TimestampValue;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+
+/**
+ * @author Matt Fox
+ */
+public class DownsampleSinkTest {
+
+    @Test
+    public void smallSeriesIsReturnedAsIs() {
+        // all values fall into the same bucket, they must not be reduced as there are fewer than targetPoints
+        DownsampleSink sink = new DownsampleSink("id", "xid", Downsample.LTTB, 10, 0, 1000);
+        for (int i = 0; i < 5; i++) {
+            sink.accept(new PointValueTime((double) i, i));
+        }
+
+        List<TimestampValue> values = sink.result().getValues();
+        assertEquals(5, values.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, values.get(i).getTimestamp());
+            assertEquals((double) i, values.get(i).getValue());
+        }
+    }
+
+    @Test
+    public void seriesOfTargetPointsIsReturnedAsIs() {
+        DownsampleSink sink = new DownsampleSink("id", "xid", Downsample.MIN_MAX, 4, 0, 10);
+        for (int i = 0; i < 4; i++) {
+            sink.accept(new PointValueTime(1.0, i));
+        }
+        assertEquals(4, sink.result().getValues().size());
+    }
+
+    @Test
+    public void emptySeries() {
+        DownsampleSink sink = new DownsampleSink("id", "xid", Downsample.LTTB, 10, 0, 1000);
+        assertTrue(sink.result().getValues().isEmpty());
+    }
+
+    @Test
+    public void lttbKeepsFirstAndLastValue() {
+        int targetPoints = 5;
+        DownsampleSink sink = new DownsampleSink("id", "xid", Downsample.LTTB, targetPoints, 0, 100);
+        for (int i = 0; i < 100; i++) {
+            sink.accept(new PointValueTime(Math.sin(i / 10d), i));
+        }
+
+        List<TimestampValue> values = sink.result().getValues();
+        assertEquals(targetPoints, values.size());
+        assertEquals(0, values.get(0).getTimestamp());
+        assertEquals(99, values.get(values.size() - 1).getTimestamp());
+        for (int i = 1; i < values.size(); i++) {
+            assertTrue(values.get(i).getTimestamp() > values.get(i - 1).getTimestamp());
+        }
+    }
+
+    @Test
+    public void lttbSelectsOneValuePerBucket() {
+        // 3 buckets over [0, 100), the first and last values are kept in addition to the selected values
+        DownsampleSink sink = new DownsampleSink("id", "xid", Downsample.LTTB, 5, 0, 100);
+        for (int i = 0; i < 100; i++) {
+            sink.accept(new PointValueTime((double) i, i));
+        }
+
+        List<Long> timestamps = timestamps(sink.result().getValues());
+        assertEquals(5, timestamps.size());
+        assertBucket(0, timestamps.get(1));
+        assertBucket(1, timestamps.get(2));
+        assertBucket(2, timestamps.get(3));
+    }
+
+    @Test
+    public void lttbSelectsPeak() {
+        DownsampleSink sink = new DownsampleSink("id", "xid", Downsample.LTTB, 5, 0, 100);
+        for (int i = 0; i < 100; i++) {
+            sink.accept(new PointValueTime(i == 50 ? 100.0 : 0.0, i));
+        }
+
+        List<TimestampValue> values = sink.result().getValues();
+        assertEquals(5, values.size());
+        assertEquals(50, values.get(2).getTimestamp());
+        assertEquals(100.0, values.get(2).getValue());
+    }
+
+    @Test
+    public void minMaxKeepsExtremesInTimeOrder() {
+        // 2 buckets over [0, 10)
+        double[] series = {5, 1, 9, 3, 4, 2, 8, 0, 7, 6};
+        DownsampleSink sink = new DownsampleSink("id", "xid", Downsample.MIN_MAX, 4, 0, 10);
+        for (int i = 0; i < series.length; i++) {
+            sink.accept(new PointValueTime(series[i], i));
+        }
+
+        List<TimestampValue> values = sink.result().getValues();
+        assertEquals(4, values.size());
+        assertEquals(listOf(1L, 2L, 6L, 7L), timestamps(values));
+        assertEquals(1.0, values.get(0).getValue());
+        assertEquals(9.0, values.get(1).getValue());
+        assertEquals(8.0, values.get(2).getValue());
+        assertEquals(0.0, values.get(3).getValue());
+    }
+
+    @Test
+    public void nonNumericKeepsFirstValueOfEachBucket() {
+        DownsampleSink sink = new DownsampleSink("id", "xid", Downsample.LTTB, 3, 0, 6);
+        for (int i = 0; i < 6; i++) {
+            sink.accept(new PointValueTime("value " + i, i));
+        }
+
+        List<TimestampValue> values = sink.result().getValues();
+        assertEquals(listOf(0L, 2L, 4L), timestamps(values));
+        assertEquals("value 2", values.get(1).getValue());
+    }
+
+    private static void assertBucket(int bucket, long timestamp) {
+        int index = (int) (timestamp * 3 / 100);
+        assertEquals("bucket of " + timestamp, bucket, index);
+    }
+
+    private static List<Long> timestamps(List<TimestampValue> values) {
+        return values.stream().map(TimestampValue::getTimestamp).collect(Collectors.toList());
+    }
+
+    private static List<Long> listOf(Long... values) {
+        return Arrays.asList(values);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.springframework.core.env.StandardEnvironment;
+
+import com.ioconstructs.vui.data.RecentValuesBuffer.PointBuffer;
+import com.serotonin.m2m2.DataTypes;
+import com.serotonin.m2m2.vo.DataPointVO;
+import com.serotonin.m2m2.vo.dataSource.mock.MockPointLocatorVO;
+
+/**
+ * Tracks which range a point's buffer covers as values are appended by the listener and prepended by backfills
+ *
+ * @author Matt Fox
+ */
+public class RecentValuesBufferTest {
+
+    @Test
+    public void nothingIsCoveredBeforeStart() {
+        PointBuffer buffer = buffer(10);
+        assertNull(buffer.read(0, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void appendedValuesAreCoveredFromStart() {
+        PointBuffer buffer = buffer(10);
+        buffer.started(100);
+        buffer.append(110, 1);
+        buffer.append(120, 2);
+
+        RecentValues values = buffer.read(100, 200);
+        assertTrue(values.isBuffered());
+        assertArrayEquals(new long[] {110, 120}, timestamps(values));
+        assertArrayEquals(new long[] {110}, timestamps(buffer.read(105, 120)));
+        assertNull(buffer.read(99, 200));
+    }
+
+    @Test
+    public void prependExtendsCoverage() {
+        PointBuffer buffer = buffer(10);
+        buffer.started(100);
+        buffer.append(110, 1);
+        buffer.append(120, 2);
+
+        // the query also returns the value the listener recorded, it is not added twice
+        buffer.prepend(queried(50, 60, 70, 80, 110), 40, 115);
+
+        assertArrayEquals(new long[] {50, 60, 70, 80, 110, 120}, timestamps(buffer.read(40, 200)));
+        assertNull(buffer.read(39, 200));
+    }
+
+    @Test
+    public void prependWithoutValuesExtendsCoverage() {
+        PointBuffer buffer = buffer(10);
+        buffer.started(100);
+        buffer.append(110, 1);
+
+        buffer.prepend(queried(), 0, 110);
+        assertArrayEquals(new long[] {110}, timestamps(buffer.read(0, 200)));
+    }
+
+    @Test
+    public void prependNotReachingCoverageIsIgnored() {
+        PointBuffer buffer = buffer(10);
+        buffer.started(100);
+        buffer.append(110, 1);
+
+        // there may be values in [50, 100) which were not queried
+        buffer.prepend(queried(10, 20), 0, 50);
+        assertNull(buffer.read(0, 200));
+        assertArrayEquals(new long[] {110}, timestamps(buffer.read(100, 200)));
+    }
+
+    @Test
+    public void prependInsideCoverageIsIgnored() {
+        PointBuffer buffer = buffer(10);
+        buffer.started(100);
+        buffer.append(110, 1);
+
+        buffer.prepend(queried(105), 100, 200);
+        assertArrayEquals(new long[] {110}, timestamps(buffer.read(100, 200)));
+    }
+
+    @Test
+    public void prependKeepsNewestValuesWhenFull() {
+        PointBuffer buffer = buffer(4);
+        buffer.started(100);
+        buffer.append(110, 1);
+        buffer.append(120, 2);
+
+        // only two slots are free, the range is covered from the oldest value kept
+        buffer.prepend(queried(50, 60, 70, 80), 40, 100);
+
+        assertArrayEquals(new long[] {70, 80, 110, 120}, timestamps(buffer.read(70, 200)));
+        assertNull(buffer.read(69, 200));
+    }
+
+    @Test
+    public void prependIntoFullBufferIsIgnored() {
+        PointBuffer buffer = buffer(2);
+        buffer.started(100);
+        buffer.append(110, 1);
+        buffer.append(120, 2);
+
+        buffer.prepend(queried(50), 40, 100);
+        assertNull(buffer.read(40, 200));
+        assertArrayEquals(new long[] {110, 120}, timestamps(buffer.read(100, 200)));
+    }
+
+    @Test
+    public void valueLoggedBeforeStartIsNotDuplicated() {
+        PointBuffer buffer = buffer(10);
+        buffer.started(100);
+        // logged with a time before the buffer was created
+        buffer.append(95, 1);
+
+        buffer.prepend(queried(50, 95), 0, 100);
+        assertArrayEquals(new long[] {50, 95}, timestamps(buffer.read(0, 200)));
+    }
+
+    @Test
+    public void overwritingOldestValueMovesCoverage() {
+        PointBuffer buffer = buffer(2);
+        buffer.started(0);
+        buffer.append(10, 1);
+        buffer.append(20, 2);
+        assertArrayEquals(new long[] {10, 20}, timestamps(buffer.read(0, 100)));
+
+        buffer.append(30, 3);
+        assertNull(buffer.read(10, 100));
+        assertArrayEquals(new long[] {20, 30}, timestamps(buffer.read(11, 100)));
+    }
+
+    @Test
+    public void backdatedValueMovesCoverage() {
+        PointBuffer buffer = buffer(10);
+        buffer.started(0);
+        buffer.append(10, 1);
+        buffer.append(20, 2);
+
+        // not inserted, the range up to the backdated value is no longer complete
+        buffer.append(15, 3);
+        assertNull(buffer.read(15, 100));
+        assertArrayEquals(new long[] {20}, timestamps(buffer.read(16, 100)));
+
+        buffer.backdated(25);
+        assertNull(buffer.read(16, 100));
+    }
+
+    @Test
+    public void nonNumericPointIsRejectedWhetherWatchedOrNot() {
+        RecentValuesBuffer recentValues = new RecentValuesBuffer(null, new StandardEnvironment());
+        DataPointVO vo = new DataPointVO();
+        vo.setId(1);
+        vo.setXid("DP_1");
+        vo.setPointLocator(new MockPointLocatorVO(DataTypes.MULTISTATE, false));
+
+        assertNull(recentValues.get(vo, 0, 100));
+        recentValues.watch(vo);
+        assertEquals(0, recentValues.getBufferedPointCount());
+        assertNull(recentValues.get(vo, 0, 100));
+    }
+
+    private static PointBuffer buffer(int depth) {
+        DataPointVO vo = new DataPointVO();
+        vo.setId(1);
+        vo.setXid("DP_1");
+        return new PointBuffer(vo, depth);
+    }
+
+    private static RecentValues queried(long... timestamps) {
+        RecentValues.Builder builder = new RecentValues.Builder();
+        for (long timestamp : timestamps) {
+            builder.add(timestamp, timestamp / 10d);
+        }
+        return builder.build();
+    }
+
+    private static long[] timestamps(RecentValues values) {
+        long[] timestamps = new long[values.size()];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = values.getTimestamp(i);
+        }
+        return timestamps;
+    }
+}
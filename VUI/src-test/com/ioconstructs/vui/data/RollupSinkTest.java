@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ioconstructs.vui.data.WidgetDataResult.TimestampValue;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+
+/**
+ * Time weighted AVERAGE rollup, each value is weighted by the time until the next value or the end of its bucket
+ *
+ * @author Matt Fox
+ */
+public class RollupSinkTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void singleValueWithoutStartValue() {
+        // the time before the first value is not counted
+        RollupSink sink = average(0, 100);
+        sink.accept(new PointValueTime(10d, 50));
+        assertAverages(sink, 10d);
+    }
+
+    @Test
+    public void startValueCoversStartOfBucket() {
+        RollupSink sink = average(0, 100);
+        sink.startValue(new PointValueTime(0d, -10));
+        sink.accept(new PointValueTime(10d, 50));
+        assertAverages(sink, 5d);
+    }
+
+    @Test
+    public void valuesAreWeightedByDuration() {
+        RollupSink sink = average(0, 100);
+        sink.startValue(new PointValueTime(1d, -500));
+        sink.accept(new PointValueTime(3d, 10));
+        sink.accept(new PointValueTime(5d, 40));
+        // 1 for 10ms, 3 for 30ms, 5 for 60ms
+        assertAverages(sink, 4.0d);
+    }
+
+    @Test
+    public void valueOnBucketBoundaryStartsNextBucket() {
+        RollupSink sink = average(0, 200);
+        sink.accept(new PointValueTime(2d, 0));
+        sink.accept(new PointValueTime(4d, 100));
+        assertAverages(sink, 2d, 4d);
+    }
+
+    @Test
+    public void startValueAtStartOfRange() {
+        RollupSink sink = average(0, 100);
+        sink.startValue(new PointValueTime(6d, 0));
+        sink.accept(new PointValueTime(2d, 50));
+        assertAverages(sink, 4d);
+    }
+
+    @Test
+    public void gapCarriesLastValueForward() {
+        RollupSink sink = average(0, 400);
+        sink.accept(new PointValueTime(2d, 50));
+        sink.accept(new PointValueTime(8d, 350));
+        // buckets 1 and 2 have no values, the value from bucket 0 covers them
+        assertAverages(sink, 2d, 2d, 2d, 5d);
+    }
+
+    @Test
+    public void bucketsBeforeFirstValueAreEmpty() {
+        RollupSink sink = average(0, 300);
+        sink.accept(new PointValueTime(2d, 250));
+        assertAverages(sink, null, null, 2d);
+    }
+
+    @Test
+    public void noValues() {
+        assertAverages(average(0, 200), null, null);
+
+        RollupSink sink = average(0, 200);
+        sink.startValue(new PointValueTime(7d, -1));
+        assertAverages(sink, 7d, 7d);
+    }
+
+    @Test
+    public void lastBucketIsCutOffAtEndOfRange() {
+        RollupSink sink = average(0, 150);
+        sink.accept(new PointValueTime(2d, 0));
+        sink.accept(new PointValueTime(4d, 120));
+        // 2 for 20ms and 4 for 30ms of the 50ms the last bucket covers
+        assertAverages(sink, 2d, 3.2d);
+    }
+
+    @Test
+    public void nonNumericValuesAreIgnored() {
+        RollupSink sink = average(0, 100);
+        sink.startValue(new PointValueTime("off", -10));
+        sink.accept(new PointValueTime("on", 50));
+        assertAverages(sink, (Double) null);
+
+        sink = average(0, 100);
+        sink.accept(new PointValueTime(4d, 0));
+        sink.accept(new PointValueTime("on", 50));
+        assertAverages(sink, 4d);
+    }
+
+    @Test
+    public void arithmeticMeanIsNotWeighted() {
+        RollupSink sink = new RollupSink("id", "xid", Rollup.ARITHMETIC_MEAN, period(100), 0, 100, ZoneOffset.UTC);
+        sink.accept(new PointValueTime(1d, 0));
+        sink.accept(new PointValueTime(5d, 90));
+        assertEquals(3d, (Double) sink.result().getValues().get(0).getValue(), DELTA);
+    }
+
+    private static RollupSink average(long from, long to) {
+        return new RollupSink("id", "xid", Rollup.AVERAGE, period(100), from, to, ZoneOffset.UTC);
+    }
+
+    private static WidgetDataRequest.TimePeriod period(int millis) {
+        WidgetDataRequest.TimePeriod period = new WidgetDataRequest.TimePeriod();
+        period.setPeriods(millis);
+        period.setType(TimePeriodType.MILLISECONDS);
+        return period;
+    }
+
+    private static void assertAverages(RollupSink sink, Double... expected) {
+        List<TimestampValue> values = sink.result().getValues();
+        long[] timestamps = new long[values.size()];
+        for (int i = 0; i < values.size(); i++) {
+            timestamps[i] = values.get(i).getTimestamp();
+            Double value = (Double) values.get(i).getValue();
+            if (expected[i] == null) {
+                assertNull(value);
+            } else {
+                assertEquals(expected[i], value, DELTA);
+            }
+        }
+        long[] expectedTimestamps = new long[expected.length];
+        for (int i = 0; i < expected.length; i++) {
+            expectedTimestamps[i] = i * 100L;
+        }
+        assertArrayEquals(expectedTimestamps, timestamps);
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.gateway;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * @author Matt Fox
+ */
+public class CoalescingBufferTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<String> frames = new ArrayList<>();
+    private ManualExecutor executor;
+    private GatewaySession session;
+    private GatewayStream stream;
+
+    @Before
+    public void setup() {
+        executor = new ManualExecutor();
+        session = new GatewaySession(webSocketSession(), null, objectMapper, executor, 0, 4);
+        stream = session.openStream(1, () -> "test", 200);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void onlyLatestPayloadPerKeyIsSent() throws Exception {
+        stream.sendLatest("a", "UPDATE", 1);
+        stream.sendLatest("a", "UPDATE", 2);
+        stream.sendLatest("b", "UPDATE", 3);
+
+        CoalescingBuffer buffer = stream.getBuffer();
+        assertEquals(2, buffer.getQueueDepth());
+        assertEquals(1, buffer.getDroppedCount());
+        // one frame for the three payloads
+        assertEquals(1, executor.tasks.size());
+
+        executor.runAll();
+        assertEquals(0, buffer.getQueueDepth());
+        assertEquals(1, frames.size());
+        assertEquals(setOf(2, 3), new HashSet<>(payloads(frames.get(0))));
+    }
+
+    @Test
+    public void eventTypesOfOneValueAreNotCoalesced() throws Exception {
+        // a value which changed and was logged fires all three events within one frame
+        stream.sendLatest("a", "UPDATE", 1);
+        stream.sendLatest("a", "CHANGE", 2);
+        stream.sendLatest("a", "LOGGED", 3);
+
+        CoalescingBuffer buffer = stream.getBuffer();
+        assertEquals(3, buffer.getQueueDepth());
+        assertEquals(0, buffer.getDroppedCount());
+
+        stream.sendLatest("a", "UPDATE", 4);
+        assertEquals(3, buffer.getQueueDepth());
+        assertEquals(1, buffer.getDroppedCount());
+
+        executor.runAll();
+        assertEquals(0, buffer.getQueueDepth());
+        assertEquals(1, frames.size());
+        assertEquals(listOf(4, 2, 3), payloads(frames.get(0)));
+    }
+
+    @Test
+    public void releaseSendsPendingPayloadsFirst() throws Exception {
+        stream.sendLatest("a", "UPDATE", 1);
+        stream.sendLatest("a", "CHANGE", 2);
+        stream.sendLatest("b", "UPDATE", 3);
+        stream.releaseLatest("a");
+        stream.send(5);
+
+        executor.runAll();
+        assertEquals(2, frames.size());
+        assertEquals(listOf(1, 2, 5), payloads(frames.get(0)));
+        assertEquals(listOf(3), payloads(frames.get(1)));
+    }
+
+    @Test
+    public void releaseSendsPendingPayloadFirst() throws Exception {
+        stream.sendLatest("a", "UPDATE", 1);
+        stream.releaseLatest("a");
+        stream.send(5);
+
+        executor.runAll();
+        assertEquals(1, frames.size());
+        assertEquals(listOf(1, 5), payloads(frames.get(0)));
+        assertEquals(0, stream.getBuffer().getQueueDepth());
+    }
+
+    @Test
+    public void frameIsSkippedWhileBackedUp() throws Exception {
+        stream.sendLatest("a", "UPDATE", 1);
+        // more than half of the session queue (4) is pending
+        stream.send(10);
+        stream.send(11);
+        stream.send(12);
+        assertTrue(session.isBackedUp());
+
+        // frame, skipped and rescheduled behind the session flush
+        executor.runNext();
+        assertEquals(1, stream.getBuffer().getSkippedFrameCount());
+        assertEquals(1, stream.getBuffer().getQueueDepth());
+        assertEquals(0, frames.size());
+
+        // session flush
+        executor.runNext();
+        assertEquals(1, frames.size());
+        assertEquals(listOf(10, 11, 12), payloads(frames.get(0)));
+
+        stream.sendLatest("a", "UPDATE", 2);
+        executor.runAll();
+        assertEquals(2, frames.size());
+        assertEquals(listOf(2), payloads(frames.get(1)));
+        assertEquals(1, stream.getBuffer().getDroppedCount());
+    }
+
+    @Test
+    public void closedStreamDiscardsPayloads() {
+        stream.sendLatest("a", "UPDATE", 1);
+        session.closeStream(1);
+        stream.sendLatest("b", "UPDATE", 2);
+
+        executor.runAll();
+        assertEquals(0, stream.getBuffer().getQueueDepth());
+        assertEquals(0, frames.size());
+    }
+
+    @Test
+    public void streamWithoutFrameRateSendsImmediately() {
+        GatewayStream immediate = session.openStream(2, () -> "test", 0);
+        assertNull(immediate.getBuffer());
+
+        immediate.sendLatest("a", "UPDATE", 1);
+        // queued for the session flush, not for a frame
+        assertEquals(1, session.getQueueDepth());
+        executor.runAll();
+        assertEquals(1, frames.size());
+    }
+
+    @Test
+    public void refusedSubscriptionIsNotRecorded() {
+        GatewayStream refused = session.openStream(2, new GatewayChannel() {
+            @Override
+            public String getName() {
+                return "test";
+            }
+
+            @Override
+            public boolean canSubscribe(GatewayStream stream, String xid) {
+                return false;
+            }
+        }, 0);
+
+        refused.subscribe("DP_1", GatewayStream.ALL_EVENT_TYPES);
+        assertTrue(refused.getXids().isEmpty());
+        assertFalse(refused.isSubscribed("DP_1", "UPDATE"));
+
+        stream.subscribe("DP_1", GatewayStream.ALL_EVENT_TYPES);
+        assertTrue(stream.isSubscribed("DP_1", "UPDATE"));
+    }
+
+    private List<Integer> payloads(String frame) throws Exception {
+        List<Integer> payloads = new ArrayList<>();
+        for (JsonNode message : objectMapper.readTree(frame)) {
+            assertEquals(1, message.get("stream").asInt());
+            assertEquals("test", message.get("channel").asText());
+            payloads.add(message.get("payload").asInt());
+        }
+        return payloads;
+    }
+
+    private WebSocketSession webSocketSession() {
+        return (WebSocketSession) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {WebSocketSession.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "sendMessage":
+                            frames.add(((TextMessage) args[0]).getPayload());
+                            return null;
+                        case "isOpen":
+                            return true;
+                        case "getId":
+                            return "test";
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private static Set<Integer> setOf(Integer... values) {
+        return new HashSet<>(listOf(values));
+    }
+
+    private static List<Integer> listOf(Integer... values) {
+        List<Integer> list = new ArrayList<>();
+        for (Integer value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    /**
+     * Runs scheduled tasks on the test thread, in the order they were scheduled and ignoring their delay
+     */
+    private static final class ManualExecutor extends ScheduledThreadPoolExecutor {
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        private ManualExecutor() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            tasks.add(command);
+            return null;
+        }
+
+        void runNext() {
+            tasks.remove().run();
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                runNext();
+            }
+        }
+    }
+}
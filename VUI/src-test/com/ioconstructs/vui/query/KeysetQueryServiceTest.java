@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.query;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ioconstructs.vui.query.KeysetQueryService.SortProperty;
+
+import net.jazdw.rql.parser.ASTNode;
+
+/**
+ * Pages through an in memory table using the conditions built by {@link KeysetQueryService}, evaluated with SQL
+ * semantics (NULLs never compare equal to a value). NULLs sort first as in H2 and MySQL, or last as in PostgreSQL.
+ *
+ * @author Matt Fox
+ */
+public class KeysetQueryServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void cursorRoundTrip() throws Exception {
+        KeysetCursor cursor = new KeysetCursor("-name,+id", Arrays.asList("Boiler 2", 42), 100);
+        KeysetCursor decoded = KeysetCursor.decode(cursor.encode(objectMapper), objectMapper);
+
+        assertEquals("-name,+id", decoded.getSort());
+        assertEquals(Arrays.asList("Boiler 2", 42), decoded.getValues());
+        assertEquals(100, decoded.getOffset());
+    }
+
+    @Test
+    public void idIsAppendedAsTieBreaker() {
+        List<ASTNode> filters = new ArrayList<>();
+        List<SortProperty> sort = KeysetQueryService.parse(new ASTNode("and",
+                new ASTNode("eq", "enabled", true), new ASTNode("sort", "-name"), new ASTNode("limit", 10)), filters);
+
+        assertEquals(Arrays.asList("-name", "+id"), sort.stream().map(SortProperty::toString).collect(Collectors.toList()));
+        assertEquals(1, filters.size());
+        assertEquals("eq", filters.get(0).getName());
+    }
+
+    @Test
+    public void idIsNotAppendedTwice() {
+        List<SortProperty> sort = KeysetQueryService.parse(new ASTNode("sort", "-id"), new ArrayList<>());
+        assertEquals(1, sort.size());
+        assertEquals("-id", sort.get(0).toString());
+    }
+
+    @Test
+    public void equalSortValuesAreOrderedById() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int id = 1; id <= 7; id++) {
+            rows.add(row(id, "same"));
+        }
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7), pageThrough(rows, "+name", 2, false));
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7), pageThrough(rows, "-name", 3, false));
+    }
+
+    @Test
+    public void ascendingSortWithNulls() {
+        List<Map<String, Object>> rows = table();
+        List<Integer> expected = ids(sorted(rows, "+name,+id", false));
+        assertEquals(Arrays.asList(2, 4, 8), expected.subList(0, 3));
+
+        for (int pageSize = 1; pageSize <= rows.size(); pageSize++) {
+            assertEquals("page size " + pageSize, expected, pageThrough(rows, "+name", pageSize, false));
+        }
+    }
+
+    @Test
+    public void descendingSortWithNulls() {
+        List<Map<String, Object>> rows = table();
+        List<Integer> expected = ids(sorted(rows, "-name,+id", false));
+        // the rows without a name come last
+        assertEquals(Arrays.asList(2, 4, 8), expected.subList(expected.size() - 3, expected.size()));
+
+        for (int pageSize = 1; pageSize <= rows.size(); pageSize++) {
+            assertEquals("page size " + pageSize, expected, pageThrough(rows, "-name", pageSize, false));
+        }
+    }
+
+    @Test
+    public void ascendingSortWithNullsLast() {
+        List<Map<String, Object>> rows = table();
+        List<Integer> expected = ids(sorted(rows, "+name,+id", true));
+        // the rows without a name come last
+        assertEquals(Arrays.asList(2, 4, 8), expected.subList(expected.size() - 3, expected.size()));
+
+        for (int pageSize = 1; pageSize <= rows.size(); pageSize++) {
+            assertEquals("page size " + pageSize, expected, pageThrough(rows, "+name", pageSize, true));
+        }
+    }
+
+    @Test
+    public void descendingSortWithNullsLast() {
+        List<Map<String, Object>> rows = table();
+        List<Integer> expected = ids(sorted(rows, "-name,+id", true));
+        assertEquals(Arrays.asList(2, 4, 8), expected.subList(0, 3));
+
+        for (int pageSize = 1; pageSize <= rows.size(); pageSize++) {
+            assertEquals("page size " + pageSize, expected, pageThrough(rows, "-name", pageSize, true));
+        }
+    }
+
+    @Test
+    public void descendingIdTieBreaker() {
+        List<Map<String, Object>> rows = table();
+        for (boolean nullsLast : new boolean[] {false, true}) {
+            List<Integer> expected = ids(sorted(rows, "+name,-id", nullsLast));
+            for (int pageSize = 1; pageSize <= rows.size(); pageSize++) {
+                assertEquals("page size " + pageSize, expected, pageThrough(rows, "+name,-id", pageSize, nullsLast));
+            }
+        }
+    }
+
+    @Test
+    public void ascendingConditionHasNoNullTerm() {
+        List<SortProperty> sort = Arrays.asList(SortProperty.parse("+name"), SortProperty.parse("+id"));
+        ASTNode after = KeysetQueryService.after(sort, Arrays.asList("b", 3), false);
+        assertEquals("or", after.getName());
+        assertEquals("gt", ((ASTNode) after.getArguments().get(0)).getName());
+        assertEquals("and", ((ASTNode) after.getArguments().get(1)).getName());
+
+        after = KeysetQueryService.after(Arrays.asList(SortProperty.parse("-name"), SortProperty.parse("+id")),
+                Arrays.asList("b", 3), true);
+        assertEquals("lt", ((ASTNode) after.getArguments().get(0)).getName());
+    }
+
+    @Test
+    public void descendingConditionIncludesNulls() {
+        List<SortProperty> sort = Arrays.asList(SortProperty.parse("-name"), SortProperty.parse("+id"));
+        assertIncludesNulls(KeysetQueryService.after(sort, Arrays.asList("b", 3), false), "lt");
+    }
+
+    @Test
+    public void ascendingConditionIncludesNullsWhenNullsSortLast() {
+        List<SortProperty> sort = Arrays.asList(SortProperty.parse("+name"), SortProperty.parse("+id"));
+        assertIncludesNulls(KeysetQueryService.after(sort, Arrays.asList("b", 3), true), "gt");
+    }
+
+    @Test
+    public void emptyTable() {
+        assertEquals(new ArrayList<Integer>(), pageThrough(new ArrayList<>(), "+name", 2, false));
+    }
+
+    private static void assertIncludesNulls(ASTNode after, String comparison) {
+        ASTNode first = (ASTNode) after.getArguments().get(0);
+        assertEquals("or", first.getName());
+        assertEquals(comparison, ((ASTNode) first.getArguments().get(0)).getName());
+        ASTNode isNull = (ASTNode) first.getArguments().get(1);
+        assertEquals("eq", isNull.getName());
+        assertEquals(Arrays.asList("name", null), isNull.getArguments());
+    }
+
+    private static List<Map<String, Object>> table() {
+        return Arrays.asList(
+                row(1, "a"),
+                row(2, null),
+                row(3, "b"),
+                row(4, null),
+                row(5, "b"),
+                row(6, "c"),
+                row(7, "a"),
+                row(8, null),
+                row(9, "d"));
+    }
+
+    private static Map<String, Object> row(int id, String name) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("name", name);
+        return row;
+    }
+
+    /**
+     * Follows the same steps as {@link KeysetQueryService#page}, the cursor is encoded and decoded between pages
+     */
+    private List<Integer> pageThrough(List<Map<String, Object>> rows, String sortParameter, int pageSize, boolean nullsLast) {
+        List<SortProperty> sort = KeysetQueryService.parse(new ASTNode("sort", (Object[]) sortParameter.split(",")), new ArrayList<>());
+        String sortKey = sort.stream().map(SortProperty::toString).collect(Collectors.joining(","));
+
+        List<Integer> result = new ArrayList<>();
+        KeysetCursor cursor = null;
+        for (int page = 0; page <= rows.size(); page++) {
+            List<Map<String, Object>> matching;
+            if (cursor == null) {
+                matching = sorted(rows, sortKey, nullsLast);
+            } else if (cursor.getValues().contains(null)) {
+                List<Map<String, Object>> all = sorted(rows, sortKey, nullsLast);
+                matching = all.subList((int) Math.min(cursor.getOffset(), all.size()), all.size());
+            } else {
+                ASTNode after = KeysetQueryService.after(sort, cursor.getValues(), nullsLast);
+                matching = sorted(rows.stream().filter(r -> Boolean.TRUE.equals(evaluate(after, r))).collect(Collectors.toList()),
+                        sortKey, nullsLast);
+            }
+
+            List<Map<String, Object>> items = matching.subList(0, Math.min(matching.size(), pageSize + 1));
+            if (items.size() <= pageSize) {
+                result.addAll(ids(items));
+                return result;
+            }
+
+            items = items.subList(0, pageSize);
+            result.addAll(ids(items));
+            Map<String, Object> last = items.get(pageSize - 1);
+            List<Object> values = sort.stream().map(p -> last.get(p.name)).collect(Collectors.toList());
+            long consumed = (cursor != null ? cursor.getOffset() : 0) + pageSize;
+            try {
+                cursor = KeysetCursor.decode(new KeysetCursor(sortKey, values, consumed).encode(objectMapper), objectMapper);
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        }
+        throw new AssertionError("Paging did not terminate");
+    }
+
+    private static List<Map<String, Object>> sorted(List<Map<String, Object>> rows, String sortKey, boolean nullsLast) {
+        Comparator<Map<String, Object>> comparator = null;
+        for (String parameter : sortKey.split(",")) {
+            SortProperty property = SortProperty.parse(parameter);
+            // NULLs first as in H2 and MySQL or last as in PostgreSQL, the order is reversed for a descending sort
+            Comparator<Comparable<Object>> values = nullsLast ? Comparator.nullsLast(Comparator.naturalOrder()) :
+                    Comparator.nullsFirst(Comparator.naturalOrder());
+            Comparator<Map<String, Object>> next = Comparator.comparing(r -> comparable(r.get(property.name)), values);
+            if (property.descending) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        List<Map<String, Object>> copy = new ArrayList<>(rows);
+        copy.sort(comparator);
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Comparable<Object> comparable(Object value) {
+        return (Comparable<Object>) value;
+    }
+
+    /**
+     * @return the value of the condition for the row, null if it is unknown (SQL three valued logic)
+     */
+    private static Boolean evaluate(ASTNode node, Map<String, Object> row) {
+        List<Object> arguments = node.getArguments();
+        switch (node.getName()) {
+            case "and": {
+                Boolean result = true;
+                for (Object argument : arguments) {
+                    Boolean value = evaluate((ASTNode) argument, row);
+                    if (Boolean.FALSE.equals(value)) {
+                        return false;
+                    }
+                    if (value == null) {
+                        result = null;
+                    }
+                }
+                return result;
+            }
+            case "or": {
+                Boolean result = false;
+                for (Object argument : arguments) {
+                    Boolean value = evaluate((ASTNode) argument, row);
+                    if (Boolean.TRUE.equals(value)) {
+                        return true;
+                    }
+                    if (value == null) {
+                        result = null;
+                    }
+                }
+                return result;
+            }
+            default: {
+                Object actual = row.get((String) arguments.get(0));
+                Object expected = arguments.get(1);
+                if ("eq".equals(node.getName()) && expected == null) {
+                    return actual == null;
+                }
+                if (actual == null || expected == null) {
+                    return null;
+                }
+                int comparison = comparable(actual).compareTo(expected);
+                switch (node.getName()) {
+                    case "eq": return comparison == 0;
+                    case "gt": return comparison > 0;
+                    case "lt": return comparison < 0;
+                    default: throw new IllegalArgumentException(node.getName());
+                }
+            }
+        }
+    }
+
+    private static List<Integer> ids(List<Map<String, Object>> rows) {
+        return rows.stream().map(r -> (Integer) r.get("id")).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.env.StandardEnvironment;
+
+import com.serotonin.m2m2.vo.DataPointVO;
+
+/**
+ * @author Matt Fox
+ */
+public class TypeaheadIndexTest {
+
+    private TypeaheadIndex index;
+    private BitSet readable;
+
+    @Before
+    public void setup() {
+        index = new TypeaheadIndex(null, null, new StandardEnvironment());
+        readable = new BitSet();
+        put(1, "DP_TEMP_1", "Temperature", "Boiler 1", 1);
+        put(2, "DP_2", "Boiler Temperature", "Boiler 2", 1);
+        put(3, "DP_3", "Temp", "Chiller", 2);
+        put(4, "DP_4", "Supply Air Temp", "AHU 1", 2);
+        put(5, "DP_5", "Humidity", "Tempest Station", 2);
+        put(6, "TEMP_SENSOR_6", "Pressure", "Pump", 2);
+        put(7, "DP_ATTEMPT_7", "Flow", "Pump", 2);
+    }
+
+    @Test
+    public void pointsAreRanked() {
+        // exact name, name prefix, name word prefix (shorter name first), device prefix, XID prefix, contained
+        assertEquals(Arrays.asList("DP_3", "DP_TEMP_1", "DP_4", "DP_2", "DP_5", "TEMP_SENSOR_6", "DP_ATTEMPT_7"),
+                points("temp", 100));
+    }
+
+    @Test
+    public void bestPointsAreKept() {
+        assertEquals(Arrays.asList("DP_3", "DP_TEMP_1"), points("temp", 2));
+        assertEquals(Arrays.asList("DP_3", "DP_TEMP_1", "DP_4"), points("Temp", 3));
+    }
+
+    @Test
+    public void equalNamesAreOrderedById() {
+        put(8, "DP_8", "Temp", "Boiler 1", 1);
+        assertEquals(Arrays.asList("DP_3", "DP_8", "DP_TEMP_1"), points("temp", 3));
+    }
+
+    @Test
+    public void everyWordMustMatch() {
+        // the name of point 2 starts with the query, point 1 only matches on its device name
+        assertEquals(Arrays.asList("DP_2", "DP_TEMP_1"), points("boiler temp", 100));
+        // both names have a word starting with the first word, the shorter name ranks first
+        assertEquals(Arrays.asList("DP_TEMP_1", "DP_2"), points("temp, boiler", 100));
+    }
+
+    @Test
+    public void shortWordsMatchWordPrefixes() {
+        // "attempt" contains "te" but no word starts with it
+        assertEquals(Arrays.asList("DP_3", "DP_TEMP_1", "DP_4", "DP_2", "DP_5", "TEMP_SENSOR_6"), points("te", 100));
+    }
+
+    @Test
+    public void noMatch() {
+        assertTrue(points("xyz", 100).isEmpty());
+        assertTrue(points("temperatures", 100).isEmpty());
+        assertTrue(points(" - ", 100).isEmpty());
+    }
+
+    @Test
+    public void onlyReadablePointsAreSuggested() {
+        readable.clear(3);
+        readable.clear(4);
+        assertEquals(Arrays.asList("DP_TEMP_1", "DP_2", "DP_5"), points("temp", 3));
+    }
+
+    @Test
+    public void savedPointIsReranked() {
+        put(7, "DP_ATTEMPT_7", "Temp Flow", "Pump", 2);
+        assertEquals(Arrays.asList("DP_3", "DP_ATTEMPT_7", "DP_TEMP_1"), points("temp", 3));
+
+        index.remove(3);
+        readable.clear(3);
+        assertEquals(Arrays.asList("DP_ATTEMPT_7", "DP_TEMP_1"), points("temp", 2));
+    }
+
+    @Test
+    public void deviceNamesAreSortedWithoutDuplicates() {
+        assertEquals(Arrays.asList("AHU 1", "Boiler 1", "Boiler 2", "Chiller", "Pump", "Tempest Station"),
+                index.deviceNames("", null, 100, readable));
+        assertEquals(Arrays.asList("AHU 1", "Boiler 1"), index.deviceNames(null, null, 2, readable));
+    }
+
+    @Test
+    public void deviceNamePrefixMatchesRankFirst() {
+        put(9, "DP_9", "Outside Air", "Station Tempest", 2);
+        assertEquals(Arrays.asList("Tempest Station", "Station Tempest"), index.deviceNames("tempest", null, 100, readable));
+        assertEquals(Arrays.asList("Station Tempest", "Tempest Station"), index.deviceNames("station", null, 100, readable));
+    }
+
+    @Test
+    public void deviceNamesOfDataSource() {
+        assertEquals(Arrays.asList("Boiler 1", "Boiler 2"), index.deviceNames("", 1, 100, readable));
+        assertEquals(Arrays.asList("Boiler 1", "Boiler 2"), index.deviceNames("boiler", 1, 100, readable));
+        assertTrue(index.deviceNames("boiler", 2, 100, readable).isEmpty());
+        assertTrue(index.deviceNames("", 3, 100, readable).isEmpty());
+    }
+
+    @Test
+    public void dataSourceIsFilteredBeforeCandidatesAreCounted() {
+        // more points of data source 2 than the default vui.search.maxCandidates, all with lower ids
+        for (int id = 100; id < 10100; id++) {
+            put(id, "DP_" + id, "Flow", "Pump " + id, 2);
+        }
+        put(20000, "DP_20000", "Flow", "Boiler 3", 1);
+        assertEquals(Arrays.asList("Boiler 1", "Boiler 2", "Boiler 3"), index.deviceNames("", 1, 100, readable));
+
+        index.remove(20000);
+        readable.clear(20000);
+        assertEquals(Arrays.asList("Boiler 1", "Boiler 2"), index.deviceNames("boiler", 1, 100, readable));
+    }
+
+    private void put(int id, String xid, String name, String deviceName, int dataSourceId) {
+        DataPointVO vo = new DataPointVO();
+        vo.setId(id);
+        vo.setXid(xid);
+        vo.setName(name);
+        vo.setDeviceName(deviceName);
+        vo.setDataSourceId(dataSourceId);
+        index.put(vo);
+        readable.set(id);
+    }
+
+    private List<String> points(String query, int limit) {
+        return index.points(query, limit, readable).stream()
+                .map(PointSuggestion::getXid)
+                .collect(Collectors.toList());
+    }
+}
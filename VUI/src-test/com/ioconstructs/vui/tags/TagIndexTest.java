@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.tags;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.env.StandardEnvironment;
+
+import com.serotonin.m2m2.vo.DataPointVO;
+
+/**
+ * @author Matt Fox
+ */
+public class TagIndexTest {
+
+    private TagIndex index;
+    private BitSet readable;
+
+    @Before
+    public void setup() {
+        index = new TagIndex(null, null, new StandardEnvironment());
+        readable = new BitSet();
+        put(1, "Boiler", "site", "A", "floor", "1");
+        put(2, null, "site", "A", "floor", "2");
+        put(3, null, "site", "B", "floor", "1");
+        put(4, null, "site", "B");
+        put(5, null);
+        put(6, null, "site", "A");
+    }
+
+    @Test
+    public void facetCountsApplyFiltersOnOtherKeys() {
+        TagFacets facets = query(filter("site", "A"), "site", "floor");
+
+        assertEquals(3, facets.getCount());
+        assertEquals(Arrays.asList("DP_1", "DP_2", "DP_6"), facets.getXids());
+        // the site picker still offers the other sites
+        assertEquals(counts("A", 3, "B", 2), facets.getFacets().get("site"));
+        assertEquals(counts("1", 1, "2", 1), facets.getFacets().get("floor"));
+    }
+
+    @Test
+    public void nullValueMatchesPointsWithoutKey() {
+        TagFacets facets = query(filter("floor", (String) null), "site", "floor");
+
+        assertEquals(Arrays.asList("DP_4", "DP_5", "DP_6"), facets.getXids());
+        assertEquals(counts("A", 1, "B", 1), facets.getFacets().get("site"));
+        assertEquals(counts("1", 2, "2", 1), facets.getFacets().get("floor"));
+    }
+
+    @Test
+    public void nullValueAndValue() {
+        TagFacets facets = query(filter("floor", null, "1"), "site");
+
+        assertEquals(Arrays.asList("DP_1", "DP_3", "DP_4", "DP_5", "DP_6"), facets.getXids());
+        assertEquals(counts("A", 2, "B", 2), facets.getFacets().get("site"));
+    }
+
+    @Test
+    public void nullValueCombinedWithOtherKey() {
+        Map<String, List<String>> filter = filter("site", "A");
+        filter.putAll(filter("floor", (String) null));
+        TagFacets facets = query(filter, "site", "floor");
+
+        assertEquals(Collections.singletonList("DP_6"), facets.getXids());
+        // points 4, 5 and 6 have no floor, point 5 has no site either
+        assertEquals(counts("A", 1, "B", 1), facets.getFacets().get("site"));
+        // points 1, 2 and 6 are on site A, a point without the key is not counted as a value
+        assertEquals(counts("1", 1, "2", 1), facets.getFacets().get("floor"));
+    }
+
+    @Test
+    public void nullValueOfUnknownKeyMatchesEveryPoint() {
+        TagFacets facets = query(filter("room", (String) null), "room");
+
+        assertEquals(6, facets.getCount());
+        assertTrue(facets.getFacets().get("room").isEmpty());
+    }
+
+    @Test
+    public void nullValueOfDeviceKey() {
+        TagFacets facets = query(filter(TagIndex.DEVICE_KEY, (String) null), TagIndex.DEVICE_KEY);
+
+        assertEquals(5, facets.getCount());
+        assertEquals(counts("Boiler", 1), facets.getFacets().get(TagIndex.DEVICE_KEY));
+    }
+
+    @Test
+    public void nullValueListIsIgnored() {
+        Map<String, List<String>> filter = new LinkedHashMap<>();
+        filter.put("site", null);
+        assertEquals(6, query(filter, "site").getCount());
+    }
+
+    @Test
+    public void onlyReadablePointsAreCounted() {
+        readable.clear(4);
+        readable.clear(5);
+        TagFacets facets = query(filter("floor", (String) null), "site", "floor");
+
+        assertEquals(Collections.singletonList("DP_6"), facets.getXids());
+        assertEquals(counts("A", 1), facets.getFacets().get("site"));
+        assertEquals(counts("1", 2, "2", 1), facets.getFacets().get("floor"));
+    }
+
+    @Test
+    public void removedPointIsNotCounted() {
+        index.remove(6);
+        readable.clear(6);
+        TagFacets facets = query(filter("floor", (String) null), "site");
+
+        assertEquals(Arrays.asList("DP_4", "DP_5"), facets.getXids());
+        assertEquals(counts("B", 1), facets.getFacets().get("site"));
+    }
+
+    @Test
+    public void savedTagsReplaceIndexedTags() {
+        put(4, null, "site", "B", "floor", "3");
+        TagFacets facets = query(filter("floor", (String) null), "floor");
+
+        assertEquals(Arrays.asList("DP_5", "DP_6"), facets.getXids());
+        assertEquals(counts("1", 2, "2", 1, "3", 1), facets.getFacets().get("floor"));
+    }
+
+    @Test
+    public void xidsAreLimited() {
+        TagFacetsRequest request = new TagFacetsRequest();
+        request.setFilter(filter("floor", (String) null));
+        request.setLimit(2);
+
+        TagFacets facets = index.query(request, readable);
+        assertEquals(3, facets.getCount());
+        assertEquals(Arrays.asList("DP_4", "DP_5"), facets.getXids());
+    }
+
+    private void put(int id, String deviceName, String... tags) {
+        DataPointVO vo = new DataPointVO();
+        vo.setId(id);
+        vo.setXid("DP_" + id);
+        vo.setDeviceName(deviceName);
+        Map<String, String> tagMap = new HashMap<>();
+        for (int i = 0; i < tags.length; i += 2) {
+            tagMap.put(tags[i], tags[i + 1]);
+        }
+        index.put(vo, tagMap);
+        readable.set(id);
+    }
+
+    private TagFacets query(Map<String, List<String>> filter, String... facetKeys) {
+        TagFacetsRequest request = new TagFacetsRequest();
+        request.setFilter(filter);
+        request.setFacets(Arrays.asList(facetKeys));
+        request.setLimit(100);
+        return index.query(request, readable);
+    }
+
+    private static Map<String, List<String>> filter(String key, String... values) {
+        Map<String, List<String>> filter = new LinkedHashMap<>();
+        filter.put(key, Arrays.asList(values));
+        return filter;
+    }
+
+    private static Map<String, Integer> counts(Object... valueCounts) {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (int i = 0; i < valueCounts.length; i += 2) {
+            counts.put((String) valueCounts[i], (Integer) valueCounts[i + 1]);
+        }
+        return counts;
+    }
+}
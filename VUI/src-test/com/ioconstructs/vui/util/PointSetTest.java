@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+
+import org.junit.Test;
+
+/**
+ * @author Matt Fox
+ */
+public class PointSetTest {
+
+    @Test
+    public void idsAreAddedOnce() {
+        PointSet set = new PointSet();
+        for (int id : new int[] {9, 1, 7, 3, 5, 3, 9, 2}) {
+            set.add(id);
+        }
+        assertEquals(bits(1, 2, 3, 5, 7, 9), contents(set));
+    }
+
+    @Test
+    public void remove() {
+        PointSet set = new PointSet();
+        set.add(1);
+        set.add(2);
+        set.add(3);
+
+        set.remove(2);
+        set.remove(4);
+        assertEquals(bits(1, 3), contents(set));
+
+        set.remove(1);
+        set.remove(3);
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    public void emptySet() {
+        PointSet set = new PointSet();
+        assertTrue(set.isEmpty());
+        assertEquals(0, set.countIn(bits(1, 2, 3)));
+        assertEquals(new BitSet(), contents(set));
+    }
+
+    @Test
+    public void countIn() {
+        PointSet set = new PointSet();
+        set.add(1);
+        set.add(5);
+        set.add(10);
+        assertEquals(2, set.countIn(bits(1, 2, 10, 11)));
+        assertEquals(0, set.countIn(new BitSet()));
+    }
+
+    @Test
+    public void largeSetBecomesBitSet() {
+        PointSet set = new PointSet();
+        BitSet expected = new BitSet();
+        // in descending order, each id is inserted at the front of the array
+        for (int i = PointSet.MAX_ARRAY_SIZE + 10; i > 0; i--) {
+            set.add(i * 3);
+            expected.set(i * 3);
+        }
+        assertEquals(expected, contents(set));
+        assertEquals(2, set.countIn(bits(3, 4, 6)));
+
+        set.remove(3);
+        expected.clear(3);
+        assertEquals(expected, contents(set));
+        assertFalse(set.isEmpty());
+
+        for (int id = expected.nextSetBit(0); id >= 0; id = expected.nextSetBit(id + 1)) {
+            set.remove(id);
+        }
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    public void addToKeepsTargetBits() {
+        PointSet set = new PointSet();
+        set.add(2);
+        BitSet target = bits(1);
+        set.addTo(target);
+        assertEquals(bits(1, 2), target);
+    }
+
+    private static BitSet contents(PointSet set) {
+        BitSet bits = new BitSet();
+        set.addTo(bits);
+        return bits;
+    }
+
+    private static BitSet bits(int... ids) {
+        BitSet bits = new BitSet();
+        for (int id : ids) {
+            bits.set(id);
+        }
+        return bits;
+    }
+}
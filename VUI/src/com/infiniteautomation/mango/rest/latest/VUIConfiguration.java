@@ -6,11 +6,13 @@ package com.infiniteautomation.mango.rest.latest;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 
+import com.ioconstructs.vui.VUICommon;
+
 /**
  * @author Jared Wiltshire
  */
 @Configuration
-@ComponentScan(basePackageClasses = VuiBootstrapController.class)
+@ComponentScan(basePackageClasses = {VuiBootstrapController.class, VUICommon.class})
 public class VUIConfiguration {
 
 }
@@ -5,16 +5,28 @@ package com.infiniteautomation.mango.rest.latest;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.time.Clock;
 import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletContext;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
@@ -24,7 +36,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.infiniteautomation.mango.rest.latest.TranslationsController.TranslationsModel;
+import com.infiniteautomation.mango.rest.latest.exception.NotFoundRestException;
 import com.infiniteautomation.mango.rest.latest.model.jsondata.JsonDataModel;
 // import com.infiniteautomation.mango.rest.latest.model.modules.AngularJSModuleDefinitionGroupModel;
 import com.infiniteautomation.mango.rest.latest.model.user.UserModel;
@@ -33,6 +45,15 @@ import com.infiniteautomation.mango.spring.components.PublicUrlService;
 import com.infiniteautomation.mango.spring.components.pageresolver.PageResolver;
 import com.infiniteautomation.mango.spring.service.PermissionService;
 import com.ioconstructs.vui.VUICommon;
+import com.ioconstructs.vui.bootstrap.BootstrapExecutor;
+import com.ioconstructs.vui.bootstrap.PwaManifestCache;
+import com.ioconstructs.vui.bootstrap.TranslationBundleService;
+import com.ioconstructs.vui.bootstrap.TranslationBundleService.Bundle;
+import com.ioconstructs.vui.bootstrap.TranslationBundleService.BundleType;
+import com.ioconstructs.vui.bootstrap.VuiBootstrapCache;
+import com.ioconstructs.vui.menu.MenuProjectionService;
+import com.ioconstructs.vui.pages.VuiPageStore;
+import com.ioconstructs.vui.util.Gzip;
 import com.serotonin.m2m2.Common;
 import com.serotonin.m2m2.ICoreLicense;
 import com.serotonin.m2m2.db.dao.InstalledModulesDao;
@@ -62,9 +83,6 @@ import io.swagger.annotations.ApiOperation;
 @RequestMapping("/vui-bootstrap")
 public class VuiBootstrapController {
 
-    private static final String[] PUBLIC_TRANSLATIONS = new String[] {"login", "header", "users", "validate"};
-    private static final String[] PRIVATE_TRANSLATIONS = new String[] {"vui", "common", "pointEdit", "rest", "footer", "dateAndTime"};
-
     private final JsonDataDao jsonDataDao;
     private final SystemSettingsDao systemSettingsDao;
     private final ObjectMapper objectMapper;
@@ -76,6 +94,12 @@ public class VuiBootstrapController {
     private final OAuth2Information oAuth2Information;
     private final InstalledModulesDao installedModulesDao;
     private final PointValueDao pointValueDao;
+    private final VuiBootstrapCache bootstrapCache;
+    private final TranslationBundleService translationBundleService;
+    private final VuiPageStore pageStore;
+    private final MenuProjectionService menuProjectionService;
+    private final PwaManifestCache manifestCache;
+    private final BootstrapExecutor bootstrapExecutor;
 
     @Autowired
     Clock clock;
@@ -85,7 +109,10 @@ public class VuiBootstrapController {
                                @RestMapper ObjectMapper objectMapper,
                                ServletContext servletContext, PublicUrlService publicUrlService, Environment env,
                                PermissionService permissionService, PageResolver pageResolver, OAuth2Information oAuth2Information,
-                               InstalledModulesDao installedModulesDao, PointValueDao pointValueDao) {
+                               InstalledModulesDao installedModulesDao, PointValueDao pointValueDao,
+                               VuiBootstrapCache bootstrapCache, TranslationBundleService translationBundleService,
+                               VuiPageStore pageStore, MenuProjectionService menuProjectionService,
+                               PwaManifestCache manifestCache, BootstrapExecutor bootstrapExecutor) {
         this.jsonDataDao = jsonDataDao;
         this.permissionService = permissionService;
         this.pageResolver = pageResolver;
@@ -97,6 +124,12 @@ public class VuiBootstrapController {
         this.publicUrlService = publicUrlService;
         this.env = env;
         this.pointValueDao = pointValueDao;
+        this.bootstrapCache = bootstrapCache;
+        this.translationBundleService = translationBundleService;
+        this.pageStore = pageStore;
+        this.menuProjectionService = menuProjectionService;
+        this.manifestCache = manifestCache;
+        this.bootstrapExecutor = bootstrapExecutor;
     }
 
     private void merge(ObjectNode dest, ObjectNode src) throws IOException {
@@ -104,23 +137,36 @@ public class VuiBootstrapController {
         updater.readValue(src);
     }
 
-    @ApiOperation(value = "Get the PWA (Progressive Web App) manifest")
+    @ApiOperation(value = "Get the PWA (Progressive Web App) manifest", response = ObjectNode.class)
     @RequestMapping(method = RequestMethod.GET, path = "/pwa-manifest")
     @AnonymousAccess
-    public ObjectNode manifest(@AuthenticationPrincipal PermissionHolder user, UriComponentsBuilder builder) throws IOException {
+    public ResponseEntity<byte[]> manifest(@AuthenticationPrincipal PermissionHolder user, UriComponentsBuilder builder,
+                                           @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String host = publicUrlService.getUriComponentsBuilder(builder).build().getHost();
+        boolean hasUserRole = permissionService.hasUserRole(user);
+        String instanceDescription = systemSettingsDao.getValue(SystemSettingsDao.INSTANCE_DESCRIPTION);
+
+        PwaManifestCache.Entry entry = manifestCache.get(host, hasUserRole, instanceDescription,
+                () -> buildManifest(host, hasUserRole, instanceDescription));
+        return manifestCache.response(entry, ifNoneMatch);
+    }
+
+    public ObjectNode buildManifest(String host, boolean hasUserRole, String instanceDescription) {
         JsonNodeFactory nodeFactory = objectMapper.getNodeFactory();
 
         ObjectNode vuiSettings;
         try (InputStream in = servletContext.getResourceAsStream("/modules/mangoVUI/web/vuiSettings.json")) {
             vuiSettings = (ObjectNode) objectMapper.readTree(in);
-        }
 
-        JsonDataVO vuiSettingsVo = this.jsonDataDao.getByXid(VUICommon.MA_VUI_SETTINGS_XID);
-        if (vuiSettingsVo != null) {
-            Object vuiSettingsData = vuiSettingsVo.getJsonData();
-            if (vuiSettingsData instanceof ObjectNode) {
-                merge(vuiSettings, (ObjectNode) vuiSettingsData);
+            JsonDataVO vuiSettingsVo = this.jsonDataDao.getByXid(VUICommon.MA_VUI_SETTINGS_XID);
+            if (vuiSettingsVo != null) {
+                Object vuiSettingsData = vuiSettingsVo.getJsonData();
+                if (vuiSettingsData instanceof ObjectNode) {
+                    merge(vuiSettings, (ObjectNode) vuiSettingsData);
+                }
             }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
 
         ObjectNode manifest = (ObjectNode) vuiSettings.get("pwaManifest");
@@ -129,14 +175,9 @@ public class VuiBootstrapController {
             String mode = vuiSettings.get("pwaAutomaticName").textValue();
 
             String autoName = null;
-            String instanceDescription = systemSettingsDao.getValue(SystemSettingsDao.INSTANCE_DESCRIPTION);
-
-            builder = publicUrlService.getUriComponentsBuilder(builder);
-            String host = builder.build().getHost();
-
             if ("AUTO".equals(mode)) {
                 // user may be anonymous, dont expose instanceDescription to anonymous users
-                if (!permissionService.hasUserRole(user)) {
+                if (!hasUserRole) {
                     autoName = host;
                 } else {
                     autoName = instanceDescription;
@@ -161,10 +202,73 @@ public class VuiBootstrapController {
         return manifest;
     }
 
-    @ApiOperation(value = "Get the data needed before logging in")
+    @ApiOperation(value = "Get the data needed before logging in", response = PreLoginData.class)
     @RequestMapping(method = RequestMethod.GET, path = "/pre-login")
     @AnonymousAccess
-    public PreLoginData preLogin(@AuthenticationPrincipal PermissionHolder user) {
+    public ResponseEntity<byte[]> preLogin(@AuthenticationPrincipal PermissionHolder user,
+                                           @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        User mangoUser = user.getUser();
+        Locale locale = mangoUser != null ? mangoUser.getLocaleObject() : Common.getLocale();
+        VuiBootstrapCache.Key key = bootstrapCache.key("pre-login", user, locale, true);
+        return bootstrapCache.response(bootstrapCache.get(key, () -> buildPreLoginData(user)), ifNoneMatch);
+    }
+
+    @ApiOperation(value = "Get the data needed after logging in", response = PostLoginData.class)
+    @RequestMapping(method = RequestMethod.GET, path = "/post-login")
+    public ResponseEntity<byte[]> postLogin(@AuthenticationPrincipal PermissionHolder user,
+                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        VuiBootstrapCache.Key key = bootstrapCache.key("post-login", user, user.getLocaleObject(), false,
+                menuProjectionService.systemPermissionOutcomes(user));
+        return bootstrapCache.response(bootstrapCache.get(key, () -> buildPostLoginData(user)), ifNoneMatch);
+    }
+
+    @ApiOperation(value = "Get the pre-login and post-login data in one request",
+            notes = "For clients which already have a session, saves a round trip before the first render. " +
+                    "Returns {preLogin, postLogin}, the two parts are assembled concurrently.")
+    @RequestMapping(method = RequestMethod.GET, path = "/combined")
+    public ResponseEntity<byte[]> combined(@AuthenticationPrincipal PermissionHolder user,
+                                           @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        User mangoUser = user.getUser();
+        Locale locale = mangoUser != null ? mangoUser.getLocaleObject() : Common.getLocale();
+        VuiBootstrapCache.Key preLoginKey = bootstrapCache.key("pre-login", user, locale, true);
+        VuiBootstrapCache.Key postLoginKey = bootstrapCache.key("post-login", user, user.getLocaleObject(), false,
+                menuProjectionService.systemPermissionOutcomes(user));
+
+        CompletableFuture<VuiBootstrapCache.Entry> preLogin = bootstrapExecutor.submit(
+                () -> bootstrapCache.get(preLoginKey, () -> buildPreLoginData(user)));
+        VuiBootstrapCache.Entry postLogin = bootstrapCache.get(postLoginKey, () -> buildPostLoginData(user));
+
+        Map<String, VuiBootstrapCache.Entry> parts = new LinkedHashMap<>();
+        parts.put("preLogin", BootstrapExecutor.join(preLogin));
+        parts.put("postLogin", postLogin);
+        return bootstrapCache.response(bootstrapCache.combine(parts), ifNoneMatch);
+    }
+
+    @ApiOperation(value = "Get a translations bundle", notes = "Bundles are addressed by the hash of their content and never change")
+    @RequestMapping(method = RequestMethod.GET, path = "/translations/{hash}")
+    @AnonymousAccess
+    public ResponseEntity<byte[]> translationsBundle(@AuthenticationPrincipal PermissionHolder user,
+                                                     @PathVariable String hash,
+                                                     @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        Bundle bundle = translationBundleService.getBundle(hash);
+        if (bundle == null || bundle.getType() == BundleType.PRIVATE && !permissionService.hasUserRole(user)) {
+            throw new NotFoundRestException();
+        }
+
+        // private bundles must not be stored by shared caches, they would serve them to anonymous clients
+        CacheControl cacheControl = CacheControl.maxAge(365, TimeUnit.DAYS).immutable();
+        cacheControl = bundle.getType() == BundleType.PRIVATE ? cacheControl.cachePrivate() : cacheControl.cachePublic();
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .cacheControl(cacheControl)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (Gzip.accepted(acceptEncoding)) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(bundle.getGzip());
+        }
+        return builder.body(bundle.getJson());
+    }
+
+    public PreLoginData buildPreLoginData(PermissionHolder user) {
         PreLoginData data = new PreLoginData();
 
         boolean devEnabled = env.getProperty("development.enabled", Boolean.class, false);
@@ -182,12 +286,12 @@ public class VuiBootstrapController {
         data.setDevelopmentMode(devEnabled);
 
         User mangoUser = user.getUser();
+        Locale locale = Common.getLocale();
         if (mangoUser != null) {
             data.setUser(new UserModel(mangoUser));
-            data.setTranslations(TranslationsController.getTranslations(PUBLIC_TRANSLATIONS, mangoUser.getLocaleObject()));
-        } else {
-            data.setTranslations(TranslationsController.getTranslations(PUBLIC_TRANSLATIONS, Common.getLocale()));
+            locale = mangoUser.getLocaleObject();
         }
+        data.setTranslationsBundle(translationBundleService.getBundle(BundleType.PUBLIC, locale).getHash());
 
         String loginUri = pageResolver.getLoginUri(null, null);
         String notFoundUri = pageResolver.getLoginUri(null, null);
@@ -213,9 +317,12 @@ public class VuiBootstrapController {
         return data;
     }
 
-    @ApiOperation(value = "Get the data needed after logging in")
-    @RequestMapping(method = RequestMethod.GET, path = "/post-login")
-    public PostLoginData postLogin(@AuthenticationPrincipal PermissionHolder user) {
+    public PostLoginData buildPostLoginData(PermissionHolder user) {
+        // the query boundary may hit the database and the menu projection reads and filters the menu store,
+        // build them while the rest is assembled
+        CompletableFuture<Long> queryBoundary = bootstrapExecutor.submit(this::queryBoundary);
+        CompletableFuture<JsonDataModel> menu = bootstrapExecutor.submit(() -> projectMenu(user));
+
         Module coreModule = ModuleRegistry.getModule(ModuleRegistry.CORE_MODULE_NAME);
 
         PostLoginData data = new PostLoginData();
@@ -227,36 +334,59 @@ public class VuiBootstrapController {
         data.setVendor(coreModule.getVendor());
         data.setVendorUrl(coreModule.getVendorUrl());
 
-        JsonDataVO menuData = this.jsonDataDao.getByXid(VUICommon.MA_VUI_MENU_XID);
         JsonDataVO pageData = this.jsonDataDao.getByXid(VUICommon.MA_VUI_PAGES_XID);
-
-        if (menuData != null) {
-            data.setMenu(new JsonDataModel(menuData));
-        }
         if (pageData != null) {
-            data.setPages(new JsonDataModel(pageData));
+            // only send the page index, page bodies are loaded on demand from /vui-pages/{xid}
+            JsonDataModel pages = new JsonDataModel(pageData);
+            pages.setJsonData(pageStore.index(pageData.getJsonData()));
+            data.setPages(pages);
         }
 
-        data.setTranslations(TranslationsController.getTranslations(PRIVATE_TRANSLATIONS, user.getLocaleObject()));
+        data.setTranslationsBundle(translationBundleService.getBundle(BundleType.PRIVATE, user.getLocaleObject()).getHash());
 
         var aggregateDao = pointValueDao.getAggregateDao();
         var aggregationEnabled = aggregateDao.supportsPreAggregation() && aggregateDao.isPreAggregationEnabled();
         data.setAggregationEnabled(aggregationEnabled);
 
-        if (aggregateDao instanceof BoundaryAggregateDao) {
-            var queryBoundary = ((BoundaryAggregateDao) aggregateDao).fromBoundary(ChronoUnit.MILLIS);
-            data.setQueryBoundary(queryBoundary);
+        data.setMenu(BootstrapExecutor.join(menu));
+        Long boundary = BootstrapExecutor.join(queryBoundary);
+        if (boundary != null) {
+            data.setQueryBoundary(boundary);
         }
 
         return data;
     }
 
+    /**
+     * @return the menu items the user has permission to view, null if there is no menu store
+     */
+    private JsonDataModel projectMenu(PermissionHolder user) {
+        JsonDataVO menuData = menuProjectionService.getMenuStore();
+        if (menuData == null) {
+            return null;
+        }
+        JsonDataModel menu = new JsonDataModel(menuData);
+        menu.setJsonData(menuProjectionService.project(user));
+        return menu;
+    }
+
+    /**
+     * @return the boundary of the pre-aggregated data or null if the aggregate DAO has none
+     */
+    private Long queryBoundary() {
+        var aggregateDao = pointValueDao.getAggregateDao();
+        if (aggregateDao instanceof BoundaryAggregateDao) {
+            return ((BoundaryAggregateDao) aggregateDao).fromBoundary(ChronoUnit.MILLIS);
+        }
+        return null;
+    }
+
     public static class PreLoginData {
         // private AngularJSModuleDefinitionGroupModel angularJsModules;
         private JsonDataModel vuiSettings;
         private String serverTimezone;
         private String serverLocale;
-        private TranslationsModel translations;
+        private String translationsBundle;
         private int lastUpgradeTime;
         private UserModel user;
         private boolean publicRegistrationEnabled;
@@ -267,11 +397,11 @@ public class VuiBootstrapController {
         private String logoutSuccessUri;
         private List<OAuth2Information.OAuth2ClientInfo> oauth2Clients;
 
-        public TranslationsModel getTranslations() {
-            return translations;
+        public String getTranslationsBundle() {
+            return translationsBundle;
         }
-        public void setTranslations(TranslationsModel translations) {
-            this.translations = translations;
+        public void setTranslationsBundle(String translationsBundle) {
+            this.translationsBundle = translationsBundle;
         }
         // public AngularJSModuleDefinitionGroupModel getAngularJsModules() {
         //     return angularJsModules;
@@ -359,7 +489,7 @@ public class VuiBootstrapController {
         private String coreLicenseType;
         private JsonDataModel menu;
         private JsonDataModel pages;
-        private TranslationsModel translations;
+        private String translationsBundle;
         private String vendor;
         private String vendorUrl;
         private boolean aggregationEnabled;
@@ -389,11 +519,11 @@ public class VuiBootstrapController {
         public void setPages(JsonDataModel pages) {
             this.pages = pages;
         }
-        public TranslationsModel getTranslations() {
-            return translations;
+        public String getTranslationsBundle() {
+            return translationsBundle;
         }
-        public void setTranslations(TranslationsModel translations) {
-            this.translations = translations;
+        public void setTranslationsBundle(String translationsBundle) {
+            this.translationsBundle = translationsBundle;
         }
         public String getCoreVersion() {
             return coreVersion;
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.rest.latest;
+
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.infiniteautomation.mango.rest.latest.exception.BadRequestException;
+import com.infiniteautomation.mango.spring.annotations.RestMapper;
+import com.infiniteautomation.mango.spring.service.DataPointService;
+import com.infiniteautomation.mango.util.RQLUtils;
+import com.ioconstructs.vui.data.ColumnarResultWriter;
+import com.ioconstructs.vui.data.DashboardDataBatch;
+import com.ioconstructs.vui.data.DashboardDataService;
+import com.ioconstructs.vui.data.LatestValuesSnapshot;
+import com.ioconstructs.vui.data.LatestValuesSnapshotService;
+import com.ioconstructs.vui.data.RecentValues;
+import com.ioconstructs.vui.data.RecentValuesBuffer;
+import com.ioconstructs.vui.data.RollupCache;
+import com.ioconstructs.vui.data.RollupCacheMetrics;
+import com.ioconstructs.vui.data.WidgetDataRequest;
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.i18n.TranslatableMessage;
+import com.serotonin.m2m2.vo.DataPointVO;
+import com.serotonin.m2m2.vo.permission.PermissionHolder;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+
+import net.jazdw.rql.parser.ASTNode;
+
+/**
+ * Loads the data for all widgets of a dashboard in one request, the current values of a watch list's points and the
+ * recent values to backfill live charts.
+ *
+ * @author Matt Fox
+ */
+@Api(value="VUI dashboard data")
+@RestController
+@RequestMapping("/vui-dashboard")
+public class VuiDashboardDataController {
+
+    private final DashboardDataService dashboardDataService;
+    private final LatestValuesSnapshotService snapshotService;
+    private final RollupCache rollupCache;
+    private final RecentValuesBuffer recentValues;
+    private final DataPointService dataPointService;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public VuiDashboardDataController(DashboardDataService dashboardDataService, LatestValuesSnapshotService snapshotService,
+                                      RollupCache rollupCache, RecentValuesBuffer recentValues,
+                                      DataPointService dataPointService, @RestMapper ObjectMapper objectMapper) {
+        this.dashboardDataService = dashboardDataService;
+        this.snapshotService = snapshotService;
+        this.rollupCache = rollupCache;
+        this.recentValues = recentValues;
+        this.dataPointService = dataPointService;
+        this.objectMapper = objectMapper;
+    }
+
+    @ApiOperation(value = "Get the current value of every point in a watch list",
+            notes = "Subscribe to point-value with since set to a point's version to resume from the snapshot")
+    @RequestMapping(method = RequestMethod.GET, path = "/snapshot/watch-list/{xid}")
+    public LatestValuesSnapshot watchListSnapshot(@AuthenticationPrincipal PermissionHolder user,
+                                                  @ApiParam(value = "Watch list XID", required = true) @PathVariable String xid) {
+        return snapshotService.watchList(xid, user);
+    }
+
+    @ApiOperation(value = "Get the current value of every point matching an RQL query",
+            notes = "Subscribe to point-value with since set to a point's version to resume from the snapshot. " +
+                    "The limit defaults to and is capped at vui.snapshot.maxPoints, truncated is set if more points match.")
+    @RequestMapping(method = RequestMethod.GET, path = "/snapshot")
+    public LatestValuesSnapshot querySnapshot(HttpServletRequest request) {
+        ASTNode rql = RQLUtils.parseRQLtoAST(request.getQueryString());
+        return snapshotService.query(rql);
+    }
+
+    @ApiOperation(value = "Get the data for a list of widgets",
+            notes = "Returns a JSON array with one result per widget and point, streamed as the queries complete. " +
+                    "Requests for the same time range share one query. Accept " + ColumnarResultWriter.MEDIA_TYPE_VALUE +
+                    " to receive the values in a columnar binary format instead.")
+    @RequestMapping(method = RequestMethod.POST, path = "/data",
+            produces = {MediaType.APPLICATION_JSON_VALUE, ColumnarResultWriter.MEDIA_TYPE_VALUE})
+    public ResponseEntity<StreamingResponseBody> data(@AuthenticationPrincipal PermissionHolder user,
+                                                      @RequestBody List<WidgetDataRequest> requests,
+                                                      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (requests.size() > dashboardDataService.getMaxRequests()) {
+            throw new BadRequestException(new TranslatableMessage("vui.data.tooManyRequests", dashboardDataService.getMaxRequests()));
+        }
+
+        DashboardDataBatch batch = dashboardDataService.prepare(requests, user);
+        if (acceptsColumnar(accept)) {
+            return ResponseEntity.ok()
+                    .contentType(ColumnarResultWriter.MEDIA_TYPE)
+                    .body(out -> batch.writeTo(new ColumnarResultWriter(out, objectMapper)));
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> batch.writeTo(out, objectMapper));
+    }
+
+    @ApiOperation(value = "Get the recent values of a numeric point to backfill a live chart",
+            notes = "Returns [{timestamp, value}] in time order without bookends or annotations. Served from memory for " +
+                    "points subscribed to on the point-value channel, otherwise the values are queried. Responds with 400 if " +
+                    "the point is not numeric.")
+    @RequestMapping(method = RequestMethod.GET, path = "/recent/{xid}")
+    public ResponseEntity<StreamingResponseBody> recent(
+            @ApiParam(value = "Data point XID", required = true) @PathVariable String xid,
+            @ApiParam(value = "Epoch ms, inclusive", required = true) @RequestParam long from,
+            @ApiParam(value = "Epoch ms, exclusive, defaults to now") @RequestParam(required = false) Long to) {
+
+        long end = to != null ? to : Common.timer.currentTimeMillis() + 1;
+        if (from >= end) {
+            throw new BadRequestException(new TranslatableMessage("vui.data.invalidTimeRange"));
+        }
+        DataPointVO vo = dataPointService.get(xid);
+        RecentValues values = recentValues.get(vo, from, end);
+        if (values == null) {
+            throw new BadRequestException(new TranslatableMessage("vui.data.notNumeric", xid));
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> {
+                    try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                        generator.writeStartArray();
+                        for (int i = 0; i < values.size(); i++) {
+                            generator.writeStartObject();
+                            generator.writeNumberField("timestamp", values.getTimestamp(i));
+                            generator.writeNumberField("value", values.getValue(i));
+                            generator.writeEndObject();
+                        }
+                        generator.writeEndArray();
+                    }
+                });
+    }
+
+    @ApiOperation(value = "Get the hit and miss counts of the rollup cache",
+            notes = "Hits and misses count buckets, only buckets before the boundary are cached")
+    @RequestMapping(method = RequestMethod.GET, path = "/rollup-cache")
+    @PreAuthorize("isAdmin()")
+    public RollupCacheMetrics rollupCacheMetrics() {
+        return rollupCache.getMetrics();
+    }
+
+    @ApiOperation(value = "Clear the rollup cache", notes = "e.g. after point values before the boundary were imported or deleted")
+    @RequestMapping(method = RequestMethod.DELETE, path = "/rollup-cache")
+    @PreAuthorize("isAdmin()")
+    public RollupCacheMetrics clearRollupCache() {
+        rollupCache.clear();
+        return rollupCache.getMetrics();
+    }
+
+    /**
+     * The columnar format is opt-in, it is only used when the client explicitly accepts it
+     */
+    private boolean acceptsColumnar(String accept) {
+        if (accept == null) {
+            return false;
+        }
+        try {
+            return MediaType.parseMediaTypes(accept).stream()
+                    .anyMatch(m -> !m.isWildcardType() && !m.isWildcardSubtype() && m.includes(ColumnarResultWriter.MEDIA_TYPE));
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.rest.latest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.ioconstructs.vui.events.EventCounts;
+import com.ioconstructs.vui.events.EventCountsService;
+import com.serotonin.m2m2.vo.permission.PermissionHolder;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+
+/**
+ * Event counts kept in memory by the VUI, the event-counts channel of the gateway pushes their changes.
+ *
+ * @author Matt Fox
+ */
+@Api(value="VUI events")
+@RestController
+@RequestMapping("/vui-events")
+public class VuiEventsController {
+
+    private final EventCountsService eventCountsService;
+
+    @Autowired
+    public VuiEventsController(EventCountsService eventCountsService) {
+        this.eventCountsService = eventCountsService;
+    }
+
+    @ApiOperation(value = "Get the active and unacknowledged event counts per alarm level and per data point",
+            notes = "Only events the user may read are counted")
+    @RequestMapping(method = RequestMethod.GET, path = "/counts")
+    public EventCounts counts(@AuthenticationPrincipal PermissionHolder user) {
+        return eventCountsService.getCounts(user);
+    }
+}
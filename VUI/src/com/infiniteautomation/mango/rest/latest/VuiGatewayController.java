@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.rest.latest;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.ioconstructs.vui.gateway.GatewaySessionMetrics;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+
+/**
+ * Metrics for the VUI WebSocket gateway connections.
+ *
+ * @author Matt Fox
+ */
+@Api(value="VUI WebSocket gateway")
+@RestController
+@RequestMapping("/vui-gateway")
+public class VuiGatewayController {
+
+    private final VuiGatewayWebSocketHandler handler;
+
+    @Autowired
+    public VuiGatewayController(VuiGatewayWebSocketHandler handler) {
+        this.handler = handler;
+    }
+
+    @ApiOperation(value = "Get the queue depth and drop counts of the open gateway connections")
+    @PreAuthorize("isAdmin()")
+    @RequestMapping(method = RequestMethod.GET, path = "/sessions")
+    public List<GatewaySessionMetrics> sessions() {
+        return handler.getSessionMetrics();
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.rest.latest;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.infiniteautomation.mango.rest.latest.websocket.MangoWebSocketHandler;
+import com.infiniteautomation.mango.rest.latest.websocket.WebSocketMapping;
+import com.infiniteautomation.mango.spring.events.DaoEvent;
+import com.ioconstructs.vui.gateway.DaoNotificationChannel;
+import com.ioconstructs.vui.gateway.GatewayChannel;
+import com.ioconstructs.vui.gateway.GatewayRequest;
+import com.ioconstructs.vui.gateway.GatewaySession;
+import com.ioconstructs.vui.gateway.GatewaySessionMetrics;
+import com.ioconstructs.vui.gateway.GatewayStream;
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.i18n.TranslatableMessage;
+
+/**
+ * Single WebSocket endpoint for the VUI which multiplexes the point value and DAO notification channels, so a browser
+ * tab holds one connection instead of one per resource type. Messages to the client are batched, see
+ * {@link GatewaySession}.
+ *
+ * @author Matt Fox
+ */
+@Component
+@WebSocketMapping("/websocket/vui-gateway")
+public class VuiGatewayWebSocketHandler extends MangoWebSocketHandler {
+
+    private static final String SESSION_ATTRIBUTE = VuiGatewayWebSocketHandler.class.getName() + ".session";
+
+    private final Map<String, GatewayChannel> channels;
+    private final List<DaoNotificationChannel<?>> daoChannels;
+    private final ScheduledThreadPoolExecutor flushExecutor;
+    private final long flushInterval;
+    private final int maxPending;
+    private final int maxStreams;
+    private final int sendTimeLimit;
+    private final int bufferSizeLimit;
+    private final int defaultFrameRate;
+    private final int maxFrameRate;
+    private final Map<String, GatewaySession> sessions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public VuiGatewayWebSocketHandler(List<GatewayChannel> channels, List<DaoNotificationChannel<?>> daoChannels, Environment env) {
+        this.channels = channels.stream().collect(Collectors.toMap(GatewayChannel::getName, Function.identity()));
+        this.daoChannels = daoChannels;
+        this.flushInterval = env.getProperty("vui.gateway.flushInterval", Long.class, 50L);
+        this.maxPending = env.getProperty("vui.gateway.maxPendingMessages", Integer.class, 10000);
+        this.maxStreams = env.getProperty("vui.gateway.maxStreams", Integer.class, 100);
+        this.sendTimeLimit = env.getProperty("vui.gateway.sendTimeLimit", Integer.class, 10000);
+        this.bufferSizeLimit = env.getProperty("vui.gateway.bufferSizeLimit", Integer.class, 1024 * 1024);
+        this.defaultFrameRate = env.getProperty("vui.gateway.defaultFrameRate", Integer.class, 10);
+        this.maxFrameRate = env.getProperty("vui.gateway.maxFrameRate", Integer.class, 30);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.flushExecutor = new ScheduledThreadPoolExecutor(env.getProperty("vui.gateway.flushThreads", Integer.class, 2), r -> {
+            Thread thread = new Thread(r, "VUI gateway flush " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flushExecutor.setRemoveOnCancelPolicy(true);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        flushExecutor.shutdownNow();
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        super.afterConnectionEstablished(session);
+        WebSocketSession concurrentSession = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimit, bufferSizeLimit);
+        GatewaySession gatewaySession = new GatewaySession(concurrentSession, getUser(session), jacksonMapper,
+                flushExecutor, flushInterval, maxPending);
+        session.getAttributes().put(SESSION_ATTRIBUTE, gatewaySession);
+        sessions.put(session.getId(), gatewaySession);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+        GatewaySession gatewaySession = (GatewaySession) session.getAttributes().remove(SESSION_ATTRIBUTE);
+        sessions.remove(session.getId());
+        if (gatewaySession != null) {
+            gatewaySession.close();
+        }
+        super.afterConnectionClosed(session, status);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        GatewaySession gatewaySession = (GatewaySession) session.getAttributes().get(SESSION_ATTRIBUTE);
+        if (gatewaySession == null) {
+            return;
+        }
+
+        GatewayRequest request;
+        try {
+            request = jacksonMapper.readValue(message.getPayload(), GatewayRequest.class);
+        } catch (JsonProcessingException e) {
+            error(gatewaySession, null, "vui.gateway.invalidMessage");
+            return;
+        }
+        if (request.getType() == null) {
+            error(gatewaySession, request, "vui.gateway.invalidMessage");
+            return;
+        }
+
+        switch (request.getType()) {
+            case OPEN:
+                GatewayChannel channel = channels.get(request.getChannel());
+                if (channel == null) {
+                    error(gatewaySession, request, "vui.gateway.unknownChannel", request.getChannel());
+                } else if (gatewaySession.getStream(request.getStream()) == null && gatewaySession.getStreamCount() >= maxStreams) {
+                    error(gatewaySession, request, "vui.gateway.tooManyStreams", maxStreams);
+                } else {
+                    gatewaySession.openStream(request.getStream(), channel, frameInterval(request.getFrameRate()));
+                }
+                break;
+            case SUBSCRIBE:
+                GatewayStream stream = gatewaySession.getStream(request.getStream());
+                if (stream == null) {
+                    error(gatewaySession, request, "vui.gateway.streamNotOpen", request.getStream());
+                } else {
+                    stream.subscribe(request.getXid(), eventTypes(request.getEventTypes()), request.getSince());
+                }
+                break;
+            case CLOSE:
+                gatewaySession.closeStream(request.getStream());
+                break;
+        }
+    }
+
+    @EventListener
+    protected void daoEvent(DaoEvent<?, ?> event) {
+        for (DaoNotificationChannel<?> channel : daoChannels) {
+            channel.notify(event);
+        }
+    }
+
+    /**
+     * @return metrics for the open gateway connections
+     */
+    public List<GatewaySessionMetrics> getSessionMetrics() {
+        return sessions.values().stream().map(GatewaySession::getMetrics).collect(Collectors.toList());
+    }
+
+    /**
+     * @param frameRate frame rate requested by the client, null for the default or 0 to send payloads immediately
+     * @return interval between frames in ms, 0 if coalescing is disabled
+     */
+    private long frameInterval(Integer frameRate) {
+        int rate = frameRate != null ? Math.max(0, Math.min(frameRate, maxFrameRate)) : defaultFrameRate;
+        return rate > 0 ? 1000L / rate : 0L;
+    }
+
+    private Set<String> eventTypes(List<String> eventTypes) {
+        if (eventTypes == null) {
+            return GatewayStream.ALL_EVENT_TYPES;
+        }
+        return eventTypes.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(new HashSet<>(eventTypes));
+    }
+
+    private void error(GatewaySession session, GatewayRequest request, String key, Object... args) {
+        String message = new TranslatableMessage(key, args).translate(Common.getTranslations());
+        session.sendError(request != null ? request.getStream() : null, request != null ? request.getChannel() : null, message);
+    }
+}
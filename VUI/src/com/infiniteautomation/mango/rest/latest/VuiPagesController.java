@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.rest.latest;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ioconstructs.vui.pages.PagePatch;
+import com.ioconstructs.vui.pages.VuiPageStore;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+
+/**
+ * Paged access to the VUI custom pages so the client does not need to load every page body at login.
+ *
+ * @author Matt Fox
+ */
+@Api(value="VUI pages")
+@RestController
+@RequestMapping("/vui-pages")
+public class VuiPagesController {
+
+    private final VuiPageStore pageStore;
+
+    @Autowired
+    public VuiPagesController(VuiPageStore pageStore) {
+        this.pageStore = pageStore;
+    }
+
+    @ApiOperation(value = "Get the page index", notes = "Returns the pages store with the page bodies removed")
+    @RequestMapping(method = RequestMethod.GET)
+    public ObjectNode index() {
+        return pageStore.index();
+    }
+
+    @ApiOperation(value = "Get a single page including its body")
+    @RequestMapping(method = RequestMethod.GET, path = "/{xid}")
+    public ObjectNode page(@ApiParam(value = "Page XID", required = true) @PathVariable String xid) {
+        return pageStore.page(xid);
+    }
+
+    @ApiOperation(value = "Partially update the pages store",
+            notes = "Applies add/replace/remove operations addressed by JSON pointers, returns the updated page index")
+    @RequestMapping(method = RequestMethod.PATCH)
+    public ObjectNode patch(@RequestBody List<PagePatch> patches) {
+        return pageStore.patch(patches);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.rest.latest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.infiniteautomation.mango.rest.latest.exception.BadRequestException;
+import com.infiniteautomation.mango.util.RQLUtils;
+import com.ioconstructs.vui.query.KeysetPage;
+import com.ioconstructs.vui.query.KeysetQueryService;
+import com.ioconstructs.vui.query.KeysetResource;
+import com.serotonin.m2m2.i18n.TranslatableMessage;
+import com.serotonin.m2m2.vo.permission.PermissionHolder;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+
+import net.jazdw.rql.parser.ASTNode;
+
+/**
+ * Cursor based queries and NDJSON exports for the large admin tables (data points, events and audit events).
+ *
+ * @author Matt Fox
+ */
+@Api(value="VUI cursor queries")
+@RestController
+@RequestMapping("/vui-query")
+public class VuiQueryController {
+
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+
+    private final KeysetQueryService keysetQueryService;
+
+    @Autowired
+    public VuiQueryController(KeysetQueryService keysetQueryService) {
+        this.keysetQueryService = keysetQueryService;
+    }
+
+    @ApiOperation(value = "Get one page of a resource",
+            notes = "Pass the cursor returned with a page to get the next one, the cursor is only valid for the same sort. " +
+                    "A limit in the RQL query is ignored, use pageSize instead.")
+    @RequestMapping(method = RequestMethod.GET, path = "/{resource}")
+    public KeysetPage page(@AuthenticationPrincipal PermissionHolder user,
+                           @ApiParam(value = "Resource, one of data-points, events or audit", required = true) @PathVariable String resource,
+                           @RequestParam(required = false) String rqlQuery,
+                           @RequestParam(required = false) String cursor,
+                           @RequestParam(defaultValue = "100") int pageSize) {
+        if (pageSize < 1 || pageSize > keysetQueryService.getMaxPageSize()) {
+            throw new BadRequestException(new TranslatableMessage("vui.query.invalidPageSize", keysetQueryService.getMaxPageSize()));
+        }
+        return keysetQueryService.page(resource(resource), parse(rqlQuery), cursor, pageSize, user);
+    }
+
+    @ApiOperation(value = "Export every item of a resource matching the query as newline delimited JSON",
+            notes = "The items are streamed as they are read from the database")
+    @RequestMapping(method = RequestMethod.GET, path = "/{resource}/export", produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> export(@AuthenticationPrincipal PermissionHolder user,
+                                                        @ApiParam(value = "Resource, one of data-points, events or audit", required = true) @PathVariable String resource,
+                                                        @RequestParam(required = false) String rqlQuery) {
+        KeysetResource<?> keysetResource = resource(resource);
+        ASTNode rql = parse(rqlQuery);
+        return ResponseEntity.ok()
+                .contentType(MediaType.valueOf(NDJSON_VALUE))
+                .body(out -> keysetQueryService.stream(keysetResource, rql, user, out));
+    }
+
+    private KeysetResource<?> resource(String name) {
+        KeysetResource<?> resource = keysetQueryService.getResource(name);
+        if (resource == null) {
+            throw new BadRequestException(new TranslatableMessage("vui.query.unknownResource", name));
+        }
+        return resource;
+    }
+
+    private static ASTNode parse(String rqlQuery) {
+        return rqlQuery == null || rqlQuery.isEmpty() ? null : RQLUtils.parseRQLtoAST(rqlQuery);
+    }
+}
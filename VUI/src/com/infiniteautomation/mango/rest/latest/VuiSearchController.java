@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.rest.latest;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.ioconstructs.vui.search.PointSuggestion;
+import com.ioconstructs.vui.search.TypeaheadIndex;
+import com.serotonin.m2m2.vo.permission.PermissionHolder;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+
+/**
+ * Typeahead suggestions for point and device name pickers, answered from the VUI's in memory index.
+ *
+ * @author Matt Fox
+ */
+@Api(value="VUI search")
+@RestController
+@RequestMapping("/vui-search")
+public class VuiSearchController {
+
+    private final TypeaheadIndex typeaheadIndex;
+
+    @Autowired
+    public VuiSearchController(TypeaheadIndex typeaheadIndex) {
+        this.typeaheadIndex = typeaheadIndex;
+    }
+
+    @ApiOperation(value = "Suggest data points matching the query",
+            notes = "Matches points whose name, device name or XID contain every word of the query, words shorter " +
+                    "than three characters must start a word. Only points the user may read are returned.")
+    @RequestMapping(method = RequestMethod.GET, path = "/points")
+    public List<PointSuggestion> points(@AuthenticationPrincipal PermissionHolder user,
+                                        @ApiParam(value = "Query", required = true) @RequestParam String q,
+                                        @ApiParam(value = "Maximum number of suggestions") @RequestParam(defaultValue = "10") int limit) {
+        return typeaheadIndex.points(q, limit, user);
+    }
+
+    @ApiOperation(value = "Suggest device names matching the query",
+            notes = "Only device names of points the user may read are returned, an empty query returns the first " +
+                    "device names in alphabetical order")
+    @RequestMapping(method = RequestMethod.GET, path = "/device-names")
+    public List<String> deviceNames(@AuthenticationPrincipal PermissionHolder user,
+                                    @ApiParam(value = "Query") @RequestParam(required = false) String q,
+                                    @ApiParam(value = "Data source ID") @RequestParam(required = false) Integer dataSourceId,
+                                    @ApiParam(value = "Maximum number of suggestions") @RequestParam(defaultValue = "10") int limit) {
+        return typeaheadIndex.deviceNames(q, dataSourceId, limit, user);
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.rest.latest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.ioconstructs.vui.tags.TagFacets;
+import com.ioconstructs.vui.tags.TagFacetsRequest;
+import com.ioconstructs.vui.tags.TagIndex;
+import com.serotonin.m2m2.vo.permission.PermissionHolder;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+
+/**
+ * Data point tag filters answered from the VUI's in memory tag index.
+ *
+ * @author Matt Fox
+ */
+@Api(value="VUI tags")
+@RestController
+@RequestMapping("/vui-tags")
+public class VuiTagsController {
+
+    private final TagIndex tagIndex;
+
+    @Autowired
+    public VuiTagsController(TagIndex tagIndex) {
+        this.tagIndex = tagIndex;
+    }
+
+    @ApiOperation(value = "Count the points matching a tag filter and the values of tag keys among them",
+            notes = "Only points the user may read are counted. The counts of a facet key ignore the filter on that " +
+                    "key, null in a filter's values matches points without the tag.")
+    @RequestMapping(method = RequestMethod.POST, path = "/facets")
+    public TagFacets facets(@AuthenticationPrincipal PermissionHolder user, @RequestBody TagFacetsRequest request) {
+        return tagIndex.query(request, user);
+    }
+}
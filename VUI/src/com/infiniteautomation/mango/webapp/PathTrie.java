@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.webapp;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Trie of slash separated path segments, resolves a request path to the value registered for its longest prefix
+ * with one map lookup per segment. Not thread safe for writes, build it once and then publish it.
+ *
+ * @author Matt Fox
+ */
+public class PathTrie<T> {
+
+    private final Node<T> root = new Node<>();
+
+    /**
+     * @param prefix path prefix e.g. /my-app/ or /customers/acme/
+     */
+    public void put(String prefix, T value) {
+        Node<T> node = root;
+        int start = 0;
+        int length = prefix.length();
+        while (start < length) {
+            if (prefix.charAt(start) == '/') {
+                start++;
+                continue;
+            }
+            int end = prefix.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            node = node.children.computeIfAbsent(prefix.substring(start, end), k -> new Node<>());
+            start = end + 1;
+        }
+        node.value = value;
+        node.prefix = normalize(prefix);
+    }
+
+    /**
+     * @param path request path
+     * @return the match for the longest registered prefix of the path, or null
+     */
+    public Match<T> find(String path) {
+        Node<T> node = root;
+        Node<T> best = root.value != null ? root : null;
+        int bestEnd = 0;
+
+        int start = 0;
+        int length = path.length();
+        while (start < length) {
+            if (path.charAt(start) == '/') {
+                start++;
+                continue;
+            }
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                // the last segment is a file name unless the path ends in a slash
+                break;
+            }
+            node = node.child(path, start, end);
+            if (node == null) {
+                break;
+            }
+            if (node.value != null) {
+                best = node;
+                bestEnd = end;
+            }
+            start = end + 1;
+        }
+
+        return best == null ? null : new Match<>(best.value, best.prefix, path.substring(bestEnd));
+    }
+
+    private static String normalize(String prefix) {
+        String result = prefix.startsWith("/") ? prefix : "/" + prefix;
+        return result.endsWith("/") ? result : result + "/";
+    }
+
+    private static final class Node<T> {
+        private final Map<String, Node<T>> children = new HashMap<>();
+        private T value;
+        private String prefix;
+
+        Node<T> child(String path, int start, int end) {
+            return children.isEmpty() ? null : children.get(path.substring(start, end));
+        }
+    }
+
+    public static final class Match<T> {
+        private final T value;
+        private final String prefix;
+        private final String remainder;
+
+        private Match(T value, String prefix, String remainder) {
+            this.value = value;
+            this.prefix = prefix;
+            this.remainder = remainder;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * @return the matched prefix, starting and ending with a slash
+         */
+        public String getPrefix() {
+            return prefix;
+        }
+
+        /**
+         * @return the rest of the path after the prefix, starting with a slash
+         */
+        public String getRemainder() {
+            return remainder;
+        }
+    }
+}
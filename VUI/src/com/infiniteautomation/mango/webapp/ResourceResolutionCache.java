@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.webapp;
+
+import java.net.MalformedURLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.ServletContext;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.infiniteautomation.mango.monitor.MonitoredValues;
+import com.serotonin.m2m2.i18n.TranslatableMessage;
+
+/**
+ * Remembers whether paths in the servlet context resolve to a resource, so that client side routes (which never resolve)
+ * do not cost a filesystem probe on every request. The cache is bounded, when it is full Caffeine evicts the paths
+ * least likely to be requested again (W-TinyLFU, by recency and frequency) so that a burst of unique paths (e.g. a
+ * crawler) does not throw away the frequently used ones.
+ *
+ * @author Matt Fox
+ */
+public class ResourceResolutionCache {
+
+    /**
+     * Null if the cache is disabled
+     */
+    private final Cache<String, Boolean> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder notFound = new LongAdder();
+
+    /**
+     * @param maxSize maximum number of paths to remember
+     * @param ttl time in ms to remember a path for, files may be added at runtime
+     */
+    public ResourceResolutionCache(int maxSize, long ttl) {
+        this.entries = maxSize > 0 ? Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build() : null;
+    }
+
+    /**
+     * @param path path in the servlet context, starting with a slash
+     * @return true if the servlet context has a resource at the path
+     */
+    public boolean exists(ServletContext servletContext, String path) throws MalformedURLException {
+        Boolean exists = entries != null ? entries.getIfPresent(path) : null;
+
+        if (exists != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            exists = servletContext.getResource(path) != null;
+            if (entries != null) {
+                entries.put(path, exists);
+            }
+        }
+
+        if (!exists) {
+            notFound.increment();
+        }
+        return exists;
+    }
+
+    public void clear() {
+        if (entries != null) {
+            entries.invalidateAll();
+        }
+    }
+
+    /**
+     * Expose the counters on the internal metrics page
+     *
+     * @param idPrefix prefix for the monitor ids
+     * @param path the forwarding path, used in the monitor names
+     */
+    public void registerMonitors(MonitoredValues monitoredValues, String idPrefix, String path) {
+        monitoredValues.<Long>create(idPrefix + ".hits")
+                .name(new TranslatableMessage("vui.monitor.resourceCache.hits", path))
+                .supplier(hits::sum)
+                .buildPollable();
+        monitoredValues.<Long>create(idPrefix + ".misses")
+                .name(new TranslatableMessage("vui.monitor.resourceCache.misses", path))
+                .supplier(misses::sum)
+                .buildPollable();
+        monitoredValues.<Long>create(idPrefix + ".notFound")
+                .name(new TranslatableMessage("vui.monitor.resourceCache.notFound", path))
+                .supplier(notFound::sum)
+                .buildPollable();
+        monitoredValues.<Integer>create(idPrefix + ".size")
+                .name(new TranslatableMessage("vui.monitor.resourceCache.size", path))
+                .supplier(this::size)
+                .buildPollable();
+        monitoredValues.<Long>create(idPrefix + ".evictions")
+                .name(new TranslatableMessage("vui.monitor.resourceCache.evictions", path))
+                .supplier(this::getEvictions)
+                .buildPollable();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getNotFound() {
+        return notFound.sum();
+    }
+
+    public long getEvictions() {
+        return entries != null ? entries.stats().evictionCount() : 0;
+    }
+
+    public int size() {
+        return entries != null ? (int) entries.estimatedSize() : 0;
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.webapp;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import javax.servlet.ServletContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.infiniteautomation.mango.webapp.PathTrie.Match;
+
+/**
+ * Registry of the user web apps served under /user-vui. Every directory below the base directory that contains an
+ * index.html file is an app, its asset manifest (file list, hashes, entry HTML) is loaded once and requests are routed
+ * to it through a {@link PathTrie} of the app base paths.
+ *
+ * <p>When watching is enabled the base directory, its immediate sub-directories (candidate apps) and the directory
+ * trees of the apps are monitored, the rest of the base directory (e.g. the main VUI build) is not. Only the manifest
+ * of the app whose files changed is reloaded, adding or removing an app rebuilds the routing trie but keeps the
+ * manifests of the other apps. An app nested inside a directory which is not an app is picked up on the next
+ * rescan.</p>
+ *
+ * @author Matt Fox
+ */
+public class UserVUIAppRegistry implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(UserVUIAppRegistry.class);
+    private static final String ENTRY_FILE = "index.html";
+
+    private final Path root;
+    private final ServletContext servletContext;
+    private final int inMemoryLimit;
+    private final Set<String> dirtyApps = ConcurrentHashMap.newKeySet();
+    private final Map<Path, WatchKey> watchKeys = new ConcurrentHashMap<>();
+
+    private volatile Snapshot snapshot;
+    private volatile boolean rescan;
+    private WatchService watchService;
+    private Thread watchThread;
+
+    private UserVUIAppRegistry(Path root, ServletContext servletContext, int inMemoryLimit) {
+        this.root = root;
+        this.servletContext = servletContext;
+        this.inMemoryLimit = inMemoryLimit;
+        this.snapshot = scan(new HashMap<>());
+    }
+
+    /**
+     * @return the registry or null if the base directory is not available on the filesystem
+     */
+    public static UserVUIAppRegistry create(ServletContext servletContext, String basePath, int inMemoryLimit, boolean watch) {
+        String realPath = servletContext.getRealPath(basePath);
+        if (realPath == null || !Files.isDirectory(Paths.get(realPath))) {
+            return null;
+        }
+
+        UserVUIAppRegistry registry = new UserVUIAppRegistry(Paths.get(realPath), servletContext, inMemoryLimit);
+        if (watch) {
+            registry.startWatching();
+        }
+        return registry;
+    }
+
+    /**
+     * @param relativePath request path relative to the user-vui base, e.g. /my-app/assets/index-4f3a9c2b.js
+     * @return the app the path belongs to or null
+     */
+    public Match<App> resolve(String relativePath) {
+        Snapshot current = refresh();
+        return current.trie.find(relativePath);
+    }
+
+    public int size() {
+        return snapshot.apps.size();
+    }
+
+    /**
+     * Apply any pending changes detected by the watcher, reloads are done on the requesting thread so a burst of file
+     * events (e.g. copying a new build) only causes one reload.
+     */
+    private Snapshot refresh() {
+        Snapshot current = snapshot;
+        if (!rescan && dirtyApps.isEmpty()) {
+            return current;
+        }
+
+        synchronized (this) {
+            current = snapshot;
+            Map<String, App> apps = new HashMap<>(current.apps);
+            for (String base : dirtyApps) {
+                dirtyApps.remove(base);
+                App app = apps.get(base);
+                if (app != null) {
+                    App reloaded = load(base, app.directory);
+                    if (reloaded != null) {
+                        apps.put(base, reloaded);
+                    } else {
+                        apps.remove(base);
+                    }
+                }
+            }
+
+            if (rescan) {
+                rescan = false;
+                current = scan(apps);
+            } else {
+                current = new Snapshot(apps);
+            }
+            snapshot = current;
+            if (watchService != null) {
+                watchApps(current);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Find all app directories, re-using the manifests of apps which are already loaded
+     */
+    private Snapshot scan(Map<String, App> loaded) {
+        Map<String, App> apps = new HashMap<>();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (dir.equals(root)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    if (!Files.isRegularFile(dir.resolve(ENTRY_FILE))) {
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    String base = "/" + root.relativize(dir).toString().replace('\\', '/') + "/";
+                    App app = loaded.get(base);
+                    if (app == null) {
+                        app = load(base, dir);
+                    }
+                    if (app != null) {
+                        apps.put(base, app);
+                    }
+                    // apps are not nested inside other apps
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Failed to scan user VUI apps in {}", root, e);
+        }
+        return new Snapshot(apps);
+    }
+
+    private App load(String base, Path directory) {
+        VUIAssetIndex index = VUIAssetIndex.build(directory, servletContext, inMemoryLimit);
+        if (index == null || index.getEntry() == null) {
+            return null;
+        }
+        log.info("Loaded user VUI app {} with {} files", base, index.size());
+        return new App(base, directory, index);
+    }
+
+    private void startWatching() {
+        try {
+            watchService = root.getFileSystem().newWatchService();
+            register(root);
+            try (Stream<Path> children = Files.list(root)) {
+                for (Path child : (Iterable<Path>) children.filter(Files::isDirectory)::iterator) {
+                    register(child);
+                }
+            }
+            watchApps(snapshot);
+        } catch (IOException e) {
+            log.warn("Unable to watch user VUI apps in {} for changes", root, e);
+            return;
+        }
+
+        watchThread = new Thread(this::watch, "User VUI app watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    /**
+     * Watch the directory trees of apps which are not watched yet and stop watching the directories of removed apps
+     */
+    private synchronized void watchApps(Snapshot current) {
+        for (App app : current.apps.values()) {
+            if (!watchKeys.containsKey(app.directory)) {
+                try {
+                    registerAll(app.directory);
+                } catch (IOException e) {
+                    log.warn("Unable to watch user VUI app {} for changes", app.directory, e);
+                }
+            }
+        }
+
+        watchKeys.entrySet().removeIf(e -> {
+            Path dir = e.getKey();
+            boolean watched = dir.equals(root) || root.equals(dir.getParent()) ||
+                    current.apps.values().stream().anyMatch(app -> dir.startsWith(app.directory));
+            if (!watched) {
+                e.getValue().cancel();
+            }
+            return !watched;
+        });
+    }
+
+    private void registerAll(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                register(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void register(Path dir) throws IOException {
+        if (!watchKeys.containsKey(dir)) {
+            watchKeys.put(dir, dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY));
+        }
+    }
+
+    private void watch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                Path dir = (Path) key.watchable();
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        rescan = true;
+                        snapshot.apps.keySet().forEach(dirtyApps::add);
+                        continue;
+                    }
+
+                    Path changed = dir.resolve((Path) event.context());
+                    boolean inApp = changed(changed);
+                    if (event.kind() == ENTRY_CREATE && Files.isDirectory(changed)) {
+                        if (inApp) {
+                            registerAll(changed);
+                        } else if (dir.equals(root)) {
+                            // a candidate app, its index.html is usually copied in after the directory is created
+                            register(changed);
+                        }
+                    }
+                }
+
+                if (!key.reset()) {
+                    watchKeys.remove(dir, key);
+                    if (dir.equals(root)) {
+                        break;
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        } catch (IOException e) {
+            log.warn("Stopped watching user VUI apps in {}", root, e);
+        }
+    }
+
+    /**
+     * @return true if the path is inside a known app
+     */
+    private boolean changed(Path path) {
+        String relative = "/" + root.relativize(path).toString().replace('\\', '/');
+        Match<App> match = snapshot.trie.find(relative);
+        if (match != null && !match.getRemainder().equals("/")) {
+            dirtyApps.add(match.getPrefix());
+            if (match.getRemainder().equals("/" + ENTRY_FILE)) {
+                // the entry file was created or deleted
+                rescan = true;
+            }
+            return true;
+        }
+        // a new app, a removed app or a file outside of any app
+        rescan = true;
+        return false;
+    }
+
+    @Override
+    public void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+        if (watchThread != null) {
+            watchThread.interrupt();
+        }
+    }
+
+    private static final class Snapshot {
+        private final Map<String, App> apps;
+        private final PathTrie<App> trie = new PathTrie<>();
+
+        private Snapshot(Map<String, App> apps) {
+            this.apps = apps;
+            apps.forEach(trie::put);
+        }
+    }
+
+    public static final class App {
+        private final String base;
+        private final Path directory;
+        private final VUIAssetIndex assets;
+
+        private App(String base, Path directory, VUIAssetIndex assets) {
+            this.base = base;
+            this.directory = directory;
+            this.assets = assets;
+        }
+
+        /**
+         * @return base path of the app, starting and ending with a slash
+         */
+        public String getBase() {
+            return base;
+        }
+
+        public VUIAssetIndex getAssets() {
+            return assets;
+        }
+    }
+}
@@ -4,12 +4,12 @@
 package com.infiniteautomation.mango.webapp;
 
 import java.io.IOException;
-import java.net.URL;
 
 import javax.servlet.DispatcherType;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
@@ -17,8 +17,14 @@ import javax.servlet.annotation.WebFilter;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 
+import com.infiniteautomation.mango.monitor.MonitoredValues;
+import com.infiniteautomation.mango.webapp.PathTrie.Match;
+import com.infiniteautomation.mango.webapp.UserVUIAppRegistry.App;
+import com.infiniteautomation.mango.webapp.VUIAssetIndex.Asset;
 import com.infiniteautomation.mango.webapp.filters.MangoCacheControlHeaderFilter;
 import com.infiniteautomation.mango.webapp.filters.MangoCacheControlHeaderFilter.CacheControlLevel;
 import com.serotonin.m2m2.web.mvc.spring.security.BrowserRequestMatcher;
@@ -39,8 +45,42 @@ public class UserVUIForwardingFilter implements Filter {
     public static final String FORWARD_FROM_PATH = "/user-vui";
     public static final String FORDWARD_TO_PATH = "/modules/mangoVUI/web";
 
+    private final ResourceResolutionCache resourceCache;
+    private final boolean appRegistryEnabled;
+    private final boolean watchApps;
+    private final int inMemoryLimit;
+    private volatile UserVUIAppRegistry appRegistry;
+    private volatile boolean appRegistryCreated;
+
+    @Autowired
+    public UserVUIForwardingFilter(Environment env, MonitoredValues monitoredValues) {
+        this.appRegistryEnabled = env.getProperty("vui.userApps.registry.enabled", Boolean.class, true);
+        this.watchApps = env.getProperty("vui.userApps.watch", Boolean.class, true);
+        this.inMemoryLimit = env.getProperty("vui.assetIndex.inMemoryLimit", Integer.class, 256 * 1024);
+        this.resourceCache = new ResourceResolutionCache(
+                env.getProperty("vui.resourceCache.size", Integer.class, 10000),
+                env.getProperty("vui.resourceCache.ttl", Long.class, 60000L));
+        this.resourceCache.registerMonitors(monitoredValues, "internal.vui.userResourceCache", FORWARD_FROM_PATH);
+    }
+
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
+        getAppRegistry(filterConfig.getServletContext());
+    }
+
+    private UserVUIAppRegistry getAppRegistry(ServletContext servletContext) {
+        if (!appRegistryEnabled) {
+            return null;
+        }
+        if (!appRegistryCreated) {
+            synchronized (this) {
+                if (!appRegistryCreated) {
+                    appRegistry = UserVUIAppRegistry.create(servletContext, FORDWARD_TO_PATH, inMemoryLimit, watchApps);
+                    appRegistryCreated = true;
+                }
+            }
+        }
+        return appRegistry;
     }
 
     @Override
@@ -52,14 +92,32 @@ public class UserVUIForwardingFilter implements Filter {
         if (requestURI.startsWith(FORWARD_FROM_PATH)) {
             String relativePath = requestURI.substring(FORWARD_FROM_PATH.length());
 
+            UserVUIAppRegistry registry = getAppRegistry(httpRequest.getServletContext());
+            if (registry != null && VUIAssetIndex.canServe(httpRequest)) {
+                Match<App> match = registry.resolve(relativePath);
+                if (match != null) {
+                    VUIAssetIndex assets = match.getValue().getAssets();
+                    Asset asset = assets.get(match.getRemainder());
+                    boolean fallback = asset == null && BrowserRequestMatcher.INSTANCE.matches(httpRequest);
+                    if (fallback) {
+                        asset = assets.getEntry();
+                    }
+                    if (asset != null) {
+                        // hashed assets are immutable, the entry HTML is always revalidated
+                        VUIAssetIndex.serve(asset, fallback, httpRequest, httpResponse);
+                        return;
+                    }
+                }
+            }
+
             int nextSlash;
             if ((nextSlash = relativePath.indexOf("/", 1)) >= 0) {
                 String appBase = relativePath.substring(0, nextSlash + 1);
 
-                URL resourceUrl = httpRequest.getServletContext().getResource(FORDWARD_TO_PATH + relativePath);
+                boolean exists = resourceCache.exists(httpRequest.getServletContext(), FORDWARD_TO_PATH + relativePath);
                 // if the resource is not an actual file we return the index.html file so the webapp can display a 404 not found message
                 // only redirect to the index.html file if it's a browser request
-                if (resourceUrl == null && BrowserRequestMatcher.INSTANCE.matches(httpRequest)) {
+                if (!exists && BrowserRequestMatcher.INSTANCE.matches(httpRequest)) {
                     relativePath = appBase;
                 }
 
@@ -77,5 +135,9 @@ public class UserVUIForwardingFilter implements Filter {
 
     @Override
     public void destroy() {
+        UserVUIAppRegistry registry = appRegistry;
+        if (registry != null) {
+            registry.close();
+        }
     }
 }
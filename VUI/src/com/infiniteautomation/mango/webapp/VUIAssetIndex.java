@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.infiniteautomation.mango.webapp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+
+import com.ioconstructs.vui.util.AcceptEncoding;
+import com.ioconstructs.vui.util.ContentHash;
+
+/**
+ * In memory index of the (immutable) Vite build output. Maps request paths to the files on disk, their pre-compressed
+ * variants, content hashes and lengths so that requests can be served without a filesystem lookup or a forward to the
+ * default servlet. Small files are held in memory, larger files are streamed from disk.
+ *
+ * @author Matt Fox
+ */
+public class VUIAssetIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(VUIAssetIndex.class);
+
+    public static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    public static final String REVALIDATE_CACHE_CONTROL = "no-cache";
+
+    /**
+     * Vite emits content hashed file names into this directory, files anywhere else (e.g. copied from the public
+     * directory) keep their names across builds and must be revalidated
+     */
+    private static final String HASHED_ASSETS_PREFIX = "/assets/";
+
+    private final Map<String, Asset> assets;
+
+    private VUIAssetIndex(Map<String, Asset> assets) {
+        this.assets = assets;
+    }
+
+    /**
+     * Build an index of the files under a path in the servlet context
+     *
+     * @return the index or null if the directory is not available on the filesystem (e.g. running from an archive)
+     */
+    public static VUIAssetIndex build(ServletContext servletContext, String basePath, int inMemoryLimit) {
+        String realPath = servletContext.getRealPath(basePath);
+        if (realPath == null) {
+            return null;
+        }
+
+        return build(Paths.get(realPath), servletContext, inMemoryLimit);
+    }
+
+    /**
+     * Build an index of the files under a directory
+     *
+     * @return the index or null if the directory does not exist or could not be read
+     */
+    public static VUIAssetIndex build(Path root, ServletContext servletContext, int inMemoryLimit) {
+        if (!Files.isDirectory(root)) {
+            return null;
+        }
+
+        Map<String, Asset> assets = new HashMap<>();
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".gz") || name.endsWith(".br")) {
+                    continue;
+                }
+
+                String path = "/" + root.relativize(file).toString().replace('\\', '/');
+                String contentType = servletContext.getMimeType(name);
+                Asset asset = new Asset(path, file, contentType, inMemoryLimit);
+                assets.put(path, asset);
+                if (name.equals("index.html")) {
+                    assets.put(path.substring(0, path.length() - name.length()), asset);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to index VUI web directory {}, falling back to forwarding requests", root, e);
+            return null;
+        }
+
+        log.debug("Indexed {} VUI web assets from {}", assets.size(), root);
+        return new VUIAssetIndex(Collections.unmodifiableMap(assets));
+    }
+
+    /**
+     * @param path path relative to the indexed directory, starting with a slash
+     * @return the asset or null if there is no such file
+     */
+    public Asset get(String path) {
+        return assets.get(path);
+    }
+
+    /**
+     * @return the entry point of the web app (index.html) or null if there is none
+     */
+    public Asset getEntry() {
+        return assets.get("/");
+    }
+
+    public int size() {
+        return assets.size();
+    }
+
+    /**
+     * The index only serves plain GET/HEAD requests, range requests etc. are left to the default servlet
+     */
+    public static boolean canServe(HttpServletRequest request) {
+        String method = request.getMethod();
+        return ("GET".equals(method) || "HEAD".equals(method)) && request.getHeader(HttpHeaders.RANGE) == null;
+    }
+
+    /**
+     * Write the asset to the response, using a pre-compressed variant if the client accepts it
+     *
+     * @param revalidate force the client to revalidate, used for the SPA entry point
+     */
+    public static void serve(Asset asset, boolean revalidate, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        boolean immutable = !revalidate && asset.isImmutable();
+        Variant variant = asset.select(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        response.setHeader(HttpHeaders.CACHE_CONTROL, immutable ? IMMUTABLE_CACHE_CONTROL : REVALIDATE_CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ETAG, variant.getEtag());
+        if (asset.hasVariants()) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+
+        // every variant has the same content, a client holding any of them is up to date
+        if (ContentHash.matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), asset.getEtags())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        if (variant.getEncoding() != null) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, variant.getEncoding());
+        }
+        if (asset.getContentType() != null) {
+            response.setContentType(asset.getContentType());
+        }
+        response.setContentLengthLong(variant.getLength());
+
+        if (!"HEAD".equals(request.getMethod())) {
+            variant.writeTo(response.getOutputStream());
+        }
+    }
+
+    public static final class Asset {
+        private final String path;
+        private final String contentType;
+        private final String[] etags;
+        private final boolean immutable;
+        private final Variant identity;
+        private final Variant brotli;
+        private final Variant gzip;
+
+        private Asset(String path, Path file, String contentType, int inMemoryLimit) throws IOException {
+            this.path = path;
+            this.contentType = contentType;
+            this.immutable = path.startsWith(HASHED_ASSETS_PREFIX);
+
+            byte[] content = Files.readAllBytes(file);
+            String etag = ContentHash.etag(content);
+            this.identity = new Variant(null, etag, file, content.length <= inMemoryLimit ? content : null, content.length);
+            this.brotli = Variant.sibling(file, "br", ContentHash.variant(etag, "br"), inMemoryLimit);
+            this.gzip = Variant.sibling(file, "gzip", ContentHash.variant(etag, "gz"), inMemoryLimit);
+            this.etags = Stream.of(identity, brotli, gzip)
+                    .filter(Objects::nonNull)
+                    .map(Variant::getEtag)
+                    .toArray(String[]::new);
+        }
+
+        /**
+         * Selects the compressed variant with the highest quality value, preferring brotli on a tie
+         */
+        Variant select(String acceptEncoding) {
+            double brotliQuality = brotli == null ? 0 : AcceptEncoding.quality(acceptEncoding, "br");
+            double gzipQuality = gzip == null ? 0 : AcceptEncoding.quality(acceptEncoding, "gzip");
+            if (brotliQuality > 0 && brotliQuality >= gzipQuality) {
+                return brotli;
+            }
+            if (gzipQuality > 0) {
+                return gzip;
+            }
+            return identity;
+        }
+
+        boolean hasVariants() {
+            return brotli != null || gzip != null;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * @return ETag of the uncompressed content
+         */
+        public String getEtag() {
+            return identity.getEtag();
+        }
+
+        /**
+         * @return ETags of all variants
+         */
+        public String[] getEtags() {
+            return etags;
+        }
+
+        public boolean isImmutable() {
+            return immutable;
+        }
+
+        public long getLength() {
+            return identity.getLength();
+        }
+    }
+
+    public static final class Variant {
+        private final String encoding;
+        private final String etag;
+        private final Path file;
+        private final byte[] content;
+        private final long length;
+
+        private Variant(String encoding, String etag, Path file, byte[] content, long length) {
+            this.encoding = encoding;
+            this.etag = etag;
+            this.file = file;
+            this.content = content;
+            this.length = length;
+        }
+
+        private static Variant sibling(Path file, String encoding, String etag, int inMemoryLimit) throws IOException {
+            String extension = "gzip".equals(encoding) ? ".gz" : "." + encoding;
+            Path compressed = file.resolveSibling(file.getFileName().toString() + extension);
+            if (!Files.isRegularFile(compressed)) {
+                return null;
+            }
+            long length = Files.size(compressed);
+            byte[] content = length <= inMemoryLimit ? Files.readAllBytes(compressed) : null;
+            return new Variant(encoding, etag, compressed, content, length);
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            if (content != null) {
+                out.write(content);
+                return;
+            }
+
+            // the Content-Length was set from the indexed length, write exactly that many bytes
+            try (InputStream in = Files.newInputStream(file)) {
+                byte[] buffer = new byte[8192];
+                long remaining = length;
+                while (remaining > 0) {
+                    int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read < 0) {
+                        throw new IOException("File was truncated after it was indexed " + file);
+                    }
+                    out.write(buffer, 0, read);
+                    remaining -= read;
+                }
+            }
+        }
+
+        public String getEncoding() {
+            return encoding;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public long getLength() {
+            return length;
+        }
+    }
+}
@@ -4,12 +4,12 @@
 package com.infiniteautomation.mango.webapp;
 
 import java.io.IOException;
-import java.net.URL;
 
 import javax.servlet.DispatcherType;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
@@ -17,8 +17,12 @@ import javax.servlet.annotation.WebFilter;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 
+import com.infiniteautomation.mango.monitor.MonitoredValues;
+import com.infiniteautomation.mango.webapp.VUIAssetIndex.Asset;
 import com.infiniteautomation.mango.webapp.filters.MangoCacheControlHeaderFilter;
 import com.infiniteautomation.mango.webapp.filters.MangoCacheControlHeaderFilter.CacheControlLevel;
 import com.serotonin.m2m2.web.mvc.spring.security.BrowserRequestMatcher;
@@ -41,8 +45,42 @@ public class VUIForwardingFilter implements Filter {
     public static final String FORWARD_FROM_PATH = "/vui";
     public static final String FORWARD_TO_PATH = "/modules/mangoVUI/web";
 
+    private final boolean assetIndexEnabled;
+    private final int inMemoryLimit;
+    private volatile VUIAssetIndex assetIndex;
+    private volatile boolean assetIndexBuilt;
+    private final ResourceResolutionCache resourceCache;
+
+    @Autowired
+    public VUIForwardingFilter(Environment env, MonitoredValues monitoredValues) {
+        // the web directory is rebuilt while developing, only index it when it is immutable
+        this.assetIndexEnabled = env.getProperty("vui.assetIndex.enabled", Boolean.class,
+                !env.getProperty("development.enabled", Boolean.class, false));
+        this.inMemoryLimit = env.getProperty("vui.assetIndex.inMemoryLimit", Integer.class, 256 * 1024);
+        this.resourceCache = new ResourceResolutionCache(
+                env.getProperty("vui.resourceCache.size", Integer.class, 10000),
+                env.getProperty("vui.resourceCache.ttl", Long.class, 60000L));
+        this.resourceCache.registerMonitors(monitoredValues, "internal.vui.resourceCache", FORWARD_FROM_PATH);
+    }
+
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
+        getAssetIndex(filterConfig.getServletContext());
+    }
+
+    private VUIAssetIndex getAssetIndex(ServletContext servletContext) {
+        if (!assetIndexEnabled) {
+            return null;
+        }
+        if (!assetIndexBuilt) {
+            synchronized (this) {
+                if (!assetIndexBuilt) {
+                    assetIndex = VUIAssetIndex.build(servletContext, FORWARD_TO_PATH, inMemoryLimit);
+                    assetIndexBuilt = true;
+                }
+            }
+        }
+        return assetIndex;
     }
 
     @Override
@@ -54,11 +92,25 @@ public class VUIForwardingFilter implements Filter {
         
             if (requestURI.startsWith(FORWARD_FROM_PATH)) {
                 String relativePath = requestURI.substring(FORWARD_FROM_PATH.length());
-                URL resourceUrl = httpRequest.getServletContext().getResource(FORWARD_TO_PATH + relativePath);
+
+                VUIAssetIndex index = getAssetIndex(httpRequest.getServletContext());
+                if (index != null && VUIAssetIndex.canServe(httpRequest)) {
+                    Asset asset = index.get(relativePath);
+                    boolean fallback = asset == null && BrowserRequestMatcher.INSTANCE.matches(httpRequest);
+                    if (fallback) {
+                        asset = index.get("/");
+                    }
+                    if (asset != null) {
+                        VUIAssetIndex.serve(asset, fallback, httpRequest, httpResponse);
+                        return;
+                    }
+                }
+
+                boolean exists = resourceCache.exists(httpRequest.getServletContext(), FORWARD_TO_PATH + relativePath);
 
                 // if the resource is not an actual file we return the index.html file so the webapp can display a 404 not found message
                 // only redirect to the index.html file if it's a browser request
-                if (resourceUrl == null && BrowserRequestMatcher.INSTANCE.matches(httpRequest)) {
+                if (!exists && BrowserRequestMatcher.INSTANCE.matches(httpRequest)) {
                     relativePath = "/";
                 }
 
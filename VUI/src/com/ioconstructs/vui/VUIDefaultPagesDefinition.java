@@ -3,12 +3,16 @@
  */
 package com.ioconstructs.vui;
 
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
 
 import com.serotonin.m2m2.db.dao.SystemSettingsDao;
 import com.serotonin.m2m2.module.DefaultPagesDefinition;
@@ -17,6 +21,9 @@ import com.serotonin.m2m2.vo.User;
 /**
  * Class that will allow overriding the default login page if the system setting is set to a valid string
  *
+ * <p>The page settings are read once into an immutable snapshot which is replaced when one of them is saved (see
+ * {@link VUIPageSettingsListenerDefinition}), so resolving a page does not hit the system settings DAO.</p>
+ *
  * @author Terry Packer
  */
 public class VUIDefaultPagesDefinition extends DefaultPagesDefinition {
@@ -24,24 +31,26 @@ public class VUIDefaultPagesDefinition extends DefaultPagesDefinition {
     @Autowired
     protected SystemSettingsDao systemSettingsDao;
 
+    private final AtomicReference<PageSettings> pageSettings = new AtomicReference<>();
+
     @Override
     public String getLoginPageUri(HttpServletRequest request, HttpServletResponse response) {
-        return systemSettingsDao.getValue(VUICommon.VUI_LOGIN_PAGE);
+        return getPageSettings().loginPage;
     }
 
     @Override
     public String getLoginErrorUri(HttpServletRequest request, HttpServletResponse response) {
-        return systemSettingsDao.getValue(VUICommon.VUI_LOGIN_ERROR_PAGE);
+        return getPageSettings().loginErrorPage;
     }
 
     @Override
     public String getLogoutSuccessUri(HttpServletRequest request, HttpServletResponse response) {
-        return systemSettingsDao.getValue(VUICommon.VUI_LOGOUT_SUCCESS_PAGE);
+        return getPageSettings().logoutSuccessPage;
     }
 
     @Override
     public String getPasswordResetPageUri() {
-        return systemSettingsDao.getValue(VUICommon.VUI_PASSWORD_RESET_PAGE);
+        return getPageSettings().passwordResetPage;
     }
 
     @Override
@@ -51,32 +60,33 @@ public class VUIDefaultPagesDefinition extends DefaultPagesDefinition {
 
     @Override
     public String getLoggedInPageUri(HttpServletRequest request, HttpServletResponse response, User user) {
-        return systemSettingsDao.getValue(VUICommon.VUI_LOGGED_IN_PAGE);
+        return getPageSettings().loggedInPage;
     }
 
     @Override
     public String getFirstUserLoginPageUri(HttpServletRequest request, HttpServletResponse response, User user) {
-        return systemSettingsDao.getValue(VUICommon.VUI_FIRST_USER_LOGIN_PAGE);
+        return getPageSettings().firstUserLoginPage;
     }
 
     @Override
     public String getLoggedInPageUriPreHome(HttpServletRequest request, HttpServletResponse response, User user) {
-        return systemSettingsDao.getValue(VUICommon.VUI_LOGGED_IN_PAGE_PRE_HOME);
+        return getPageSettings().loggedInPagePreHome;
     }
 
     @Override
     public String getUnauthorizedPageUri(HttpServletRequest request, HttpServletResponse response, User user) {
-        return systemSettingsDao.getValue(VUICommon.VUI_UNAUTHORIZED_PAGE);
+        return getPageSettings().unauthorizedPage;
     }
 
     @Override
     public String getNotFoundPageUri(HttpServletRequest request, HttpServletResponse response) {
-        String page = systemSettingsDao.getValue(VUICommon.VUI_NOT_FOUND_PAGE);
+        PageSettings settings = getPageSettings();
+        String page = settings.notFoundPage;
 
         if (!StringUtils.isEmpty(page)) {
             if (request != null) {
                 String requested = request.getRequestURI();
-                return UriComponentsBuilder.fromPath(page).queryParam("path", requested).toUriString();
+                return settings.notFoundPrefix + UriUtils.encodeQueryParam(requested, StandardCharsets.UTF_8);
             }
             return page;
         } else {
@@ -86,11 +96,64 @@ public class VUIDefaultPagesDefinition extends DefaultPagesDefinition {
 
     @Override
     public String getErrorPageUri(HttpServletRequest request, HttpServletResponse response) {
-        return systemSettingsDao.getValue(VUICommon.VUI_ERROR_PAGE);
+        return getPageSettings().errorPage;
     }
 
     @Override
     public String getEmailVerificationPageUri() {
-        return systemSettingsDao.getValue(VUICommon.VUI_EMAIL_VERIFICATION_PAGE);
+        return getPageSettings().emailVerificationPage;
+    }
+
+    /**
+     * Re-read the page settings, called when one of them is saved or removed
+     */
+    public void reloadPageSettings() {
+        pageSettings.set(new PageSettings(systemSettingsDao));
+    }
+
+    private PageSettings getPageSettings() {
+        PageSettings settings = pageSettings.get();
+        if (settings == null) {
+            // only set if still unset, a reload may have stored a newer snapshot while this one was read
+            PageSettings loaded = new PageSettings(systemSettingsDao);
+            settings = pageSettings.compareAndSet(null, loaded) ? loaded : pageSettings.get();
+        }
+        return settings;
+    }
+
+    private static final class PageSettings {
+        private final String loginPage;
+        private final String loginErrorPage;
+        private final String logoutSuccessPage;
+        private final String passwordResetPage;
+        private final String loggedInPage;
+        private final String firstUserLoginPage;
+        private final String loggedInPagePreHome;
+        private final String unauthorizedPage;
+        private final String notFoundPage;
+        private final String errorPage;
+        private final String emailVerificationPage;
+
+        /**
+         * Encoded not found page with the path query parameter, the encoded request URI is appended to it
+         */
+        private final String notFoundPrefix;
+
+        private PageSettings(SystemSettingsDao systemSettingsDao) {
+            this.loginPage = systemSettingsDao.getValue(VUICommon.VUI_LOGIN_PAGE);
+            this.loginErrorPage = systemSettingsDao.getValue(VUICommon.VUI_LOGIN_ERROR_PAGE);
+            this.logoutSuccessPage = systemSettingsDao.getValue(VUICommon.VUI_LOGOUT_SUCCESS_PAGE);
+            this.passwordResetPage = systemSettingsDao.getValue(VUICommon.VUI_PASSWORD_RESET_PAGE);
+            this.loggedInPage = systemSettingsDao.getValue(VUICommon.VUI_LOGGED_IN_PAGE);
+            this.firstUserLoginPage = systemSettingsDao.getValue(VUICommon.VUI_FIRST_USER_LOGIN_PAGE);
+            this.loggedInPagePreHome = systemSettingsDao.getValue(VUICommon.VUI_LOGGED_IN_PAGE_PRE_HOME);
+            this.unauthorizedPage = systemSettingsDao.getValue(VUICommon.VUI_UNAUTHORIZED_PAGE);
+            this.notFoundPage = systemSettingsDao.getValue(VUICommon.VUI_NOT_FOUND_PAGE);
+            this.errorPage = systemSettingsDao.getValue(VUICommon.VUI_ERROR_PAGE);
+            this.emailVerificationPage = systemSettingsDao.getValue(VUICommon.VUI_EMAIL_VERIFICATION_PAGE);
+
+            this.notFoundPrefix = StringUtils.isEmpty(notFoundPage) ? null :
+                    UriComponentsBuilder.fromPath(notFoundPage).build().encode().toUriString() + "?path=";
+        }
     }
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.serotonin.m2m2.module.ModuleRegistry;
+import com.serotonin.m2m2.module.SystemSettingsListenerDefinition;
+
+/**
+ * Replaces the page settings snapshot of the {@link VUIDefaultPagesDefinition} when one of the VUI page settings
+ * is saved or removed
+ *
+ * @author Matt Fox
+ */
+public class VUIPageSettingsListenerDefinition extends SystemSettingsListenerDefinition {
+
+    private static final List<String> KEYS = Arrays.asList(
+            VUICommon.VUI_LOGIN_PAGE,
+            VUICommon.VUI_LOGIN_ERROR_PAGE,
+            VUICommon.VUI_LOGOUT_SUCCESS_PAGE,
+            VUICommon.VUI_PASSWORD_RESET_PAGE,
+            VUICommon.VUI_FIRST_USER_LOGIN_PAGE,
+            VUICommon.VUI_LOGGED_IN_PAGE,
+            VUICommon.VUI_LOGGED_IN_PAGE_PRE_HOME,
+            VUICommon.VUI_UNAUTHORIZED_PAGE,
+            VUICommon.VUI_NOT_FOUND_PAGE,
+            VUICommon.VUI_ERROR_PAGE,
+            VUICommon.VUI_EMAIL_VERIFICATION_PAGE);
+
+    @Override
+    public List<String> getKeys() {
+        return KEYS;
+    }
+
+    @Override
+    public void systemSettingsSaved(String key, String oldValue, String newValue) {
+        reload();
+    }
+
+    @Override
+    public void systemSettingsRemoved(String key, String lastValue, String defaultValue) {
+        reload();
+    }
+
+    private void reload() {
+        for (VUIDefaultPagesDefinition definition : ModuleRegistry.getDefinitions(VUIDefaultPagesDefinition.class)) {
+            definition.reloadPageSettings();
+        }
+    }
+}
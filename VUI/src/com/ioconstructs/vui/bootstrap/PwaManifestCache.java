@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.bootstrap;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.infiniteautomation.mango.spring.annotations.RestMapper;
+import com.infiniteautomation.mango.spring.events.DaoEvent;
+import com.ioconstructs.vui.VUICommon;
+import com.ioconstructs.vui.util.ContentHash;
+import com.serotonin.m2m2.vo.json.JsonDataVO;
+
+/**
+ * Holds the serialized PWA manifest so that it is not re-read from the web directory and merged with the VUI settings
+ * on every request. The manifest only depends on the public host, on whether the requester is a user (anonymous users
+ * are never shown the instance description) and on the instance description, so one manifest is kept per host and
+ * permission class.
+ *
+ * <p>Entries are discarded when the VUI settings JSON data store changes. The instance description is part of every
+ * entry and an entry is rebuilt when it differs from the current setting, the public URL settings determine the host
+ * and hence the key.</p>
+ *
+ * <p>If there is no public URL the host comes from the request's Host header. Hosts are lower cased and only valid host
+ * names and IP addresses are cached, the cache is bounded and Caffeine evicts the least used hosts when it is full.</p>
+ *
+ * @author Matt Fox
+ */
+@Component
+public class PwaManifestCache {
+
+    /**
+     * Host names (RFC 1123 labels), IPv4 addresses and bracketed IPv6 addresses
+     */
+    private static final Pattern VALID_HOST = Pattern.compile(
+            "(?=.{1,253}$)[a-z0-9](?:[a-z0-9-]{0,61}[a-z0-9])?(?:\\.[a-z0-9](?:[a-z0-9-]{0,61}[a-z0-9])?)*\\.?|\\[[0-9a-f:.]{2,45}]");
+
+    private final ObjectMapper objectMapper;
+    private final AtomicLong revision = new AtomicLong();
+    private final Cache<Key, Entry> entries;
+
+    @Autowired
+    public PwaManifestCache(@RestMapper ObjectMapper objectMapper, Environment env) {
+        this.objectMapper = objectMapper;
+        // the host is taken from the request if there is no public URL, bound the number of hosts kept
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(env.getProperty("vui.manifest.cache.maxEntries", Integer.class, 100))
+                .build();
+    }
+
+    /**
+     * Get the cached manifest, building and serializing it using the supplier if it is not present or stale.
+     *
+     * @param host public host the manifest is requested for
+     * @param user true if the requester has the user role
+     * @param instanceDescription current instance description
+     */
+    public Entry get(String host, boolean user, String instanceDescription, Supplier<Object> loader) {
+        long currentRevision = revision.get();
+        String normalizedHost = normalizeHost(host);
+        if (normalizedHost == null) {
+            // not a valid host, build the manifest but do not let arbitrary Host headers occupy the cache
+            return new Entry(serialize(loader.get()), currentRevision, instanceDescription);
+        }
+
+        Key key = new Key(normalizedHost, user);
+        Entry entry = entries.getIfPresent(key);
+        if (entry == null || entry.revision != currentRevision || !Objects.equals(entry.instanceDescription, instanceDescription)) {
+            entry = new Entry(serialize(loader.get()), currentRevision, instanceDescription);
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * @return the lower cased host, or null if it is not a valid host name or IP address
+     */
+    static String normalizeHost(String host) {
+        if (host == null) {
+            return null;
+        }
+        String normalized = host.toLowerCase(Locale.ROOT);
+        return VALID_HOST.matcher(normalized).matches() ? normalized : null;
+    }
+
+    /**
+     * Create the response for a cache entry, answers with 304 if the client already holds the current version.
+     */
+    public ResponseEntity<byte[]> response(Entry entry, String ifNoneMatch) {
+        CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+        if (ContentHash.matches(ifNoneMatch, entry.getEtag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(entry.getEtag())
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(entry.getEtag())
+                .cacheControl(cacheControl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(entry.getBody());
+    }
+
+    public void invalidate() {
+        revision.incrementAndGet();
+        entries.invalidateAll();
+    }
+
+    @EventListener
+    protected void jsonDataChanged(DaoEvent<? extends JsonDataVO, ?> event) {
+        if (VUICommon.MA_VUI_SETTINGS_XID.equals(event.getVo().getXid()) ||
+                event.getOriginalVo() != null && VUICommon.MA_VUI_SETTINGS_XID.equals(event.getOriginalVo().getXid())) {
+            invalidate();
+        }
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize PWA manifest", e);
+        }
+    }
+
+    private static final class Key {
+        private final String host;
+        private final boolean user;
+
+        private Key(String host, boolean user) {
+            this.host = host;
+            this.user = user;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return user == key.user && Objects.equals(host, key.host);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(host, user);
+        }
+    }
+
+    public static final class Entry {
+        private final byte[] body;
+        private final String etag;
+        private final long revision;
+        private final String instanceDescription;
+
+        private Entry(byte[] body, long revision, String instanceDescription) {
+            this.body = body;
+            this.etag = ContentHash.etag(body);
+            this.revision = revision;
+            this.instanceDescription = instanceDescription;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
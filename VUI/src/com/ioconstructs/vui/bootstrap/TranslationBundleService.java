@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.bootstrap;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.infiniteautomation.mango.rest.latest.TranslationsController;
+import com.infiniteautomation.mango.spring.annotations.RestMapper;
+import com.ioconstructs.vui.util.ContentHash;
+import com.ioconstructs.vui.util.Gzip;
+import com.serotonin.m2m2.Common;
+
+/**
+ * Builds the translation namespaces used by the VUI bootstrap into serialized, gzipped bundles. Each bundle is addressed
+ * by the hash of its content so it can be cached by the browser indefinitely, the bootstrap data only carries the hash.
+ *
+ * <p>Bundles for the system locale are built when the module starts, bundles for other locales are built the first time
+ * they are requested.</p>
+ *
+ * @author Matt Fox
+ */
+@Component
+public class TranslationBundleService {
+
+    public enum BundleType {
+        PUBLIC("login", "header", "users", "validate"),
+        PRIVATE("vui", "common", "pointEdit", "rest", "footer", "dateAndTime");
+
+        private final String[] namespaces;
+
+        BundleType(String... namespaces) {
+            this.namespaces = namespaces;
+        }
+
+        public String[] getNamespaces() {
+            return namespaces.clone();
+        }
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, Bundle> bundles = new ConcurrentHashMap<>();
+    private final Map<String, Bundle> bundlesByHash = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TranslationBundleService(@RestMapper ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    private void init() {
+        for (BundleType type : BundleType.values()) {
+            getBundle(type, Common.getLocale());
+        }
+    }
+
+    public Bundle getBundle(BundleType type, Locale locale) {
+        return bundles.computeIfAbsent(type.name() + "/" + locale.toLanguageTag(), k -> {
+            Bundle bundle = build(type, locale);
+            // identical content (e.g. a locale without its own translations) shares the existing bundle
+            Bundle existing = bundlesByHash.putIfAbsent(bundle.getHash(), bundle);
+            return existing != null ? existing : bundle;
+        });
+    }
+
+    /**
+     * @return the bundle with the given hash or null if there is no such bundle
+     */
+    public Bundle getBundle(String hash) {
+        return bundlesByHash.get(hash);
+    }
+
+    private Bundle build(BundleType type, Locale locale) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(TranslationsController.getTranslations(type.namespaces, locale));
+            return new Bundle(type, json);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize translation bundle", e);
+        }
+    }
+
+    public static final class Bundle {
+        private final BundleType type;
+        private final String hash;
+        private final byte[] json;
+        private final byte[] gzip;
+
+        private Bundle(BundleType type, byte[] json) {
+            this.type = type;
+            this.hash = ContentHash.of(json);
+            this.json = json;
+            this.gzip = Gzip.compress(json);
+        }
+
+        public BundleType getType() {
+            return type;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public byte[] getGzip() {
+            return gzip;
+        }
+    }
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.bootstrap;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.infiniteautomation.mango.spring.annotations.RestMapper;
+import com.infiniteautomation.mango.spring.events.DaoEvent;
+import com.ioconstructs.vui.VUICommon;
+import com.ioconstructs.vui.util.ContentHash;
+import com.serotonin.m2m2.db.dao.SystemSettingsDao;
+import com.serotonin.m2m2.vo.User;
+import com.serotonin.m2m2.vo.json.JsonDataVO;
+import com.serotonin.m2m2.vo.permission.PermissionHolder;
+import com.serotonin.m2m2.vo.role.Role;
+import com.serotonin.m2m2.vo.role.RoleVO;
+import com.serotonin.m2m2.vo.systemSettings.SystemSettingsEventDispatcher;
+import com.serotonin.m2m2.vo.systemSettings.SystemSettingsListener;
+
+/**
+ * Holds the serialized /vui-bootstrap payloads so that repeated bootstraps (every page load, every tab) do not
+ * re-read the VUI JSON data stores, rebuild translations or run Jackson again.
+ *
+ * <p>Entries are keyed by endpoint, locale, the holder's inherited role set, (for payloads containing the user
+ * model) the user id and the outcome of any system permission checks the payload depends on, the roles a system
+ * permission grants can change without an event. Every entry also records the revision that was current when it was built, the revision is
+ * bumped whenever one of the VUI JSON data stores or one of the system settings in the payloads changes so stale
+ * entries are never served.</p>
+ *
+ * <p>Only one request builds the payload of a key at a time, concurrent requests for the same key (e.g. every login
+ * after an invalidation) wait for it instead of building it again.</p>
+ *
+ * @author Matt Fox
+ */
+@Component
+public class VuiBootstrapCache implements SystemSettingsListener {
+
+    /**
+     * system settings which are part of the bootstrap payloads, the login page setting determines the login URI
+     */
+    private static final List<String> SETTINGS_KEYS = Arrays.asList(
+            SystemSettingsDao.INSTANCE_DESCRIPTION,
+            SystemSettingsDao.USERS_PUBLIC_REGISTRATION_ENABLED,
+            VUICommon.VUI_LOGIN_PAGE);
+
+    private final ObjectMapper objectMapper;
+    private final AtomicLong revision = new AtomicLong();
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Key, Loading> loading = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final long maxAge;
+
+    @Autowired
+    public VuiBootstrapCache(@RestMapper ObjectMapper objectMapper, Environment env) {
+        this.objectMapper = objectMapper;
+        this.maxEntries = env.getProperty("vui.bootstrap.cache.maxEntries", Integer.class, 1000);
+        this.maxAge = env.getProperty("vui.bootstrap.cache.maxAge", Long.class, 300_000L);
+    }
+
+    @PostConstruct
+    private void init() {
+        SystemSettingsEventDispatcher.INSTANCE.addListener(this);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        SystemSettingsEventDispatcher.INSTANCE.removeListener(this);
+    }
+
+    /**
+     * Build the cache key for a bootstrap payload
+     *
+     * @param endpoint name of the bootstrap endpoint
+     * @param holder the holder the payload is built for
+     * @param locale locale used to build the translations
+     * @param perUser true if the payload contains data specific to the user (e.g. the user model)
+     */
+    public Key key(String endpoint, PermissionHolder holder, Locale locale, boolean perUser) {
+        return key(endpoint, holder, locale, perUser, "");
+    }
+
+    /**
+     * Build the cache key for a bootstrap payload which depends on system permissions
+     *
+     * @param permissionOutcomes the outcome of the system permission checks made while building the payload
+     */
+    public Key key(String endpoint, PermissionHolder holder, Locale locale, boolean perUser, String permissionOutcomes) {
+        User user = holder.getUser();
+        int userId = perUser && user != null ? user.getId() : -1;
+        return new Key(endpoint, locale.toLanguageTag(), roleKey(holder), userId, permissionOutcomes);
+    }
+
+    /**
+     * Get the cached payload for the key, building and serializing it using the supplier if it is not present or stale.
+     */
+    public Entry get(Key key, Supplier<Object> loader) {
+        long currentRevision = revision.get();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.revision == currentRevision && System.currentTimeMillis() - entry.created <= maxAge) {
+            return entry;
+        }
+
+        // join a build of the current revision if one is running, a build started before an invalidation is stale
+        Loading own = new Loading(currentRevision);
+        Loading current = loading.compute(key, (k, existing) ->
+                existing != null && existing.revision == currentRevision ? existing : own);
+        if (current != own) {
+            try {
+                return current.future.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        try {
+            entry = new Entry(serialize(loader.get()), currentRevision, System.currentTimeMillis());
+            if (revision.get() == currentRevision) {
+                if (entries.size() >= maxEntries) {
+                    evictOldest();
+                }
+                entries.put(key, entry);
+            }
+            own.future.complete(entry);
+            return entry;
+        } catch (RuntimeException e) {
+            own.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, own);
+        }
+    }
+
+    /**
+     * Create the response for a cache entry, answers with 304 if the client already holds the current version.
+     */
+    public ResponseEntity<byte[]> response(Entry entry, String ifNoneMatch) {
+        CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+        if (entry.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(entry.getEtag())
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(entry.getEtag())
+                .cacheControl(cacheControl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(entry.getBody());
+    }
+
+    /**
+     * Combine cached payloads into one JSON object without serializing them again, e.g. {"preLogin": ..., "postLogin": ...}.
+     * The combined entry is not cached, its ETag changes whenever one of the parts changes.
+     */
+    public Entry combine(Map<String, Entry> parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long minRevision = Long.MAX_VALUE;
+        long created = Long.MAX_VALUE;
+        out.write('{');
+        boolean first = true;
+        for (Map.Entry<String, Entry> part : parts.entrySet()) {
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            byte[] name = serialize(part.getKey());
+            out.write(name, 0, name.length);
+            out.write(':');
+            byte[] body = part.getValue().getBody();
+            out.write(body, 0, body.length);
+            minRevision = Math.min(minRevision, part.getValue().revision);
+            created = Math.min(created, part.getValue().created);
+        }
+        out.write('}');
+        return new Entry(out.toByteArray(), minRevision, created);
+    }
+
+    /**
+     * Drop all cached payloads, the next bootstrap of each key rebuilds them
+     */
+    public void invalidate() {
+        revision.incrementAndGet();
+        entries.clear();
+    }
+
+    public long getRevision() {
+        return revision.get();
+    }
+
+    @EventListener
+    protected void jsonDataChanged(DaoEvent<? extends JsonDataVO, ?> event) {
+        if (isBootstrapXid(event.getVo()) || isBootstrapXid(event.getOriginalVo())) {
+            invalidate();
+        }
+    }
+
+    @Override
+    public List<String> getKeys() {
+        return SETTINGS_KEYS;
+    }
+
+    @Override
+    public void systemSettingsSaved(String key, String oldValue, String newValue) {
+        invalidate();
+    }
+
+    @Override
+    public void systemSettingsRemoved(String key, String lastValue, String defaultValue) {
+        invalidate();
+    }
+
+    @EventListener
+    protected void userChanged(DaoEvent<? extends User, ?> event) {
+        int userId = event.getVo().getId();
+        entries.keySet().removeIf(k -> k.userId == userId);
+    }
+
+    @EventListener
+    protected void roleChanged(DaoEvent<? extends RoleVO, ?> event) {
+        // role inheritance may have changed, role keys are no longer reliable
+        invalidate();
+    }
+
+    private boolean isBootstrapXid(JsonDataVO vo) {
+        if (vo == null) {
+            return false;
+        }
+        String xid = vo.getXid();
+        return VUICommon.MA_VUI_SETTINGS_XID.equals(xid) ||
+                VUICommon.MA_VUI_MENU_XID.equals(xid) ||
+                VUICommon.MA_VUI_PAGES_XID.equals(xid);
+    }
+
+    private void evictOldest() {
+        entries.entrySet().stream()
+                .min(Comparator.comparingLong(e -> e.getValue().created))
+                .ifPresent(e -> entries.remove(e.getKey(), e.getValue()));
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize VUI bootstrap data", e);
+        }
+    }
+
+    static String roleKey(PermissionHolder holder) {
+        Set<Role> roles = holder.getAllInheritedRoles();
+        return roles.stream().map(Role::getXid).sorted().collect(Collectors.joining(","));
+    }
+
+    private static final class Loading {
+        private final long revision;
+        private final CompletableFuture<Entry> future = new CompletableFuture<>();
+
+        private Loading(long revision) {
+            this.revision = revision;
+        }
+    }
+
+    public static final class Key {
+        private final String endpoint;
+        private final String locale;
+        private final String roles;
+        private final int userId;
+        private final String permissionOutcomes;
+        private final int hash;
+
+        private Key(String endpoint, String locale, String roles, int userId, String permissionOutcomes) {
+            this.endpoint = endpoint;
+            this.locale = locale;
+            this.roles = roles;
+            this.userId = userId;
+            this.permissionOutcomes = permissionOutcomes;
+            this.hash = Objects.hash(endpoint, locale, roles, userId, permissionOutcomes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return userId == key.userId && endpoint.equals(key.endpoint) &&
+                    locale.equals(key.locale) && roles.equals(key.roles) &&
+                    permissionOutcomes.equals(key.permissionOutcomes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    public static final class Entry {
+        private final byte[] body;
+        private final String etag;
+        private final long revision;
+        private final long created;
+
+        private Entry(byte[] body, long revision, long created) {
+            this.body = body;
+            this.etag = ContentHash.etag(body);
+            this.revision = revision;
+            this.created = created;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public long getRevision() {
+            return revision;
+        }
+
+        boolean matches(String ifNoneMatch) {
+            return ContentHash.matches(ifNoneMatch, etag);
+        }
+    }
+}
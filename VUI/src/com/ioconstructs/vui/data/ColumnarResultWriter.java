@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.springframework.http.MediaType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ioconstructs.vui.data.WidgetDataResult.TimestampValue;
+
+/**
+ * Writes the results in a compact columnar binary format, decoded by services/ColumnarDecoder.ts. All numbers are big
+ * endian.
+ *
+ * <pre>
+ * stream  := "VUIC" version:u8 frame* END:u8(0)
+ * frame   := VALUES:u8(1) id:str xid:str count:u32 timestamps values
+ *          | JSON:u8(2) json:str                  (statistics and errors, the JSON model of the result)
+ * timestamps := first:i64 delta:zigzag-varint*    (count - 1 deltas)
+ * values  := FLOAT64:u8(0) f64*                   (null is NaN)
+ *          | BOOLEAN:u8(1) u8*                    (0, 1 or 255 for null)
+ *          | STRING:u8(2) str*                    (null has length 0xFFFFFFFF)
+ * str     := length:u32 utf8
+ * </pre>
+ *
+ * @author Matt Fox
+ */
+public class ColumnarResultWriter implements ResultWriter {
+
+    public static final String MEDIA_TYPE_VALUE = "application/vnd.vui.columnar";
+    public static final MediaType MEDIA_TYPE = MediaType.valueOf(MEDIA_TYPE_VALUE);
+
+    static final byte VERSION = 1;
+    static final byte FRAME_END = 0;
+    static final byte FRAME_VALUES = 1;
+    static final byte FRAME_JSON = 2;
+    static final byte COLUMN_FLOAT64 = 0;
+    static final byte COLUMN_BOOLEAN = 1;
+    static final byte COLUMN_STRING = 2;
+
+    private static final int NULL_LENGTH = -1;
+
+    private final DataOutputStream out;
+    private final ObjectMapper objectMapper;
+
+    public ColumnarResultWriter(OutputStream out, ObjectMapper objectMapper) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 16 * 1024));
+        this.objectMapper = objectMapper;
+        this.out.write(new byte[] {'V', 'U', 'I', 'C', VERSION});
+    }
+
+    @Override
+    public void write(WidgetDataResult result) throws IOException {
+        List<TimestampValue> values = result.getValues();
+        if (values == null) {
+            out.writeByte(FRAME_JSON);
+            writeString(objectMapper.writeValueAsString(result));
+            return;
+        }
+
+        out.writeByte(FRAME_VALUES);
+        writeString(result.getId());
+        writeString(result.getXid());
+        out.writeInt(values.size());
+
+        long previous = 0;
+        for (int i = 0; i < values.size(); i++) {
+            long timestamp = values.get(i).getTimestamp();
+            if (i == 0) {
+                out.writeLong(timestamp);
+            } else {
+                writeVarLong(timestamp - previous);
+            }
+            previous = timestamp;
+        }
+
+        byte column = columnType(values);
+        out.writeByte(column);
+        for (TimestampValue value : values) {
+            Object v = value.getValue();
+            switch (column) {
+                case COLUMN_FLOAT64:
+                    out.writeDouble(v != null ? ((Number) v).doubleValue() : Double.NaN);
+                    break;
+                case COLUMN_BOOLEAN:
+                    out.writeByte(v != null ? ((Boolean) v ? 1 : 0) : 255);
+                    break;
+                default:
+                    writeString(v != null ? v.toString() : null);
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.writeByte(FRAME_END);
+        out.close();
+    }
+
+    /**
+     * @return the narrowest column type which holds every value, nulls fit in every type
+     */
+    private static byte columnType(List<TimestampValue> values) {
+        boolean numbers = true;
+        boolean booleans = true;
+        for (TimestampValue value : values) {
+            Object v = value.getValue();
+            if (v != null) {
+                numbers &= v instanceof Number;
+                booleans &= v instanceof Boolean;
+            }
+        }
+        if (numbers) {
+            return COLUMN_FLOAT64;
+        }
+        return booleans ? COLUMN_BOOLEAN : COLUMN_STRING;
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Zigzag encoded LEB128, timestamps a few seconds apart take one or two bytes
+     */
+    private void writeVarLong(long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ioconstructs.vui.data.WidgetDataResult.TimestampValue;
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.db.dao.PointValueDao;
+import com.serotonin.m2m2.db.dao.PointValueDao.TimeOrder;
+import com.serotonin.m2m2.rt.dataImage.DataPointRT;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+import com.serotonin.m2m2.vo.DataPointVO;
+
+/**
+ * The scans for one batch of widget data requests. The results are written as a JSON array, each scan's results are
+ * written and flushed as soon as it completes so the first widgets can render while the rest are still loading.
+ *
+ * @author Matt Fox
+ */
+public class DashboardDataBatch {
+
+    private static final Logger log = LoggerFactory.getLogger(DashboardDataBatch.class);
+
+    private final Executor executor;
+    private final long timeout;
+    private final List<WidgetDataResult> results = new ArrayList<>();
+    private final List<Task> tasks = new ArrayList<>();
+
+    DashboardDataBatch(Executor executor, long timeout) {
+        this.executor = executor;
+        this.timeout = timeout;
+    }
+
+    void addResult(WidgetDataResult result) {
+        results.add(result);
+    }
+
+    Scan addScan(PointValueDao pointValueDao, long from, long to) {
+        Scan scan = new Scan(pointValueDao, from, to);
+        tasks.add(scan);
+        return scan;
+    }
+
+    Latest addLatest(PointValueDao pointValueDao) {
+        Latest latest = new Latest(pointValueDao);
+        tasks.add(latest);
+        return latest;
+    }
+
+    /**
+     * @return number of point value queries the batch runs
+     */
+    public int getScanCount() {
+        return tasks.size();
+    }
+
+    /**
+     * Run the scans and write the results as a JSON array as they complete
+     */
+    public void writeTo(OutputStream out, ObjectMapper objectMapper) throws IOException {
+        writeTo(new JsonResultWriter(out, objectMapper));
+    }
+
+    /**
+     * Run the scans and write the results as they complete
+     */
+    public void writeTo(ResultWriter writer) throws IOException {
+        try (ResultWriter w = writer) {
+            w.writeAll(results);
+
+            CompletionService<List<WidgetDataResult>> completion = new ExecutorCompletionService<>(executor);
+            Map<Future<List<WidgetDataResult>>, Task> pending = new HashMap<>();
+            for (Task task : tasks) {
+                pending.put(completion.submit(task), task);
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            try {
+                while (!pending.isEmpty()) {
+                    Future<List<WidgetDataResult>> future = completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (future == null) {
+                        String message = DashboardDataService.translate("vui.data.timeout");
+                        for (Task task : pending.values()) {
+                            w.writeAll(task.errors(message));
+                        }
+                        break;
+                    }
+
+                    Task task = pending.remove(future);
+                    List<WidgetDataResult> taskResults;
+                    try {
+                        taskResults = future.get();
+                    } catch (ExecutionException e) {
+                        log.warn("VUI dashboard data query failed", e.getCause());
+                        taskResults = task.errors(DashboardDataService.translate("vui.data.queryFailed"));
+                    }
+                    w.writeAll(taskResults);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                for (Future<List<WidgetDataResult>> future : pending.keySet()) {
+                    future.cancel(true);
+                }
+            }
+        }
+    }
+
+    private abstract static class Task implements Callable<List<WidgetDataResult>> {
+        protected final List<Slot> slots = new ArrayList<>();
+
+        List<WidgetDataResult> errors(String message) {
+            return slots.stream().map(s -> WidgetDataResult.error(s.id, s.xid, message)).collect(Collectors.toList());
+        }
+    }
+
+    private static class Slot {
+        private final String id;
+        private final String xid;
+
+        private Slot(String id, String xid) {
+            this.id = id;
+            this.xid = xid;
+        }
+    }
+
+    /**
+     * One scan over a time range shared by all TIME_PERIOD and STATISTICS requests for that range
+     */
+    static final class Scan extends Task {
+        private final PointValueDao pointValueDao;
+        private final long from;
+        private final long to;
+        private final Map<Integer, DataPointVO> points = new LinkedHashMap<>();
+        private final Map<Integer, List<PointValueSink>> sinksBySeries = new HashMap<>();
+        private final List<PointValueSink> sinks = new ArrayList<>();
+
+        private Scan(PointValueDao pointValueDao, long from, long to) {
+            this.pointValueDao = pointValueDao;
+            this.from = from;
+            this.to = to;
+        }
+
+        void add(String id, DataPointVO vo, PointValueSink sink) {
+            points.putIfAbsent(vo.getSeriesId(), vo);
+            sinksBySeries.computeIfAbsent(vo.getSeriesId(), k -> new ArrayList<>()).add(sink);
+            sinks.add(sink);
+            slots.add(new Slot(id, vo.getXid()));
+        }
+
+        @Override
+        public List<WidgetDataResult> call() {
+            // time weighted rollups start from the value before the range, only queried for the points that need it
+            for (DataPointVO vo : points.values()) {
+                List<PointValueSink> pointSinks = sinksBySeries.get(vo.getSeriesId());
+                if (pointSinks.stream().anyMatch(PointValueSink::needsStartValue)) {
+                    pointValueDao.getPointValueBefore(vo, from).ifPresent(value -> {
+                        for (PointValueSink sink : pointSinks) {
+                            if (sink.needsStartValue()) {
+                                sink.startValue(value);
+                            }
+                        }
+                    });
+                }
+            }
+
+            pointValueDao.getPointValuesPerPoint(points.values(), from, to, limit(), TimeOrder.ASCENDING, value -> {
+                List<PointValueSink> pointSinks = sinksBySeries.get(value.getSeriesId());
+                if (pointSinks != null) {
+                    for (PointValueSink sink : pointSinks) {
+                        sink.accept(value);
+                    }
+                }
+            });
+            return sinks.stream().map(PointValueSink::result).collect(Collectors.toList());
+        }
+
+        /**
+         * @return per point limit for the query, only set when every sink needs a limited number of values
+         */
+        private Integer limit() {
+            int limit = 0;
+            for (PointValueSink sink : sinks) {
+                if (sink.getLimit() == null) {
+                    return null;
+                }
+                limit = Math.max(limit, sink.getLimit());
+            }
+            return limit;
+        }
+    }
+
+    /**
+     * Latest values for a chunk of points, each point is queried once with the largest limit requested for it
+     */
+    static final class Latest extends Task {
+        private final PointValueDao pointValueDao;
+        private final Map<Integer, DataPointVO> points = new LinkedHashMap<>();
+        private final Map<Integer, Integer> limits = new HashMap<>();
+        private final List<Integer> slotPoints = new ArrayList<>();
+        private final List<Integer> slotLimits = new ArrayList<>();
+
+        private Latest(PointValueDao pointValueDao) {
+            this.pointValueDao = pointValueDao;
+        }
+
+        int size() {
+            return points.size();
+        }
+
+        void add(String id, DataPointVO vo, int limit) {
+            points.putIfAbsent(vo.getId(), vo);
+            limits.merge(vo.getId(), limit, Math::max);
+            slots.add(new Slot(id, vo.getXid()));
+            slotPoints.add(vo.getId());
+            slotLimits.add(limit);
+        }
+
+        @Override
+        public List<WidgetDataResult> call() {
+            Map<Integer, List<PointValueTime>> values = new HashMap<>();
+            for (DataPointVO vo : points.values()) {
+                int limit = limits.get(vo.getId());
+                DataPointRT rt = Common.runtimeManager.getDataPoint(vo.getId());
+                // a running point serves its latest values from the point value cache
+                values.put(vo.getId(), rt != null ? rt.getLatestPointValues(limit) : pointValueDao.getLatestPointValues(vo, limit));
+            }
+
+            List<WidgetDataResult> results = new ArrayList<>(slots.size());
+            for (int i = 0; i < slots.size(); i++) {
+                Slot slot = slots.get(i);
+                List<PointValueTime> pointValues = values.get(slotPoints.get(i));
+                List<TimestampValue> slotValues = pointValues.stream().limit(slotLimits.get(i))
+                        .map(TimestampValue::of).collect(Collectors.toList());
+                results.add(WidgetDataResult.values(slot.id, slot.xid, slotValues));
+            }
+            return results;
+        }
+    }
+}
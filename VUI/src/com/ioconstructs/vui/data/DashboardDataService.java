@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.data;
+
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import com.infiniteautomation.mango.spring.service.DataPointService;
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.db.dao.DataPointDao;
+import com.serotonin.m2m2.db.dao.PointValueDao;
+import com.serotonin.m2m2.i18n.TranslatableMessage;
+import com.serotonin.m2m2.vo.DataPointVO;
+import com.serotonin.m2m2.vo.permission.PermissionHolder;
+
+/**
+ * Answers a dashboard's widget data requests in one batch. Requests covering the same time range share a single
+ * point value scan over the union of their points, latest value requests are grouped into chunks of points. The scans
+ * run in parallel on a bounded executor, when it is saturated the requesting thread runs the scan itself.
+ *
+ * @author Matt Fox
+ */
+@Service
+public class DashboardDataService {
+
+    private final DataPointDao dataPointDao;
+    private final DataPointService dataPointService;
+    private final PointValueDao pointValueDao;
+    private final RollupCache rollupCache;
+    private final ThreadPoolExecutor executor;
+    private final int maxRequests;
+    private final int maxXids;
+    private final long maxBuckets;
+    private final int maxValues;
+    private final int latestChunkSize;
+    private final long timeout;
+
+    @Autowired
+    public DashboardDataService(DataPointDao dataPointDao, DataPointService dataPointService, PointValueDao pointValueDao,
+                                RollupCache rollupCache, Environment env) {
+        this.dataPointDao = dataPointDao;
+        this.dataPointService = dataPointService;
+        this.pointValueDao = pointValueDao;
+        this.rollupCache = rollupCache;
+        this.maxRequests = env.getProperty("vui.data.maxRequests", Integer.class, 200);
+        this.maxXids = env.getProperty("vui.data.maxXids", Integer.class, 500);
+        this.maxBuckets = env.getProperty("vui.data.maxBuckets", Long.class, 10000L);
+        this.maxValues = env.getProperty("vui.data.maxValues", Integer.class, 10000);
+        this.latestChunkSize = env.getProperty("vui.data.latestChunkSize", Integer.class, 50);
+        this.timeout = env.getProperty("vui.data.timeout", Long.class, 60000L);
+
+        int threads = env.getProperty("vui.data.threads", Integer.class, 4);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(env.getProperty("vui.data.queueSize", Integer.class, 100)), r -> {
+            Thread thread = new Thread(r, "VUI dashboard data " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        executor.shutdownNow();
+    }
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    /**
+     * Resolve the points and check permissions on the calling thread, then group the requests into scans
+     *
+     * @return the batch, the scans run when it is written
+     */
+    public DashboardDataBatch prepare(List<WidgetDataRequest> requests, PermissionHolder user) {
+        DashboardDataBatch batch = new DashboardDataBatch(executor, timeout);
+        Map<String, DataPointVO> points = new HashMap<>();
+        Map<RangeKey, DashboardDataBatch.Scan> scans = new LinkedHashMap<>();
+        DashboardDataBatch.Latest latest = null;
+        Long cacheBoundary = null;
+
+        for (WidgetDataRequest request : requests) {
+            String id = request.getId();
+            String error = validate(request);
+            if (error != null) {
+                batch.addResult(WidgetDataResult.error(id, null, error));
+                continue;
+            }
+
+            ZoneId zone = ZoneId.systemDefault();
+            if (request.getTimezone() != null) {
+                try {
+                    zone = ZoneId.of(request.getTimezone());
+                } catch (DateTimeException e) {
+                    batch.addResult(WidgetDataResult.error(id, null, translate("vui.data.invalidTimezone", request.getTimezone())));
+                    continue;
+                }
+            }
+
+            for (String xid : request.getXids()) {
+                DataPointVO vo = points.computeIfAbsent(xid, dataPointDao::getByXid);
+                if (vo == null || !dataPointService.hasReadPermission(user, vo)) {
+                    batch.addResult(WidgetDataResult.error(id, xid, translate("vui.data.pointNotFound", xid)));
+                    continue;
+                }
+
+                switch (request.getType()) {
+                    case LATEST:
+                        if (latest == null || latest.size() >= latestChunkSize) {
+                            latest = batch.addLatest(pointValueDao);
+                        }
+                        latest.add(id, vo, limit(request, 1));
+                        break;
+                    case TIME_PERIOD:
+                        if (isCacheable(request)) {
+                            if (cacheBoundary == null) {
+                                cacheBoundary = rollupCache.getBoundary();
+                            }
+                            addCachedRollup(batch, scans, request, vo, zone, cacheBoundary);
+                            break;
+                        }
+                        // fall through, scanned over the whole range
+                    case STATISTICS:
+                        RangeKey key = new RangeKey(request.getFrom(), request.getTo());
+                        DashboardDataBatch.Scan scan = scans.computeIfAbsent(key,
+                                k -> batch.addScan(pointValueDao, k.from, k.to));
+                        scan.add(id, vo, sink(request, xid, zone));
+                        break;
+                }
+            }
+        }
+        return batch;
+    }
+
+    private boolean isCacheable(WidgetDataRequest request) {
+        return rollupCache.isEnabled() && request.getRollup() != null && request.getRollup() != Rollup.NONE &&
+                (request.getDownsample() == null || request.getDownsample() == Downsample.NONE);
+    }
+
+    /**
+     * Serve the closed buckets at the start of the range from the cache, only the rest of the range is scanned
+     */
+    private void addCachedRollup(DashboardDataBatch batch, Map<RangeKey, DashboardDataBatch.Scan> scans,
+                                 WidgetDataRequest request, DataPointVO vo, ZoneId zone, long boundary) {
+        String id = request.getId();
+        long to = request.getTo();
+        RollupCache.Series series = new RollupCache.Series(vo.getSeriesId(), request.getRollup(), request.getTimePeriod(), zone);
+        RollupCache.Prefix prefix = rollupCache.prefix(series, request.getFrom(), to, zone, boundary);
+        if (prefix.getEnd() >= to) {
+            batch.addResult(WidgetDataResult.values(id, vo.getXid(), prefix.getValues()));
+            return;
+        }
+
+        RangeKey key = new RangeKey(prefix.getEnd(), to);
+        DashboardDataBatch.Scan scan = scans.computeIfAbsent(key, k -> batch.addScan(pointValueDao, k.from, k.to));
+        scan.add(id, vo, new RollupSink(id, vo.getXid(), request.getRollup(), request.getTimePeriod(),
+                prefix.getEnd(), to, zone, prefix.getValues(),
+                (start, end, value) -> rollupCache.put(series, start, end, to, value, boundary)));
+    }
+
+    private PointValueSink sink(WidgetDataRequest request, String xid, ZoneId zone) {
+        if (request.getType() == WidgetDataRequest.Type.STATISTICS) {
+            return new PointValueSink.Statistics(request.getId(), xid);
+        }
+        if (request.getDownsample() != null && request.getDownsample() != Downsample.NONE) {
+            return new DownsampleSink(request.getId(), xid, request.getDownsample(), request.getTargetPoints(),
+                    request.getFrom(), request.getTo());
+        }
+        if (request.getRollup() != null && request.getRollup() != Rollup.NONE) {
+            return new RollupSink(request.getId(), xid, request.getRollup(), request.getTimePeriod(),
+                    request.getFrom(), request.getTo(), zone);
+        }
+        return new PointValueSink.Raw(request.getId(), xid, limit(request, maxValues));
+    }
+
+    /**
+     * @return the number of values requested per point, at most vui.data.maxValues so that a raw request without a
+     * limit does not read its whole time range
+     */
+    private int limit(WidgetDataRequest request, int defaultLimit) {
+        return request.getLimit() != null ? Math.min(request.getLimit(), maxValues) : defaultLimit;
+    }
+
+    /**
+     * @return translated error message or null if the request is valid
+     */
+    private String validate(WidgetDataRequest request) {
+        if (request.getType() == null || request.getXids() == null) {
+            return translate("vui.data.invalidRequest");
+        }
+        if (request.getLimit() != null && request.getLimit() < 0) {
+            return translate("vui.data.invalidRequest");
+        }
+        if (request.getXids().size() > maxXids) {
+            return translate("vui.data.tooManyPoints", maxXids);
+        }
+        if (request.getType() == WidgetDataRequest.Type.LATEST) {
+            return null;
+        }
+
+        if (request.getFrom() == null || request.getTo() == null || request.getFrom() >= request.getTo()) {
+            return translate("vui.data.invalidTimeRange");
+        }
+        if (request.getType() == WidgetDataRequest.Type.TIME_PERIOD && request.getRollup() != null && request.getRollup() != Rollup.NONE) {
+            WidgetDataRequest.TimePeriod period = request.getTimePeriod();
+            if (period == null || period.getType() == null || period.getPeriods() <= 0) {
+                return translate("vui.data.invalidTimePeriod");
+            }
+            if (RollupSink.estimateBuckets(period, request.getFrom(), request.getTo()) > maxBuckets) {
+                return translate("vui.data.tooManyBuckets", maxBuckets);
+            }
+        }
+        if (request.getType() == WidgetDataRequest.Type.TIME_PERIOD && request.getDownsample() != null && request.getDownsample() != Downsample.NONE) {
+            Integer targetPoints = request.getTargetPoints();
+            if (targetPoints == null || targetPoints < 3 || targetPoints > maxBuckets) {
+                return translate("vui.data.invalidTargetPoints", maxBuckets);
+            }
+        }
+        return null;
+    }
+
+    static String translate(String key, Object... args) {
+        return new TranslatableMessage(key, args).translate(Common.getTranslations());
+    }
+
+    private static final class RangeKey {
+        private final long from;
+        private final long to;
+
+        private RangeKey(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            RangeKey rangeKey = (RangeKey) o;
+            return from == rangeKey.from && to == rangeKey.to;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(from, to);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.data;
+
+/**
+ * Downsampling methods which reduce a series to roughly the number of points a chart can draw
+ *
+ * <ul>
+ *     <li>LTTB - Largest-Triangle-Three-Buckets, one value per bucket chosen to preserve the visual shape</li>
+ *     <li>MIN_MAX - the minimum and maximum of each bucket, preserves every peak</li>
+ * </ul>
+ *
+ * @author Matt Fox
+ */
+public enum Downsample {
+    NONE,
+    LTTB,
+    MIN_MAX
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.ioconstructs.vui.data.WidgetDataResult.TimestampValue;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+import com.serotonin.m2m2.rt.dataImage.types.NumericValue;
+
+/**
+ * Downsamples the values of a point to about {@code targetPoints} values as they are streamed from the database. The
+ * time range is split into equal buckets, at most two buckets of values are held in memory (LTTB) or none at all
+ * (MIN_MAX). Non numeric points keep the first value of each bucket. A series with no more than {@code targetPoints}
+ * values is returned as is, the values are held until there are more and then replayed into the downsampling.
+ *
+ * @author Matt Fox
+ */
+class DownsampleSink implements PointValueSink {
+
+    private final String id;
+    private final String xid;
+    private final Downsample method;
+    private final int targetPoints;
+    private final long from;
+    private final long to;
+    private final List<TimestampValue> values = new ArrayList<>();
+
+    /**
+     * Values received while there are no more than targetPoints, null once the series is being downsampled
+     */
+    private List<PointValueTime> held = new ArrayList<>();
+    private Boolean numeric;
+    private int bucketCount;
+    private int bucketIndex = -1;
+
+    // LTTB state, the first and last values are always kept
+    private PointValueTime first;
+    private PointValueTime last;
+    private long selectedTime;
+    private double selectedValue;
+    private Bucket candidates = new Bucket();
+    private Bucket current = new Bucket();
+
+    // MIN_MAX state
+    private PointValueTime minimum;
+    private PointValueTime maximum;
+
+    DownsampleSink(String id, String xid, Downsample method, int targetPoints, long from, long to) {
+        this.id = id;
+        this.xid = xid;
+        this.method = method;
+        this.targetPoints = targetPoints;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public void accept(PointValueTime value) {
+        if (held != null) {
+            held.add(value);
+            if (held.size() > targetPoints) {
+                List<PointValueTime> replay = held;
+                held = null;
+                for (PointValueTime v : replay) {
+                    downsample(v);
+                }
+            }
+            return;
+        }
+        downsample(value);
+    }
+
+    private void downsample(PointValueTime value) {
+        if (numeric == null) {
+            numeric = value.getValue() instanceof NumericValue;
+            if (!numeric) {
+                bucketCount = targetPoints;
+            } else if (method == Downsample.MIN_MAX) {
+                bucketCount = Math.max(1, targetPoints / 2);
+            } else {
+                bucketCount = Math.max(1, targetPoints - 2);
+            }
+        }
+
+        if (!numeric) {
+            int index = bucket(value.getTime());
+            if (index != bucketIndex) {
+                bucketIndex = index;
+                values.add(TimestampValue.of(value));
+            }
+        } else if (method == Downsample.MIN_MAX) {
+            acceptMinMax(value);
+        } else {
+            acceptLttb(value);
+        }
+    }
+
+    @Override
+    public WidgetDataResult result() {
+        if (held != null) {
+            for (PointValueTime value : held) {
+                values.add(TimestampValue.of(value));
+            }
+        } else if (numeric != null && numeric) {
+            if (method == Downsample.MIN_MAX) {
+                emitMinMax();
+            } else {
+                finishLttb();
+            }
+        }
+        return WidgetDataResult.values(id, xid, values);
+    }
+
+    private int bucket(long time) {
+        int index = (int) ((double) (time - from) / (to - from) * bucketCount);
+        return Math.max(0, Math.min(index, bucketCount - 1));
+    }
+
+    private void acceptMinMax(PointValueTime value) {
+        int index = bucket(value.getTime());
+        if (index != bucketIndex) {
+            emitMinMax();
+            bucketIndex = index;
+        }
+
+        double d = value.getDoubleValue();
+        if (minimum == null || d < minimum.getDoubleValue()) {
+            minimum = value;
+        }
+        if (maximum == null || d > maximum.getDoubleValue()) {
+            maximum = value;
+        }
+    }
+
+    private void emitMinMax() {
+        if (minimum == null) {
+            return;
+        }
+        if (minimum == maximum) {
+            values.add(TimestampValue.of(minimum));
+        } else if (minimum.getTime() <= maximum.getTime()) {
+            values.add(TimestampValue.of(minimum));
+            values.add(TimestampValue.of(maximum));
+        } else {
+            values.add(TimestampValue.of(maximum));
+            values.add(TimestampValue.of(minimum));
+        }
+        minimum = null;
+        maximum = null;
+    }
+
+    private void acceptLttb(PointValueTime value) {
+        if (first == null) {
+            first = value;
+            values.add(TimestampValue.of(value));
+            selectedTime = value.getTime();
+            selectedValue = value.getDoubleValue();
+            return;
+        }
+
+        // the previous last value is now an ordinary candidate
+        if (last != null) {
+            int index = bucket(last.getTime());
+            if (index != bucketIndex) {
+                nextBucket();
+                bucketIndex = index;
+            }
+            current.add(last.getTime(), last.getDoubleValue());
+        }
+        last = value;
+    }
+
+    /**
+     * The current bucket is complete, choose the value of the candidate bucket which forms the largest triangle with
+     * the previously selected value and the average of the current bucket
+     */
+    private void nextBucket() {
+        if (candidates.size > 0 && current.size > 0) {
+            select(current.averageTime(), current.averageValue());
+        }
+        Bucket empty = candidates;
+        empty.clear();
+        candidates = current;
+        current = empty;
+    }
+
+    private void finishLttb() {
+        if (first == null) {
+            return;
+        }
+        if (current.size > 0) {
+            nextBucket();
+        }
+        if (last != null) {
+            if (candidates.size > 0) {
+                select(last.getTime(), last.getDoubleValue());
+            }
+            values.add(TimestampValue.of(last));
+        }
+    }
+
+    private void select(double nextTime, double nextValue) {
+        int selected = 0;
+        double maxArea = -1;
+        for (int i = 0; i < candidates.size; i++) {
+            double area = Math.abs((selectedTime - nextTime) * (candidates.values[i] - selectedValue)
+                    - (selectedTime - candidates.times[i]) * (nextValue - selectedValue));
+            if (area > maxArea) {
+                maxArea = area;
+                selected = i;
+            }
+        }
+        selectedTime = candidates.times[selected];
+        selectedValue = candidates.values[selected];
+        values.add(new TimestampValue(selectedTime, selectedValue));
+    }
+
+    private static final class Bucket {
+        private long[] times = new long[16];
+        private double[] values = new double[16];
+        private int size;
+        private double timeSum;
+        private double valueSum;
+
+        private void add(long time, double value) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            times[size] = time;
+            values[size] = value;
+            size++;
+            timeSum += time;
+            valueSum += value;
+        }
+
+        private double averageTime() {
+            return timeSum / size;
+        }
+
+        private double averageValue() {
+            return valueSum / size;
+        }
+
+        private void clear() {
+            size = 0;
+            timeSum = 0;
+            valueSum = 0;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes the results as a JSON array
+ *
+ * @author Matt Fox
+ */
+public class JsonResultWriter implements ResultWriter {
+
+    private final JsonGenerator generator;
+
+    public JsonResultWriter(OutputStream out, ObjectMapper objectMapper) throws IOException {
+        this.generator = objectMapper.getFactory().createGenerator(out);
+        this.generator.writeStartArray();
+    }
+
+    @Override
+    public void write(WidgetDataResult result) throws IOException {
+        generator.writeObject(result);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        generator.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.writeEndArray();
+        generator.close();
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The current value of a set of points. Each point payload has the shape of a point-value WebSocket payload plus a
+ * quality and a version, subscribing with the version as since resumes the point's stream without a gap.
+ *
+ * @author Matt Fox
+ */
+public class LatestValuesSnapshot {
+
+    private final long timestamp;
+    private final List<Map<String, Object>> points;
+    private final boolean truncated;
+
+    public LatestValuesSnapshot(long timestamp, List<Map<String, Object>> points) {
+        this(timestamp, points, false);
+    }
+
+    public LatestValuesSnapshot(long timestamp, List<Map<String, Object>> points, boolean truncated) {
+        this.timestamp = timestamp;
+        this.points = points;
+        this.truncated = truncated;
+    }
+
+    /**
+     * @return server time the snapshot was taken
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public List<Map<String, Object>> getPoints() {
+        return points;
+    }
+
+    /**
+     * @return true if more points matched the query than its limit
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+}
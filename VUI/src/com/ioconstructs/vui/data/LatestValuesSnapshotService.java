@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import com.infiniteautomation.mango.spring.service.DataPointService;
+import com.infiniteautomation.mango.spring.service.WatchListService;
+import com.ioconstructs.vui.gateway.PointValuePayload;
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.rt.dataImage.DataPointRT;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+import com.serotonin.m2m2.rt.dataSource.DataSourceRT;
+import com.serotonin.m2m2.vo.DataPointVO;
+import com.serotonin.m2m2.vo.permission.PermissionHolder;
+
+import net.jazdw.rql.parser.ASTNode;
+
+/**
+ * Reads the current value of every point of a watch list or RQL query from the runtime in one pass, the values come
+ * from the running points so no point values are read from the database.
+ *
+ * @author Matt Fox
+ */
+@Service
+public class LatestValuesSnapshotService {
+
+    public static final String SNAPSHOT = "SNAPSHOT";
+
+    public static final String QUALITY_GOOD = "GOOD";
+    public static final String QUALITY_UNRELIABLE = "UNRELIABLE";
+    public static final String QUALITY_NO_VALUE = "NO_VALUE";
+    public static final String QUALITY_DISABLED = "DISABLED";
+
+    private final WatchListService watchListService;
+    private final DataPointService dataPointService;
+    private final int maxPoints;
+
+    @Autowired
+    public LatestValuesSnapshotService(WatchListService watchListService, DataPointService dataPointService, Environment env) {
+        this.watchListService = watchListService;
+        this.dataPointService = dataPointService;
+        this.maxPoints = env.getProperty("vui.snapshot.maxPoints", Integer.class, 1000);
+    }
+
+    /**
+     * Snapshot of the watch list's points, the watch list service checks the permission to read the watch list
+     */
+    public LatestValuesSnapshot watchList(String xid, PermissionHolder user) {
+        long timestamp = Common.timer.currentTimeMillis();
+        List<Map<String, Object>> points = new ArrayList<>();
+        watchListService.getDataPoints(xid, vo -> {
+            if (dataPointService.hasReadPermission(user, vo)) {
+                points.add(entry(vo));
+            }
+        });
+        return new LatestValuesSnapshot(timestamp, points);
+    }
+
+    /**
+     * Snapshot of the points matching the query, the data point service only returns points the user can read. The
+     * query's limit defaults to and is capped at vui.snapshot.maxPoints, the snapshot is marked as truncated if more
+     * points match.
+     */
+    public LatestValuesSnapshot query(ASTNode rql) {
+        long timestamp = Common.timer.currentTimeMillis();
+        List<Object> filters = new ArrayList<>();
+        List<Object> limitArguments = new ArrayList<>();
+        split(rql, filters, limitArguments);
+
+        int limit = maxPoints;
+        if (!limitArguments.isEmpty() && limitArguments.get(0) instanceof Number) {
+            limit = Math.max(0, Math.min(((Number) limitArguments.get(0)).intValue(), maxPoints));
+        }
+        // one more point than the limit is read to tell if the snapshot is truncated
+        filters.add(limitArguments.size() > 1 ? new ASTNode("limit", limit + 1, limitArguments.get(1)) :
+                new ASTNode("limit", limit + 1));
+
+        List<Map<String, Object>> points = new ArrayList<>();
+        int[] matched = new int[1];
+        int max = limit;
+        dataPointService.customizedQuery(new ASTNode("and", filters.toArray()), vo -> {
+            if (matched[0]++ < max) {
+                points.add(entry(vo));
+            }
+        });
+        return new LatestValuesSnapshot(timestamp, points, matched[0] > limit);
+    }
+
+    /**
+     * Split the top level of the query into its limit arguments and the other nodes
+     */
+    private static void split(ASTNode rql, List<Object> nodes, List<Object> limitArguments) {
+        List<Object> arguments = rql == null ? Collections.emptyList() :
+                "and".equals(rql.getName()) ? rql.getArguments() : Collections.singletonList(rql);
+        for (Object argument : arguments) {
+            if (argument instanceof ASTNode && "limit".equals(((ASTNode) argument).getName())) {
+                limitArguments.clear();
+                limitArguments.addAll(((ASTNode) argument).getArguments());
+            } else {
+                nodes.add(argument);
+            }
+        }
+    }
+
+    private Map<String, Object> entry(DataPointVO vo) {
+        DataPointRT rt = Common.runtimeManager.getDataPoint(vo.getId());
+        PointValueTime value = rt != null ? rt.getPointValue() : null;
+
+        Map<String, Object> payload = PointValuePayload.create(vo, rt, SNAPSHOT, value);
+        payload.put("quality", quality(rt, value));
+        payload.put("version", PointValuePayload.version(value));
+        return payload;
+    }
+
+    private String quality(DataPointRT rt, PointValueTime value) {
+        if (rt == null) {
+            return QUALITY_DISABLED;
+        }
+        if (Boolean.TRUE.equals(rt.getAttribute(DataSourceRT.ATTR_UNRELIABLE_KEY))) {
+            return QUALITY_UNRELIABLE;
+        }
+        return value != null ? QUALITY_GOOD : QUALITY_NO_VALUE;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ioconstructs.vui.data.WidgetDataResult.TimestampValue;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+
+/**
+ * Receives the values of one point from a shared scan, in time order, on behalf of one widget request
+ *
+ * @author Matt Fox
+ */
+interface PointValueSink {
+
+    void accept(PointValueTime value);
+
+    /**
+     * @return the result once the scan is complete
+     */
+    WidgetDataResult result();
+
+    /**
+     * @return true if the sink needs the last value before the range, passed to {@link #startValue(PointValueTime)}
+     */
+    default boolean needsStartValue() {
+        return false;
+    }
+
+    /**
+     * Called before the values in the range if the point has a value before the range and the sink needs it
+     */
+    default void startValue(PointValueTime value) {
+    }
+
+    /**
+     * @return maximum number of values the sink uses, null if it needs every value in the range
+     */
+    default Integer getLimit() {
+        return null;
+    }
+
+    /**
+     * Collects the raw values up to a limit
+     */
+    class Raw implements PointValueSink {
+        private final String id;
+        private final String xid;
+        private final Integer limit;
+        private final List<TimestampValue> values = new ArrayList<>();
+
+        Raw(String id, String xid, Integer limit) {
+            this.id = id;
+            this.xid = xid;
+            this.limit = limit;
+        }
+
+        @Override
+        public void accept(PointValueTime value) {
+            if (limit == null || values.size() < limit) {
+                values.add(TimestampValue.of(value));
+            }
+        }
+
+        @Override
+        public WidgetDataResult result() {
+            return WidgetDataResult.values(id, xid, values);
+        }
+
+        @Override
+        public Integer getLimit() {
+            return limit;
+        }
+    }
+
+    /**
+     * Statistics over the whole range
+     */
+    class Statistics implements PointValueSink {
+        private final String id;
+        private final String xid;
+        private final ValueAccumulator accumulator = new ValueAccumulator();
+
+        Statistics(String id, String xid) {
+            this.id = id;
+            this.xid = xid;
+        }
+
+        @Override
+        public void accept(PointValueTime value) {
+            accumulator.accept(value);
+        }
+
+        @Override
+        public WidgetDataResult result() {
+            return WidgetDataResult.statistics(id, xid, new WidgetDataResult.Statistics(accumulator));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.data;
+
+import java.util.Arrays;
+
+/**
+ * The numeric values of one point in a time range as parallel primitive arrays, in time order
+ *
+ * @author Matt Fox
+ */
+public class RecentValues {
+
+    private final long[] timestamps;
+    private final double[] values;
+    private final int size;
+    private final boolean buffered;
+
+    RecentValues(long[] timestamps, double[] values, int size, boolean buffered) {
+        this.timestamps = timestamps;
+        this.values = values;
+        this.size = size;
+        this.buffered = buffered;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public double getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return true if the values were read from the buffer, false if they were queried
+     */
+    public boolean isBuffered() {
+        return buffered;
+    }
+
+    /**
+     * Collects queried values, grows like an ArrayList
+     */
+    static final class Builder {
+        private long[] timestamps = new long[64];
+        private double[] values = new double[64];
+        private int size;
+
+        void add(long timestamp, double value) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            timestamps[size] = timestamp;
+            values[size++] = value;
+        }
+
+        RecentValues build() {
+            return new RecentValues(timestamps, values, size, false);
+        }
+    }
+}
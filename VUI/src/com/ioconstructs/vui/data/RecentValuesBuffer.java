@@ -0,0 +1,371 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.data;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.DataTypes;
+import com.serotonin.m2m2.db.dao.PointValueDao;
+import com.serotonin.m2m2.db.dao.PointValueDao.TimeOrder;
+import com.serotonin.m2m2.rt.dataImage.DataPointListener;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+import com.serotonin.m2m2.rt.dataImage.types.NumericValue;
+import com.serotonin.m2m2.vo.DataPointVO;
+
+/**
+ * Keeps the most recently logged values of the points dashboards are watching in fixed size ring buffers, so a live
+ * chart's backfill is served from memory before it switches to the point-value channel.
+ *
+ * <p>A buffer is created when the first gateway stream subscribes to a point and records every value logged from then
+ * on, it is therefore complete from the time it was created. The first backfill which reaches further back is queried
+ * and prepends its values, later backfills over the same range are read from the buffer. Once a buffer is full the
+ * oldest values are overwritten and the complete range moves forward.</p>
+ *
+ * <p>Each buffer holds vui.recentValues.depth values of a numeric point, no buffer is created once the buffers would
+ * exceed vui.recentValues.maxBytes. Buffers of points no stream has watched for vui.recentValues.idleTime ms are
+ * removed, or sooner when the space is needed for a newly watched point.</p>
+ *
+ * @author Matt Fox
+ */
+@Service
+public class RecentValuesBuffer {
+
+    /**
+     * a timestamp and a value per slot
+     */
+    private static final int BYTES_PER_VALUE = Long.BYTES + Double.BYTES;
+
+    private final PointValueDao pointValueDao;
+    private final boolean enabled;
+    private final int depth;
+    private final long maxBuffers;
+    private final long idleTime;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Buffers by data point id, guarded by this
+     */
+    private final Map<Integer, PointBuffer> buffers = new HashMap<>();
+
+    @Autowired
+    public RecentValuesBuffer(PointValueDao pointValueDao, Environment env) {
+        this.pointValueDao = pointValueDao;
+        this.enabled = env.getProperty("vui.recentValues.enabled", Boolean.class, true);
+        this.depth = Math.max(2, env.getProperty("vui.recentValues.depth", Integer.class, 1000));
+        long maxBytes = env.getProperty("vui.recentValues.maxBytes", Long.class, 64L * 1024 * 1024);
+        this.maxBuffers = maxBytes / ((long) depth * BYTES_PER_VALUE);
+        this.idleTime = env.getProperty("vui.recentValues.idleTime", Long.class, 600_000L);
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "VUI recent values");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    private void init() {
+        long period = Math.max(1000, idleTime / 4);
+        executor.scheduleWithFixedDelay(this::removeIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        executor.shutdownNow();
+        synchronized (this) {
+            buffers.values().forEach(PointBuffer::remove);
+            buffers.clear();
+        }
+    }
+
+    /**
+     * Start buffering the values of a point, called when a stream subscribes to it
+     */
+    public void watch(DataPointVO vo) {
+        if (!enabled || !isNumeric(vo)) {
+            return;
+        }
+        PointBuffer added = null;
+        synchronized (this) {
+            PointBuffer buffer = buffers.get(vo.getId());
+            if (buffer != null) {
+                buffer.watchers++;
+                return;
+            }
+            if (buffers.size() >= maxBuffers && !removeLeastRecentlyWatched()) {
+                return;
+            }
+            added = new PointBuffer(vo, depth);
+            added.watchers = 1;
+            buffers.put(vo.getId(), added);
+        }
+        Common.runtimeManager.addDataPointListener(vo.getId(), added);
+        // every value logged from now on is recorded
+        added.started(Common.timer.currentTimeMillis());
+    }
+
+    /**
+     * Called when a stream which watched the point unsubscribes, the buffer is kept until it has been idle for a while
+     */
+    public void unwatch(int dataPointId) {
+        synchronized (this) {
+            PointBuffer buffer = buffers.get(dataPointId);
+            if (buffer != null && buffer.watchers > 0 && --buffer.watchers == 0) {
+                buffer.unwatchedSince = Common.timer.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Get the values of a numeric point in [from, to), read from its buffer if it covers the range. Otherwise they are
+     * queried and, when the range reaches the buffered values, added to the buffer.
+     *
+     * @return the values or null if the point is not numeric, whether or not it is buffered
+     */
+    public RecentValues get(DataPointVO vo, long from, long to) {
+        if (!isNumeric(vo)) {
+            return null;
+        }
+        PointBuffer buffer;
+        synchronized (this) {
+            buffer = buffers.get(vo.getId());
+        }
+        if (buffer != null) {
+            RecentValues values = buffer.read(from, to);
+            if (values != null) {
+                return values;
+            }
+        }
+
+        RecentValues.Builder builder = new RecentValues.Builder();
+        pointValueDao.getPointValuesPerPoint(Collections.singletonList(vo), from, to, null, TimeOrder.ASCENDING, value -> {
+            // values logged before the data type was changed are skipped, as by the buffer's listener
+            if (value.getValue() instanceof NumericValue) {
+                builder.add(value.getTime(), value.getDoubleValue());
+            }
+        });
+
+        RecentValues values = builder.build();
+        if (buffer != null) {
+            buffer.prepend(values, from, to);
+        }
+        return values;
+    }
+
+    /**
+     * @return number of points with a buffer
+     */
+    public synchronized int getBufferedPointCount() {
+        return buffers.size();
+    }
+
+    static boolean isNumeric(DataPointVO vo) {
+        return vo.getPointLocator().getDataTypeId() == DataTypes.NUMERIC;
+    }
+
+    private void removeIdle() {
+        long now = Common.timer.currentTimeMillis();
+        synchronized (this) {
+            for (Iterator<PointBuffer> it = buffers.values().iterator(); it.hasNext();) {
+                PointBuffer buffer = it.next();
+                if (buffer.watchers == 0 && now - buffer.unwatchedSince >= idleTime) {
+                    buffer.remove();
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Called while holding the lock
+     *
+     * @return true if an unwatched buffer was removed
+     */
+    private boolean removeLeastRecentlyWatched() {
+        PointBuffer eldest = null;
+        for (PointBuffer buffer : buffers.values()) {
+            if (buffer.watchers == 0 && (eldest == null || buffer.unwatchedSince < eldest.unwatchedSince)) {
+                eldest = buffer;
+            }
+        }
+        if (eldest != null) {
+            eldest.remove();
+            buffers.remove(eldest.dataPointId);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Ring buffer of the values logged for one point. Values are complete from coveredFrom, a backfill starting at or
+     * after it is read from the buffer.
+     */
+    static final class PointBuffer implements DataPointListener {
+        private final int dataPointId;
+        private final String xid;
+        private final int depth;
+        /**
+         * allocated for the first numeric value
+         */
+        private long[] timestamps;
+        private double[] values;
+        /**
+         * index of the oldest value
+         */
+        private int start;
+        private int size;
+        private long coveredFrom;
+
+        // guarded by the RecentValuesBuffer
+        private int watchers;
+        private long unwatchedSince;
+
+        PointBuffer(DataPointVO vo, int depth) {
+            this.dataPointId = vo.getId();
+            this.xid = vo.getXid();
+            this.depth = depth;
+            this.coveredFrom = Long.MAX_VALUE;
+        }
+
+        synchronized void started(long time) {
+            coveredFrom = time;
+        }
+
+        private void allocate() {
+            if (timestamps == null) {
+                timestamps = new long[depth];
+                values = new double[depth];
+            }
+        }
+
+        private void remove() {
+            Common.runtimeManager.removeDataPointListener(dataPointId, this);
+        }
+
+        synchronized RecentValues read(long from, long to) {
+            if (from < coveredFrom) {
+                return null;
+            }
+            long[] t = new long[size];
+            double[] v = new double[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                int index = (start + i) % depth;
+                long timestamp = timestamps[index];
+                if (timestamp >= to) {
+                    break;
+                }
+                if (timestamp >= from) {
+                    t[count] = timestamp;
+                    v[count++] = values[index];
+                }
+            }
+            return new RecentValues(t, v, count, true);
+        }
+
+        synchronized void append(long timestamp, double value) {
+            allocate();
+            if (size > 0 && timestamp < timestamps[(start + size - 1) % depth]) {
+                backdated(timestamp);
+                return;
+            }
+            if (size == depth) {
+                // the range up to and including the overwritten value is no longer complete
+                coveredFrom = Math.max(coveredFrom, timestamps[start] + 1);
+                start = (start + 1) % depth;
+                size--;
+            }
+            int index = (start + size) % depth;
+            timestamps[index] = timestamp;
+            values[index] = value;
+            size++;
+        }
+
+        /**
+         * Add queried values in front of the buffered values, the query must reach the start of the buffered range
+         */
+        synchronized void prepend(RecentValues queried, long from, long to) {
+            if (from >= coveredFrom || to < coveredFrom) {
+                return;
+            }
+            allocate();
+            // values from coveredFrom were recorded by the listener, a value may have been logged with an earlier time
+            long before = size > 0 ? Math.min(coveredFrom, timestamps[start]) : coveredFrom;
+            int end = 0;
+            while (end < queried.size() && queried.getTimestamp(end) < before) {
+                end++;
+            }
+            int count = Math.min(end, depth - size);
+            if (count == 0 && end > 0) {
+                return;
+            }
+            for (int i = end - 1; i >= end - count; i--) {
+                start = (start - 1 + depth) % depth;
+                timestamps[start] = queried.getTimestamp(i);
+                values[start] = queried.getValue(i);
+                size++;
+            }
+            coveredFrom = count == end ? from : queried.getTimestamp(end - count);
+        }
+
+        synchronized void backdated(long timestamp) {
+            coveredFrom = Math.max(coveredFrom, timestamp + 1);
+        }
+
+        @Override
+        public String getListenerName() {
+            return "VUI recent values " + xid;
+        }
+
+        @Override
+        public void pointLogged(PointValueTime value) {
+            if (value.getValue() instanceof NumericValue) {
+                append(value.getTime(), value.getDoubleValue());
+            }
+        }
+
+        @Override
+        public void pointBackdated(PointValueTime value) {
+            // not inserted, the buffer would no longer be in time order
+            backdated(value.getTime());
+        }
+
+        @Override
+        public void pointInitialized() {
+        }
+
+        @Override
+        public void pointUpdated(PointValueTime newValue) {
+        }
+
+        @Override
+        public void pointChanged(PointValueTime oldValue, PointValueTime newValue) {
+        }
+
+        @Override
+        public void pointSet(PointValueTime oldValue, PointValueTime newValue) {
+        }
+
+        @Override
+        public void pointTerminated(DataPointVO vo) {
+        }
+
+        @Override
+        public void attributeChanged(Map<String, Object> attributes) {
+        }
+    }
+}
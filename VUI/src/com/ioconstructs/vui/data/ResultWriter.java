@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes the results of a {@link DashboardDataBatch} to the response as they complete
+ *
+ * @author Matt Fox
+ */
+public interface ResultWriter extends Closeable {
+
+    void write(WidgetDataResult result) throws IOException;
+
+    /**
+     * Send the results written so far to the client
+     */
+    void flush() throws IOException;
+
+    default void writeAll(List<WidgetDataResult> results) throws IOException {
+        for (WidgetDataResult result : results) {
+            write(result);
+        }
+        flush();
+    }
+
+    /**
+     * Finish the response
+     */
+    @Override
+    void close() throws IOException;
+}
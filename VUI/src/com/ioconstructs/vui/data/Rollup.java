@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.data;
+
+/**
+ * Rollups supported by the dashboard data endpoint. Rollups other than FIRST, LAST and COUNT only apply to numeric
+ * points. Like the Mango point value rollups AVERAGE is time weighted and uses the value before the bucket as its
+ * start value, ARITHMETIC_MEAN is the mean of the values in the bucket.
+ *
+ * @author Matt Fox
+ */
+public enum Rollup {
+    NONE,
+    FIRST,
+    LAST,
+    MINIMUM,
+    MAXIMUM,
+    SUM,
+    COUNT,
+    DELTA,
+    AVERAGE,
+    ARITHMETIC_MEAN;
+
+    /**
+     * @return true if the rollup needs the value before the range to compute the first bucket
+     */
+    public boolean needsStartValue() {
+        return this == AVERAGE;
+    }
+
+    /**
+     * @return the rolled up value of the bucket, null if the bucket has no value for this rollup
+     */
+    public Object apply(ValueAccumulator bucket) {
+        switch (this) {
+            case FIRST:
+                return bucket.getFirst() != null ? bucket.getFirst().getValue().getObjectValue() : null;
+            case LAST:
+                return bucket.getLast() != null ? bucket.getLast().getValue().getObjectValue() : null;
+            case MINIMUM:
+                return bucket.getMinimum() != null ? bucket.getMinimum().getDoubleValue() : null;
+            case MAXIMUM:
+                return bucket.getMaximum() != null ? bucket.getMaximum().getDoubleValue() : null;
+            case SUM:
+                return bucket.getNumericCount() > 0 ? bucket.getSum() : null;
+            case COUNT:
+                return bucket.getCount();
+            case DELTA:
+                return bucket.getDelta();
+            case AVERAGE:
+                return bucket.getAverage();
+            case ARITHMETIC_MEAN:
+                return bucket.getArithmeticMean();
+            default:
+                return null;
+        }
+    }
+}
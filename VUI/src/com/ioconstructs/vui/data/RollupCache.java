@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.data;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ioconstructs.vui.data.WidgetDataResult.TimestampValue;
+import com.serotonin.m2m2.db.dao.PointValueDao;
+import com.serotonin.m2m2.db.dao.pointvalue.AggregateDao;
+import com.serotonin.m2m2.db.dao.pointvalue.BoundaryAggregateDao;
+
+/**
+ * Caches rolled up bucket values of closed periods so repeated dashboard views do not scan the values again. Only
+ * buckets which end before the query boundary of a {@link BoundaryAggregateDao} are cached, the values before it are
+ * pre-aggregated and no longer change. Other point value stores can backdate, import, purge or delete values at any
+ * time without notice, so the cache is disabled for them.
+ *
+ * <p>Buckets are keyed by series, rollup, time period, time zone and bucket start, so any request whose buckets are
+ * aligned the same way (e.g. hourly buckets starting on the hour) shares them. Entries are evicted once the estimated
+ * size exceeds vui.data.rollupCache.maxBytes.</p>
+ *
+ * @author Matt Fox
+ */
+@Component
+public class RollupCache {
+
+    /**
+     * rough size of a key, its entry in the map and a boxed numeric value
+     */
+    private static final int ENTRY_BYTES = 160;
+
+    /**
+     * Stored in place of a bucket without a value, the cache does not hold nulls
+     */
+    private static final Object NO_VALUE = new Object();
+
+    private final PointValueDao pointValueDao;
+    private final boolean enabled;
+    private final long maxBytes;
+    private final Cache<Key, Object> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Autowired
+    public RollupCache(PointValueDao pointValueDao, Environment env) {
+        this.pointValueDao = pointValueDao;
+        this.enabled = env.getProperty("vui.data.rollupCache.enabled", Boolean.class, true);
+        this.maxBytes = env.getProperty("vui.data.rollupCache.maxBytes", Long.class, 32L * 1024 * 1024);
+        this.entries = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, Object value) -> size(value))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @return true if the cache is enabled and the point value store has a query boundary
+     */
+    public boolean isEnabled() {
+        return enabled && pointValueDao.getAggregateDao() instanceof BoundaryAggregateDao;
+    }
+
+    /**
+     * @return epoch ms before which buckets may be cached, Long.MIN_VALUE if the point value store has no boundary
+     */
+    public long getBoundary() {
+        AggregateDao aggregateDao = pointValueDao.getAggregateDao();
+        if (aggregateDao instanceof BoundaryAggregateDao) {
+            return ((BoundaryAggregateDao) aggregateDao).fromBoundary(ChronoUnit.MILLIS);
+        }
+        return Long.MIN_VALUE;
+    }
+
+    /**
+     * Get the cached buckets at the start of the range, stops at the first bucket which is not cached or not
+     * complete within the range
+     *
+     * @return the cached bucket values and the start of the first bucket which must be computed
+     */
+    Prefix prefix(Series series, long from, long to, ZoneId zone, long boundary) {
+        List<TimestampValue> values = new ArrayList<>();
+        ZonedDateTime start = ZonedDateTime.ofInstant(Instant.ofEpochMilli(from), zone);
+        for (;;) {
+            long bucketStart = start.toInstant().toEpochMilli();
+            ZonedDateTime next = series.next(start);
+            long bucketEnd = next.toInstant().toEpochMilli();
+            if (bucketEnd > to || bucketEnd > boundary) {
+                break;
+            }
+            Object value = entries.getIfPresent(new Key(series, bucketStart));
+            if (value == null) {
+                misses.increment();
+                break;
+            }
+            hits.increment();
+            values.add(new TimestampValue(bucketStart, value == NO_VALUE ? null : value));
+            start = next;
+        }
+        return new Prefix(values, start.toInstant().toEpochMilli());
+    }
+
+    /**
+     * Store a computed bucket if it ends before the boundary, buckets cut short by the end of the range are not stored
+     */
+    void put(Series series, long bucketStart, long bucketEnd, long to, Object value, long boundary) {
+        if (bucketEnd > to || bucketEnd > boundary) {
+            return;
+        }
+        entries.put(new Key(series, bucketStart), value == null ? NO_VALUE : value);
+    }
+
+    public void clear() {
+        entries.invalidateAll();
+    }
+
+    public RollupCacheMetrics getMetrics() {
+        long currentBytes = entries.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+        return new RollupCacheMetrics(hits.sum(), misses.sum(), entries.stats().evictionCount(),
+                (int) entries.estimatedSize(), currentBytes, maxBytes, getBoundary());
+    }
+
+    private static int size(Object value) {
+        return value instanceof String ? ENTRY_BYTES + 2 * ((String) value).length() : ENTRY_BYTES;
+    }
+
+    /**
+     * Identifies the rolled up series of one point
+     */
+    static final class Series {
+        private final int seriesId;
+        private final Rollup rollup;
+        private final int periods;
+        private final TimePeriodType type;
+        private final ZoneId zone;
+        private final int hash;
+
+        Series(int seriesId, Rollup rollup, WidgetDataRequest.TimePeriod period, ZoneId zone) {
+            this.seriesId = seriesId;
+            this.rollup = rollup;
+            this.periods = period.getPeriods();
+            this.type = period.getType();
+            this.zone = zone;
+            this.hash = Objects.hash(seriesId, rollup, periods, type, zone);
+        }
+
+        private ZonedDateTime next(ZonedDateTime start) {
+            return start.plus(periods, type.getUnit());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Series series = (Series) o;
+            return seriesId == series.seriesId && periods == series.periods && rollup == series.rollup &&
+                    type == series.type && zone.equals(series.zone);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    static final class Prefix {
+        private final List<TimestampValue> values;
+        private final long end;
+
+        private Prefix(List<TimestampValue> values, long end) {
+            this.values = values;
+            this.end = end;
+        }
+
+        List<TimestampValue> getValues() {
+            return values;
+        }
+
+        /**
+         * @return start of the first bucket which is not cached
+         */
+        long getEnd() {
+            return end;
+        }
+    }
+
+    private static final class Key {
+        private final Series series;
+        private final long bucketStart;
+
+        private Key(Series series, long bucketStart) {
+            this.series = series;
+            this.bucketStart = bucketStart;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return bucketStart == key.bucketStart && series.equals(key.series);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * series.hash + Long.hashCode(bucketStart);
+        }
+    }
+}
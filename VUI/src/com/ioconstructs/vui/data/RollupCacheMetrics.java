@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.data;
+
+/**
+ * Hit, miss and size counters of the {@link RollupCache}, hits and misses count buckets
+ *
+ * @author Matt Fox
+ */
+public class RollupCacheMetrics {
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int entries;
+    private final long bytes;
+    private final long maxBytes;
+    private final long boundary;
+
+    RollupCacheMetrics(long hits, long misses, long evictions, int entries, long bytes, long maxBytes, long boundary) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.entries = entries;
+        this.bytes = bytes;
+        this.maxBytes = maxBytes;
+        this.boundary = boundary;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public int getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return estimated size of the cached buckets
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return epoch ms before which buckets are cached
+     */
+    public long getBoundary() {
+        return boundary;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.data;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ioconstructs.vui.data.WidgetDataResult.TimestampValue;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+
+/**
+ * Rolls the values of a point up into time period buckets aligned to the start of the range, one value is returned
+ * per bucket including empty buckets (null value, or 0 for COUNT). The last numeric value of a bucket is the start value
+ * of the next one.
+ *
+ * @author Matt Fox
+ */
+class RollupSink implements PointValueSink {
+
+    private final String id;
+    private final String xid;
+    private final Rollup rollup;
+    private final WidgetDataRequest.TimePeriod period;
+    private final long to;
+    private final List<TimestampValue> values;
+    private final BucketListener listener;
+
+    private ZonedDateTime bucketStart;
+    private long bucketEnd;
+    private ValueAccumulator bucket;
+
+    RollupSink(String id, String xid, Rollup rollup, WidgetDataRequest.TimePeriod period, long from, long to, ZoneId zone) {
+        this(id, xid, rollup, period, from, to, zone, new ArrayList<>(), null);
+    }
+
+    /**
+     * @param from start of the first bucket to compute, aligned to the buckets of the cached values
+     * @param cached bucket values preceding from, e.g. from the {@link RollupCache}
+     * @param listener notified of each computed bucket, may be null
+     */
+    RollupSink(String id, String xid, Rollup rollup, WidgetDataRequest.TimePeriod period, long from, long to, ZoneId zone,
+               List<TimestampValue> cached, BucketListener listener) {
+        this.id = id;
+        this.xid = xid;
+        this.rollup = rollup;
+        this.period = period;
+        this.to = to;
+        this.values = new ArrayList<>(cached);
+        this.listener = listener;
+        this.bucketStart = ZonedDateTime.ofInstant(Instant.ofEpochMilli(from), zone);
+        this.bucketEnd = next(bucketStart).toInstant().toEpochMilli();
+        this.bucket = accumulator(null);
+    }
+
+    /**
+     * @return estimated number of buckets in the range, months and years are estimated
+     */
+    static long estimateBuckets(WidgetDataRequest.TimePeriod period, long from, long to) {
+        long bucketSize = period.getType().getUnit().getDuration().toMillis() * period.getPeriods();
+        return (to - from + bucketSize - 1) / bucketSize;
+    }
+
+    @Override
+    public boolean needsStartValue() {
+        return rollup.needsStartValue();
+    }
+
+    @Override
+    public void startValue(PointValueTime value) {
+        bucket = accumulator(value);
+    }
+
+    @Override
+    public void accept(PointValueTime value) {
+        while (value.getTime() >= bucketEnd) {
+            nextBucket();
+        }
+        bucket.accept(value);
+    }
+
+    @Override
+    public WidgetDataResult result() {
+        while (bucketStart.toInstant().toEpochMilli() < to) {
+            nextBucket();
+        }
+        return WidgetDataResult.values(id, xid, values);
+    }
+
+    private void nextBucket() {
+        long start = bucketStart.toInstant().toEpochMilli();
+        Object value = rollup.apply(bucket);
+        values.add(new TimestampValue(start, value));
+        if (listener != null) {
+            listener.bucket(start, bucketEnd, value);
+        }
+        PointValueTime lastNumeric = bucket.getLastNumeric();
+        bucketStart = next(bucketStart);
+        bucketEnd = next(bucketStart).toInstant().toEpochMilli();
+        bucket = accumulator(lastNumeric);
+    }
+
+    /**
+     * The last bucket is cut off at the end of the range
+     */
+    private ValueAccumulator accumulator(PointValueTime startValue) {
+        return new ValueAccumulator(bucketStart.toInstant().toEpochMilli(), Math.min(bucketEnd, to), startValue);
+    }
+
+    private ZonedDateTime next(ZonedDateTime start) {
+        return start.plus(period.getPeriods(), period.getType().getUnit());
+    }
+
+    @FunctionalInterface
+    interface BucketListener {
+        void bucket(long start, long end, Object value);
+    }
+}
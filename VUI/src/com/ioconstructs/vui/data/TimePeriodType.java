@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.data;
+
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Rollup bucket units, the names match Mango's time period types
+ *
+ * @author Matt Fox
+ */
+public enum TimePeriodType {
+    MILLISECONDS(ChronoUnit.MILLIS),
+    SECONDS(ChronoUnit.SECONDS),
+    MINUTES(ChronoUnit.MINUTES),
+    HOURS(ChronoUnit.HOURS),
+    DAYS(ChronoUnit.DAYS),
+    WEEKS(ChronoUnit.WEEKS),
+    MONTHS(ChronoUnit.MONTHS),
+    YEARS(ChronoUnit.YEARS);
+
+    private final ChronoUnit unit;
+
+    TimePeriodType(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    public ChronoUnit getUnit() {
+        return unit;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.data;
+
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+import com.serotonin.m2m2.rt.dataImage.types.NumericValue;
+
+/**
+ * Single pass statistics over point values in time order, used for the rollup buckets and the STATISTICS request.
+ * Accumulators for a time period also compute the time weighted average, each numeric value is weighted by the time
+ * until the next value (or the end of the period). The value before the period (start value) covers the time from the
+ * start of the period to the first value, without a start value that time is not counted.
+ *
+ * @author Matt Fox
+ */
+public class ValueAccumulator {
+
+    private final boolean timeWeighted;
+    private final long periodStart;
+    private final long periodEnd;
+
+    private long count;
+    private long numericCount;
+    private double sum;
+    private PointValueTime first;
+    private PointValueTime last;
+    private PointValueTime firstNumeric;
+    private PointValueTime lastNumeric;
+    private PointValueTime minimum;
+    private PointValueTime maximum;
+    /**
+     * Last numeric value accepted, or the start value
+     */
+    private PointValueTime previousNumeric;
+    private double integral;
+    private long duration;
+
+    public ValueAccumulator() {
+        this.timeWeighted = false;
+        this.periodStart = 0;
+        this.periodEnd = 0;
+    }
+
+    /**
+     * @param periodStart start of the period (inclusive)
+     * @param periodEnd end of the period (exclusive)
+     * @param startValue the last value before the period, may be null
+     */
+    public ValueAccumulator(long periodStart, long periodEnd, PointValueTime startValue) {
+        this.timeWeighted = true;
+        this.periodStart = periodStart;
+        this.periodEnd = periodEnd;
+        if (startValue != null && startValue.getValue() instanceof NumericValue) {
+            this.previousNumeric = startValue;
+        }
+    }
+
+    public void accept(PointValueTime value) {
+        count++;
+        if (first == null) {
+            first = value;
+        }
+        last = value;
+
+        if (value.getValue() instanceof NumericValue) {
+            double d = value.getDoubleValue();
+            numericCount++;
+            sum += d;
+            if (firstNumeric == null) {
+                firstNumeric = value;
+            }
+            lastNumeric = value;
+            if (minimum == null || d < minimum.getDoubleValue()) {
+                minimum = value;
+            }
+            if (maximum == null || d > maximum.getDoubleValue()) {
+                maximum = value;
+            }
+            if (timeWeighted && previousNumeric != null) {
+                long weight = value.getTime() - Math.max(previousNumeric.getTime(), periodStart);
+                if (weight > 0) {
+                    integral += previousNumeric.getDoubleValue() * weight;
+                    duration += weight;
+                }
+            }
+            previousNumeric = value;
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getNumericCount() {
+        return numericCount;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public PointValueTime getFirst() {
+        return first;
+    }
+
+    public PointValueTime getLast() {
+        return last;
+    }
+
+    public PointValueTime getMinimum() {
+        return minimum;
+    }
+
+    public PointValueTime getMaximum() {
+        return maximum;
+    }
+
+    /**
+     * @return mean of the numeric values, null if there are none
+     */
+    public Double getArithmeticMean() {
+        return numericCount > 0 ? sum / numericCount : null;
+    }
+
+    /**
+     * @return the last numeric value, or the start value if there were none, may be null
+     */
+    public PointValueTime getLastNumeric() {
+        return previousNumeric;
+    }
+
+    /**
+     * @return time weighted average of the numeric values over the period, null if no value covers any of the period
+     * or the accumulator was not created for a period
+     */
+    public Double getAverage() {
+        if (!timeWeighted || previousNumeric == null) {
+            return null;
+        }
+        double total = integral;
+        long totalDuration = duration;
+        long weight = periodEnd - Math.max(previousNumeric.getTime(), periodStart);
+        if (weight > 0) {
+            total += previousNumeric.getDoubleValue() * weight;
+            totalDuration += weight;
+        }
+        return totalDuration > 0 ? total / totalDuration : null;
+    }
+
+    /**
+     * @return difference between the last and first numeric value, null if there are none
+     */
+    public Double getDelta() {
+        return numericCount > 0 ? lastNumeric.getDoubleValue() - firstNumeric.getDoubleValue() : null;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.data;
+
+import java.util.List;
+
+/**
+ * The data one dashboard widget needs, part of a batch sent to /vui-dashboard/data
+ *
+ * <ul>
+ *     <li>LATEST returns the latest {@link #limit} values of each point</li>
+ *     <li>TIME_PERIOD returns the values between {@link #from} and {@link #to}, rolled up into {@link #timePeriod}
+ *     buckets if a {@link #rollup} is set or downsampled to about {@link #targetPoints} values if a
+ *     {@link #downsample} method is set</li>
+ *     <li>STATISTICS returns count, first, last, minimum, maximum, sum and mean between from and to</li>
+ * </ul>
+ *
+ * @author Matt Fox
+ */
+public class WidgetDataRequest {
+
+    public enum Type {
+        LATEST, TIME_PERIOD, STATISTICS
+    }
+
+    private String id;
+    private Type type;
+    private List<String> xids;
+    private Long from;
+    private Long to;
+    private Integer limit;
+    private Rollup rollup;
+    private TimePeriod timePeriod;
+    private String timezone;
+    private Downsample downsample;
+    private Integer targetPoints;
+
+    /**
+     * @return identifier chosen by the client, copied to each result so it can be routed to the widget
+     */
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public List<String> getXids() {
+        return xids;
+    }
+
+    public void setXids(List<String> xids) {
+        this.xids = xids;
+    }
+
+    /**
+     * @return start of the time range in epoch ms (inclusive)
+     */
+    public Long getFrom() {
+        return from;
+    }
+
+    public void setFrom(Long from) {
+        this.from = from;
+    }
+
+    /**
+     * @return end of the time range in epoch ms (exclusive)
+     */
+    public Long getTo() {
+        return to;
+    }
+
+    public void setTo(Long to) {
+        this.to = to;
+    }
+
+    /**
+     * @return number of values per point for LATEST (default 1) and raw TIME_PERIOD requests (default and maximum
+     * vui.data.maxValues)
+     */
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+
+    public Rollup getRollup() {
+        return rollup;
+    }
+
+    public void setRollup(Rollup rollup) {
+        this.rollup = rollup;
+    }
+
+    public TimePeriod getTimePeriod() {
+        return timePeriod;
+    }
+
+    public void setTimePeriod(TimePeriod timePeriod) {
+        this.timePeriod = timePeriod;
+    }
+
+    /**
+     * @return time zone used to align the rollup buckets, defaults to the server time zone
+     */
+    public String getTimezone() {
+        return timezone;
+    }
+
+    public void setTimezone(String timezone) {
+        this.timezone = timezone;
+    }
+
+    public Downsample getDownsample() {
+        return downsample;
+    }
+
+    public void setDownsample(Downsample downsample) {
+        this.downsample = downsample;
+    }
+
+    /**
+     * @return number of values a downsampled series should have, usually the width of the chart in pixels
+     */
+    public Integer getTargetPoints() {
+        return targetPoints;
+    }
+
+    public void setTargetPoints(Integer targetPoints) {
+        this.targetPoints = targetPoints;
+    }
+
+    /**
+     * Rollup bucket size, same shape as the timePeriod of the point value endpoints
+     */
+    public static class TimePeriod {
+        private int periods = 1;
+        private TimePeriodType type = TimePeriodType.DAYS;
+
+        public int getPeriods() {
+            return periods;
+        }
+
+        public void setPeriods(int periods) {
+            this.periods = periods;
+        }
+
+        public TimePeriodType getType() {
+            return type;
+        }
+
+        public void setType(TimePeriodType type) {
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.data;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+
+/**
+ * The data for one point of a {@link WidgetDataRequest}, exactly one of values, statistics or error is set
+ *
+ * @author Matt Fox
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WidgetDataResult {
+
+    private final String id;
+    private final String xid;
+    private final List<TimestampValue> values;
+    private final Statistics statistics;
+    private final String error;
+
+    private WidgetDataResult(String id, String xid, List<TimestampValue> values, Statistics statistics, String error) {
+        this.id = id;
+        this.xid = xid;
+        this.values = values;
+        this.statistics = statistics;
+        this.error = error;
+    }
+
+    public static WidgetDataResult values(String id, String xid, List<TimestampValue> values) {
+        return new WidgetDataResult(id, xid, values, null, null);
+    }
+
+    public static WidgetDataResult statistics(String id, String xid, Statistics statistics) {
+        return new WidgetDataResult(id, xid, null, statistics, null);
+    }
+
+    public static WidgetDataResult error(String id, String xid, String error) {
+        return new WidgetDataResult(id, xid, null, null, error);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getXid() {
+        return xid;
+    }
+
+    public List<TimestampValue> getValues() {
+        return values;
+    }
+
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public static final class TimestampValue {
+        private final long timestamp;
+        private final Object value;
+
+        public TimestampValue(long timestamp, Object value) {
+            this.timestamp = timestamp;
+            this.value = value;
+        }
+
+        static TimestampValue of(PointValueTime value) {
+            return value != null ? new TimestampValue(value.getTime(), value.getValue().getObjectValue()) : null;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static final class Statistics {
+        private final long count;
+        private final TimestampValue first;
+        private final TimestampValue last;
+        private final TimestampValue minimum;
+        private final TimestampValue maximum;
+        private final Double sum;
+        private final Double arithmeticMean;
+
+        Statistics(ValueAccumulator accumulator) {
+            this.count = accumulator.getCount();
+            this.first = TimestampValue.of(accumulator.getFirst());
+            this.last = TimestampValue.of(accumulator.getLast());
+            this.minimum = TimestampValue.of(accumulator.getMinimum());
+            this.maximum = TimestampValue.of(accumulator.getMaximum());
+            this.sum = accumulator.getNumericCount() > 0 ? accumulator.getSum() : null;
+            this.arithmeticMean = accumulator.getArithmeticMean();
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public TimestampValue getFirst() {
+            return first;
+        }
+
+        public TimestampValue getLast() {
+            return last;
+        }
+
+        public TimestampValue getMinimum() {
+            return minimum;
+        }
+
+        public TimestampValue getMaximum() {
+            return maximum;
+        }
+
+        public Double getSum() {
+            return sum;
+        }
+
+        public Double getArithmeticMean() {
+            return arithmeticMean;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.events;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.serotonin.m2m2.rt.event.AlarmLevels;
+import com.serotonin.m2m2.vo.permission.PermissionHolder;
+
+/**
+ * Active and unacknowledged event counts per alarm level and per data point, as visible to one set of roles
+ *
+ * @author Matt Fox
+ */
+public class EventCounts {
+
+    private final PermissionHolder user;
+    private final Map<AlarmLevels, Counter> levels = new EnumMap<>(AlarmLevels.class);
+    private final Map<String, Counter> points = new HashMap<>();
+    private long revision;
+
+    /**
+     * @param user the first user with this set of roles, used for the permission checks
+     */
+    EventCounts(PermissionHolder user) {
+        this.user = user;
+        for (AlarmLevels level : AlarmLevels.values()) {
+            levels.put(level, new Counter());
+        }
+    }
+
+    void apply(EventCountsDelta delta) {
+        levels.get(delta.getLevel()).add(delta.getActive(), delta.getUnacknowledged());
+        if (delta.getXid() != null) {
+            Counter counter = points.computeIfAbsent(delta.getXid(), k -> new Counter());
+            counter.add(delta.getActive(), delta.getUnacknowledged());
+            if (counter.active == 0 && counter.unacknowledged == 0) {
+                points.remove(delta.getXid());
+            }
+        }
+    }
+
+    EventCounts copy(long revision) {
+        EventCounts copy = new EventCounts(user);
+        copy.revision = revision;
+        levels.forEach((level, counter) -> copy.levels.get(level).add(counter.active, counter.unacknowledged));
+        points.forEach((xid, counter) -> copy.points.put(xid, new Counter().add(counter.active, counter.unacknowledged)));
+        return copy;
+    }
+
+    PermissionHolder getUser() {
+        return user;
+    }
+
+    public Map<AlarmLevels, Counter> getLevels() {
+        return levels;
+    }
+
+    /**
+     * @return revision of the last change included in the counts, deltas up to this revision must not be applied
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    /**
+     * @return counts keyed by data point XID, points without active or unacknowledged events are omitted
+     */
+    public Map<String, Counter> getPoints() {
+        return points;
+    }
+
+    public static class Counter {
+        private int active;
+        private int unacknowledged;
+
+        Counter add(int active, int unacknowledged) {
+            this.active += active;
+            this.unacknowledged += unacknowledged;
+            return this;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getUnacknowledged() {
+            return unacknowledged;
+        }
+    }
+}
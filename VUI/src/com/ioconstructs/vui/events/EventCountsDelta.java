@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.events;
+
+import com.serotonin.m2m2.rt.event.AlarmLevels;
+import com.serotonin.m2m2.rt.event.type.EventType;
+
+/**
+ * Change of the event counters caused by one event being raised, returning to normal or being acknowledged
+ *
+ * @author Matt Fox
+ */
+public class EventCountsDelta {
+
+    private final int eventId;
+    private final EventType eventType;
+    private final AlarmLevels level;
+    private final String xid;
+    private final int active;
+    private final int unacknowledged;
+    private final long revision;
+
+    EventCountsDelta(int eventId, EventType eventType, AlarmLevels level, String xid, int active, int unacknowledged,
+                     long revision) {
+        this.eventId = eventId;
+        this.eventType = eventType;
+        this.level = level;
+        this.xid = xid;
+        this.active = active;
+        this.unacknowledged = unacknowledged;
+        this.revision = revision;
+    }
+
+    public int getEventId() {
+        return eventId;
+    }
+
+    /**
+     * @return the event type, not serialized, used to check the read permission
+     */
+    EventType getEventType() {
+        return eventType;
+    }
+
+    public AlarmLevels getLevel() {
+        return level;
+    }
+
+    /**
+     * @return XID of the data point the event is for, null for other event types
+     */
+    public String getXid() {
+        return xid;
+    }
+
+    /**
+     * @return change of the active count, -1, 0 or 1
+     */
+    public int getActive() {
+        return active;
+    }
+
+    /**
+     * @return change of the unacknowledged count, -1, 0 or 1
+     */
+    public int getUnacknowledged() {
+        return unacknowledged;
+    }
+
+    /**
+     * @return revision of the change, counts with this or a later revision already include it
+     */
+    public long getRevision() {
+        return revision;
+    }
+}
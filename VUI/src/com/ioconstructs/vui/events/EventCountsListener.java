@@ -0,0 +1,25 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.events;
+
+/**
+ * Receives the changes of the {@link EventCountsService} counters
+ *
+ * @author Matt Fox
+ */
+public interface EventCountsListener {
+
+    /**
+     * Called after an event was raised, returned to normal or acknowledged. The listener must check if the receiving
+     * user may read the event with {@link EventCountsService#hasPermission(com.serotonin.m2m2.vo.permission.PermissionHolder, EventCountsDelta)}.
+     */
+    void changed(EventCountsDelta delta);
+
+    /**
+     * Called after the counters were rebuilt from the database or a permission changed, the deltas sent so far may
+     * not add up any more
+     */
+    default void reset() {
+    }
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.events;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import com.infiniteautomation.mango.spring.events.DaoEvent;
+import com.infiniteautomation.mango.spring.events.DaoEventType;
+import com.infiniteautomation.mango.spring.service.EventInstanceService;
+import com.infiniteautomation.mango.spring.service.PermissionService;
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.db.dao.DataPointDao;
+import com.serotonin.m2m2.rt.event.AlarmLevels;
+import com.serotonin.m2m2.rt.event.EventInstance;
+import com.serotonin.m2m2.rt.event.UserEventListener;
+import com.serotonin.m2m2.rt.event.type.EventType;
+import com.serotonin.m2m2.vo.DataPointVO;
+import com.serotonin.m2m2.vo.event.EventInstanceVO;
+import com.serotonin.m2m2.vo.permission.PermissionHolder;
+import com.serotonin.m2m2.vo.role.Role;
+import com.serotonin.m2m2.vo.role.RoleVO;
+
+import net.jazdw.rql.parser.ASTNode;
+
+/**
+ * Keeps active and unacknowledged event counters per alarm level and per data point in memory, so the header badge
+ * and alarm views do not each query the event table.
+ *
+ * <p>The counters are loaded from the active events and the unacknowledged events in the database, then updated from
+ * the event manager's raise, return to normal, deactivate and acknowledge callbacks. They are rebuilt every
+ * vui.events.resyncPeriod minutes to pick up events removed by the purge.</p>
+ *
+ * <p>Event read permission depends on the user's roles, the counts are kept for each set of roles which requested
+ * them and updated incrementally. They are discarded when a role or a data point's read permission changes and
+ * rebuilt from the events when next requested. Events with the DO_NOT_LOG level are not counted as they have no id.</p>
+ *
+ * <p>Each change has a revision, the counts carry the revision of the last change they include so that a client
+ * receiving both can ignore the deltas which are already counted.</p>
+ *
+ * @author Matt Fox
+ */
+@Service
+public class EventCountsService implements UserEventListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EventCountsService.class);
+
+    private final EventInstanceService eventInstanceService;
+    private final PermissionService permissionService;
+    private final DataPointDao dataPointDao;
+    private final long resyncPeriod;
+    private final ScheduledExecutorService executor;
+    private final CopyOnWriteArrayList<EventCountsListener> listeners = new CopyOnWriteArrayList<>();
+    /**
+     * XIDs of the data points with events, resolved outside the lock
+     */
+    private final Map<Integer, String> xids = new ConcurrentHashMap<>();
+
+    /**
+     * Active or unacknowledged events by id, guarded by this
+     */
+    private Map<Integer, Entry> entries = new HashMap<>();
+    private final Map<Set<Role>, EventCounts> countsByRoles = new HashMap<>();
+    /**
+     * The latest state of the events changed by the callbacks while the counters are being loaded, null when not
+     * loading. Guarded by this.
+     */
+    private Map<Integer, Entry> changedWhileLoading;
+    /**
+     * Revision of the last change, guarded by this
+     */
+    private long revision;
+
+    @Autowired
+    public EventCountsService(EventInstanceService eventInstanceService, PermissionService permissionService,
+                              DataPointDao dataPointDao, Environment env) {
+        this.eventInstanceService = eventInstanceService;
+        this.permissionService = permissionService;
+        this.dataPointDao = dataPointDao;
+        this.resyncPeriod = env.getProperty("vui.events.resyncPeriod", Long.class, 60L);
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "VUI event counts");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    private void init() {
+        // listen before loading so no event is missed, changes made while loading are applied on top of the loaded events
+        Common.eventManager.addUserEventListener(this);
+        executor.scheduleWithFixedDelay(this::load, 0, resyncPeriod, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        Common.eventManager.removeUserEventListener(this);
+        executor.shutdownNow();
+    }
+
+    public void addListener(EventCountsListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(EventCountsListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return the counts of the events the user may read
+     */
+    public EventCounts getCounts(PermissionHolder user) {
+        synchronized (this) {
+            return countsFor(user).copy(revision);
+        }
+    }
+
+    /**
+     * @return true if the user may read the event the delta is for
+     */
+    public boolean hasPermission(PermissionHolder user, EventCountsDelta delta) {
+        return delta.getEventType().hasPermission(user, permissionService);
+    }
+
+    @Override
+    public PermissionHolder getUser() {
+        return PermissionHolder.SYSTEM_SUPERADMIN;
+    }
+
+    @Override
+    public void raised(EventInstance evt) {
+        if (evt.getAlarmLevel() == AlarmLevels.DO_NOT_LOG) {
+            return;
+        }
+        String xid = xid(evt.getEventType());
+        EventCountsDelta delta;
+        synchronized (this) {
+            if (entries.containsKey(evt.getId())) {
+                return;
+            }
+            Entry entry = entry(evt, xid, evt.isActive(), !evt.isAcknowledged());
+            if (changedWhileLoading != null) {
+                changedWhileLoading.put(entry.id, entry);
+            }
+            if (!entry.active && !entry.unacknowledged) {
+                return;
+            }
+            entries.put(entry.id, entry);
+            delta = entry.delta(entry.active ? 1 : 0, entry.unacknowledged ? 1 : 0, ++revision);
+            apply(entry, delta);
+        }
+        notifyListeners(delta);
+    }
+
+    @Override
+    public void returnToNormal(EventInstance evt) {
+        inactive(evt);
+    }
+
+    @Override
+    public void deactivated(EventInstance evt) {
+        inactive(evt);
+    }
+
+    @Override
+    public void acknowledged(EventInstance evt) {
+        String xid = xid(evt.getEventType());
+        EventCountsDelta delta;
+        synchronized (this) {
+            Entry entry = entries.get(evt.getId());
+            if (changedWhileLoading != null && evt.getAlarmLevel() != AlarmLevels.DO_NOT_LOG) {
+                changedWhileLoading.put(evt.getId(), entry != null ? entry.with(entry.active, false) :
+                        entry(evt, xid, evt.isActive(), false));
+            }
+            if (entry == null || !entry.unacknowledged) {
+                return;
+            }
+            entry.unacknowledged = false;
+            delta = entry.delta(0, -1, ++revision);
+            apply(entry, delta);
+        }
+        notifyListeners(delta);
+    }
+
+    private void inactive(EventInstance evt) {
+        String xid = xid(evt.getEventType());
+        EventCountsDelta delta;
+        synchronized (this) {
+            Entry entry = entries.get(evt.getId());
+            if (changedWhileLoading != null && evt.getAlarmLevel() != AlarmLevels.DO_NOT_LOG) {
+                changedWhileLoading.put(evt.getId(), entry != null ? entry.with(false, entry.unacknowledged) :
+                        entry(evt, xid, false, !evt.isAcknowledged()));
+            }
+            if (entry == null || !entry.active) {
+                return;
+            }
+            entry.active = false;
+            delta = entry.delta(-1, 0, ++revision);
+            apply(entry, delta);
+        }
+        notifyListeners(delta);
+    }
+
+    /**
+     * Updates the counts of every role set which may read the event and removes events which are neither active nor
+     * unacknowledged, called while holding the lock
+     */
+    private void apply(Entry entry, EventCountsDelta delta) {
+        for (EventCounts counts : countsByRoles.values()) {
+            if (entry.isVisibleTo(counts)) {
+                counts.apply(delta);
+            }
+        }
+        if (!entry.active && !entry.unacknowledged) {
+            entries.remove(entry.id);
+        }
+    }
+
+    private EventCounts countsFor(PermissionHolder user) {
+        Set<Role> roles = user.getAllInheritedRoles();
+        EventCounts counts = countsByRoles.get(roles);
+        if (counts == null) {
+            counts = new EventCounts(user);
+            for (Entry entry : entries.values()) {
+                if (entry.isVisibleTo(counts)) {
+                    counts.apply(entry.delta(entry.active ? 1 : 0, entry.unacknowledged ? 1 : 0, revision));
+                }
+            }
+            countsByRoles.put(roles, counts);
+        }
+        return counts;
+    }
+
+    /**
+     * Rebuilds the counters from the event manager's active events and the unacknowledged events in the database. The
+     * callbacks keep running during the load, the events they changed replace the loaded state of those events.
+     */
+    private void load() {
+        synchronized (this) {
+            changedWhileLoading = new HashMap<>();
+        }
+        try {
+            Map<Integer, Entry> loaded = new HashMap<>();
+            for (EventInstance evt : Common.eventManager.getAllActive()) {
+                if (evt.getAlarmLevel() != AlarmLevels.DO_NOT_LOG) {
+                    loaded.put(evt.getId(), new Entry(evt.getId(), evt.getAlarmLevel(), evt.getEventType(),
+                            xid(evt.getEventType()), true, !evt.isAcknowledged()));
+                }
+            }
+            permissionService.runAsSystemAdmin(() -> eventInstanceService.customizedQuery(
+                    new ASTNode("eq", "acknowledged", false), (EventInstanceVO vo) -> {
+                        Entry entry = loaded.get(vo.getId());
+                        if (entry != null) {
+                            entry.unacknowledged = true;
+                        } else {
+                            loaded.put(vo.getId(), new Entry(vo.getId(), vo.getAlarmLevel(), vo.getEventType(),
+                                    xid(vo.getEventType()), vo.isActive(), true));
+                        }
+                    }));
+
+            synchronized (this) {
+                for (Entry changed : changedWhileLoading.values()) {
+                    Entry entry = loaded.get(changed.id);
+                    if (!changed.active && !changed.unacknowledged) {
+                        loaded.remove(changed.id);
+                    } else if (entry != null) {
+                        entry.active = changed.active;
+                        entry.unacknowledged = changed.unacknowledged;
+                    } else {
+                        loaded.put(changed.id, changed);
+                    }
+                }
+                this.entries = loaded;
+                countsByRoles.clear();
+            }
+            resetListeners();
+        } catch (Exception e) {
+            LOG.error("Failed to load the event counts", e);
+        } finally {
+            synchronized (this) {
+                changedWhileLoading = null;
+            }
+        }
+    }
+
+    @EventListener
+    protected void dataPointChanged(DaoEvent<? extends DataPointVO, ?> event) {
+        if (event.getType() == DaoEventType.CREATE) {
+            // a new point has no events
+            return;
+        }
+        DataPointVO vo = event.getVo();
+        DataPointVO original = event.getOriginalVo();
+        xids.remove(vo.getId());
+        if (original != null && !Objects.equals(original.getXid(), vo.getXid())) {
+            // the counts per point are keyed by XID, reload the events with the new XID
+            executor.execute(this::load);
+        } else if (original == null || !Objects.equals(original.getReadPermission(), vo.getReadPermission())) {
+            invalidate();
+        }
+    }
+
+    @EventListener
+    protected void roleChanged(DaoEvent<? extends RoleVO, ?> event) {
+        invalidate();
+    }
+
+    /**
+     * Discards the counts of every role set after a permission changed, they are rebuilt from the events when next
+     * requested
+     */
+    private void invalidate() {
+        synchronized (this) {
+            countsByRoles.clear();
+        }
+        resetListeners();
+    }
+
+    private void resetListeners() {
+        for (EventCountsListener listener : listeners) {
+            try {
+                listener.reset();
+            } catch (Exception e) {
+                LOG.warn("Event counts listener failed", e);
+            }
+        }
+    }
+
+    private void notifyListeners(EventCountsDelta delta) {
+        for (EventCountsListener listener : listeners) {
+            try {
+                listener.changed(delta);
+            } catch (Exception e) {
+                LOG.warn("Event counts listener failed", e);
+            }
+        }
+    }
+
+    private Entry entry(EventInstance evt, String xid, boolean active, boolean unacknowledged) {
+        return new Entry(evt.getId(), evt.getAlarmLevel(), evt.getEventType(), xid, active, unacknowledged);
+    }
+
+    /**
+     * Reads the XID from the database the first time, do not call while holding the lock
+     */
+    private String xid(EventType type) {
+        int dataPointId = type.getDataPointId();
+        return dataPointId > 0 ? xids.computeIfAbsent(dataPointId, dataPointDao::getXidById) : null;
+    }
+
+    private final class Entry {
+        private final int id;
+        private final AlarmLevels level;
+        private final EventType type;
+        private final String xid;
+        private boolean active;
+        private boolean unacknowledged;
+
+        private Entry(int id, AlarmLevels level, EventType type, String xid, boolean active, boolean unacknowledged) {
+            this.id = id;
+            this.level = level;
+            this.type = type;
+            this.xid = xid;
+            this.active = active;
+            this.unacknowledged = unacknowledged;
+        }
+
+        private Entry with(boolean active, boolean unacknowledged) {
+            return new Entry(id, level, type, xid, active, unacknowledged);
+        }
+
+        private boolean isVisibleTo(EventCounts counts) {
+            return type.hasPermission(counts.getUser(), permissionService);
+        }
+
+        private EventCountsDelta delta(int active, int unacknowledged, long revision) {
+            return new EventCountsDelta(id, type, level, xid, active, unacknowledged, revision);
+        }
+    }
+}
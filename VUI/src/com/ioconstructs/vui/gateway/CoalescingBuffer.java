@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.gateway;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the latest payload per key (XID) and event type of a stream and releases them once per frame. A payload
+ * replaced before it was released is dropped, so a point updating every 100ms costs a client subscribed at 5 frames
+ * per second at most 5 messages per second for each event type. Events of different types (e.g. an UPDATE and the
+ * CHANGE fired for the same value) never replace each other. While the connection is backed up the frame is skipped
+ * and the payloads keep coalescing.
+ *
+ * @author Matt Fox
+ */
+public class CoalescingBuffer {
+
+    private final GatewayStream stream;
+    private final ScheduledExecutorService executor;
+    private final long frameInterval;
+
+    /**
+     * Pending payloads by key and event type, the inner maps are only accessed inside compute() or after removal
+     */
+    private final Map<String, Map<String, Object>> latest = new ConcurrentHashMap<>();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicBoolean frameScheduled = new AtomicBoolean();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong skippedFrames = new AtomicLong();
+
+    CoalescingBuffer(GatewayStream stream, ScheduledExecutorService executor, long frameInterval) {
+        this.stream = stream;
+        this.executor = executor;
+        this.frameInterval = frameInterval;
+    }
+
+    /**
+     * Replace the pending payload for the key and event type, it is sent with the next frame
+     */
+    void put(String key, String eventType, Object payload) {
+        latest.compute(key, (k, pending) -> {
+            if (pending == null) {
+                pending = new LinkedHashMap<>(4);
+            }
+            if (pending.put(eventType, payload) != null) {
+                dropped.incrementAndGet();
+            } else {
+                queueDepth.incrementAndGet();
+            }
+            return pending;
+        });
+        scheduleFrame();
+    }
+
+    /**
+     * Send the pending payloads for the key now, used before sending an event which must not overtake them
+     */
+    void release(String key) {
+        Map<String, Object> pending = latest.remove(key);
+        if (pending != null) {
+            queueDepth.addAndGet(-pending.size());
+            for (Object payload : pending.values()) {
+                stream.send(payload);
+            }
+        }
+    }
+
+    void clear() {
+        for (String key : latest.keySet()) {
+            Map<String, Object> pending = latest.remove(key);
+            if (pending != null) {
+                queueDepth.addAndGet(-pending.size());
+            }
+        }
+    }
+
+    private void scheduleFrame() {
+        if (frameScheduled.compareAndSet(false, true)) {
+            try {
+                executor.schedule(this::frame, frameInterval, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // shutting down
+            }
+        }
+    }
+
+    private void frame() {
+        frameScheduled.set(false);
+
+        if (stream.getSession().isBackedUp()) {
+            // the client has not received the last frame yet, keep coalescing until it catches up
+            skippedFrames.incrementAndGet();
+            scheduleFrame();
+            return;
+        }
+
+        for (String key : latest.keySet()) {
+            release(key);
+        }
+    }
+
+    /**
+     * @return number of payloads waiting for the next frame
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * @return number of payloads replaced by a newer payload before they were sent
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return number of frames delayed because the connection was backed up
+     */
+    public long getSkippedFrameCount() {
+        return skippedFrames.get();
+    }
+
+    public long getFrameInterval() {
+        return frameInterval;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.gateway;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.infiniteautomation.mango.rest.latest.model.RestModelMapper;
+import com.infiniteautomation.mango.spring.events.DaoEvent;
+import com.infiniteautomation.mango.spring.service.AbstractVOService;
+import com.serotonin.m2m2.vo.AbstractVO;
+import com.serotonin.m2m2.vo.permission.PermissionHolder;
+
+/**
+ * Channel sending create, update and delete notifications for one type of VO, the payloads match the ones sent by the
+ * corresponding /websocket/{name} endpoint. A notification is only sent to streams whose user may read the VO.
+ *
+ * @author Matt Fox
+ */
+public class DaoNotificationChannel<T extends AbstractVO> implements GatewayChannel {
+
+    private final String name;
+    private final Class<T> type;
+    private final AbstractVOService<T, ?> service;
+    private final RestModelMapper modelMapper;
+    private final Set<GatewayStream> streams = ConcurrentHashMap.newKeySet();
+
+    public DaoNotificationChannel(String name, Class<T> type, AbstractVOService<T, ?> service, RestModelMapper modelMapper) {
+        this.name = name;
+        this.type = type;
+        this.service = service;
+        this.modelMapper = modelMapper;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void subscriptionChanged(GatewayStream stream, String xid, Set<String> eventTypes) {
+        streams.add(stream);
+    }
+
+    @Override
+    public void closed(GatewayStream stream) {
+        streams.remove(stream);
+    }
+
+    /**
+     * Send the notification to the subscribed streams if the event is for this channel's VO type
+     */
+    public void notify(DaoEvent<?, ?> event) {
+        if (streams.isEmpty() || !type.isInstance(event.getVo())) {
+            return;
+        }
+
+        T vo = type.cast(event.getVo());
+        T originalVo = type.isInstance(event.getOriginalVo()) ? type.cast(event.getOriginalVo()) : null;
+        String action = action(event);
+        String originalXid = originalVo != null ? originalVo.getXid() : vo.getXid();
+
+        // the model depends on the user's permissions, map it once per user
+        Map<PermissionHolder, Object> models = new IdentityHashMap<>();
+        for (GatewayStream stream : streams) {
+            if (!stream.isSubscribed(vo.getXid(), action) && !stream.isSubscribed(originalXid, action)) {
+                continue;
+            }
+            PermissionHolder user = stream.getUser();
+            if (!service.hasReadPermission(user, vo)) {
+                continue;
+            }
+
+            Object model = models.computeIfAbsent(user, u -> modelMapper.map(vo, Object.class, u));
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("action", action);
+            payload.put("object", model);
+            payload.put("originalXid", originalXid);
+            stream.send(payload);
+        }
+    }
+
+    private static String action(DaoEvent<?, ?> event) {
+        switch (event.getType()) {
+            case CREATE:
+                return "add";
+            case DELETE:
+                return "delete";
+            default:
+                return "update";
+        }
+    }
+}
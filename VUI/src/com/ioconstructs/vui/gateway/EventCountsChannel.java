@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.gateway;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.ioconstructs.vui.events.EventCounts;
+import com.ioconstructs.vui.events.EventCountsDelta;
+import com.ioconstructs.vui.events.EventCountsListener;
+import com.ioconstructs.vui.events.EventCountsService;
+import com.serotonin.m2m2.vo.permission.PermissionHolder;
+
+/**
+ * Channel sending the active and unacknowledged event counts. A stream receives a SUMMARY payload with the counts
+ * when it subscribes and after the counts were rebuilt, then a DELTA payload for each change of an event it may read.
+ * Deltas which the last summary of a stream already includes are not sent, summaries and deltas are sent to a stream
+ * while holding its lock so that a delta either precedes the summary including it or is dropped.
+ *
+ * @author Matt Fox
+ */
+@Component
+public class EventCountsChannel implements GatewayChannel, EventCountsListener {
+
+    public static final String NAME = "event-counts";
+
+    private final EventCountsService eventCountsService;
+    private final Map<GatewayStream, Summary> streams = new ConcurrentHashMap<>();
+
+    @Autowired
+    public EventCountsChannel(EventCountsService eventCountsService) {
+        this.eventCountsService = eventCountsService;
+    }
+
+    @PostConstruct
+    private void init() {
+        eventCountsService.addListener(this);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        eventCountsService.removeListener(this);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void subscriptionChanged(GatewayStream stream, String xid, Set<String> eventTypes) {
+        if (eventTypes.isEmpty()) {
+            streams.remove(stream);
+        } else {
+            Summary summary = new Summary();
+            if (streams.putIfAbsent(stream, summary) == null) {
+                sendSummary(stream, summary);
+            }
+        }
+    }
+
+    @Override
+    public void closed(GatewayStream stream) {
+        streams.remove(stream);
+    }
+
+    @Override
+    public void changed(EventCountsDelta delta) {
+        if (streams.isEmpty()) {
+            return;
+        }
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("type", "DELTA");
+        payload.put("delta", delta);
+
+        // the permission only depends on the user, check it once per user
+        Map<PermissionHolder, Boolean> permitted = new IdentityHashMap<>();
+        for (Map.Entry<GatewayStream, Summary> entry : streams.entrySet()) {
+            GatewayStream stream = entry.getKey();
+            if (permitted.computeIfAbsent(stream.getUser(), u -> eventCountsService.hasPermission(u, delta))) {
+                Summary summary = entry.getValue();
+                synchronized (summary) {
+                    if (delta.getRevision() > summary.revision) {
+                        stream.send(payload);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        for (Map.Entry<GatewayStream, Summary> entry : streams.entrySet()) {
+            sendSummary(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void sendSummary(GatewayStream stream, Summary summary) {
+        synchronized (summary) {
+            EventCounts counts = eventCountsService.getCounts(stream.getUser());
+            summary.revision = counts.getRevision();
+
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("type", "SUMMARY");
+            payload.put("counts", counts);
+            stream.send(payload);
+        }
+    }
+
+    /**
+     * Revision of the last summary sent to a stream, guarded by itself
+     */
+    private static final class Summary {
+        private long revision = -1;
+    }
+}
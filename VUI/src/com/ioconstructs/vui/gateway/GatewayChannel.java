@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.gateway;
+
+import java.util.Set;
+
+/**
+ * A subscription channel of the VUI WebSocket gateway, e.g. point values or data point notifications. Each channel
+ * replaces one of the per resource WebSocket endpoints, clients open streams on a channel over the shared connection.
+ *
+ * @author Matt Fox
+ */
+public interface GatewayChannel {
+
+    /**
+     * @return name of the channel, matches the last path segment of the WebSocket endpoint it replaces
+     */
+    String getName();
+
+    /**
+     * Called before a stream subscribes to an XID, the subscription is only recorded if this returns true. Channels
+     * send the error to the stream when they refuse it.
+     *
+     * @param xid the XID or null for the subscription to all XIDs
+     * @return true if the stream's user may subscribe to the XID
+     */
+    default boolean canSubscribe(GatewayStream stream, String xid) {
+        return true;
+    }
+
+    /**
+     * Called after the event types the stream is subscribed to for an XID changed
+     *
+     * @param xid the XID or null for the subscription to all XIDs
+     * @param eventTypes the new event types, empty if the stream unsubscribed
+     */
+    default void subscriptionChanged(GatewayStream stream, String xid, Set<String> eventTypes) {
+    }
+
+    /**
+     * Called after the subscription changed with the version the client resumes from, channels which do not support
+     * resuming ignore it
+     *
+     * @param since version of the latest data the client has or null
+     */
+    default void subscriptionChanged(GatewayStream stream, String xid, Set<String> eventTypes, Long since) {
+        subscriptionChanged(stream, xid, eventTypes);
+    }
+
+    /**
+     * Called when the stream is closed by the client or the connection is closed
+     */
+    default void closed(GatewayStream stream) {
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.gateway;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.infiniteautomation.mango.rest.latest.model.RestModelMapper;
+import com.infiniteautomation.mango.spring.service.DataPointService;
+import com.infiniteautomation.mango.spring.service.DataSourceService;
+import com.infiniteautomation.mango.spring.service.EventDetectorsService;
+import com.infiniteautomation.mango.spring.service.EventHandlerService;
+import com.infiniteautomation.mango.spring.service.JsonDataService;
+import com.infiniteautomation.mango.spring.service.RoleService;
+import com.infiniteautomation.mango.spring.service.UsersService;
+import com.infiniteautomation.mango.spring.service.WatchListService;
+import com.serotonin.m2m2.vo.DataPointVO;
+import com.serotonin.m2m2.vo.User;
+import com.serotonin.m2m2.vo.WatchListVO;
+import com.serotonin.m2m2.vo.dataSource.DataSourceVO;
+import com.serotonin.m2m2.vo.event.AbstractEventHandlerVO;
+import com.serotonin.m2m2.vo.event.detector.AbstractEventDetectorVO;
+import com.serotonin.m2m2.vo.json.JsonDataVO;
+import com.serotonin.m2m2.vo.role.RoleVO;
+
+/**
+ * The DAO notification channels of the VUI WebSocket gateway, one for each of the notification WebSocket endpoints
+ * the VUI subscribes to
+ *
+ * @author Matt Fox
+ */
+@Configuration
+public class GatewayChannelConfiguration {
+
+    @Bean
+    public DaoNotificationChannel<DataPointVO> dataPointsChannel(DataPointService service, RestModelMapper modelMapper) {
+        return new DaoNotificationChannel<>("data-points", DataPointVO.class, service, modelMapper);
+    }
+
+    @Bean
+    public DaoNotificationChannel<DataSourceVO> dataSourcesChannel(DataSourceService service, RestModelMapper modelMapper) {
+        return new DaoNotificationChannel<>("data-sources", DataSourceVO.class, service, modelMapper);
+    }
+
+    @Bean
+    public DaoNotificationChannel<WatchListVO> watchListsChannel(WatchListService service, RestModelMapper modelMapper) {
+        return new DaoNotificationChannel<>("watch-lists", WatchListVO.class, service, modelMapper);
+    }
+
+    @Bean
+    public DaoNotificationChannel<JsonDataVO> jsonDataChannel(JsonDataService service, RestModelMapper modelMapper) {
+        return new DaoNotificationChannel<>("json-data", JsonDataVO.class, service, modelMapper);
+    }
+
+    @Bean
+    public DaoNotificationChannel<AbstractEventDetectorVO> eventDetectorsChannel(EventDetectorsService service, RestModelMapper modelMapper) {
+        return new DaoNotificationChannel<>("event-detectors", AbstractEventDetectorVO.class, service, modelMapper);
+    }
+
+    @Bean
+    public DaoNotificationChannel<AbstractEventHandlerVO> eventHandlersChannel(EventHandlerService service, RestModelMapper modelMapper) {
+        return new DaoNotificationChannel<>("event-handlers", AbstractEventHandlerVO.class, service, modelMapper);
+    }
+
+    @Bean
+    public DaoNotificationChannel<RoleVO> rolesChannel(RoleService service, RestModelMapper modelMapper) {
+        return new DaoNotificationChannel<>("roles", RoleVO.class, service, modelMapper);
+    }
+
+    @Bean
+    public DaoNotificationChannel<User> usersChannel(UsersService service, RestModelMapper modelMapper) {
+        return new DaoNotificationChannel<>("users", User.class, service, modelMapper);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.gateway;
+
+import java.util.List;
+
+/**
+ * A frame sent by the client to the gateway
+ *
+ * <ul>
+ *     <li>OPEN opens a stream on a channel, the optional frame rate (frames per second) limits how often coalesced
+ *     payloads such as point values are sent</li>
+ *     <li>SUBSCRIBE sets the event types the stream receives for an XID (or all XIDs if the XID is null), a null list
+ *     subscribes to every event type and an empty list unsubscribes. The optional since is the version of the data
+ *     the client already has, e.g. from a latest values snapshot</li>
+ *     <li>CLOSE closes the stream</li>
+ * </ul>
+ *
+ * @author Matt Fox
+ */
+public class GatewayRequest {
+
+    public enum Type {
+        OPEN, SUBSCRIBE, CLOSE
+    }
+
+    private Type type;
+    private int stream;
+    private String channel;
+    private String xid;
+    private List<String> eventTypes;
+    private Integer frameRate;
+    private Long since;
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public int getStream() {
+        return stream;
+    }
+
+    public void setStream(int stream) {
+        this.stream = stream;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public void setChannel(String channel) {
+        this.channel = channel;
+    }
+
+    public String getXid() {
+        return xid;
+    }
+
+    public void setXid(String xid) {
+        this.xid = xid;
+    }
+
+    public List<String> getEventTypes() {
+        return eventTypes;
+    }
+
+    public void setEventTypes(List<String> eventTypes) {
+        this.eventTypes = eventTypes;
+    }
+
+    public Integer getFrameRate() {
+        return frameRate;
+    }
+
+    public void setFrameRate(Integer frameRate) {
+        this.frameRate = frameRate;
+    }
+
+    public Long getSince() {
+        return since;
+    }
+
+    public void setSince(Long since) {
+        this.since = since;
+    }
+}
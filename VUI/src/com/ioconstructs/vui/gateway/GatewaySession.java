@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.gateway;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.serotonin.m2m2.vo.permission.PermissionHolder;
+
+/**
+ * One client connection to the gateway. Messages for all streams of the connection are queued and written as a
+ * single JSON array frame at most once per flush interval, so a burst of notifications costs one WebSocket write.
+ *
+ * @author Matt Fox
+ */
+public class GatewaySession {
+
+    private static final Logger log = LoggerFactory.getLogger(GatewaySession.class);
+
+    public static final String STATUS_OK = "OK";
+    public static final String STATUS_ERROR = "ERROR";
+
+    private final WebSocketSession session;
+    private final PermissionHolder user;
+    private final ObjectMapper objectMapper;
+    private final ScheduledExecutorService flushExecutor;
+    private final long flushInterval;
+    private final int maxPending;
+
+    private final Map<Integer, GatewayStream> streams = new ConcurrentHashMap<>();
+    private final Queue<Message> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Object flushLock = new Object();
+    private final AtomicLong sentFrames = new AtomicLong();
+    private volatile boolean closed;
+
+    public GatewaySession(WebSocketSession session, PermissionHolder user, ObjectMapper objectMapper,
+                          ScheduledExecutorService flushExecutor, long flushInterval, int maxPending) {
+        this.session = session;
+        this.user = user;
+        this.objectMapper = objectMapper;
+        this.flushExecutor = flushExecutor;
+        this.flushInterval = flushInterval;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * @param frameInterval interval in ms at which coalesced payloads are sent, 0 to send them immediately
+     */
+    public GatewayStream openStream(int id, GatewayChannel channel, long frameInterval) {
+        GatewayStream stream = new GatewayStream(this, id, channel, flushExecutor, frameInterval);
+        GatewayStream previous = streams.put(id, stream);
+        if (previous != null) {
+            previous.close();
+            previous.getChannel().closed(previous);
+        }
+        return stream;
+    }
+
+    public GatewayStream getStream(int id) {
+        return streams.get(id);
+    }
+
+    public void closeStream(int id) {
+        GatewayStream stream = streams.remove(id);
+        if (stream != null) {
+            stream.close();
+            stream.getChannel().closed(stream);
+        }
+    }
+
+    public int getStreamCount() {
+        return streams.size();
+    }
+
+    public Collection<GatewayStream> getStreams() {
+        return streams.values();
+    }
+
+    /**
+     * @return true if the client is not keeping up, either a write is still in progress or the queue is half full
+     */
+    public boolean isBackedUp() {
+        if (session instanceof ConcurrentWebSocketSessionDecorator && ((ConcurrentWebSocketSessionDecorator) session).getBufferSize() > 0) {
+            return true;
+        }
+        return pendingCount.get() > maxPending / 2;
+    }
+
+    /**
+     * @return messages waiting to be written plus coalesced payloads waiting for their frame
+     */
+    public int getQueueDepth() {
+        int depth = pendingCount.get();
+        for (GatewayStream stream : streams.values()) {
+            CoalescingBuffer buffer = stream.getBuffer();
+            if (buffer != null) {
+                depth += buffer.getQueueDepth();
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * @return coalesced payloads dropped on the open streams
+     */
+    public long getDroppedCount() {
+        long dropped = 0;
+        for (GatewayStream stream : streams.values()) {
+            CoalescingBuffer buffer = stream.getBuffer();
+            if (buffer != null) {
+                dropped += buffer.getDroppedCount();
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * @return frames delayed on the open streams because the client was not keeping up
+     */
+    public long getSkippedFrameCount() {
+        long skipped = 0;
+        for (GatewayStream stream : streams.values()) {
+            CoalescingBuffer buffer = stream.getBuffer();
+            if (buffer != null) {
+                skipped += buffer.getSkippedFrameCount();
+            }
+        }
+        return skipped;
+    }
+
+    public long getSentFrameCount() {
+        return sentFrames.get();
+    }
+
+    public GatewaySessionMetrics getMetrics() {
+        return new GatewaySessionMetrics(this);
+    }
+
+    /**
+     * Close all streams, called when the connection is closed
+     */
+    public void close() {
+        closed = true;
+        for (Integer id : streams.keySet()) {
+            closeStream(id);
+        }
+        pending.clear();
+    }
+
+    void send(GatewayStream stream, String status, Object payload) {
+        enqueue(new Message(stream.getId(), stream.getChannel().getName(), status, payload));
+    }
+
+    public void sendError(Integer streamId, String channel, String message) {
+        enqueue(new Message(streamId, channel, STATUS_ERROR, new ErrorPayload(message)));
+    }
+
+    private void enqueue(Message message) {
+        if (closed) {
+            return;
+        }
+        if (pendingCount.incrementAndGet() > maxPending) {
+            // the client is not reading its messages, it will reconnect and resubscribe
+            closeConnection(CloseStatus.SESSION_NOT_RELIABLE);
+            return;
+        }
+        pending.add(message);
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                flushExecutor.schedule(this::flush, flushInterval, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // shutting down
+            }
+        }
+    }
+
+    private void flush() {
+        // messages queued after this point schedule another flush
+        flushScheduled.set(false);
+
+        // the flush executor has several threads, a flush scheduled while another one is sending must not overtake it
+        synchronized (flushLock) {
+            List<Message> messages = new ArrayList<>();
+            Message message;
+            while ((message = pending.poll()) != null) {
+                messages.add(message);
+            }
+            pendingCount.addAndGet(-messages.size());
+            if (messages.isEmpty() || closed || !session.isOpen()) {
+                return;
+            }
+
+            try {
+                session.sendMessage(new TextMessage(objectMapper.writeValueAsString(messages)));
+                sentFrames.incrementAndGet();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to send VUI gateway messages to session {}", session.getId(), e);
+                closeConnection(CloseStatus.SERVER_ERROR);
+            }
+        }
+    }
+
+    private void closeConnection(CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+
+    public PermissionHolder getUser() {
+        return user;
+    }
+
+    public WebSocketSession getWebSocketSession() {
+        return session;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static final class Message {
+        private final Integer stream;
+        private final String channel;
+        private final String status;
+        private final Object payload;
+
+        private Message(Integer stream, String channel, String status, Object payload) {
+            this.stream = stream;
+            this.channel = channel;
+            this.status = status;
+            this.payload = payload;
+        }
+
+        public Integer getStream() {
+            return stream;
+        }
+
+        public String getChannel() {
+            return channel;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public Object getPayload() {
+            return payload;
+        }
+    }
+
+    public static final class ErrorPayload {
+        private final String message;
+
+        private ErrorPayload(String message) {
+            this.message = message;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
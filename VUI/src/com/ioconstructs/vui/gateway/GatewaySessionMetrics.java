@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.gateway;
+
+/**
+ * Snapshot of the queue depth and drop counts of a gateway connection, used to find the dashboards which are not
+ * keeping up with their point values.
+ *
+ * @author Matt Fox
+ */
+public class GatewaySessionMetrics {
+
+    private final String sessionId;
+    private final String username;
+    private final String remoteAddress;
+    private final int streams;
+    private final int queueDepth;
+    private final long droppedCount;
+    private final long skippedFrameCount;
+    private final long sentFrameCount;
+    private final boolean backedUp;
+
+    GatewaySessionMetrics(GatewaySession session) {
+        this.sessionId = session.getWebSocketSession().getId();
+        this.username = session.getUser().getPermissionHolderName();
+        this.remoteAddress = session.getWebSocketSession().getRemoteAddress() != null ?
+                session.getWebSocketSession().getRemoteAddress().toString() : null;
+        this.streams = session.getStreamCount();
+        this.queueDepth = session.getQueueDepth();
+        this.droppedCount = session.getDroppedCount();
+        this.skippedFrameCount = session.getSkippedFrameCount();
+        this.sentFrameCount = session.getSentFrameCount();
+        this.backedUp = session.isBackedUp();
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public int getStreams() {
+        return streams;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    public long getSkippedFrameCount() {
+        return skippedFrameCount;
+    }
+
+    public long getSentFrameCount() {
+        return sentFrameCount;
+    }
+
+    public boolean isBackedUp() {
+        return backedUp;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.gateway;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+
+import com.serotonin.m2m2.vo.permission.PermissionHolder;
+
+/**
+ * A client's subscription to one channel of the gateway. A client may open several streams on the same channel (one
+ * for each of its notification managers), messages are tagged with the stream id so the client can route them.
+ *
+ * <p>Like the WebSocket endpoints it replaces a stream can be subscribed to a set of event types for all XIDs and to
+ * a set of event types for individual XIDs.</p>
+ *
+ * <p>Streams opened with a frame rate coalesce the payloads sent with {@link #sendLatest(String, String, Object)}, see
+ * {@link CoalescingBuffer}.</p>
+ *
+ * @author Matt Fox
+ */
+public class GatewayStream {
+
+    /**
+     * Subscribes to every event type
+     */
+    public static final Set<String> ALL_EVENT_TYPES = Collections.singleton("*");
+
+    private final GatewaySession session;
+    private final int id;
+    private final GatewayChannel channel;
+    private final Map<String, Set<String>> eventTypesByXid = new ConcurrentHashMap<>();
+    private volatile Set<String> allEventTypes = Collections.emptySet();
+    private final CoalescingBuffer buffer;
+    private volatile boolean closed;
+
+    GatewayStream(GatewaySession session, int id, GatewayChannel channel, ScheduledExecutorService executor, long frameInterval) {
+        this.session = session;
+        this.id = id;
+        this.channel = channel;
+        this.buffer = frameInterval > 0 ? new CoalescingBuffer(this, executor, frameInterval) : null;
+    }
+
+    /**
+     * @param xid XID of the item the event is for
+     * @param eventType the event type (e.g. update or UPDATE)
+     * @return true if the stream is subscribed to the event
+     */
+    public boolean isSubscribed(String xid, String eventType) {
+        if (matches(allEventTypes, eventType)) {
+            return true;
+        }
+        return xid != null && matches(eventTypesByXid.get(xid), eventType);
+    }
+
+    /**
+     * @return the event types the stream is subscribed to for the XID, not including the subscription to all XIDs
+     */
+    public Set<String> getEventTypes(String xid) {
+        return eventTypesByXid.getOrDefault(xid, Collections.emptySet());
+    }
+
+    /**
+     * @return the XIDs the stream has subscriptions for
+     */
+    public Set<String> getXids() {
+        return eventTypesByXid.keySet();
+    }
+
+    /**
+     * Replace the event types the stream is subscribed to for the XID
+     *
+     * @param xid the XID or null to subscribe to all XIDs
+     * @param eventTypes event types, {@link #ALL_EVENT_TYPES} for all or an empty set to unsubscribe
+     */
+    public void subscribe(String xid, Set<String> eventTypes) {
+        subscribe(xid, eventTypes, null);
+    }
+
+    /**
+     * Replace the event types the stream is subscribed to for the XID, resuming from a version of the data the client
+     * already has (e.g. from a snapshot)
+     */
+    public void subscribe(String xid, Set<String> eventTypes, Long since) {
+        // unsubscribing is always allowed
+        if (!eventTypes.isEmpty() && !channel.canSubscribe(this, xid)) {
+            return;
+        }
+
+        if (xid == null) {
+            allEventTypes = eventTypes;
+        } else if (eventTypes.isEmpty()) {
+            eventTypesByXid.remove(xid);
+        } else {
+            eventTypesByXid.put(xid, eventTypes);
+        }
+        channel.subscriptionChanged(this, xid, eventTypes, since);
+    }
+
+    /**
+     * Queue a payload to be sent to the client with the next flush
+     */
+    public void send(Object payload) {
+        if (!closed) {
+            session.send(this, GatewaySession.STATUS_OK, payload);
+        }
+    }
+
+    /**
+     * Send a payload which supersedes the previous payload for the key and event type, if the stream has a frame rate
+     * only the latest payload per key and event type is sent each frame
+     */
+    public void sendLatest(String key, String eventType, Object payload) {
+        if (buffer == null) {
+            send(payload);
+        } else if (!closed) {
+            buffer.put(key, eventType, payload);
+        }
+    }
+
+    /**
+     * Send the pending payloads for the key, call before {@link #send(Object)} when the payload must not overtake them
+     */
+    public void releaseLatest(String key) {
+        if (buffer != null) {
+            buffer.release(key);
+        }
+    }
+
+    void close() {
+        closed = true;
+        if (buffer != null) {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * @return the coalescing buffer or null if the stream was opened without a frame rate
+     */
+    public CoalescingBuffer getBuffer() {
+        return buffer;
+    }
+
+    public void sendError(String message) {
+        session.sendError(id, channel.getName(), message);
+    }
+
+    public PermissionHolder getUser() {
+        return session.getUser();
+    }
+
+    public GatewaySession getSession() {
+        return session;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public GatewayChannel getChannel() {
+        return channel;
+    }
+
+    private static boolean matches(Set<String> eventTypes, String eventType) {
+        return eventTypes != null && (eventTypes == ALL_EVENT_TYPES || eventTypes.contains(eventType));
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.gateway;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.infiniteautomation.mango.spring.service.DataPointService;
+import com.ioconstructs.vui.data.RecentValuesBuffer;
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.db.dao.DataPointDao;
+import com.serotonin.m2m2.i18n.TranslatableMessage;
+import com.serotonin.m2m2.rt.dataImage.DataPointListener;
+import com.serotonin.m2m2.rt.dataImage.DataPointRT;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+import com.serotonin.m2m2.vo.DataPointVO;
+
+/**
+ * Channel sending point value events, replaces /websocket/point-value. One data point listener is registered per
+ * subscribed XID and shared by all streams subscribed to it.
+ *
+ * <p>Value events are coalesced per XID on streams opened with a frame rate, a client only receives the latest value
+ * of a point per frame. Lifecycle events release the pending value first so they are never reordered.</p>
+ *
+ * @author Matt Fox
+ */
+@Component
+public class PointValueChannel implements GatewayChannel {
+
+    public static final String NAME = "point-value";
+    public static final String REGISTERED = "REGISTERED";
+    public static final String UPDATE = "UPDATE";
+
+    /**
+     * Events which only carry the latest value of the point and may be replaced by a newer one
+     */
+    private static final Set<String> COALESCED_EVENTS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "UPDATE", "CHANGE", "SET", "LOGGED")));
+
+    private final DataPointDao dataPointDao;
+    private final DataPointService dataPointService;
+    private final RecentValuesBuffer recentValues;
+    private final Map<String, PointSubscription> subscriptions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PointValueChannel(DataPointDao dataPointDao, DataPointService dataPointService, RecentValuesBuffer recentValues) {
+        this.dataPointDao = dataPointDao;
+        this.dataPointService = dataPointService;
+        this.recentValues = recentValues;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean canSubscribe(GatewayStream stream, String xid) {
+        if (xid == null) {
+            return true;
+        }
+        DataPointVO vo = dataPointDao.getByXid(xid);
+        if (vo == null || !dataPointService.hasReadPermission(stream.getUser(), vo)) {
+            stream.sendError(new TranslatableMessage("vui.gateway.pointNotFound", xid).translate(Common.getTranslations()));
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void subscriptionChanged(GatewayStream stream, String xid, Set<String> eventTypes) {
+        subscriptionChanged(stream, xid, eventTypes, null);
+    }
+
+    /**
+     * @param since version of the value the client already has (from a snapshot), the current value is only sent if
+     *              it has changed since
+     */
+    @Override
+    public void subscriptionChanged(GatewayStream stream, String xid, Set<String> eventTypes, Long since) {
+        if (xid == null) {
+            // subscribing to every data point is not supported
+            return;
+        }
+
+        if (eventTypes.isEmpty()) {
+            unsubscribe(stream, xid);
+            return;
+        }
+
+        DataPointVO vo = dataPointDao.getByXid(xid);
+        if (vo == null) {
+            // deleted since canSubscribe() was called
+            stream.sendError(new TranslatableMessage("vui.gateway.pointNotFound", xid).translate(Common.getTranslations()));
+            return;
+        }
+
+        PointSubscription subscription = subscriptions.compute(xid, (k, existing) -> {
+            PointSubscription s = existing != null ? existing : new PointSubscription(vo);
+            s.streams.add(stream);
+            if (existing == null) {
+                Common.runtimeManager.addDataPointListener(vo.getId(), s);
+                // live charts backfill from the buffer before they switch to this channel
+                recentValues.watch(vo);
+            }
+            return s;
+        });
+
+        // the listener is registered before the current value is read so no update can be missed
+        DataPointRT rt = Common.runtimeManager.getDataPoint(subscription.vo.getId());
+        PointValueTime current = rt != null ? rt.getPointValue() : null;
+        boolean changed = since == null || PointValuePayload.version(current) != since;
+        if (changed && stream.isSubscribed(xid, REGISTERED)) {
+            stream.send(subscription.payload(REGISTERED, current));
+        } else if (since != null && changed && current != null && stream.isSubscribed(xid, UPDATE)) {
+            stream.sendLatest(xid, UPDATE, subscription.payload(UPDATE, current));
+        }
+    }
+
+    @Override
+    public void closed(GatewayStream stream) {
+        for (String xid : stream.getXids()) {
+            unsubscribe(stream, xid);
+        }
+    }
+
+    private void unsubscribe(GatewayStream stream, String xid) {
+        subscriptions.computeIfPresent(xid, (k, s) -> {
+            s.streams.remove(stream);
+            if (s.streams.isEmpty()) {
+                Common.runtimeManager.removeDataPointListener(s.vo.getId(), s);
+                recentValues.unwatch(s.vo.getId());
+                return null;
+            }
+            return s;
+        });
+    }
+
+    /**
+     * @return number of data points with a listener registered
+     */
+    public int getSubscribedPointCount() {
+        return subscriptions.size();
+    }
+
+    private static final class PointSubscription implements DataPointListener {
+        private volatile DataPointVO vo;
+        private final Set<GatewayStream> streams = ConcurrentHashMap.newKeySet();
+
+        private PointSubscription(DataPointVO vo) {
+            this.vo = vo;
+        }
+
+        private void dispatch(String event, PointValueTime value) {
+            String xid = vo.getXid();
+            boolean coalesced = COALESCED_EVENTS.contains(event);
+            Map<String, Object> payload = null;
+            for (GatewayStream stream : streams) {
+                if (stream.isSubscribed(xid, event)) {
+                    if (payload == null) {
+                        payload = payload(event, value);
+                    }
+                    if (coalesced) {
+                        stream.sendLatest(xid, event, payload);
+                    } else {
+                        stream.releaseLatest(xid);
+                        stream.send(payload);
+                    }
+                }
+            }
+        }
+
+        private Map<String, Object> payload(String event, PointValueTime value) {
+            DataPointVO point = vo;
+            return PointValuePayload.create(point, Common.runtimeManager.getDataPoint(point.getId()), event, value);
+        }
+
+        @Override
+        public String getListenerName() {
+            return "VUI gateway " + vo.getXid();
+        }
+
+        @Override
+        public void pointInitialized() {
+            dispatch("INITIALIZE", null);
+        }
+
+        @Override
+        public void pointUpdated(PointValueTime newValue) {
+            dispatch(UPDATE, newValue);
+        }
+
+        @Override
+        public void pointChanged(PointValueTime oldValue, PointValueTime newValue) {
+            dispatch("CHANGE", newValue);
+        }
+
+        @Override
+        public void pointSet(PointValueTime oldValue, PointValueTime newValue) {
+            dispatch("SET", newValue);
+        }
+
+        @Override
+        public void pointBackdated(PointValueTime value) {
+            dispatch("BACKDATE", value);
+        }
+
+        @Override
+        public void pointTerminated(DataPointVO vo) {
+            this.vo = vo;
+            dispatch("TERMINATE", null);
+        }
+
+        @Override
+        public void pointLogged(PointValueTime value) {
+            dispatch("LOGGED", value);
+        }
+
+        @Override
+        public void attributeChanged(Map<String, Object> attributes) {
+            dispatch("ATTRIBUTE_CHANGE", null);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.gateway;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.serotonin.m2m2.Common;
+import com.serotonin.m2m2.rt.dataImage.DataPointRT;
+import com.serotonin.m2m2.rt.dataImage.PointValueTime;
+import com.serotonin.m2m2.rt.dataImage.types.NumericValue;
+import com.serotonin.m2m2.view.text.TextRenderer;
+import com.serotonin.m2m2.vo.DataPointVO;
+
+/**
+ * Builds the point value payloads shared by the gateway's point-value channel and the latest values snapshot, they
+ * have the same shape as the payloads of /websocket/point-value so the client handles them the same way.
+ *
+ * @author Matt Fox
+ */
+public final class PointValuePayload {
+    private PointValuePayload() {}
+
+    /**
+     * Version of a point's value, a client which received the value with this version does not need it again
+     */
+    public static long version(PointValueTime value) {
+        return value != null ? value.getTime() : -1;
+    }
+
+    public static Map<String, Object> create(DataPointVO point, DataPointRT rt, String event, PointValueTime value) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("xid", point.getXid());
+        payload.put("event", event);
+        payload.put("enabled", rt != null);
+        payload.put("pointEnabled", point.isEnabled());
+        payload.put("attributes", rt != null ? rt.getAttributes() : null);
+
+        if (value != null) {
+            Map<String, Object> valueModel = new LinkedHashMap<>();
+            valueModel.put("value", value.getValue().getObjectValue());
+            valueModel.put("timestamp", value.getTime());
+            valueModel.put("annotation", value.getAnnotation(Common.getTranslations()));
+            payload.put("value", valueModel);
+
+            TextRenderer renderer = point.getTextRenderer();
+            payload.put("renderedValue", renderer != null ? renderer.getText(value, TextRenderer.HINT_FULL) : null);
+            if (value.getValue() instanceof NumericValue && point.getUnit() != null && point.getRenderedUnit() != null) {
+                payload.put("convertedValue", point.getUnit().getConverterTo(point.getRenderedUnit()).convert(value.getDoubleValue()));
+            }
+        }
+        return payload;
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.menu;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.infiniteautomation.mango.spring.events.DaoEvent;
+import com.infiniteautomation.mango.spring.service.PermissionService;
+import com.ioconstructs.vui.VUICommon;
+import com.serotonin.m2m2.db.dao.JsonDataDao;
+import com.serotonin.m2m2.module.ModuleRegistry;
+import com.serotonin.m2m2.module.PermissionDefinition;
+import com.serotonin.m2m2.vo.json.JsonDataVO;
+import com.serotonin.m2m2.vo.permission.PermissionHolder;
+import com.serotonin.m2m2.vo.role.Role;
+import com.serotonin.m2m2.vo.role.RoleVO;
+
+/**
+ * Computes the VUI menu as seen by a user, i.e. with every menu item the user does not have permission to view removed
+ * (along with its children). The menu store and the projections are cached by the user's set of inherited roles and are
+ * discarded when the menu store or any role changes, so building the menu for a user is usually a map lookup. System
+ * permissions can change without an event, so the system permissions referenced by the menu are checked on every request
+ * and the outcome is part of the cache key.
+ *
+ * <p>The permission rules follow the client side menu service: a menu item without a permission requires the user
+ * role unless it has system permissions, a permission is a list of minterms where each minterm is a role XID or an
+ * array of role XIDs which must all be held.</p>
+ *
+ * @author Matt Fox
+ */
+@Component
+public class MenuProjectionService {
+
+    public static final String MENU_ITEMS = "menuItems";
+
+    private final JsonDataDao jsonDataDao;
+    private final PermissionService permissionService;
+    private final JsonNodeFactory nodeFactory = JsonNodeFactory.withExactBigDecimals(false);
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    @Autowired
+    public MenuProjectionService(JsonDataDao jsonDataDao, PermissionService permissionService) {
+        this.jsonDataDao = jsonDataDao;
+        this.permissionService = permissionService;
+    }
+
+    /**
+     * @return the menu store, null if it does not exist
+     */
+    public JsonDataVO getMenuStore() {
+        return snapshot().store;
+    }
+
+    /**
+     * @param holder user to compute the menu for
+     * @return the menu store data containing only the menu items the holder may view, do not modify
+     */
+    public ObjectNode project(PermissionHolder holder) {
+        Snapshot current = snapshot();
+        Object data = current.store != null ? current.store.getJsonData() : null;
+
+        Set<String> roles = holder.getAllInheritedRoles().stream().map(Role::getXid).collect(Collectors.toSet());
+        String outcomes = systemPermissionOutcomes(current, holder);
+        Set<String> systemPermissions = new HashSet<>();
+        for (int i = 0; i < outcomes.length(); i++) {
+            if (outcomes.charAt(i) == '+') {
+                systemPermissions.add(current.systemPermissions.get(i));
+            }
+        }
+        String key = roles.stream().sorted().collect(Collectors.joining(",")) + outcomes;
+        return current.projections.computeIfAbsent(key, k -> filter(data, holder, roles, systemPermissions));
+    }
+
+    /**
+     * Payloads containing the projected menu must include this in their cache key, the roles a system permission
+     * grants can change without an event
+     *
+     * @return whether the holder has each system permission referenced by the menu, e.g. "+-"
+     */
+    public String systemPermissionOutcomes(PermissionHolder holder) {
+        return systemPermissionOutcomes(snapshot(), holder);
+    }
+
+    private String systemPermissionOutcomes(Snapshot current, PermissionHolder holder) {
+        StringBuilder outcomes = new StringBuilder(current.systemPermissions.size());
+        for (String permissionType : current.systemPermissions) {
+            PermissionDefinition def = ModuleRegistry.getPermissionDefinition(permissionType);
+            boolean granted = def != null && permissionService.hasPermission(holder, def.getPermission());
+            outcomes.append(granted ? '+' : '-');
+        }
+        return outcomes.toString();
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * A snapshot is valid for the generation that was current when its load started. If the store is invalidated during
+     * the load the snapshot is stale as soon as it is published and the next request loads it again.
+     */
+    private Snapshot snapshot() {
+        Snapshot current = snapshot.get();
+        long currentGeneration = generation.get();
+        if (current == null || current.generation != currentGeneration) {
+            Snapshot loaded = new Snapshot(jsonDataDao.getByXid(VUICommon.MA_VUI_MENU_XID), currentGeneration);
+            snapshot.compareAndSet(current, loaded);
+            return loaded;
+        }
+        return current;
+    }
+
+    @EventListener
+    protected void jsonDataChanged(DaoEvent<? extends JsonDataVO, ?> event) {
+        if (VUICommon.MA_VUI_MENU_XID.equals(event.getVo().getXid()) ||
+                event.getOriginalVo() != null && VUICommon.MA_VUI_MENU_XID.equals(event.getOriginalVo().getXid())) {
+            invalidate();
+        }
+    }
+
+    @EventListener
+    protected void roleChanged(DaoEvent<? extends RoleVO, ?> event) {
+        invalidate();
+    }
+
+    private ObjectNode filter(Object data, PermissionHolder holder, Set<String> roles, Set<String> systemPermissions) {
+        ObjectNode result = nodeFactory.objectNode();
+        if (!(data instanceof ObjectNode)) {
+            return result;
+        }
+
+        ObjectNode menu = (ObjectNode) data;
+        Iterator<Map.Entry<String, JsonNode>> fields = menu.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (!MENU_ITEMS.equals(field.getKey())) {
+                result.set(field.getKey(), field.getValue());
+            }
+        }
+
+        boolean admin = permissionService.hasAdminRole(holder);
+        List<String> hidden = new ArrayList<>();
+        List<JsonNode> visible = new ArrayList<>();
+        for (JsonNode item : menu.path(MENU_ITEMS)) {
+            if (admin || hasPermission(roles, systemPermissions, item)) {
+                visible.add(item);
+            } else {
+                hidden.add(item.path("name").asText() + ".");
+            }
+        }
+
+        ArrayNode items = result.putArray(MENU_ITEMS);
+        for (JsonNode item : visible) {
+            String name = item.path("name").asText();
+            if (hidden.stream().noneMatch(name::startsWith)) {
+                items.add(item);
+            }
+        }
+        return result;
+    }
+
+    private static final class Snapshot {
+        private final JsonDataVO store;
+        private final long generation;
+        /**
+         * Names of the system permissions referenced by the menu items
+         */
+        private final List<String> systemPermissions;
+        private final Map<String, ObjectNode> projections = new ConcurrentHashMap<>();
+
+        private Snapshot(JsonDataVO store, long generation) {
+            this.store = store;
+            this.generation = generation;
+
+            Set<String> permissionTypes = new TreeSet<>();
+            Object data = store != null ? store.getJsonData() : null;
+            if (data instanceof ObjectNode) {
+                for (JsonNode item : ((ObjectNode) data).path(MENU_ITEMS)) {
+                    for (JsonNode permissionType : item.path("systemPermission")) {
+                        permissionTypes.add(permissionType.asText());
+                    }
+                }
+            }
+            this.systemPermissions = new ArrayList<>(permissionTypes);
+        }
+    }
+
+    private boolean hasPermission(Set<String> roles, Set<String> systemPermissions, JsonNode item) {
+        JsonNode systemPermission = item.path("systemPermission");
+        for (JsonNode permissionType : systemPermission) {
+            if (systemPermissions.contains(permissionType.asText())) {
+                return true;
+            }
+        }
+
+        JsonNode permission = item.get("permission");
+        if (permission == null || permission.isNull()) {
+            return systemPermission.size() == 0 && roles.contains(PermissionHolder.USER_ROLE.getXid());
+        }
+
+        if (permission.isTextual()) {
+            for (String role : permission.asText().split(",")) {
+                if (roles.contains(role.trim())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        for (JsonNode minterm : permission) {
+            if (minterm.isTextual() && roles.contains(minterm.asText())) {
+                return true;
+            }
+            if (minterm.isArray() && minterm.size() > 0) {
+                boolean all = true;
+                for (JsonNode role : minterm) {
+                    all &= roles.contains(role.asText());
+                }
+                if (all) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
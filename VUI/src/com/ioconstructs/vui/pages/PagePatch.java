@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.pages;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * A partial update of the pages store, follows the add/replace/remove operations of JSON patch (RFC 6902)
+ *
+ * @author Matt Fox
+ */
+public class PagePatch {
+
+    public enum Operation {
+        ADD, REPLACE, REMOVE;
+
+        @JsonCreator
+        public static Operation fromString(String op) {
+            return Operation.valueOf(op.toUpperCase());
+        }
+
+        @JsonValue
+        public String toValue() {
+            return name().toLowerCase();
+        }
+    }
+
+    private Operation op;
+    private String path;
+    private JsonNode value;
+
+    public Operation getOp() {
+        return op;
+    }
+
+    public void setOp(Operation op) {
+        this.op = op;
+    }
+
+    /**
+     * @return JSON pointer (RFC 6901) into the pages store
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public JsonNode getValue() {
+        return value;
+    }
+
+    public void setValue(JsonNode value) {
+        this.value = value;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.pages;
+
+import java.util.Iterator;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.infiniteautomation.mango.spring.service.JsonDataService;
+import com.infiniteautomation.mango.util.exception.NotFoundException;
+import com.infiniteautomation.mango.util.exception.ValidationException;
+import com.ioconstructs.vui.VUICommon;
+import com.serotonin.m2m2.i18n.ProcessResult;
+import com.serotonin.m2m2.vo.json.JsonDataVO;
+
+/**
+ * Paged access to the VUI pages JSON data store. The pages store holds a summary for every page, the page body (markup)
+ * is either stored inline in the summary or in its own JSON data item with the same XID as the page. This class returns
+ * the summaries without their bodies, loads individual page bodies on demand and applies partial updates to the store
+ * addressed by JSON pointers so that the whole document never needs to be sent to the client.
+ *
+ * <p>All methods use the {@link JsonDataService} so the read and edit permissions of the stores are enforced for the
+ * current user. Patches read, modify and write the whole store, they are applied one at a time so concurrent page saves
+ * do not overwrite each other.</p>
+ *
+ * @author Matt Fox
+ */
+@Component
+public class VuiPageStore {
+
+    /**
+     * Property of the pages store containing the array of page summaries
+     */
+    public static final String PAGES = "pages";
+
+    /**
+     * Property of a page summary or page item containing the page body
+     */
+    public static final String MARKUP = "markup";
+
+    private final JsonDataService jsonDataService;
+    private final JsonNodeFactory nodeFactory = JsonNodeFactory.withExactBigDecimals(false);
+    private final Object patchLock = new Object();
+
+    @Autowired
+    public VuiPageStore(JsonDataService jsonDataService) {
+        this.jsonDataService = jsonDataService;
+    }
+
+    /**
+     * @return the pages store with the page bodies removed
+     */
+    public ObjectNode index() {
+        JsonDataVO store = jsonDataService.get(VUICommon.MA_VUI_PAGES_XID);
+        return index(store.getJsonData());
+    }
+
+    /**
+     * Project the pages document to its index, i.e. a copy with the page bodies removed
+     */
+    public ObjectNode index(Object pagesDocument) {
+        ObjectNode index = nodeFactory.objectNode();
+        ArrayNode pages = index.putArray(PAGES);
+        if (pagesDocument instanceof ObjectNode) {
+            ObjectNode document = (ObjectNode) pagesDocument;
+            Iterator<String> fields = document.fieldNames();
+            while (fields.hasNext()) {
+                String field = fields.next();
+                if (!PAGES.equals(field)) {
+                    index.set(field, document.get(field));
+                }
+            }
+
+            for (JsonNode page : document.path(PAGES)) {
+                if (page instanceof ObjectNode) {
+                    ObjectNode summary = ((ObjectNode) page).deepCopy();
+                    summary.remove(MARKUP);
+                    pages.add(summary);
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Load a single page, the page body is read from the summary if it is stored inline, otherwise from its own item.
+     *
+     * @param xid XID of the page
+     * @return the page summary including its body
+     */
+    public ObjectNode page(String xid) {
+        JsonDataVO store = jsonDataService.get(VUICommon.MA_VUI_PAGES_XID);
+        ObjectNode summary = findPage(store.getJsonData(), xid);
+        if (summary == null) {
+            throw new NotFoundException();
+        }
+
+        ObjectNode page = summary.deepCopy();
+        if (!page.has(MARKUP)) {
+            Object content = jsonDataService.get(xid).getJsonData();
+            if (content instanceof ObjectNode) {
+                page.set(MARKUP, ((ObjectNode) content).get(MARKUP));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Apply a list of partial updates to the pages store in a single update
+     *
+     * @return the index of the updated store
+     */
+    public ObjectNode patch(List<PagePatch> patches) {
+        synchronized (patchLock) {
+            JsonDataVO store = jsonDataService.get(VUICommon.MA_VUI_PAGES_XID);
+            Object data = store.getJsonData();
+            JsonNode document = data instanceof JsonNode ? ((JsonNode) data).deepCopy() : nodeFactory.objectNode();
+
+            for (PagePatch patch : patches) {
+                document = apply(document, patch);
+            }
+
+            store.setJsonData(document);
+            jsonDataService.update(VUICommon.MA_VUI_PAGES_XID, store);
+            return index(document);
+        }
+    }
+
+    private ObjectNode findPage(Object document, String xid) {
+        if (document instanceof JsonNode) {
+            for (JsonNode page : ((JsonNode) document).path(PAGES)) {
+                if (page instanceof ObjectNode && xid.equals(page.path("xid").asText(null))) {
+                    return (ObjectNode) page;
+                }
+            }
+        }
+        return null;
+    }
+
+    private JsonNode apply(JsonNode document, PagePatch patch) {
+        if (patch.getOp() == null) {
+            throw invalid(patch, "vui.pages.invalidOperation");
+        }
+        JsonPointer pointer = compile(patch.getPath());
+        if (pointer.matches()) {
+            if (patch.getOp() == PagePatch.Operation.REMOVE) {
+                throw invalid(patch, "vui.pages.cantRemoveRoot");
+            }
+            return patch.getValue();
+        }
+
+        JsonNode parent = document.at(pointer.head());
+        String property = pointer.last().getMatchingProperty();
+
+        if (parent instanceof ObjectNode) {
+            ObjectNode object = (ObjectNode) parent;
+            switch (patch.getOp()) {
+                case REMOVE:
+                    if (object.remove(property) == null) {
+                        throw invalid(patch, "vui.pages.pointerNotFound");
+                    }
+                    break;
+                case REPLACE:
+                    if (!object.has(property)) {
+                        throw invalid(patch, "vui.pages.pointerNotFound");
+                    }
+                    object.set(property, patch.getValue());
+                    break;
+                default:
+                    object.set(property, patch.getValue());
+            }
+        } else if (parent instanceof ArrayNode) {
+            ArrayNode array = (ArrayNode) parent;
+            int index = "-".equals(property) ? array.size() : pointer.last().getMatchingIndex();
+            boolean append = index == array.size() && patch.getOp() == PagePatch.Operation.ADD;
+            if (index < 0 || index > array.size() || index == array.size() && !append) {
+                throw invalid(patch, "vui.pages.pointerNotFound");
+            }
+
+            switch (patch.getOp()) {
+                case REMOVE:
+                    array.remove(index);
+                    break;
+                case REPLACE:
+                    array.set(index, patch.getValue());
+                    break;
+                default:
+                    array.insert(index, patch.getValue());
+            }
+        } else {
+            throw invalid(patch, "vui.pages.pointerNotFound");
+        }
+        return document;
+    }
+
+    private JsonPointer compile(String path) {
+        try {
+            return JsonPointer.compile(path == null ? "" : path);
+        } catch (IllegalArgumentException e) {
+            ProcessResult result = new ProcessResult();
+            result.addContextualMessage("path", "vui.pages.invalidPointer", path);
+            throw new ValidationException(result);
+        }
+    }
+
+    private ValidationException invalid(PagePatch patch, String key) {
+        ProcessResult result = new ProcessResult();
+        result.addContextualMessage("path", key, patch.getPath());
+        return new ValidationException(result);
+    }
+}
@@ -3,17 +3,22 @@
  */
 package com.ioconstructs.vui.permissions;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.github.zafarkhaja.semver.Version;
 import com.infiniteautomation.mango.permission.MangoPermission;
 import com.infiniteautomation.mango.util.exception.ValidationException;
 import com.ioconstructs.vui.VUICommon;
+import com.ioconstructs.vui.pages.VuiPageStore;
+import com.serotonin.m2m2.Common;
 import com.serotonin.m2m2.db.dao.JsonDataDao;
 import com.serotonin.m2m2.i18n.TranslatableMessage;
 import com.serotonin.m2m2.module.PermissionDefinition;
 import com.serotonin.m2m2.vo.json.JsonDataVO;
 import com.serotonin.m2m2.vo.permission.PermissionHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 /**
@@ -22,6 +27,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 public class EditPagesPermission extends PermissionDefinition {
     public static final String PERMISSION = "vui.pages.edit";
 
+    private static final Logger LOG = LoggerFactory.getLogger(EditPagesPermission.class);
+
     @Autowired
     JsonDataDao jsonDataDao;
 
@@ -49,6 +56,9 @@ public class EditPagesPermission extends PermissionDefinition {
     public void postEventManager(Version previousVersion, Version current) {
         jsonDataDao.doInTransaction(txStatus -> {
             installPageData();
+            if (Common.envProps.getBoolean("vui.pages.splitInlinePages", false)) {
+                splitInlinePages();
+            }
         });
     }
 
@@ -76,4 +86,61 @@ public class EditPagesPermission extends PermissionDefinition {
         }
     }
 
+    /**
+     * Moves page bodies which are stored inline in the pages store into their own JSON data item (XID of the page) so
+     * that the pages store only contains the page summaries. A page whose XID is already used by a JSON data item
+     * which is not a page body is left inline.
+     */
+    public void splitInlinePages() {
+        JsonDataVO jsonData = jsonDataDao.getByXid(VUICommon.MA_VUI_PAGES_XID);
+        if (jsonData == null || !(jsonData.getJsonData() instanceof ObjectNode)) {
+            return;
+        }
+
+        JsonNodeFactory nodeFactory = JsonNodeFactory.withExactBigDecimals(false);
+        boolean changed = false;
+        for (JsonNode page : ((ObjectNode) jsonData.getJsonData()).path(VuiPageStore.PAGES)) {
+            String xid = page.path("xid").asText(null);
+            if (!(page instanceof ObjectNode) || xid == null || !page.has(VuiPageStore.MARKUP)) {
+                continue;
+            }
+
+            ObjectNode summary = (ObjectNode) page;
+            JsonDataVO pageData = jsonDataDao.getByXid(xid);
+            if (pageData == null) {
+                pageData = new JsonDataVO();
+                pageData.setXid(xid);
+                pageData.setName(summary.path("name").asText(xid));
+                pageData.setReadPermission(jsonData.getReadPermission());
+                pageData.setEditPermission(this.permission);
+            } else if (!isPageBody(pageData.getJsonData())) {
+                LOG.warn("Not moving the body of page {} to its own JSON data item, the XID is used by another item", xid);
+                continue;
+            }
+
+            ObjectNode content = pageData.getJsonData() instanceof ObjectNode ?
+                    (ObjectNode) pageData.getJsonData() : nodeFactory.objectNode();
+            content.set(VuiPageStore.MARKUP, summary.remove(VuiPageStore.MARKUP));
+            pageData.setJsonData(content);
+
+            if (pageData.getId() > 0) {
+                jsonDataDao.update(pageData.getId(), pageData);
+            } else {
+                jsonDataDao.insert(pageData);
+            }
+            changed = true;
+        }
+
+        if (changed) {
+            jsonDataDao.update(jsonData.getId(), jsonData);
+        }
+    }
+
+    /**
+     * @return true if the JSON data is empty or holds a page body
+     */
+    private static boolean isPageBody(Object data) {
+        return data == null || data instanceof ObjectNode && ((ObjectNode) data).has(VuiPageStore.MARKUP);
+    }
+
 }
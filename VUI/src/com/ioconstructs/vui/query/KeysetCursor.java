@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.query;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Position after the last item of a page: the values of the sort properties of the last item, the sort it applies to
+ * and the number of items returned so far. The client receives it as an opaque URL safe string.
+ *
+ * @author Matt Fox
+ */
+public class KeysetCursor {
+
+    private String sort;
+    private List<Object> values;
+    private long offset;
+
+    KeysetCursor() {
+    }
+
+    KeysetCursor(String sort, List<Object> values, long offset) {
+        this.sort = sort;
+        this.values = values;
+        this.offset = offset;
+    }
+
+    /**
+     * @return the sort properties the cursor was created for, e.g. +name,+id
+     */
+    public String getSort() {
+        return sort;
+    }
+
+    public void setSort(String sort) {
+        this.sort = sort;
+    }
+
+    public List<Object> getValues() {
+        return values;
+    }
+
+    public void setValues(List<Object> values) {
+        this.values = values;
+    }
+
+    /**
+     * @return number of items before the cursor, only used if a sort value is null and the keyset can't be compared
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    String encode(ObjectMapper objectMapper) throws IOException {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(this));
+    }
+
+    static KeysetCursor decode(String cursor, ObjectMapper objectMapper) throws IOException {
+        return objectMapper.readValue(Base64.getUrlDecoder().decode(cursor), KeysetCursor.class);
+    }
+}
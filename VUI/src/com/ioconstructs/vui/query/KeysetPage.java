@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.query;
+
+import java.util.List;
+
+/**
+ * One page of a cursor query
+ *
+ * @author Matt Fox
+ */
+public class KeysetPage {
+
+    private final List<Object> items;
+    private final String cursor;
+
+    KeysetPage(List<Object> items, String cursor) {
+        this.items = items;
+        this.cursor = cursor;
+    }
+
+    public List<Object> getItems() {
+        return items;
+    }
+
+    /**
+     * @return opaque cursor to load the next page with, null if this is the last page
+     */
+    public String getCursor() {
+        return cursor;
+    }
+}
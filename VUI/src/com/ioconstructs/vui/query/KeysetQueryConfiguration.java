@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.query;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.infiniteautomation.mango.spring.service.AuditEventService;
+import com.infiniteautomation.mango.spring.service.DataPointService;
+import com.infiniteautomation.mango.spring.service.EventInstanceService;
+import com.serotonin.m2m2.vo.DataPointVO;
+import com.serotonin.m2m2.vo.event.EventInstanceVO;
+import com.serotonin.m2m2.vo.event.audit.AuditEventInstanceVO;
+
+/**
+ * The resources of the large admin tables which support cursor queries
+ *
+ * @author Matt Fox
+ */
+@Configuration
+public class KeysetQueryConfiguration {
+
+    @Bean
+    public KeysetResource<DataPointVO> dataPointsKeysetResource(DataPointService service) {
+        return new KeysetResource<>("data-points", service);
+    }
+
+    @Bean
+    public KeysetResource<EventInstanceVO> eventsKeysetResource(EventInstanceService service) {
+        return new KeysetResource<>("events", service);
+    }
+
+    @Bean
+    public KeysetResource<AuditEventInstanceVO> auditKeysetResource(AuditEventService service) {
+        return new KeysetResource<>("audit", service);
+    }
+}
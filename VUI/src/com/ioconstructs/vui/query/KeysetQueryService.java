@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.query;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.infiniteautomation.mango.rest.latest.exception.BadRequestException;
+import com.infiniteautomation.mango.rest.latest.model.RestModelMapper;
+import com.infiniteautomation.mango.spring.annotations.RestMapper;
+import com.infiniteautomation.mango.spring.service.PermissionService;
+import com.serotonin.m2m2.db.DatabaseProxy;
+import com.serotonin.m2m2.db.DatabaseType;
+import com.serotonin.m2m2.i18n.TranslatableMessage;
+import com.serotonin.m2m2.vo.AbstractBasicVO;
+import com.serotonin.m2m2.vo.permission.PermissionHolder;
+
+import net.jazdw.rql.parser.ASTNode;
+
+/**
+ * Pages through a resource with keyset pagination: instead of skipping offset rows the query continues after the sort
+ * values of the last item of the previous page, so every page costs the same as the first one.
+ *
+ * <p>The sort of the RQL query is extended with the id as a tie breaker. Sort properties are read from the REST
+ * model of the last item, so they must be model properties which the RQL query can compare (e.g. name, deviceName,
+ * activeTimestamp). If a sort value of the last item is null the next page falls back to an offset. The conditions
+ * follow the NULL ordering of the database: H2, MySQL and SQL Server sort NULLs before every value, so in a
+ * descending sort the items with a NULL value follow the last item. PostgreSQL sorts NULLs after every value, so they
+ * follow the last item in an ascending sort.</p>
+ *
+ * @author Matt Fox
+ */
+@Service
+public class KeysetQueryService {
+
+    private static final String ID = "id";
+
+    private final Map<String, KeysetResource<?>> resources;
+    private final RestModelMapper modelMapper;
+    private final ObjectMapper objectMapper;
+    private final PermissionService permissionService;
+    private final int maxPageSize;
+    private final boolean nullsLast;
+
+    @Autowired
+    public KeysetQueryService(List<KeysetResource<?>> resources, RestModelMapper modelMapper,
+                              @RestMapper ObjectMapper objectMapper, PermissionService permissionService,
+                              DatabaseProxy databaseProxy, Environment env) {
+        this.resources = resources.stream().collect(Collectors.toMap(KeysetResource::getName, Function.identity()));
+        this.modelMapper = modelMapper;
+        this.objectMapper = objectMapper;
+        this.permissionService = permissionService;
+        this.maxPageSize = env.getProperty("vui.query.maxPageSize", Integer.class, 1000);
+        this.nullsLast = databaseProxy.getType() == DatabaseType.POSTGRES;
+    }
+
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    /**
+     * @return the resource or null if it does not support cursor queries
+     */
+    public KeysetResource<?> getResource(String name) {
+        return resources.get(name);
+    }
+
+    /**
+     * Loads the page after the cursor
+     *
+     * @param rql filter and sort, a limit is ignored
+     * @param cursor cursor returned with the previous page or null for the first page
+     */
+    public <T extends AbstractBasicVO> KeysetPage page(KeysetResource<T> resource, ASTNode rql, String cursor, int pageSize,
+                                                      PermissionHolder user) {
+        List<ASTNode> filters = new ArrayList<>();
+        List<SortProperty> sort = parse(rql, filters);
+        String sortKey = sort.stream().map(SortProperty::toString).collect(Collectors.joining(","));
+
+        KeysetCursor position = null;
+        if (cursor != null) {
+            position = decode(cursor);
+            if (!sortKey.equals(position.getSort()) || position.getValues() == null || position.getValues().size() != sort.size()) {
+                throw new BadRequestException(new TranslatableMessage("vui.query.invalidCursor"));
+            }
+        }
+
+        List<Object> query = new ArrayList<>(filters);
+        long offset = 0;
+        if (position != null) {
+            if (position.getValues().contains(null)) {
+                offset = position.getOffset();
+            } else {
+                query.add(after(sort, position.getValues(), nullsLast));
+            }
+        }
+        query.add(sortNode(sort));
+        // one extra item tells if there is a next page
+        query.add(offset > 0 ? new ASTNode("limit", pageSize + 1, offset) : new ASTNode("limit", pageSize + 1));
+
+        List<Object> items = new ArrayList<>(pageSize + 1);
+        permissionService.runAs(user, () -> resource.getService().customizedQuery(new ASTNode("and", query.toArray()),
+                (T vo) -> items.add(modelMapper.map(vo, Object.class, user))));
+
+        String next = null;
+        if (items.size() > pageSize) {
+            items.remove(pageSize);
+            JsonNode last = objectMapper.valueToTree(items.get(pageSize - 1));
+            List<Object> values = new ArrayList<>(sort.size());
+            for (SortProperty property : sort) {
+                JsonNode value = last.at("/" + property.name.replace('.', '/'));
+                values.add(value.isMissingNode() || value.isNull() ? null : objectMapper.convertValue(value, Object.class));
+            }
+            long consumed = (position != null ? position.getOffset() : 0) + pageSize;
+            try {
+                next = new KeysetCursor(sortKey, values, consumed).encode(objectMapper);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return new KeysetPage(items, next);
+    }
+
+    /**
+     * Writes every item matching the query as newline delimited JSON without buffering the result set
+     *
+     * @param rql filter and sort, a limit is respected, null for every item
+     */
+    public <T extends AbstractBasicVO> void stream(KeysetResource<T> resource, ASTNode rql, PermissionHolder user,
+                                                  OutputStream out) throws IOException {
+        ASTNode query = rql != null ? rql : new ASTNode("and");
+        byte[] newline = {'\n'};
+        int[] count = {0};
+        try {
+            permissionService.runAs(user, () -> resource.getService().customizedQuery(query, (T vo) -> {
+                try {
+                    out.write(objectMapper.writeValueAsBytes(modelMapper.map(vo, Object.class, user)));
+                    out.write(newline);
+                    if (++count[0] % 100 == 0) {
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+    }
+
+    private KeysetCursor decode(String cursor) {
+        try {
+            return KeysetCursor.decode(cursor, objectMapper);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new BadRequestException(new TranslatableMessage("vui.query.invalidCursor"));
+        }
+    }
+
+    /**
+     * Splits the query into its filters and its sort, the id is appended to the sort if it isn't sorted on
+     */
+    static List<SortProperty> parse(ASTNode rql, List<ASTNode> filters) {
+        List<SortProperty> sort = new ArrayList<>();
+        List<Object> nodes = rql == null ? Collections.emptyList() :
+                "and".equals(rql.getName()) ? rql.getArguments() : Collections.singletonList(rql);
+
+        for (Object node : nodes) {
+            if (!(node instanceof ASTNode)) {
+                continue;
+            }
+            ASTNode astNode = (ASTNode) node;
+            if ("sort".equals(astNode.getName())) {
+                for (Object argument : astNode.getArguments()) {
+                    sort.add(SortProperty.parse(String.valueOf(argument)));
+                }
+            } else if (!"limit".equals(astNode.getName())) {
+                filters.add(astNode);
+            }
+        }
+
+        if (sort.stream().noneMatch(p -> ID.equals(p.name))) {
+            sort.add(new SortProperty(ID, false));
+        }
+        return sort;
+    }
+
+    private static ASTNode sortNode(List<SortProperty> sort) {
+        return new ASTNode("sort", sort.stream().map(SortProperty::toString).toArray());
+    }
+
+    /**
+     * @param values sort values of the last item, not null
+     * @param nullsLast true if the database sorts NULLs after every value in ascending order
+     * @return condition matching the items after the values: or(gt(a), and(eq(a), gt(b)), ...), if the NULLs follow
+     * the values in the direction of a property gt(a) is or(gt(a), eq(a, null))
+     */
+    static ASTNode after(List<SortProperty> sort, List<Object> values, boolean nullsLast) {
+        List<Object> alternatives = new ArrayList<>(sort.size());
+        for (int i = 0; i < sort.size(); i++) {
+            List<Object> terms = new ArrayList<>(i + 1);
+            for (int j = 0; j < i; j++) {
+                terms.add(new ASTNode("eq", sort.get(j).name, values.get(j)));
+            }
+            SortProperty property = sort.get(i);
+            ASTNode next = new ASTNode(property.descending ? "lt" : "gt", property.name, values.get(i));
+            if (property.descending != nullsLast && !ID.equals(property.name)) {
+                next = new ASTNode("or", next, new ASTNode("eq", property.name, null));
+            }
+            terms.add(next);
+            alternatives.add(terms.size() == 1 ? terms.get(0) : new ASTNode("and", terms.toArray()));
+        }
+        return new ASTNode("or", alternatives.toArray());
+    }
+
+    static final class SortProperty {
+        final String name;
+        final boolean descending;
+
+        SortProperty(String name, boolean descending) {
+            this.name = name;
+            this.descending = descending;
+        }
+
+        static SortProperty parse(String value) {
+            if (value.startsWith("-")) {
+                return new SortProperty(value.substring(1), true);
+            } else if (value.startsWith("+")) {
+                return new SortProperty(value.substring(1), false);
+            }
+            return new SortProperty(value, false);
+        }
+
+        @Override
+        public String toString() {
+            return (descending ? "-" : "+") + name;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.query;
+
+import com.infiniteautomation.mango.spring.service.AbstractBasicVOService;
+import com.serotonin.m2m2.vo.AbstractBasicVO;
+
+/**
+ * A resource which can be queried page by page with a cursor, named after the last path segment of its REST endpoint
+ * (e.g. data-points)
+ *
+ * @author Matt Fox
+ */
+public class KeysetResource<T extends AbstractBasicVO> {
+
+    private final String name;
+    private final AbstractBasicVOService<T, ?> service;
+
+    public KeysetResource(String name, AbstractBasicVOService<T, ?> service) {
+        this.name = name;
+        this.service = service;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public AbstractBasicVOService<T, ?> getService() {
+        return service;
+    }
+}
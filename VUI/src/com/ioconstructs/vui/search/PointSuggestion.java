@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.search;
+
+/**
+ * A data point offered by the typeahead index
+ *
+ * @author Matt Fox
+ */
+public class PointSuggestion {
+
+    private final String xid;
+    private final String name;
+    private final String deviceName;
+
+    PointSuggestion(String xid, String name, String deviceName) {
+        this.xid = xid;
+        this.name = name;
+        this.deviceName = deviceName;
+    }
+
+    public String getXid() {
+        return xid;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDeviceName() {
+        return deviceName;
+    }
+}
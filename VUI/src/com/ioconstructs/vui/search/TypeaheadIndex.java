@@ -0,0 +1,348 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.search;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import com.infiniteautomation.mango.spring.service.DataPointService;
+import com.infiniteautomation.mango.spring.service.PermissionService;
+import com.ioconstructs.vui.util.PointIndex;
+import com.ioconstructs.vui.util.PointSet;
+import com.serotonin.m2m2.vo.DataPointVO;
+import com.serotonin.m2m2.vo.permission.PermissionHolder;
+
+/**
+ * In memory n-gram index over the name, device name and XID of every data point, so point and device name pickers
+ * can suggest matches on each keystroke without a like query over the point table.
+ *
+ * <p>Each field is lower cased and indexed by its trigrams and by the first one and two characters of each word.
+ * A query is split into words, a point is a candidate if it has every trigram of every word (or the word prefix for
+ * words shorter than three characters). Candidates are checked against the fields, ranked and the best returned.
+ * Queries matching a huge number of points only check the first vui.search.maxCandidates of them.</p>
+ *
+ * <p>Like the tag index it is loaded and kept up to date by its {@link PointIndex} base.</p>
+ *
+ * @author Matt Fox
+ */
+@Service
+public class TypeaheadIndex extends PointIndex<TypeaheadIndex.Entry> {
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final String PREFIX_MARKER = "^";
+
+    private final int maxLimit;
+    private final int maxCandidates;
+
+    // guarded by this
+    private final Map<String, PointSet> grams = new HashMap<>();
+    private final Map<Integer, BitSet> pointsByDataSource = new HashMap<>();
+
+    @Autowired
+    public TypeaheadIndex(DataPointService dataPointService, PermissionService permissionService, Environment env) {
+        super("typeahead", dataPointService, permissionService);
+        this.maxLimit = env.getProperty("vui.search.maxLimit", Integer.class, 100);
+        this.maxCandidates = env.getProperty("vui.search.maxCandidates", Integer.class, 10000);
+    }
+
+    /**
+     * Suggest points whose name, device name or XID contain every word of the query. Points whose name starts with
+     * the query rank first, then name word, device name and XID prefix matches, then other matches.
+     */
+    public List<PointSuggestion> points(String query, int limit, PermissionHolder user) {
+        ensureLoaded();
+        synchronized (this) {
+            return points(query, limit, readable(user));
+        }
+    }
+
+    /**
+     * Called while holding the lock
+     *
+     * @param readable the points the user may read
+     */
+    List<PointSuggestion> points(String query, int limit, BitSet readable) {
+        List<String> words = words(query);
+        if (words.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String lowerQuery = query.trim().toLowerCase(Locale.ROOT);
+        int size = Math.max(1, Math.min(limit, maxLimit));
+
+        Comparator<Ranked> order = Comparator.comparingInt((Ranked r) -> r.rank)
+                .thenComparingInt(r -> r.entry.name.length())
+                .thenComparing(r -> r.entry.name)
+                .thenComparingInt(r -> r.id);
+        PriorityQueue<Ranked> best = new PriorityQueue<>(size + 1, order.reversed());
+
+        BitSet candidates = candidates(words, readable);
+        int checked = 0;
+        for (int id = candidates.nextSetBit(0); id >= 0 && checked < maxCandidates; id = candidates.nextSetBit(id + 1)) {
+            checked++;
+            Entry entry = entries.get(id);
+            if (entry.matches(words)) {
+                best.add(new Ranked(id, entry, entry.rank(lowerQuery, words.get(0))));
+                if (best.size() > size) {
+                    best.poll();
+                }
+            }
+        }
+
+        List<Ranked> ranked = new ArrayList<>(best);
+        ranked.sort(order);
+        return ranked.stream()
+                .map(r -> new PointSuggestion(r.entry.xid, r.entry.name, r.entry.deviceName))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Suggest the device names containing every word of the query, device names starting with the query rank first.
+     * An empty query returns the first device names in alphabetical order.
+     *
+     * @param dataSourceId only device names of this data source's points, or null for every data source
+     */
+    public List<String> deviceNames(String query, Integer dataSourceId, int limit, PermissionHolder user) {
+        ensureLoaded();
+        synchronized (this) {
+            return deviceNames(query, dataSourceId, limit, readable(user));
+        }
+    }
+
+    /**
+     * Called while holding the lock
+     *
+     * @param readable the points the user may read
+     */
+    List<String> deviceNames(String query, Integer dataSourceId, int limit, BitSet readable) {
+        List<String> words = words(query);
+        String lowerQuery = query != null ? query.trim().toLowerCase(Locale.ROOT) : "";
+        int size = Math.max(1, Math.min(limit, maxLimit));
+
+        // prefix matches first, each in alphabetical order
+        TreeMap<String, String> prefixMatches = new TreeMap<>();
+        TreeMap<String, String> otherMatches = new TreeMap<>();
+        BitSet candidates = words.isEmpty() ? readable : candidates(words, readable);
+        if (dataSourceId != null) {
+            // before counting, the data source's points may come after maxCandidates points of other data sources
+            BitSet ofDataSource = (BitSet) pointsByDataSource.getOrDefault(dataSourceId, new BitSet()).clone();
+            ofDataSource.and(candidates);
+            candidates = ofDataSource;
+        }
+        int checked = 0;
+        for (int id = candidates.nextSetBit(0); id >= 0 && checked < maxCandidates; id = candidates.nextSetBit(id + 1)) {
+            checked++;
+            Entry entry = entries.get(id);
+            if (entry.deviceName == null || !words.stream().allMatch(entry.lowerDeviceName::contains)) {
+                continue;
+            }
+            (entry.lowerDeviceName.startsWith(lowerQuery) ? prefixMatches : otherMatches)
+                    .putIfAbsent(entry.lowerDeviceName + '\0' + entry.deviceName, entry.deviceName);
+        }
+
+        List<String> result = new ArrayList<>(size);
+        for (String deviceName : prefixMatches.values()) {
+            if (result.size() == size) {
+                return result;
+            }
+            result.add(deviceName);
+        }
+        for (String deviceName : otherMatches.values()) {
+            if (result.size() == size) {
+                break;
+            }
+            result.add(deviceName);
+        }
+        return result;
+    }
+
+    @Override
+    protected Entry createEntry(DataPointVO vo, Entry existing) {
+        return new Entry(vo);
+    }
+
+    /**
+     * Called while holding the lock
+     */
+    void put(DataPointVO vo) {
+        putEntry(vo.getId(), new Entry(vo));
+    }
+
+    /**
+     * Called while holding the lock
+     */
+    void remove(int id) {
+        removeEntry(id);
+    }
+
+    @Override
+    protected void added(int id, Entry entry) {
+        pointsByDataSource.computeIfAbsent(entry.dataSourceId, k -> new BitSet()).set(id);
+        for (String gram : entry.grams()) {
+            grams.computeIfAbsent(gram, g -> new PointSet()).add(id);
+        }
+    }
+
+    @Override
+    protected void removed(int id, Entry entry) {
+        BitSet ofDataSource = pointsByDataSource.get(entry.dataSourceId);
+        ofDataSource.clear(id);
+        if (ofDataSource.isEmpty()) {
+            pointsByDataSource.remove(entry.dataSourceId);
+        }
+        for (String gram : entry.grams()) {
+            PointSet set = grams.get(gram);
+            if (set != null) {
+                set.remove(id);
+                if (set.isEmpty()) {
+                    grams.remove(gram);
+                }
+            }
+        }
+    }
+
+    /**
+     * Called while holding the lock
+     *
+     * @return the readable points which have every gram of the words
+     */
+    private BitSet candidates(List<String> words, BitSet readable) {
+        BitSet result = (BitSet) readable.clone();
+        for (String word : words) {
+            for (String gram : queryGrams(word)) {
+                PointSet set = grams.get(gram);
+                if (set == null) {
+                    return new BitSet();
+                }
+                BitSet bits = new BitSet();
+                set.addTo(bits);
+                result.and(bits);
+            }
+        }
+        return result;
+    }
+
+    private static List<String> words(String text) {
+        if (text == null) {
+            return Collections.emptyList();
+        }
+        List<String> words = new ArrayList<>();
+        for (String word : WORD_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static List<String> queryGrams(String word) {
+        if (word.length() < 3) {
+            return Collections.singletonList(PREFIX_MARKER + word);
+        }
+        List<String> result = new ArrayList<>(word.length() - 2);
+        for (int i = 0; i + 3 <= word.length(); i++) {
+            result.add(word.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    private static void addGrams(String lowerText, Set<String> result) {
+        if (lowerText == null) {
+            return;
+        }
+        for (String word : words(lowerText)) {
+            result.add(PREFIX_MARKER + word.substring(0, 1));
+            if (word.length() > 1) {
+                result.add(PREFIX_MARKER + word.substring(0, 2));
+            }
+            // trigrams within words only, queries are split into words the same way
+            for (int i = 0; i + 3 <= word.length(); i++) {
+                result.add(word.substring(i, i + 3));
+            }
+        }
+    }
+
+    static final class Entry extends PointIndex.PointEntry {
+        private final String xid;
+        private final String name;
+        private final String deviceName;
+        private final int dataSourceId;
+        private final String lowerXid;
+        private final String lowerName;
+        private final String lowerDeviceName;
+
+        private Entry(DataPointVO vo) {
+            super(vo.getReadPermission());
+            this.xid = vo.getXid();
+            this.name = vo.getName() != null ? vo.getName() : "";
+            this.deviceName = vo.getDeviceName();
+            this.dataSourceId = vo.getDataSourceId();
+            this.lowerXid = xid.toLowerCase(Locale.ROOT);
+            this.lowerName = name.toLowerCase(Locale.ROOT);
+            this.lowerDeviceName = deviceName != null ? deviceName.toLowerCase(Locale.ROOT) : "";
+        }
+
+        private Set<String> grams() {
+            Set<String> result = new HashSet<>();
+            addGrams(lowerName, result);
+            addGrams(lowerDeviceName, result);
+            addGrams(lowerXid, result);
+            return result;
+        }
+
+        private boolean matches(List<String> words) {
+            for (String word : words) {
+                if (!lowerName.contains(word) && !lowerDeviceName.contains(word) && !lowerXid.contains(word)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return lower is better
+         */
+        private int rank(String query, String firstWord) {
+            if (lowerName.equals(query)) {
+                return 0;
+            } else if (lowerName.startsWith(query)) {
+                return 1;
+            } else if (words(lowerName).stream().anyMatch(w -> w.startsWith(firstWord))) {
+                return 2;
+            } else if (lowerDeviceName.startsWith(firstWord)) {
+                return 3;
+            } else if (lowerXid.startsWith(firstWord)) {
+                return 4;
+            }
+            return 5;
+        }
+    }
+
+    private static final class Ranked {
+        private final int id;
+        private final Entry entry;
+        private final int rank;
+
+        private Ranked(int id, Entry entry, int rank) {
+            this.id = id;
+            this.entry = entry;
+            this.rank = rank;
+        }
+    }
+}
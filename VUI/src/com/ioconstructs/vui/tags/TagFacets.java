@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.tags;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The number of points matching a tag filter and the number of points with each value of the requested tag keys
+ *
+ * @author Matt Fox
+ */
+public class TagFacets {
+
+    private final int count;
+    private final Map<String, Map<String, Integer>> facets;
+    private final List<String> xids;
+
+    TagFacets(int count, Map<String, Map<String, Integer>> facets, List<String> xids) {
+        this.count = count;
+        this.facets = facets;
+        this.xids = xids;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return tag key to value to number of points, values without matching points are omitted
+     */
+    public Map<String, Map<String, Integer>> getFacets() {
+        return facets;
+    }
+
+    /**
+     * @return XIDs of the first matching points in id order, up to the requested limit
+     */
+    public List<String> getXids() {
+        return xids;
+    }
+}
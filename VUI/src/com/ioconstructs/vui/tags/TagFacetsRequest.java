@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.tags;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A tag filter sent to /vui-tags/facets. A point matches if, for every key of the {@link #filter}, its tag value is one
+ * of the listed values, null matches points without the tag.
+ *
+ * @author Matt Fox
+ */
+public class TagFacetsRequest {
+
+    private Map<String, List<String>> filter;
+    private List<String> facets;
+    private int limit;
+
+    public Map<String, List<String>> getFilter() {
+        return filter;
+    }
+
+    public void setFilter(Map<String, List<String>> filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * @return tag keys to count the values of, each key's counts ignore the filter on that key
+     */
+    public List<String> getFacets() {
+        return facets;
+    }
+
+    public void setFacets(List<String> facets) {
+        this.facets = facets;
+    }
+
+    /**
+     * @return maximum number of matching point XIDs to return
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+}
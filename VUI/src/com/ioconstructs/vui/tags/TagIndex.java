@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.tags;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import com.infiniteautomation.mango.spring.service.DataPointService;
+import com.infiniteautomation.mango.spring.service.PermissionService;
+import com.ioconstructs.vui.util.PointIndex;
+import com.ioconstructs.vui.util.PointSet;
+import com.serotonin.m2m2.vo.DataPointVO;
+import com.serotonin.m2m2.vo.permission.PermissionHolder;
+
+/**
+ * In memory inverted index from data point tag key and value to the ids of the points with that tag, answers a tag
+ * filter together with the value counts of other tag keys in one call so cascading tag pickers do not each query every
+ * point.
+ *
+ * <p>The index is loaded and kept up to date by its {@link PointIndex} base.</p>
+ *
+ * <p>The device name is indexed under the device key like the data-point-tags endpoints, the point name is not as
+ * almost every point has a different one.</p>
+ *
+ * @author Matt Fox
+ */
+@Service
+public class TagIndex extends PointIndex<TagIndex.Entry> {
+
+    public static final String DEVICE_KEY = "device";
+
+    private final int maxLimit;
+
+    // guarded by this
+    private final Map<String, Map<String, PointSet>> index = new HashMap<>();
+
+    @Autowired
+    public TagIndex(DataPointService dataPointService, PermissionService permissionService, Environment env) {
+        super("tag", dataPointService, permissionService);
+        this.maxLimit = env.getProperty("vui.tags.maxLimit", Integer.class, 1000);
+    }
+
+    /**
+     * Count the points matching the filter which the user may read, and the values of the facet keys among them.
+     * The counts of a facet key apply the filter on every other key so the picker for a key still offers its other
+     * values.
+     */
+    public TagFacets query(TagFacetsRequest request, PermissionHolder user) {
+        ensureLoaded();
+        synchronized (this) {
+            return query(request, readable(user));
+        }
+    }
+
+    /**
+     * Called while holding the lock
+     *
+     * @param readable the points the user may read
+     */
+    TagFacets query(TagFacetsRequest request, BitSet readable) {
+        Map<String, List<String>> filter = request.getFilter() != null ? request.getFilter() : Collections.emptyMap();
+        List<String> facetKeys = request.getFacets() != null ? request.getFacets() : Collections.emptyList();
+        int limit = Math.max(0, Math.min(request.getLimit(), maxLimit));
+
+        Map<String, BitSet> matches = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> e : filter.entrySet()) {
+            if (e.getValue() != null) {
+                matches.put(e.getKey(), matching(e.getKey(), e.getValue()));
+            }
+        }
+
+        BitSet result = intersect(readable, matches, null);
+        Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+        for (String key : facetKeys) {
+            BitSet base = matches.containsKey(key) ? intersect(readable, matches, key) : result;
+            Map<String, Integer> counts = new TreeMap<>();
+            index.getOrDefault(key, Collections.emptyMap()).forEach((value, set) -> {
+                int count = set.countIn(base);
+                if (count > 0) {
+                    counts.put(value, count);
+                }
+            });
+            facets.put(key, counts);
+        }
+
+        List<String> xids = new ArrayList<>(Math.min(limit, 64));
+        for (int id = result.nextSetBit(0); id >= 0 && xids.size() < limit; id = result.nextSetBit(id + 1)) {
+            xids.add(entries.get(id).xid);
+        }
+        return new TagFacets(result.cardinality(), facets, xids);
+    }
+
+    @Override
+    protected Entry createEntry(DataPointVO vo, Entry existing) {
+        // tags are not changed when a point is saved without them
+        return entry(vo, vo.getTags() != null ? vo.getTags() : existing != null ? existing.tags : null);
+    }
+
+    /**
+     * Called while holding the lock
+     */
+    void put(DataPointVO vo, Map<String, String> tags) {
+        putEntry(vo.getId(), entry(vo, tags));
+    }
+
+    /**
+     * Called while holding the lock
+     */
+    void remove(int id) {
+        removeEntry(id);
+    }
+
+    @Override
+    protected void added(int id, Entry entry) {
+        entry.tags.forEach((key, value) -> index.computeIfAbsent(key, k -> new HashMap<>())
+                .computeIfAbsent(value, v -> new PointSet())
+                .add(id));
+    }
+
+    @Override
+    protected void removed(int id, Entry entry) {
+        entry.tags.forEach((key, value) -> {
+            Map<String, PointSet> values = index.get(key);
+            PointSet set = values != null ? values.get(value) : null;
+            if (set != null) {
+                set.remove(id);
+                if (set.isEmpty()) {
+                    values.remove(value);
+                    if (values.isEmpty()) {
+                        index.remove(key);
+                    }
+                }
+            }
+        });
+    }
+
+    private static Entry entry(DataPointVO vo, Map<String, String> tags) {
+        Map<String, String> indexed = new HashMap<>();
+        if (tags != null) {
+            indexed.putAll(tags);
+        }
+        if (vo.getDeviceName() != null) {
+            // device is a reserved tag key
+            indexed.put(DEVICE_KEY, vo.getDeviceName());
+        }
+        return new Entry(vo, indexed);
+    }
+
+    /**
+     * Called while holding the lock
+     *
+     * @return the points with one of the values, null matches the points without the key
+     */
+    private BitSet matching(String key, List<String> values) {
+        Map<String, PointSet> valueSets = index.getOrDefault(key, Collections.emptyMap());
+        BitSet result = new BitSet();
+        for (String value : values) {
+            if (value == null) {
+                BitSet withKey = new BitSet();
+                valueSets.values().forEach(set -> set.addTo(withKey));
+                BitSet withoutKey = (BitSet) points.clone();
+                withoutKey.andNot(withKey);
+                result.or(withoutKey);
+            } else {
+                PointSet set = valueSets.get(value);
+                if (set != null) {
+                    set.addTo(result);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static BitSet intersect(BitSet readable, Map<String, BitSet> matches, String exceptKey) {
+        BitSet result = (BitSet) readable.clone();
+        matches.forEach((key, bits) -> {
+            if (!key.equals(exceptKey)) {
+                result.and(bits);
+            }
+        });
+        return result;
+    }
+
+    static final class Entry extends PointIndex.PointEntry {
+        private final String xid;
+        private final Map<String, String> tags;
+
+        private Entry(DataPointVO vo, Map<String, String> tags) {
+            super(vo.getReadPermission());
+            this.xid = vo.getXid();
+            this.tags = tags;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.util;
+
+/**
+ * Parses Accept-Encoding header values (RFC 7231 section 5.3.4). Codings are compared case insensitively as whole
+ * tokens, a quality value of zero marks a coding as not acceptable and the "*" wildcard applies to any coding that is
+ * not listed explicitly.
+ *
+ * @author Matt Fox
+ */
+public final class AcceptEncoding {
+    private AcceptEncoding() {}
+
+    /**
+     * @param acceptEncoding Accept-Encoding header value, may be null
+     * @param coding content coding, e.g. br or gzip
+     * @return true if the client accepts the coding
+     */
+    public static boolean accepts(String acceptEncoding, String coding) {
+        return quality(acceptEncoding, coding) > 0;
+    }
+
+    /**
+     * @param acceptEncoding Accept-Encoding header value, may be null
+     * @param coding content coding, e.g. br or gzip
+     * @return the quality value the client assigned to the coding, 0 if it is not acceptable
+     */
+    public static double quality(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) {
+            return 0;
+        }
+
+        double wildcard = 0;
+        for (String element : acceptEncoding.split(",")) {
+            int semicolon = element.indexOf(';');
+            String name = (semicolon < 0 ? element : element.substring(0, semicolon)).trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+
+            double q = semicolon < 0 ? 1 : parseQuality(element.substring(semicolon + 1));
+            if (name.equalsIgnoreCase(coding) || "gzip".equalsIgnoreCase(coding) && name.equalsIgnoreCase("x-gzip")) {
+                return q;
+            } else if (name.equals("*")) {
+                wildcard = q;
+            }
+        }
+        return wildcard;
+    }
+
+    private static double parseQuality(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            int equals = parameter.indexOf('=');
+            if (equals >= 0 && parameter.substring(0, equals).trim().equalsIgnoreCase("q")) {
+                try {
+                    double q = Double.parseDouble(parameter.substring(equals + 1).trim());
+                    return q >= 0 && q <= 1 ? q : 0;
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * SHA-256 content hashes used for ETags and content addressed URLs
+ *
+ * @author Matt Fox
+ */
+public final class ContentHash {
+    private ContentHash() {}
+
+    /**
+     * @return URL safe base64 encoded SHA-256 hash of the content
+     */
+    public static String of(byte[] content) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest(content));
+    }
+
+    /**
+     * @return strong (quoted) ETag for the content
+     */
+    public static String etag(byte[] content) {
+        return "\"" + of(content) + "\"";
+    }
+
+    /**
+     * @return ETag for an encoded variant (e.g. gzip) of the content identified by a strong ETag
+     */
+    public static String variant(String etag, String suffix) {
+        return etag.substring(0, etag.length() - 1) + "-" + suffix + "\"";
+    }
+
+    /**
+     * Checks an If-None-Match header value against one or more ETags, using the weak comparison function
+     */
+    public static boolean matches(String ifNoneMatch, String... etags) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            for (String etag : etags) {
+                if (tag.equals(etag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static byte[] digest(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * @author Matt Fox
+ */
+public final class Gzip {
+    private Gzip() {}
+
+    /**
+     * Compress content using the best compression level, intended for content that is compressed once and served many times
+     */
+    public static byte[] compress(byte[] content) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, content.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+            gzip.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public static boolean accepted(HttpServletRequest request) {
+        return accepted(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    public static boolean accepted(String acceptEncoding) {
+        return AcceptEncoding.accepts(acceptEncoding, "gzip");
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.util;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+
+import com.infiniteautomation.mango.permission.MangoPermission;
+import com.infiniteautomation.mango.spring.events.DaoEvent;
+import com.infiniteautomation.mango.spring.events.DaoEventType;
+import com.infiniteautomation.mango.spring.service.DataPointService;
+import com.infiniteautomation.mango.spring.service.PermissionService;
+import com.serotonin.m2m2.vo.DataPointVO;
+import com.serotonin.m2m2.vo.permission.PermissionHolder;
+import com.serotonin.m2m2.vo.role.Role;
+import com.serotonin.m2m2.vo.role.RoleVO;
+
+import net.jazdw.rql.parser.ASTNode;
+
+/**
+ * Base of the in memory indexes over every data point. The points are loaded on startup, or by the first query if that
+ * failed, and kept up to date from the data point save and delete events. The points a user may read are kept as a
+ * bit set per set of roles, updated along with the index and discarded when a role changes.
+ *
+ * <p>Subclasses keep their own structures up to date in {@link #added} and {@link #removed}. The index, its entries
+ * and the readable bit sets are guarded by the index itself.</p>
+ *
+ * @param <E> what is kept for each point
+ * @author Matt Fox
+ */
+public abstract class PointIndex<E extends PointIndex.PointEntry> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PointIndex.class);
+
+    protected final PermissionService permissionService;
+    private final DataPointService dataPointService;
+    private final String name;
+    private final ExecutorService executor;
+    private final Object loadLock = new Object();
+    private volatile boolean loaded;
+
+    // guarded by this
+    protected final Map<Integer, E> entries = new HashMap<>();
+    protected final BitSet points = new BitSet();
+    private final Map<String, Readable> readableByRoles = new HashMap<>();
+    /**
+     * non null while loading, points saved or deleted since the load started are not overwritten by it
+     */
+    private Set<Integer> changedWhileLoading;
+
+    /**
+     * @param name names the loading thread and the log messages
+     */
+    protected PointIndex(String name, DataPointService dataPointService, PermissionService permissionService) {
+        this.name = name;
+        this.dataPointService = dataPointService;
+        this.permissionService = permissionService;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "VUI " + name + " index");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    private void init() {
+        executor.execute(() -> {
+            try {
+                ensureLoaded();
+            } catch (Exception e) {
+                LOG.warn("Failed to load the {} index, it is loaded by the first query", name, e);
+            }
+        });
+    }
+
+    @PreDestroy
+    private void destroy() {
+        executor.shutdownNow();
+    }
+
+    @EventListener
+    protected void dataPointChanged(DaoEvent<? extends DataPointVO, ?> event) {
+        DataPointVO vo = event.getVo();
+        synchronized (this) {
+            if (!loaded && changedWhileLoading == null) {
+                // the load reads the saved point
+                return;
+            }
+            if (changedWhileLoading != null) {
+                changedWhileLoading.add(vo.getId());
+            }
+            if (event.getType() == DaoEventType.DELETE) {
+                removeEntry(vo.getId());
+            } else {
+                putEntry(vo.getId(), createEntry(vo, entries.get(vo.getId())));
+            }
+        }
+    }
+
+    @EventListener
+    protected void roleChanged(DaoEvent<? extends RoleVO, ?> event) {
+        synchronized (this) {
+            readableByRoles.clear();
+        }
+    }
+
+    /**
+     * Loads the points unless they were loaded, call before taking the lock
+     */
+    protected final void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (loadLock) {
+            if (loaded) {
+                return;
+            }
+            synchronized (this) {
+                changedWhileLoading = new HashSet<>();
+            }
+            try {
+                permissionService.runAsSystemAdmin(() -> dataPointService.customizedQuery(new ASTNode("and"), (DataPointVO vo) -> {
+                    synchronized (this) {
+                        if (!changedWhileLoading.contains(vo.getId())) {
+                            putEntry(vo.getId(), createEntry(vo, null));
+                        }
+                    }
+                }));
+                loaded = true;
+            } finally {
+                synchronized (this) {
+                    changedWhileLoading = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Called while holding the lock
+     *
+     * @param existing the entry of the point before it was saved, null while loading and for new points
+     */
+    protected abstract E createEntry(DataPointVO vo, E existing);
+
+    /**
+     * Called while holding the lock after the entry was added
+     */
+    protected abstract void added(int id, E entry);
+
+    /**
+     * Called while holding the lock after the entry was removed
+     */
+    protected abstract void removed(int id, E entry);
+
+    /**
+     * Called while holding the lock, replaces the entry of the point
+     */
+    protected final void putEntry(int id, E entry) {
+        removeEntry(id);
+        entries.put(id, entry);
+        points.set(id);
+        added(id, entry);
+        for (Readable readable : readableByRoles.values()) {
+            readable.bits.set(id, permissionService.hasPermission(readable.holder, entry.readPermission));
+        }
+    }
+
+    /**
+     * Called while holding the lock
+     */
+    protected final void removeEntry(int id) {
+        E entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        points.clear(id);
+        removed(id, entry);
+        for (Readable readable : readableByRoles.values()) {
+            readable.bits.clear(id);
+        }
+    }
+
+    /**
+     * Called while holding the lock
+     *
+     * @return the points the user may read, do not modify
+     */
+    protected final BitSet readable(PermissionHolder user) {
+        if (permissionService.hasAdminRole(user)) {
+            return points;
+        }
+        String key = user.getAllInheritedRoles().stream().map(Role::getXid).sorted().collect(Collectors.joining(","));
+        return readableByRoles.computeIfAbsent(key, k -> {
+            BitSet bits = new BitSet();
+            entries.forEach((id, entry) -> {
+                if (permissionService.hasPermission(user, entry.readPermission)) {
+                    bits.set(id);
+                }
+            });
+            return new Readable(user, bits);
+        }).bits;
+    }
+
+    /**
+     * What an index keeps for a point, at least its read permission
+     */
+    public abstract static class PointEntry {
+        final MangoPermission readPermission;
+
+        protected PointEntry(MangoPermission readPermission) {
+            this.readPermission = readPermission;
+        }
+    }
+
+    /**
+     * The points readable by a set of roles, the holder is kept to check the permission of saved points
+     */
+    private static final class Readable {
+        private final PermissionHolder holder;
+        private final BitSet bits;
+
+        private Readable(PermissionHolder holder, BitSet bits) {
+            this.holder = holder;
+            this.bits = bits;
+        }
+    }
+}
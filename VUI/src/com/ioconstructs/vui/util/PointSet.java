@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+package com.ioconstructs.vui.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Set of data point ids, held as a sorted array while it is small and as a bit set once it is large. Most sets in the
+ * tag and typeahead indexes only hold a few points, a bit set for each of them would take maxId / 8 bytes.
+ *
+ * @author Matt Fox
+ */
+public final class PointSet {
+
+    /**
+     * above this size the bit set is smaller for ids up to 128k
+     */
+    public static final int MAX_ARRAY_SIZE = 4096;
+
+    private int[] array = new int[4];
+    private int size;
+    private BitSet bits;
+
+    public void add(int id) {
+        if (bits != null) {
+            bits.set(id);
+            return;
+        }
+        int index = Arrays.binarySearch(array, 0, size, id);
+        if (index >= 0) {
+            return;
+        }
+        if (size == MAX_ARRAY_SIZE) {
+            bits = new BitSet();
+            for (int i = 0; i < size; i++) {
+                bits.set(array[i]);
+            }
+            bits.set(id);
+            array = null;
+            size = 0;
+            return;
+        }
+        index = -index - 1;
+        if (size == array.length) {
+            array = Arrays.copyOf(array, size * 2);
+        }
+        System.arraycopy(array, index, array, index + 1, size - index);
+        array[index] = id;
+        size++;
+    }
+
+    public void remove(int id) {
+        if (bits != null) {
+            bits.clear(id);
+            return;
+        }
+        int index = Arrays.binarySearch(array, 0, size, id);
+        if (index >= 0) {
+            System.arraycopy(array, index + 1, array, index, size - index - 1);
+            size--;
+        }
+    }
+
+    public boolean isEmpty() {
+        return bits != null ? bits.isEmpty() : size == 0;
+    }
+
+    /**
+     * @return number of ids which are also in the filter
+     */
+    public int countIn(BitSet filter) {
+        if (bits != null) {
+            BitSet and = (BitSet) bits.clone();
+            and.and(filter);
+            return and.cardinality();
+        }
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (filter.get(array[i])) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Add every id to the target
+     */
+    public void addTo(BitSet target) {
+        if (bits != null) {
+            target.or(bits);
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            target.set(array[i]);
+        }
+    }
+}
@@ -22,6 +22,55 @@ interface BootstrapInit
     vuiSettings:VUISettings, user:User|null, preLoginData:PreLoginData, postLoginData:PostLoginData|null    
 }
 
+interface CombinedBootstrapData
+{
+    preLogin:PreLoginData, postLogin:PostLoginData
+}
+
+// set while the last bootstrap had a user, the session cookie itself is not readable
+const SESSION_HINT_KEY = 'vuiBootstrapSession';
+
+const hasSessionHint = () => {
+    try {
+        return localStorage.getItem(SESSION_HINT_KEY) === 'true';
+    } catch (e) {
+        return false;
+    }
+};
+
+const setSessionHint = (loggedIn: boolean) => {
+    try {
+        if (loggedIn) {
+            localStorage.setItem(SESSION_HINT_KEY, 'true');
+        } else {
+            localStorage.removeItem(SESSION_HINT_KEY);
+        }
+    } catch (e) {
+        // storage is not available, always use the separate requests
+    }
+};
+
+/**
+ * Loads the pre and post login data in one round trip
+ *
+ * @returns null if there is no session any more
+ */
+const loadCombined = async ():Promise<CombinedBootstrapData|null> => {
+    try {
+        const response: AxiosResponse<CombinedBootstrapData> = await axios({
+            method: 'GET',
+            url: '/rest/latest/vui-bootstrap/combined'
+        });
+        return response.data;
+    } catch (error: any) {
+        const status = error.response && error.response.status;
+        if (status === 401 || status === 403) {
+            return null;
+        }
+        throw error;
+    }
+};
+
 export const boostrapPreLogin =  () => {
     const SessionStore = useSessionStore();
     let beforeinstallpromptEvent: Event;
@@ -35,6 +84,20 @@ export const boostrapPreLogin =  () => {
             // clear the autologin credentials if the url parameter is set
             SessionStore.checkClearAutoLogin();
         const TRANSLATION_STORE = useTranslationStore()
+
+        // a session most likely exists, get everything in a single request and load both bundles together
+        const combined = hasSessionHint() ? await loadCombined() : null;
+        if (combined && combined.preLogin.user) {
+            const {preLogin, postLogin} = combined;
+            await TRANSLATION_STORE.loadBundles([preLogin.translationsBundle, postLogin.translationsBundle]);
+            preLogin.user!.originalId = preLogin.user!.username;
+
+            const settings: VUISettings = Object.assign({}, defaultUiSettings);
+            apply(settings, preLogin.vuiSettings && preLogin.vuiSettings.jsonData);
+            SessionStore.autoLogin(settings);
+            return {vuiSettings: settings, user: preLogin.user, preLoginData: preLogin, postLoginData: postLogin} as BootstrapInit;
+        }
+
         const preLoginDataPromise: AxiosResponse<any,PreLoginData> = await axios({
             method: 'GET',
             url: '/rest/latest/vui-bootstrap/pre-login'})
@@ -56,7 +119,7 @@ export const boostrapPreLogin =  () => {
 
         const preLoginData:PreLoginData = preLoginDataPromise.data;
 
-        TRANSLATION_STORE.loadTranslations(preLoginData.translations)
+        await TRANSLATION_STORE.loadBundles([preLoginData.translationsBundle])
 
         const vuiSettings: VUISettings = Object.assign({}, defaultUiSettings);
         const customSettings = preLoginData.vuiSettings && preLoginData.vuiSettings.jsonData;
@@ -105,6 +168,7 @@ export const boostrapPreLogin =  () => {
             // });
 
         // const postLoginDataPromise = userPromise.then((user) => {
+            setSessionHint(!!preLoginData.user);
             if (!preLoginData.user) return {vuiSettings, user:null, preLoginData, postLoginData:null};
             const user = preLoginData.user
             const postLoginDataPromise:AxiosResponse<any,PostLoginData> = await axios({
@@ -115,6 +179,7 @@ export const boostrapPreLogin =  () => {
             if (postLoginDataPromise.status !== 200) {
                 throw new Error('Failed to fetch post-login bootstrap data');
             }
+            await TRANSLATION_STORE.loadBundles([postLoginData.translationsBundle])
             
 
             /* .then((response) => {
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+import type { WidgetDataResult } from '@/services/DashboardData';
+
+/**
+ * Decodes the columnar binary format of /rest/latest/vui-dashboard/data (see ColumnarResultWriter.java), the values
+ * are returned as typed arrays which charts can use directly.
+ */
+
+export const COLUMNAR_MEDIA_TYPE = 'application/vnd.vui.columnar';
+
+const FRAME_END = 0;
+const FRAME_VALUES = 1;
+const FRAME_JSON = 2;
+const COLUMN_FLOAT64 = 0;
+const COLUMN_BOOLEAN = 1;
+
+const NULL_LENGTH = 0xffffffff;
+const BOOLEAN_NULL = 255;
+
+export interface ColumnarValues {
+    id: string;
+    xid: string;
+    /** epoch ms */
+    timestamps: Float64Array;
+    /** numeric values with NaN for null, 0/1/255 (null) for binary points, strings otherwise */
+    values: Float64Array | Uint8Array | (string | null)[];
+}
+
+export type ColumnarResult = ColumnarValues | WidgetDataResult;
+
+export function isColumnarValues(result: ColumnarResult): result is ColumnarValues {
+    return (result as ColumnarValues).timestamps instanceof Float64Array;
+}
+
+class Reader {
+    view: DataView;
+    bytes: Uint8Array;
+    offset = 0;
+    decoder = new TextDecoder();
+
+    constructor(buffer: ArrayBuffer) {
+        this.view = new DataView(buffer);
+        this.bytes = new Uint8Array(buffer);
+    }
+
+    u8() {
+        return this.view.getUint8(this.offset++);
+    }
+
+    u32() {
+        const value = this.view.getUint32(this.offset);
+        this.offset += 4;
+        return value;
+    }
+
+    i64() {
+        const value = this.view.getBigInt64(this.offset);
+        this.offset += 8;
+        return Number(value);
+    }
+
+    f64() {
+        const value = this.view.getFloat64(this.offset);
+        this.offset += 8;
+        return value;
+    }
+
+    /** zigzag encoded LEB128, timestamp deltas fit well within a double */
+    varLong() {
+        let result = 0;
+        let multiplier = 1;
+        let byte;
+        do {
+            byte = this.u8();
+            result += (byte & 0x7f) * multiplier;
+            multiplier *= 128;
+        } while (byte & 0x80);
+        return result % 2 === 0 ? result / 2 : -(result + 1) / 2;
+    }
+
+    string(): string | null {
+        const length = this.u32();
+        if (length === NULL_LENGTH) return null;
+        const value = this.decoder.decode(this.bytes.subarray(this.offset, this.offset + length));
+        this.offset += length;
+        return value;
+    }
+}
+
+export function decodeColumnar(buffer: ArrayBuffer): ColumnarResult[] {
+    const reader = new Reader(buffer);
+    const magic = String.fromCharCode(reader.u8(), reader.u8(), reader.u8(), reader.u8());
+    const version = reader.u8();
+    if (magic !== 'VUIC' || version !== 1) {
+        throw new Error('Unsupported columnar format');
+    }
+
+    const results: ColumnarResult[] = [];
+    for (;;) {
+        const frame = reader.u8();
+        if (frame === FRAME_END) {
+            return results;
+        } else if (frame === FRAME_JSON) {
+            results.push(JSON.parse(reader.string() as string));
+        } else if (frame === FRAME_VALUES) {
+            results.push(decodeValues(reader));
+        } else {
+            throw new Error('Unknown columnar frame ' + frame);
+        }
+    }
+}
+
+function decodeValues(reader: Reader): ColumnarValues {
+    const id = reader.string() as string;
+    const xid = reader.string() as string;
+    const count = reader.u32();
+
+    const timestamps = new Float64Array(count);
+    let timestamp = 0;
+    for (let i = 0; i < count; i++) {
+        timestamp = i === 0 ? reader.i64() : timestamp + reader.varLong();
+        timestamps[i] = timestamp;
+    }
+
+    const column = reader.u8();
+    let values: ColumnarValues['values'];
+    if (column === COLUMN_FLOAT64) {
+        values = new Float64Array(count);
+        for (let i = 0; i < count; i++) values[i] = reader.f64();
+    } else if (column === COLUMN_BOOLEAN) {
+        values = new Uint8Array(count);
+        for (let i = 0; i < count; i++) values[i] = reader.u8();
+    } else {
+        values = new Array(count);
+        for (let i = 0; i < count; i++) values[i] = reader.string();
+    }
+
+    return { id, xid, timestamps, values };
+}
+
+/**
+ * @returns the value at the index, null for missing values
+ */
+export function columnarValue(result: ColumnarValues, index: number): number | boolean | string | null {
+    const values = result.values;
+    if (values instanceof Float64Array) {
+        return Number.isNaN(values[index]) ? null : values[index];
+    } else if (values instanceof Uint8Array) {
+        return values[index] === BOOLEAN_NULL ? null : values[index] === 1;
+    }
+    return values[index];
+}
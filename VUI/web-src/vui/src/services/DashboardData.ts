@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+import {axios} from '@/boot/axios'
+import { COLUMNAR_MEDIA_TYPE, ColumnarResult, decodeColumnar } from '@/services/ColumnarDecoder';
+
+export type WidgetDataType = 'LATEST' | 'TIME_PERIOD' | 'STATISTICS';
+export type WidgetRollup = 'NONE' | 'FIRST' | 'LAST' | 'MINIMUM' | 'MAXIMUM' | 'SUM' | 'COUNT' | 'DELTA' | 'AVERAGE' | 'ARITHMETIC_MEAN';
+export type WidgetDownsample = 'NONE' | 'LTTB' | 'MIN_MAX';
+
+export interface WidgetDataRequest {
+    type: WidgetDataType;
+    xids: string[];
+    /** epoch ms, inclusive */
+    from?: number;
+    /** epoch ms, exclusive */
+    to?: number;
+    limit?: number;
+    rollup?: WidgetRollup;
+    timePeriod?: { periods: number; type: string };
+    timezone?: string;
+    downsample?: WidgetDownsample;
+    /** number of values a downsampled series should have, usually the chart width in pixels */
+    targetPoints?: number;
+}
+
+export interface TimestampValue {
+    timestamp: number;
+    value: unknown;
+}
+
+export interface WidgetDataResult {
+    id: string;
+    xid?: string;
+    values?: TimestampValue[];
+    statistics?: {
+        count: number;
+        first?: TimestampValue;
+        last?: TimestampValue;
+        minimum?: TimestampValue;
+        maximum?: TimestampValue;
+        sum?: number;
+        arithmeticMean?: number;
+    };
+    error?: string;
+}
+
+interface Queued {
+    id: string;
+    request: WidgetDataRequest;
+    resolve: (results: WidgetDataResult[]) => void;
+    reject: (error: unknown) => void;
+}
+
+const dataUrl = '/rest/latest/vui-dashboard/data';
+
+/** the server rejects batches with more widget requests than vui.data.maxRequests (default 200) */
+const MAX_REQUESTS = 200;
+
+function chunk<T>(items: T[]): T[][] {
+    const chunks: T[][] = [];
+    for (let i = 0; i < items.length; i += MAX_REQUESTS) {
+        chunks.push(items.slice(i, i + MAX_REQUESTS));
+    }
+    return chunks;
+}
+
+// requests made in the same tick (i.e. by the widgets of a page as it renders) are sent together, in batches of at
+// most MAX_REQUESTS
+let queue: Queued[] = [];
+let nextId = 1;
+
+const sendBatch = async (batch: Queued[]) => {
+    try {
+        const response = await axios.post<WidgetDataResult[]>(dataUrl,
+            batch.map(q => Object.assign({ id: q.id }, q.request)));
+
+        const resultsById: Record<string, WidgetDataResult[]> = {};
+        for (const result of response.data) {
+            (resultsById[result.id] || (resultsById[result.id] = [])).push(result);
+        }
+        batch.forEach(q => q.resolve(resultsById[q.id] || []));
+    } catch (error) {
+        batch.forEach(q => q.reject(error));
+    }
+};
+
+const sendQueue = () => {
+    const queued = queue;
+    queue = [];
+    chunk(queued).forEach(batch => sendBatch(batch));
+};
+
+const DashboardData = {
+    /**
+     * Load the data for one widget, the request is combined with the other requests made in the same tick
+     *
+     * @returns one result per point of the request
+     */
+    load(request:WidgetDataRequest):Promise<WidgetDataResult[]> {
+        return new Promise((resolve, reject) => {
+            if (!queue.length) {
+                setTimeout(sendQueue);
+            }
+            queue.push({ id: String(nextId++), request, resolve, reject });
+        });
+    },
+
+    /**
+     * Load the data for a list of widgets, in one request unless there are more than the server accepts per batch
+     */
+    async loadAll(requests:(WidgetDataRequest & { id: string })[]):Promise<WidgetDataResult[]> {
+        const responses = await Promise.all(chunk(requests).map(batch => axios.post<WidgetDataResult[]>(dataUrl, batch)));
+        return responses.flatMap(response => response.data);
+    },
+
+    /**
+     * Load the data for a list of widgets in the columnar binary format, values are returned as typed arrays.
+     * Statistics and errors are returned as plain results.
+     */
+    async loadColumnar(requests:(WidgetDataRequest & { id: string })[]):Promise<ColumnarResult[]> {
+        const responses = await Promise.all(chunk(requests).map(batch => axios.post<ArrayBuffer>(dataUrl, batch, {
+            responseType: 'arraybuffer',
+            // JSON is still accepted so errors for the whole request are readable
+            headers: { Accept: `${COLUMNAR_MEDIA_TYPE}, application/json;q=0.5` }
+        })));
+        return responses.flatMap(response => decodeColumnar(response.data));
+    }
+};
+
+export default DashboardData;
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+import {axios} from '@/boot/axios'
+import { channelForUrl, openWebSocket } from '@/services/GatewaySocket';
+
+/**
+ * Active and unacknowledged event counts per alarm level and per data point XID. The counts are kept in memory by
+ * the server, the event-counts channel of the VUI gateway sends them once and then pushes each change, so the header
+ * badge and alarm views do not need to poll the event summary endpoints. Each change has a revision, deltas which
+ * the last summary already counted are ignored.
+ */
+
+export interface EventCounter {
+    active: number;
+    unacknowledged: number;
+}
+
+export interface EventCountsSummary {
+    levels: Record<string, EventCounter>;
+    points: Record<string, EventCounter>;
+    /** revision of the last change included in the counts */
+    revision: number;
+}
+
+interface EventCountsDelta {
+    eventId: number;
+    level: string;
+    xid: string | null;
+    active: number;
+    unacknowledged: number;
+    revision: number;
+}
+
+type Listener = (counts: EventCountsSummary) => void;
+
+const countsUrl = '/rest/latest/vui-events/counts';
+const channelPath = '/rest/latest/websocket/event-counts';
+
+export const eventCountsSettings = {
+    /** ms between requests for the counts when the gateway is disabled */
+    pollInterval: 30000,
+    /** ms to wait before reconnecting after the stream closed */
+    reconnectDelay: 5000
+};
+
+const listeners = new Set<Listener>();
+let counts: EventCountsSummary | undefined;
+let socket: WebSocket | undefined;
+let timer: ReturnType<typeof setTimeout> | undefined;
+
+function notify() {
+    if (!counts) return;
+    for (const listener of listeners) {
+        listener(counts);
+    }
+}
+
+function applyDelta(delta: EventCountsDelta) {
+    if (!counts || delta.revision <= counts.revision) return;
+    const level = counts.levels[delta.level] || (counts.levels[delta.level] = { active: 0, unacknowledged: 0 });
+    level.active += delta.active;
+    level.unacknowledged += delta.unacknowledged;
+
+    if (delta.xid != null) {
+        const point = counts.points[delta.xid] || (counts.points[delta.xid] = { active: 0, unacknowledged: 0 });
+        point.active += delta.active;
+        point.unacknowledged += delta.unacknowledged;
+        if (!point.active && !point.unacknowledged) {
+            delete counts.points[delta.xid];
+        }
+    }
+}
+
+function connect() {
+    const ws = (socket = openWebSocket(channelPath));
+    ws.onopen = () => {
+        ws.send(JSON.stringify({ eventTypes: ['*'] }));
+    };
+    ws.onmessage = (event) => {
+        const message = typeof event.data === 'string' ? JSON.parse(event.data) : event.data;
+        if (message.status !== 'OK') return;
+        const payload = message.payload;
+        if (payload.type === 'SUMMARY') {
+            counts = payload.counts;
+        } else if (payload.type === 'DELTA') {
+            applyDelta(payload.delta);
+        }
+        notify();
+    };
+    ws.onclose = () => {
+        if (socket === ws && listeners.size) {
+            socket = undefined;
+            timer = setTimeout(connect, eventCountsSettings.reconnectDelay);
+        }
+    };
+}
+
+async function poll() {
+    try {
+        counts = await EventCounts.get();
+        notify();
+    } finally {
+        if (listeners.size) {
+            timer = setTimeout(poll, eventCountsSettings.pollInterval);
+        }
+    }
+}
+
+function start() {
+    if (channelForUrl(channelPath)) {
+        connect();
+    } else {
+        poll().catch(() => {});
+    }
+}
+
+function stop() {
+    if (timer) {
+        clearTimeout(timer);
+        timer = undefined;
+    }
+    if (socket) {
+        const ws = socket;
+        socket = undefined;
+        ws.close();
+    }
+    counts = undefined;
+}
+
+const EventCounts = {
+    /**
+     * Get the current counts once
+     */
+    async get(): Promise<EventCountsSummary> {
+        const response = await axios.get<EventCountsSummary>(countsUrl);
+        return response.data;
+    },
+
+    /**
+     * Calls the listener with the counts whenever they change, all subscribers share one stream
+     *
+     * @returns function which removes the listener
+     */
+    subscribe(listener: Listener): () => void {
+        listeners.add(listener);
+        if (listeners.size === 1) {
+            start();
+        } else if (counts) {
+            listener(counts);
+        }
+        return () => {
+            if (listeners.delete(listener) && !listeners.size) {
+                stop();
+            }
+        };
+    }
+};
+
+export default EventCounts;
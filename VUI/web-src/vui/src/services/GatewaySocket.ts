@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+import constants from '@/boot/constants';
+
+/**
+ * Multiplexes the VUI's WebSocket subscriptions over a single connection to /rest/latest/websocket/vui-gateway.
+ *
+ * openWebSocket() returns an object which behaves like a WebSocket connected to one of the per resource endpoints
+ * (e.g. /rest/latest/websocket/data-points), it opens a stream on the matching gateway channel and translates the
+ * subscription messages of the EventManager and NotificationManager into gateway frames. Endpoints which are not
+ * served by the gateway get a real WebSocket.
+ */
+
+const GATEWAY_PATH = '/rest/latest/websocket/vui-gateway';
+const ENDPOINT_PREFIX = '/rest/latest/websocket/';
+
+/** channels served by the gateway, DAO channels receive all notifications until they subscribe */
+const DAO_CHANNELS = ['data-points', 'data-sources', 'watch-lists', 'json-data', 'event-detectors', 'event-handlers', 'roles', 'users'];
+const CHANNELS = ['point-value', 'event-counts', ...DAO_CHANNELS];
+
+const READY_STATE_CONNECTING = 0;
+const READY_STATE_OPEN = 1;
+const READY_STATE_CLOSED = 3;
+
+/** the NotificationManager uses create, the DAO notifications use add */
+const mapNotificationType: Record<string, string> = { create: 'add' };
+
+export const gatewaySettings = {
+    enabled: true
+};
+
+type GatewayMessage = { stream?: number; channel?: string; status: string; payload: any };
+type SubscribeFrame = {
+    type: 'OPEN' | 'SUBSCRIBE' | 'CLOSE';
+    stream: number;
+    channel?: string;
+    xid?: string | null;
+    eventTypes?: string[] | null;
+    frameRate?: number;
+    since?: number;
+};
+
+export interface StreamOptions {
+    /** frames per second at which the server sends coalesced point values, undefined for the server default, 0 to send them immediately */
+    frameRate?: number;
+}
+
+export function webSocketUrl(path: string) {
+    let host = document.location.host;
+    let protocol = document.location.protocol;
+
+    const baseUrl = constants.MA_BASE_URL;
+    if (baseUrl) {
+        const i = baseUrl.indexOf('//');
+        if (i >= 0) {
+            protocol = baseUrl.substring(0, i);
+            host = baseUrl.substring(i + 2);
+        } else {
+            host = baseUrl;
+        }
+    }
+
+    protocol = protocol === 'https:' ? 'wss:' : 'ws:';
+    return protocol + '//' + host + path;
+}
+
+/**
+ * @returns the gateway channel for a WebSocket endpoint path, undefined if the gateway does not serve it
+ */
+export function channelForUrl(url: string) {
+    if (!gatewaySettings.enabled || !url || !url.startsWith(ENDPOINT_PREFIX)) return undefined;
+    const channel = url.substring(ENDPOINT_PREFIX.length);
+    return CHANNELS.includes(channel) ? channel : undefined;
+}
+
+/**
+ * Opens a WebSocket to the endpoint, or a stream on the gateway if the endpoint is served by it
+ *
+ * @param path endpoint path, e.g. /rest/latest/websocket/data-points
+ * @param url full URL of the endpoint, defaults to the path resolved against MA_BASE_URL
+ * @param options stream options, only used when the endpoint is served by the gateway
+ */
+export function openWebSocket(path: string, url = webSocketUrl(path), options: StreamOptions = {}): WebSocket {
+    const channel = channelForUrl(path);
+    if (channel) {
+        return gateway.openStream(channel, options) as unknown as WebSocket;
+    }
+    return new WebSocket(url);
+}
+
+class Gateway {
+    socket?: WebSocket;
+    streams = new Map<number, ChannelSocket>();
+    nextStreamId = 1;
+
+    openStream(channel: string, options: StreamOptions) {
+        const stream = new ChannelSocket(this, this.nextStreamId++, channel, options);
+        this.streams.set(stream.id, stream);
+
+        if (!this.socket) {
+            this.connect();
+        } else if (this.socket.readyState === READY_STATE_OPEN) {
+            setTimeout(() => stream.opened());
+        }
+        return stream;
+    }
+
+    closeStream(stream: ChannelSocket) {
+        if (!this.streams.delete(stream.id)) return;
+        this.send({ type: 'CLOSE', stream: stream.id });
+
+        if (!this.streams.size) {
+            this.disconnect();
+        }
+    }
+
+    send(frame: SubscribeFrame) {
+        if (this.socket && this.socket.readyState === READY_STATE_OPEN) {
+            this.socket.send(JSON.stringify(frame));
+        }
+    }
+
+    connect() {
+        const socket = (this.socket = new WebSocket(webSocketUrl(GATEWAY_PATH)));
+
+        socket.onopen = () => {
+            for (const stream of this.streams.values()) {
+                stream.opened();
+            }
+        };
+
+        socket.onmessage = (event) => {
+            // the server batches messages, every frame is an array
+            const messages: GatewayMessage[] = JSON.parse(event.data);
+            for (const message of messages) {
+                const stream = message.stream != null ? this.streams.get(message.stream) : undefined;
+                if (stream) {
+                    stream.received(message);
+                } else if (message.status === 'ERROR') {
+                    console.warn('VUI gateway error', message.payload);
+                }
+            }
+        };
+
+        socket.onclose = (event) => {
+            this.closed(event);
+        };
+
+        socket.onerror = (event) => {
+            this.closed(event);
+        };
+    }
+
+    disconnect() {
+        if (this.socket) {
+            this.socket.onopen = null;
+            this.socket.onmessage = null;
+            this.socket.onclose = null;
+            this.socket.onerror = null;
+            this.socket.close();
+            delete this.socket;
+        }
+    }
+
+    closed(event: Event) {
+        this.disconnect();
+        // streams do not survive the connection, the managers reopen them and resubscribe
+        const streams = Array.from(this.streams.values());
+        this.streams.clear();
+        for (const stream of streams) {
+            stream.closed(event);
+        }
+    }
+}
+
+/**
+ * A stream on a gateway channel with the subset of the WebSocket interface used by the event and notification managers
+ */
+class ChannelSocket {
+    gateway: Gateway;
+    id: number;
+    channel: string;
+    options: StreamOptions;
+    url: string;
+    readyState = READY_STATE_CONNECTING;
+    subscribedXids = new Set<string>();
+
+    onopen: ((event: Event) => void) | null = null;
+    onmessage: ((event: { data: any; target: ChannelSocket }) => void) | null = null;
+    onclose: ((event: any) => void) | null = null;
+    onerror: ((event: Event) => void) | null = null;
+
+    constructor(gateway: Gateway, id: number, channel: string, options: StreamOptions) {
+        this.gateway = gateway;
+        this.id = id;
+        this.channel = channel;
+        this.options = options;
+        this.url = ENDPOINT_PREFIX + channel;
+    }
+
+    opened() {
+        if (this.readyState !== READY_STATE_CONNECTING) return;
+        this.gateway.send({ type: 'OPEN', stream: this.id, channel: this.channel, frameRate: this.options.frameRate });
+        if (DAO_CHANNELS.includes(this.channel)) {
+            // the DAO notification endpoints send every notification unless told otherwise
+            this.subscribe(null, null);
+        }
+        this.readyState = READY_STATE_OPEN;
+        if (this.onopen) this.onopen(new Event('open'));
+    }
+
+    received(message: GatewayMessage) {
+        // the message is already parsed, the managers accept parsed data
+        if (this.onmessage) this.onmessage({ data: { status: message.status, payload: message.payload }, target: this });
+    }
+
+    closed(event: Event) {
+        if (this.readyState === READY_STATE_CLOSED) return;
+        this.readyState = READY_STATE_CLOSED;
+        if (this.onclose) this.onclose({ target: this, reason: 'VUI gateway closed', event });
+    }
+
+    send(data: string) {
+        const message = JSON.parse(data);
+
+        if (message.messageType === 'REQUEST') {
+            // NotificationManager subscription request, the subscription replaces the previous one
+            if (message.requestType === 'SUBSCRIPTION') {
+                const eventTypes = Array.isArray(message.notificationTypes)
+                    ? message.notificationTypes.map((t: string) => mapNotificationType[t] || t)
+                    : null;
+                this.setXids(message.xids, eventTypes);
+            }
+            // answer locally, the gateway does not have a request/response protocol
+            setTimeout(() => {
+                if (this.onmessage) {
+                    this.onmessage({ data: { messageType: 'RESPONSE', sequenceNumber: message.sequenceNumber, payload: null }, target: this });
+                }
+            });
+        } else if (Array.isArray(message.eventTypes)) {
+            // EventManager subscription, sets the event types for one XID or for all XIDs
+            this.subscribe(message.xid || null, message.eventTypes, message.since);
+        }
+    }
+
+    setXids(xids: string[] | null, eventTypes: string[] | null) {
+        if (xids == null) {
+            this.subscribedXids.forEach((xid) => this.subscribe(xid, []));
+            this.subscribedXids.clear();
+            this.subscribe(null, eventTypes);
+            return;
+        }
+
+        this.subscribe(null, []);
+        const next = new Set(xids);
+        this.subscribedXids.forEach((xid) => {
+            if (!next.has(xid)) this.subscribe(xid, []);
+        });
+        next.forEach((xid) => this.subscribe(xid, eventTypes));
+        this.subscribedXids = next;
+    }
+
+    /**
+     * @param since version of the data the client already has, e.g. from a latest values snapshot
+     */
+    subscribe(xid: string | null, eventTypes: string[] | null, since?: number) {
+        this.gateway.send({ type: 'SUBSCRIBE', stream: this.id, xid, eventTypes, since });
+    }
+
+    close() {
+        if (this.readyState === READY_STATE_CLOSED) return;
+        this.readyState = READY_STATE_CLOSED;
+        this.gateway.closeStream(this);
+    }
+}
+
+const gateway = new Gateway();
+
+export default gateway;
@@ -3,6 +3,7 @@
  */
 
 import constants from '@/boot/constants';
+import { openWebSocket } from '@/services/GatewaySocket';
 import { useEventBusStore } from '@/stores/EventBusStore';
 import { useWatchdogStore } from '@/stores/watchdogStore';
 import { resolve } from 'path';
@@ -151,7 +152,7 @@ function NotificationManagerFactory() {
 
             protocol = protocol === 'https:' ? 'wss:' : 'ws:';
 
-            const socket = (this.socket = new WebSocket(protocol + '//' + host + this.webSocketUrl));
+            const socket = (this.socket = openWebSocket(this.webSocketUrl, protocol + '//' + host + this.webSocketUrl));
 
             this.connectTimer = setTimeout(() => {
                 socketDeferred.reject('Timeout opening socket');
@@ -190,7 +191,8 @@ function NotificationManagerFactory() {
 
             socket.onmessage = (event) => {
                 try {
-                    const message = JSON.parse(event.data);
+                    // messages from the VUI gateway are already parsed
+                    const message = typeof event.data === 'string' ? JSON.parse(event.data) : event.data;
 
                     if (message.status === 'ERROR') {
                         const error = new Error('Web socket status ERROR');
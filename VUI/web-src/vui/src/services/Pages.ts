@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+import {axios} from '@/boot/axios'
+
+export interface PageSummary {
+    xid: string;
+    name: string;
+    [key: string]: unknown;
+}
+
+export interface Page extends PageSummary {
+    markup: string;
+}
+
+export interface PagesIndex {
+    pages: PageSummary[];
+    [key: string]: unknown;
+}
+
+export interface PagePatch {
+    op: 'add' | 'replace' | 'remove';
+    /** JSON pointer into the pages store, e.g. /pages/3/name */
+    path: string;
+    value?: unknown;
+}
+
+    const pagesUrl = '/rest/latest/vui-pages';
+
+    // page bodies are loaded lazily and only once per session
+    const loadedPages: Record<string, Promise<Page>> = {};
+
+    const Pages = {
+        async getIndex():Promise<PagesIndex> {
+            const response = await axios.get<PagesIndex>(pagesUrl);
+            return response.data;
+        },
+
+        loadPage(xid:string):Promise<Page> {
+            if (!loadedPages[xid]) {
+                loadedPages[xid] = axios.get<Page>(`${pagesUrl}/${encodeURIComponent(xid)}`)
+                    .then(response => response.data)
+                    .catch(error => {
+                        delete loadedPages[xid];
+                        throw error;
+                    });
+            }
+            return loadedPages[xid];
+        },
+
+        async patch(patches:PagePatch[]):Promise<PagesIndex> {
+            const response = await axios({
+                method: 'PATCH',
+                url: pagesUrl,
+                data: patches
+            });
+            Object.keys(loadedPages).forEach(xid => delete loadedPages[xid]);
+            return response.data;
+        }
+    };
+
+export default Pages;
@@ -11,6 +11,7 @@
 * @description
 * Provides an <a ui-sref="ui.docs.ngMangoServices.EventManager">EventManager</a> factory pointing to the point-value websocket
 * endpoint at `'/rest/latest/websocket/point-value'`
+* - Point values are coalesced by the server and sent at most `frameRate` times per second per point.
 * - All methods available to <a ui-sref="ui.docs.ngMangoServices.EventManager">EventManager</a> are available.
 * - Used by <a ui-sref="ui.docs.ngMango.maGetPointValue">`<ma-get-point-value>`</a> directive.
 *
@@ -23,6 +24,7 @@
 function PointEventManagerFactory(EventManager) {
     return new EventManager({
         url: '/rest/latest/websocket/point-value',
+        frameRate: 10,
         replayLastPayload: true
     });
 }
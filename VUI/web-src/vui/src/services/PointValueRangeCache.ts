@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+
+/**
+ * Persistent cache of historical point values stored in IndexedDB. For each series (XID and rollup) it records which
+ * time intervals are complete, a query only fetches the gaps and merges them in. Series are evicted least recently
+ * used first once the cache exceeds its storage budget.
+ *
+ * Values newer than settleTime are never stored as they may still change (e.g. backdated values), so revisiting a
+ * dashboard only loads the last few minutes.
+ *
+ * Each user has their own database and nothing is cached until the user is set (see UserStore). The previous user's
+ * database is deleted when the user logs out or another user logs in, so values are never served across users.
+ */
+
+export interface CachedValue {
+    timestamp: number;
+    value: unknown;
+}
+
+/** fetches the values for [from, to), complete is false if the result was truncated by a limit */
+export type RangeFetcher = (from: number, to: number) => Promise<{ values: CachedValue[]; complete: boolean }>;
+
+interface SeriesRecord {
+    key: string;
+    /** sorted, non overlapping [from, to) intervals which are fully cached */
+    intervals: [number, number][];
+    count: number;
+    lastAccess: number;
+}
+
+interface ValueRecord {
+    series: string;
+    timestamp: number;
+    value: unknown;
+}
+
+const DB_NAME_PREFIX = 'vui-point-values-';
+const DB_VERSION = 1;
+const SERIES_STORE = 'series';
+const VALUES_STORE = 'values';
+
+/** rough size of a stored value, used to convert the byte budget into a value count */
+const BYTES_PER_VALUE = 48;
+
+export const rangeCacheSettings = {
+    /** storage budget in bytes */
+    budget: 64 * 1024 * 1024,
+    /** values newer than this many ms are always fetched */
+    settleTime: 5 * 60 * 1000
+};
+
+/** id of the user the cache is for, undefined while logged out */
+let userId: number | undefined;
+let dbPromise: Promise<IDBDatabase> | undefined;
+
+function dbName(id: number) {
+    return DB_NAME_PREFIX + id;
+}
+
+function openDb(): Promise<IDBDatabase> {
+    if (userId == null) {
+        return Promise.reject(new Error('No user'));
+    }
+    if (!dbPromise) {
+        const name = dbName(userId);
+        const opening: Promise<IDBDatabase> = new Promise<IDBDatabase>((resolve, reject) => {
+            const request = indexedDB.open(name, DB_VERSION);
+            request.onupgradeneeded = () => {
+                const db = request.result;
+                db.createObjectStore(SERIES_STORE, { keyPath: 'key' });
+                db.createObjectStore(VALUES_STORE, { keyPath: ['series', 'timestamp'] });
+            };
+            request.onsuccess = () => resolve(request.result);
+            request.onerror = () => reject(request.error);
+        }).catch((error) => {
+            // the user may have changed while opening
+            if (dbPromise === opening) {
+                dbPromise = undefined;
+            }
+            throw error;
+        });
+        dbPromise = opening;
+    }
+    return dbPromise;
+}
+
+function promisify<T>(request: IDBRequest<T>): Promise<T> {
+    return new Promise((resolve, reject) => {
+        request.onsuccess = () => resolve(request.result);
+        request.onerror = () => reject(request.error);
+    });
+}
+
+function transactionDone(tx: IDBTransaction): Promise<void> {
+    return new Promise((resolve, reject) => {
+        tx.oncomplete = () => resolve();
+        tx.onerror = () => reject(tx.error);
+        tx.onabort = () => reject(tx.error);
+    });
+}
+
+/**
+ * @returns the parts of [from, to) not covered by the intervals
+ */
+export function missingIntervals(intervals: [number, number][], from: number, to: number): [number, number][] {
+    const gaps: [number, number][] = [];
+    let start = from;
+    for (const [iFrom, iTo] of intervals) {
+        if (iTo <= start) continue;
+        if (iFrom >= to) break;
+        if (iFrom > start) gaps.push([start, iFrom]);
+        start = Math.max(start, iTo);
+        if (start >= to) break;
+    }
+    if (start < to) gaps.push([start, to]);
+    return gaps;
+}
+
+/**
+ * @returns the sorted intervals with the new interval merged in
+ */
+export function mergeInterval(intervals: [number, number][], from: number, to: number): [number, number][] {
+    const merged: [number, number][] = [];
+    let current: [number, number] = [from, to];
+    for (const interval of intervals) {
+        if (interval[1] < current[0]) {
+            merged.push(interval);
+        } else if (interval[0] > current[1]) {
+            merged.push(current);
+            current = interval;
+        } else {
+            current = [Math.min(current[0], interval[0]), Math.max(current[1], interval[1])];
+        }
+    }
+    merged.push(current);
+    return merged;
+}
+
+export function seriesKey(xid: string, rollup = 'NONE') {
+    return `${xid}|${rollup}`;
+}
+
+async function readValues(db: IDBDatabase, key: string, from: number, to: number): Promise<CachedValue[]> {
+    if (from >= to) return [];
+    const tx = db.transaction(VALUES_STORE, 'readonly');
+    const range = IDBKeyRange.bound([key, from], [key, to], false, true);
+    const records = await promisify(tx.objectStore(VALUES_STORE).getAll(range) as IDBRequest<ValueRecord[]>);
+    return records.map((r) => ({ timestamp: r.timestamp, value: r.value }));
+}
+
+async function storeValues(db: IDBDatabase, key: string, gaps: [number, number][], results: { values: CachedValue[]; complete: boolean }[]) {
+    const tx = db.transaction([SERIES_STORE, VALUES_STORE], 'readwrite');
+    const seriesStore = tx.objectStore(SERIES_STORE);
+    const valuesStore = tx.objectStore(VALUES_STORE);
+
+    const series: SeriesRecord = (await promisify(seriesStore.get(key))) || { key, intervals: [], count: 0, lastAccess: 0 };
+    for (let i = 0; i < results.length; i++) {
+        const result = results[i];
+        // a truncated gap is not complete, it is fetched again next time
+        if (!result.complete) continue;
+        const [from, to] = gaps[i];
+        // a concurrent query for the same series may already have stored the gap, only new values are counted
+        const existing = await promisify(valuesStore.getAllKeys(IDBKeyRange.bound([key, from], [key, to], false, true)));
+        const stored = new Set(existing.map((k) => (k as [string, number])[1]));
+        for (const v of result.values) {
+            if (v.timestamp >= from && v.timestamp < to) {
+                valuesStore.put({ series: key, timestamp: v.timestamp, value: v.value });
+                if (!stored.has(v.timestamp)) {
+                    stored.add(v.timestamp);
+                    series.count++;
+                }
+            }
+        }
+        series.intervals = mergeInterval(series.intervals, from, to);
+    }
+    series.lastAccess = Date.now();
+    seriesStore.put(series);
+    await transactionDone(tx);
+}
+
+async function touch(db: IDBDatabase, key: string) {
+    const tx = db.transaction(SERIES_STORE, 'readwrite');
+    const store = tx.objectStore(SERIES_STORE);
+    const series: SeriesRecord | undefined = await promisify(store.get(key));
+    if (series) {
+        series.lastAccess = Date.now();
+        store.put(series);
+    }
+    await transactionDone(tx);
+}
+
+/**
+ * Delete least recently used series until the cache fits the budget
+ */
+async function evict(db: IDBDatabase) {
+    const maxValues = Math.floor(rangeCacheSettings.budget / BYTES_PER_VALUE);
+    const tx = db.transaction([SERIES_STORE, VALUES_STORE], 'readwrite');
+    const seriesStore = tx.objectStore(SERIES_STORE);
+    const all: SeriesRecord[] = await promisify(seriesStore.getAll());
+
+    let total = all.reduce((sum, s) => sum + s.count, 0);
+    if (total > maxValues) {
+        all.sort((a, b) => a.lastAccess - b.lastAccess);
+        for (const series of all) {
+            if (total <= maxValues) break;
+            tx.objectStore(VALUES_STORE).delete(IDBKeyRange.bound([series.key, -Infinity], [series.key, Infinity]));
+            seriesStore.delete(series.key);
+            total -= series.count;
+        }
+    }
+    await transactionDone(tx);
+}
+
+let evictTimer: ReturnType<typeof setTimeout> | undefined;
+
+function scheduleEvict(db: IDBDatabase) {
+    if (evictTimer) return;
+    evictTimer = setTimeout(() => {
+        evictTimer = undefined;
+        evict(db).catch((error) => console.warn('Point value cache eviction failed', error));
+    }, 1000);
+}
+
+const PointValueRangeCache = {
+    isSupported() {
+        return typeof indexedDB !== 'undefined';
+    },
+
+    /**
+     * Set the user the cache is for, called when the current user changes and with undefined on logout. The previous
+     * user's cached values are deleted.
+     */
+    setUser(id: number | undefined) {
+        if (id === userId) return;
+        const previous = userId;
+        const previousDb = dbPromise;
+        userId = id;
+        dbPromise = undefined;
+
+        if (previous != null && this.isSupported()) {
+            const name = dbName(previous);
+            // deleting is blocked until the connection is closed, queries still using it fail and are not cached
+            (previousDb || Promise.resolve(undefined))
+                .then((db) => db && db.close(), () => undefined)
+                .then(() => indexedDB.deleteDatabase(name));
+        }
+    },
+
+    /**
+     * Get the values of a series for [from, to), only the ranges which are not cached are fetched
+     */
+    async getRange(key: string, from: number, to: number, fetch: RangeFetcher): Promise<CachedValue[]> {
+        const settled = Math.min(to, Date.now() - rangeCacheSettings.settleTime);
+        if (from >= settled) {
+            return (await fetch(from, to)).values;
+        }
+
+        let db: IDBDatabase;
+        try {
+            db = await openDb();
+        } catch (e) {
+            // not supported, or there is no user
+            return (await fetch(from, to)).values;
+        }
+
+        const series: SeriesRecord | undefined = await promisify(db.transaction(SERIES_STORE, 'readonly').objectStore(SERIES_STORE).get(key));
+        const gaps = missingIntervals(series ? series.intervals : [], from, settled);
+
+        // the recent, unsettled part is fetched together with the gaps but not stored
+        const [results, recent] = await Promise.all([
+            Promise.all(gaps.map(([gapFrom, gapTo]) => fetch(gapFrom, gapTo))),
+            settled < to ? fetch(settled, to) : Promise.resolve({ values: [], complete: true })
+        ]);
+
+        if (gaps.length) {
+            await storeValues(db, key, gaps, results);
+            scheduleEvict(db);
+        } else {
+            await touch(db, key);
+        }
+
+        // read back the settled range, truncated gaps were not stored so their values are merged in directly
+        const cached = await readValues(db, key, from, settled);
+        const uncached = results.filter((r) => !r.complete).flatMap((r) => r.values);
+        const values = uncached.length ? cached.concat(uncached).sort((a, b) => a.timestamp - b.timestamp) : cached;
+        return values.concat(recent.values.filter((v) => v.timestamp >= settled && v.timestamp < to));
+    },
+
+    /**
+     * Remove every cached value of the current user
+     */
+    async clear() {
+        const db = await openDb();
+        const tx = db.transaction([SERIES_STORE, VALUES_STORE], 'readwrite');
+        tx.objectStore(SERIES_STORE).clear();
+        tx.objectStore(VALUES_STORE).clear();
+        await transactionDone(tx);
+    }
+};
+
+export default PointValueRangeCache;
@@ -2,7 +2,7 @@ import {axios} from '@/boot/axios'
 import { Util } from '@/composables/Util';
 import rqlBuilderFactory from './RqlBuilder';
 import constants from '@/boot/constants';
-import resourceCacheFactory from '@/stores/ResourceCache';
+import ResourceCache from '@/stores/ResourceCache';
 import NotificationManagerFactory from '../services/NotificationManager';
 
 
@@ -17,6 +17,7 @@ function restResourceFactory() {
     const notificationManagerProperty = hasSymbol ? Symbol('notificationManager') : '_notificationManager';
     const httpBodyProperty = hasSymbol ? Symbol('httpBody') : '_httpBody';
     const cacheProperty = hasSymbol ? Symbol('cache') : '_cache';
+    const cursorUrl = '/rest/latest/vui-query';
 
     interface objectRecord {
         xidPrefix: string;
@@ -137,6 +138,96 @@ function restResourceFactory() {
             });
         }
 
+        /**
+         * Resource name of the VUI cursor query endpoint, the last segment of the base URL (e.g. data-points)
+         */
+        static get cursorResource() {
+            return this.baseUrl.substring(this.baseUrl.lastIndexOf('/') + 1);
+        }
+
+        /**
+         * Loads one page using keyset pagination, pass the $cursor of the previous page to load the next one. Unlike
+         * limit/offset every page costs the same as the first one. Supported for data points, events and audit events.
+         *
+         * @param queryObject RQL filter and sort, a limit is ignored
+         * @param cursor cursor of the previous page, null for the first page
+         * @returns the items, $cursor is null on the last page
+         */
+        static queryPage(queryObject, cursor = null, pageSize = 100, opts = {}) {
+            opts.resourceInfo = { resourceMethod: 'queryPage' };
+
+            const params = { pageSize };
+            const rqlQuery = queryObject ? queryObject.toString() : '';
+            if (rqlQuery) {
+                params.rqlQuery = rqlQuery;
+            }
+            if (cursor) {
+                params.cursor = cursor;
+            }
+
+            return this.http(
+                {
+                    url: `${cursorUrl}/${this.cursorResource}`,
+                    method: 'GET',
+                    params
+                },
+                opts
+            ).then((response) => {
+                const items = response.data.items.map((item) => {
+                    return new this(item);
+                });
+                items.$cursor = response.data.cursor;
+                return items;
+            });
+        }
+
+        /**
+         * Streams every item matching the query as newline delimited JSON, the callback receives each item (the plain
+         * JSON model) as it arrives so large exports are never buffered.
+         *
+         * @returns the number of items
+         */
+        static async exportQuery(queryObject, callback: (item: Record<string, any>) => void, opts: { signal?: AbortSignal } = {}) {
+            const params = new URLSearchParams();
+            const rqlQuery = queryObject ? queryObject.toString() : '';
+            if (rqlQuery) {
+                params.set('rqlQuery', rqlQuery);
+            }
+
+            const response = await fetch(`${cursorUrl}/${this.cursorResource}/export?${params}`, {
+                credentials: 'same-origin',
+                headers: { Accept: 'application/x-ndjson' },
+                signal: opts.signal
+            });
+            if (!response.ok || !response.body) {
+                throw new Error(`Export failed with status ${response.status}`);
+            }
+
+            const reader = response.body.getReader();
+            const decoder = new TextDecoder();
+            let buffer = '';
+            let count = 0;
+            const emit = (line: string) => {
+                if (line.trim()) {
+                    callback(JSON.parse(line));
+                    count++;
+                }
+            };
+
+            for (;;) {
+                const { done, value } = await reader.read();
+                if (done) break;
+                buffer += decoder.decode(value, { stream: true });
+                let newline;
+                while ((newline = buffer.indexOf('\n')) >= 0) {
+                    emit(buffer.substring(0, newline));
+                    buffer = buffer.substring(newline + 1);
+                }
+            }
+            emit(buffer + decoder.decode());
+            return count;
+        }
+
         static buildQuery() {
             const builder = new RqlBuilder();
             builder.query = (opts) => {
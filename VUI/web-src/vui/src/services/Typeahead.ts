@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
+ */
+import {axios} from '@/boot/axios'
+
+/**
+ * Point and device name suggestions from the server's typeahead index (see TypeaheadIndex.java). Pickers should call
+ * the debounced functions on each keystroke, a request is only sent once typing pauses and the previous request is
+ * aborted when a new one starts.
+ */
+
+export interface PointSuggestion {
+    xid: string;
+    name: string;
+    deviceName: string | null;
+}
+
+export interface DeviceNameOptions {
+    dataSourceId?: number;
+    limit?: number;
+}
+
+const pointsUrl = '/rest/latest/vui-search/points';
+const deviceNamesUrl = '/rest/latest/vui-search/device-names';
+
+export const typeaheadSettings = {
+    /** ms without a keystroke before a request is sent */
+    debounce: 150,
+    limit: 10
+};
+
+const Typeahead = {
+    async points(q: string, limit = typeaheadSettings.limit, signal?: AbortSignal): Promise<PointSuggestion[]> {
+        if (!q.trim()) return [];
+        const response = await axios.get<PointSuggestion[]>(pointsUrl, { params: { q, limit }, signal });
+        return response.data;
+    },
+
+    async deviceNames(q: string, options: DeviceNameOptions = {}, signal?: AbortSignal): Promise<string[]> {
+        const response = await axios.get<string[]>(deviceNamesUrl, {
+            params: { q, dataSourceId: options.dataSourceId, limit: options.limit ?? typeaheadSettings.limit },
+            signal
+        });
+        return response.data;
+    },
+
+    /**
+     * e.g. Typeahead.debounced((signal, q: string) => Typeahead.points(q, 10, signal))
+     *
+     * @returns a function which only resolves with the results of the latest call, earlier calls resolve to null
+     */
+    debounced<A extends unknown[], R>(search: (signal: AbortSignal, ...args: A) => Promise<R>) {
+        let timer: ReturnType<typeof setTimeout> | undefined;
+        let controller: AbortController | undefined;
+        let cancelPrevious: (() => void) | undefined;
+
+        return (...args: A): Promise<R | null> => {
+            if (timer) clearTimeout(timer);
+            if (controller) controller.abort();
+            if (cancelPrevious) cancelPrevious();
+
+            return new Promise<R | null>((resolve, reject) => {
+                cancelPrevious = () => resolve(null);
+                timer = setTimeout(() => {
+                    timer = undefined;
+                    const current = controller = new AbortController();
+                    search(current.signal, ...args).then((result) => {
+                        if (controller === current) resolve(result);
+                    }, (error) => {
+                        if (controller === current) reject(error);
+                    });
+                }, typeaheadSettings.debounce);
+            });
+        };
+    }
+};
+
+export default Typeahead;
@@ -3,6 +3,8 @@ import rqlBuilderFactory from './RqlBuilder';
 dataPointTagsFactory.$inject = ['$http', 'maRqlBuilder', 'maTemporaryRestResource'];
 function dataPointTagsFactory($http, RqlBuilder, TemporaryRestResource) {
 
+    let useTagIndex = true;
+
     class BulkTagsTemporaryResource extends TemporaryRestResource {
         static get baseUrl() {
             return '/rest/latest/data-point-tags/bulk';
@@ -27,7 +29,38 @@ function dataPointTagsFactory($http, RqlBuilder, TemporaryRestResource) {
             }).then(response => response.data);
         }
         
+        /**
+         * Counts the points matching the filter and the values of the facet keys among them, answered from the VUI
+         * tag index. The counts of a facet key ignore the filter on that key.
+         *
+         * @param filter tag key to array of values, null matches points without the tag
+         * @returns {count, facets: {key: {value: count}}, xids}
+         */
+        static facets(filter = {}, facetKeys = [], limit = 0) {
+            return $http.post('/rest/latest/vui-tags/facets', {
+                filter,
+                facets: facetKeys,
+                limit
+            }).then(response => response.data);
+        }
+
         static values(key, restrictions = {}) {
+            // the point name is not indexed
+            if (useTagIndex && key !== 'name' && restrictions.name === undefined) {
+                const filter = {};
+                Object.keys(restrictions).forEach(k => {
+                    const value = restrictions[k];
+                    if (value !== undefined) {
+                        filter[k] = Array.isArray(value) ? value : [value];
+                    }
+                });
+                return this.facets(filter, [key]).then(result => {
+                    const values = Object.keys(result.facets[key]);
+                    // the index ignores the filter on the facet key itself
+                    return filter[key] ? values.filter(v => filter[key].includes(v)) : values;
+                });
+            }
+
             const rqlBuilder = new RqlBuilder();
             Object.keys(restrictions).forEach(key => {
                 let value = restrictions[key];
@@ -70,6 +103,13 @@ function dataPointTagsFactory($http, RqlBuilder, TemporaryRestResource) {
     
     DataPointTags.bulk = BulkTagsTemporaryResource;
 
+    /**
+     * values() uses the VUI tag index instead of querying every point, set to false to use the data-point-tags endpoint
+     */
+    DataPointTags.setUseTagIndex = enabled => {
+        useTagIndex = !!enabled;
+    };
+
     return DataPointTags;
 }
 
@@ -3,6 +3,7 @@
  */
 
 import moment from 'moment-timezone';
+import PointValueRangeCache, { rangeCacheSettings, seriesKey } from './PointValueRangeCache';
 
 function pointValuesProvider() {
 
@@ -11,6 +12,36 @@ function pointValuesProvider() {
         pointValuesLimit = limit;
     };
 
+    let persistentCache = false;
+    /**
+     * Store raw historical values in IndexedDB, see PointValueRangeCache. Can be overridden per query with
+     * options.persistentCache
+     */
+    this.setPersistentCache = function setPersistentCache(enabled, budget) {
+        persistentCache = !!enabled;
+        if (isFinite(budget) && budget > 0) {
+            rangeCacheSettings.budget = budget;
+        }
+    };
+
+    let serverRollupCache = false;
+    /**
+     * Load rollups from the VUI dashboard data endpoint, it serves buckets before the pre-aggregation boundary from
+     * its rollup cache. Can be overridden per query with options.serverRollupCache
+     */
+    this.setServerRollupCache = function setServerRollupCache(enabled) {
+        serverRollupCache = !!enabled;
+    };
+
+    let recentValues = false;
+    /**
+     * Backfill live charts from the VUI recent values buffer, see RecentValuesBuffer.java. Can be overridden per query
+     * with options.recentValues
+     */
+    this.setRecentValues = function setRecentValues(enabled) {
+        recentValues = !!enabled;
+    };
+
     this.$get = pointValuesFactory;
     
     pointValuesFactory.$inject = ['$http', '$q', 'maUtil', '$injector', 'maTemporaryRestResource', 'MA_TIMEOUTS', '$cacheFactory'];
@@ -18,6 +49,8 @@ function pointValuesProvider() {
         const pointValuesCache = $cacheFactory('maPointValues', {capacity: 25});
         
         const pointValuesUrl = '/rest/latest/point-values';
+        const dashboardDataUrl = '/rest/latest/vui-dashboard/data';
+        const recentValuesUrl = '/rest/latest/vui-dashboard/recent';
         let maDialogHelper, lastToast;
         
         if ($injector.has('maDialogHelper')) {
@@ -139,6 +172,143 @@ function pointValuesProvider() {
             return body;
         };
         
+        /**
+         * The persistent cache only holds raw timestamp/value pairs, bookends and rendered values are not cached
+         */
+        const usePersistentCache = options => {
+            const enabled = options.persistentCache != null ? options.persistentCache : persistentCache;
+            return enabled && PointValueRangeCache.isSupported() && !options.latest && !options.responseType &&
+                !options.fields && !options.rendered && !options.simplifyTolerance && !options.simplifyTarget &&
+                (options.rollup == null || options.rollup === 'NONE');
+        };
+
+        const getCachedRange = (xid, options) => {
+            const now = new Date();
+            const from = Util.toMoment(options.from, now, options.dateFormat).valueOf();
+            const to = Util.toMoment(options.to, now, options.dateFormat).valueOf();
+            const limit = isFinite(options.limit) ? options.limit : pointValuesLimit;
+            const timeout = Number.isFinite(options.timeout) && options.timeout >= 0 ? options.timeout : MA_TIMEOUTS.pointValues;
+            const canceler = $q.defer();
+
+            const fetchRange = (rangeFrom, rangeTo) => $http.get(pointValuesUrl + '/time-period/' + encodeURIComponent(xid), {
+                timeout: Util.cancelOrTimeout(canceler.promise, timeout),
+                params: {
+                    from: new Date(rangeFrom).toISOString(),
+                    to: new Date(rangeTo).toISOString(),
+                    limit,
+                    fields: ['TIMESTAMP', 'VALUE']
+                }
+            }).then(response => ({
+                values: response.data,
+                complete: !(limit >= 0) || response.data.length < limit
+            }));
+
+            return $q.when(PointValueRangeCache.getRange(seriesKey(xid), from, to, fetchRange)).then(values => {
+                values.$options = options;
+                return values;
+            }).setCancel(canceler.resolve);
+        };
+
+        /**
+         * The buffer only holds the timestamps and values of numeric points, the range must end about now
+         */
+        const useRecentValues = (options, to) => {
+            const enabled = options.recentValues != null ? options.recentValues : recentValues;
+            return enabled && !options.latest && !options.responseType && !options.fields && !options.rendered &&
+                !options.simplifyTolerance && !options.simplifyTarget && to >= Date.now() - 60000 &&
+                (options.rollup == null || options.rollup === 'NONE');
+        };
+
+        const getRecentValues = (xid, from, to, options) => {
+            const timeout = Number.isFinite(options.timeout) && options.timeout >= 0 ? options.timeout : MA_TIMEOUTS.pointValues;
+            const canceler = $q.defer();
+
+            return $http.get(recentValuesUrl + '/' + encodeURIComponent(xid), {
+                timeout: Util.cancelOrTimeout(canceler.promise, timeout),
+                params: { from, to }
+            }).then(response => {
+                const values = response.data;
+                values.$options = options;
+                return values;
+            }).setCancel(canceler.resolve);
+        };
+
+        const isDownsampled = options => !options.latest && typeof options.downsample === 'string' && options.downsample !== 'NONE';
+
+        const cachedRollups = ['FIRST', 'LAST', 'MINIMUM', 'MAXIMUM', 'SUM', 'COUNT', 'DELTA', 'AVERAGE', 'ARITHMETIC_MEAN'];
+
+        /**
+         * The dashboard data endpoint only returns timestamp/value pairs, rendered values and other fields are not available
+         */
+        const useServerRollupCache = options => {
+            const enabled = options.serverRollupCache != null ? options.serverRollupCache : serverRollupCache;
+            return enabled && !options.latest && !options.responseType && !options.fields && !options.rendered &&
+                cachedRollups.includes(options.rollup);
+        };
+
+        /**
+         * Requests one widget's data from the VUI dashboard data endpoint, resolves to an object of value arrays keyed by xid
+         */
+        const getDashboardData = (xids, options, request) => {
+            const dataByXid = xids.reduce((resp, xid) => (resp[xid] = [], resp), {});
+            if (request.from === request.to) {
+                return $q.when(dataByXid);
+            }
+
+            const canceler = $q.defer();
+            const timeout = Number.isFinite(options.timeout) && options.timeout >= 0 ? options.timeout : MA_TIMEOUTS.pointValues;
+
+            return $http.post(dashboardDataUrl, [Object.assign({ id: 'point-values', xids }, request)], {
+                timeout: Util.cancelOrTimeout(canceler.promise, timeout)
+            }).then(response => {
+                for (const result of response.data) {
+                    if (result.error) {
+                        throw new Error(result.error);
+                    }
+                    dataByXid[result.xid] = result.values;
+                }
+                return dataByXid;
+            }).setCancel(canceler.resolve);
+        };
+
+        /**
+         * Downsampled values are served by the VUI dashboard data endpoint
+         */
+        const getDownsampled = (xids, options) => {
+            const now = new Date();
+            return getDashboardData(xids, options, {
+                type: 'TIME_PERIOD',
+                from: Util.toMoment(options.from, now, options.dateFormat).valueOf(),
+                to: Util.toMoment(options.to, now, options.dateFormat).valueOf(),
+                downsample: options.downsample,
+                targetPoints: isFinite(options.targetPoints) && options.targetPoints > 0 ? options.targetPoints : 1000
+            });
+        };
+
+        /**
+         * Buckets are aligned to the start of the range, truncating it to the period type aligns them the same way on
+         * every view so the server can serve them from its cache
+         */
+        const getServerRollup = (xids, options) => {
+            const body = optionsToPostBody(options);
+            const unit = body.timePeriod.type.toLowerCase().replace(/s$/, '');
+            const from = moment.tz(body.from, body.timezone);
+            let to = moment.tz(body.to, body.timezone);
+            if (body.truncate) {
+                from.startOf(unit);
+                const truncatedTo = to.clone().startOf(unit);
+                to = truncatedTo.isBefore(to) ? truncatedTo.add(1, unit) : truncatedTo;
+            }
+            return getDashboardData(xids, options, {
+                type: 'TIME_PERIOD',
+                from: from.valueOf(),
+                to: to.valueOf(),
+                rollup: options.rollup,
+                timePeriod: body.timePeriod,
+                timezone: body.timezone
+            });
+        };
+
         const pointValues = {
             setDefaultLimit(limit) {
                 pointValuesLimit = limit;
@@ -148,6 +318,36 @@ function pointValuesProvider() {
                 try {
                     if (typeof xid !== 'string') throw new Error('Requires xid parameter');
                     if (!options || typeof options !== 'object') throw new Error('Requires options parameter');
+
+                    if (isDownsampled(options)) {
+                        // then() carries the cancel function over from the downsample promise
+                        return getDownsampled([xid], options).then(dataByXid => {
+                            const values = dataByXid[xid];
+                            values.$options = options;
+                            return values;
+                        });
+                    }
+
+                    if (useServerRollupCache(options)) {
+                        return getServerRollup([xid], options).then(dataByXid => {
+                            const values = dataByXid[xid];
+                            values.$options = options;
+                            return values;
+                        });
+                    }
+
+                    if (options.from !== undefined && options.to !== undefined) {
+                        const now = new Date();
+                        const from = Util.toMoment(options.from, now, options.dateFormat).valueOf();
+                        const to = Util.toMoment(options.to, now, options.dateFormat).valueOf();
+                        if (from < to && useRecentValues(options, to)) {
+                            return getRecentValues(xid, from, to, options);
+                        }
+                    }
+
+                    if (usePersistentCache(options)) {
+                        return getCachedRange(xid, options);
+                    }
         
                     let url = pointValuesUrl;
                     url += options.latest ? '/latest' : '/time-period';
@@ -215,6 +415,14 @@ function pointValuesProvider() {
                 try {
                     if (!Array.isArray(xids)) throw new Error('Requires xids parameter');
                     if (!options || typeof options !== 'object') throw new Error('Requires options parameter');
+
+                    if (isDownsampled(options)) {
+                        return getDownsampled(xids, options);
+                    }
+
+                    if (useServerRollupCache(options)) {
+                        return getServerRollup(xids, options);
+                    }
         
                     let url = pointValuesUrl + '/multiple-arrays';
                     url += options.latest ? '/latest' : '/time-period';
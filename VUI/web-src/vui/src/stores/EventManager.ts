@@ -4,6 +4,7 @@
 
 import angular from 'angular';
 import EventTarget from '../classes/EventTarget';
+import { openWebSocket } from '../services/GatewaySocket';
 
 /**
 * @ngdoc service
@@ -124,6 +125,8 @@ function EventManagerFactory(mangoBaseUrl, $rootScope, MA_TIMEOUTS, maUser, $win
             this.allSubscriptions = {};
             // array of event types active for all xids
             this.activeAllEventTypes = [];
+            // keys are xid, value is the version of the data already received from a snapshot
+            this.resumeVersions = {};
 
             Object.assign(this, options);
 
@@ -184,7 +187,7 @@ function EventManagerFactory(mangoBaseUrl, $rootScope, MA_TIMEOUTS, maUser, $win
 
             protocol = protocol === 'https:' ? 'wss:' : 'ws:';
 
-            const socket = this.socket = new WebSocket(protocol + '//' + host + this.url);
+            const socket = this.socket = openWebSocket(this.url, protocol + '//' + host + this.url, { frameRate: this.frameRate });
 
             this.connectTimer = setTimeout(() => {
                 this.closeSocket();
@@ -212,7 +215,8 @@ function EventManagerFactory(mangoBaseUrl, $rootScope, MA_TIMEOUTS, maUser, $win
             };
 
             socket.onmessage = (event) => {
-                const message = JSON.parse(event.data);
+                // messages from the VUI gateway are already parsed
+                const message = typeof event.data === 'string' ? JSON.parse(event.data) : event.data;
                 this.messageReceived(message);
             };
 
@@ -367,6 +371,16 @@ function EventManagerFactory(mangoBaseUrl, $rootScope, MA_TIMEOUTS, maUser, $win
             }
         }
 
+        /**
+         * The next subscription for the XID resumes from the version of a snapshot, the server only sends the
+         * current value if it changed since the snapshot. Only supported by the VUI gateway.
+         */
+        resumeFrom(xid, version) {
+            if (version != null) {
+                this.resumeVersions[xid] = version;
+            }
+        }
+
         updateSubscriptions(xid) {
             if (!this.isConnected()) {
                 this.openSocket();
@@ -409,6 +423,10 @@ function EventManagerFactory(mangoBaseUrl, $rootScope, MA_TIMEOUTS, maUser, $win
                 if (xid)
                     message.xid = xid;
                 message.eventTypes = eventTypes;
+                if (xid && this.resumeVersions[xid] != null) {
+                    message.since = this.resumeVersions[xid];
+                    delete this.resumeVersions[xid];
+                }
 
                 this.socket.send(JSON.stringify(message));
             }
@@ -2,119 +2,329 @@
  * Copyright (C) 2021 Radix IoT LLC. All rights reserved.
  */
 
-import BoundedMap from '../classes/BoundedMap';
+/**
+ * Least recently used cache of REST resources (e.g. data points, roles) keyed by XID. The cache is bounded by both the
+ * number of items and their estimated size.
+ *
+ * Loads requested in the same tick are combined into RQL in() queries. Items are kept coherent with the server via
+ * its change notifications, when several tabs are open only one of them (the leader) subscribes to the notifications
+ * and forwards them to the other tabs over a BroadcastChannel. Items loaded by one tab are also offered to the other
+ * tabs, which keep them if they have spare capacity.
+ */
 
-resourceCacheFactory.$inject = ['$q', '$timeout', '$rootScope'];
-function resourceCacheFactory($q, $timeout, $rootScope) {
+export const resourceCacheSettings = {
+    /** default maximum number of items per cache */
+    maxSize: 2000,
+    /** default storage budget per cache in bytes, estimated from the JSON size of the items */
+    maxBytes: 16 * 1024 * 1024,
+    /** maximum number of ids in one in() query, keeps the query string within the server's URL limit */
+    batchSize: 100,
+    /** ms to keep the notification subscription open after the last subscriber leaves */
+    unsubscribeDelay: 5000
+};
 
-    class LoadingValue {
-        constructor(key, promise) {
-            this.key = key;
-            this.promise = promise;
-        }
+interface CachedResource {
+    getOriginalId(): string;
+}
+
+interface ResourceService<T extends CachedResource> {
+    new (properties: unknown): T;
+    idProperty: string;
+    name: string;
+    notificationManager: { subscribe(handler: (event: { name: string }, item: T, attributes: Record<string, any>) => void): () => void };
+    buildQuery(): { in(property: string, values: string[]): { query(): Promise<T[]> } };
+}
+
+interface Entry<T> {
+    item: T;
+    bytes: number;
+    /** the generation the item was loaded in, items from older generations are reloaded by loadItems() */
+    generation: number;
+}
+
+type Message =
+    | { type: 'update'; id: string; item: unknown }
+    | { type: 'delete'; id: string }
+    | { type: 'loaded'; items: unknown[] };
+
+/** subset of the Web Locks API */
+interface Locks {
+    request(name: string, callback: () => Promise<void>): Promise<void>;
+}
+
+const hasBroadcastChannel = typeof BroadcastChannel === 'function';
+const locks: Locks | undefined = typeof navigator !== 'undefined' ? (navigator as Navigator & { locks?: Locks }).locks : undefined;
+
+function estimateBytes(item: unknown) {
+    try {
+        // UTF-16 in memory
+        return JSON.stringify(item).length * 2;
+    } catch (e) {
+        return 1024;
     }
+}
+
+class ResourceCache<T extends CachedResource> {
+    maxSize = resourceCacheSettings.maxSize;
+    maxBytes = resourceCacheSettings.maxBytes;
 
-    class ResourceCache extends BoundedMap {
-        constructor(resourceService) {
-            super(100);
-            this.resourceService = resourceService;
-            this.subscribers = new Set();
+    private readonly entries = new Map<string, Entry<T>>();
+    private readonly loading = new Map<string, Promise<void>>();
+    private readonly subscribers = new Set<unknown>();
+    private readonly channel?: BroadcastChannel;
+    private readonly lockName: string;
+    private bytes = 0;
+    private generation = 0;
+
+    private pending = new Set<string>();
+    private pendingPromise?: Promise<void>;
+
+    private deregister?: () => void;
+    private releaseLock?: () => void;
+    private unsubscribeTimer?: ReturnType<typeof setTimeout>;
+
+    constructor(private readonly resourceService: ResourceService<T>) {
+        this.lockName = `vui-resource-cache:${resourceService.name}`;
+        if (hasBroadcastChannel) {
+            this.channel = new BroadcastChannel(this.lockName);
+            this.channel.onmessage = (event: MessageEvent<Message>) => this.messageHandler(event.data);
         }
+    }
 
-        subscribe(subscriber) {
-            if (!this.subscribers.has(subscriber)) {
-                if (!this.subscribers.size) {
-                    this.deregister = this.resourceService.notificationManager.subscribe((event, item, attributes) => {
-                        $rootScope.$applyAsync(() => {
-                            this.updateHandler(event, item, attributes);
-                        });
-                    });
-                }
-                this.subscribers.add(subscriber);
-                const unsubscribe = () => this.unsubscribe(subscriber);
-                if (subscriber instanceof $rootScope.constructor) {
-                    subscriber.$on('$destroy', () => {
-                        // adding a timeout gives other pages a chance to subscribe before the websocket is closed
-                        $timeout(unsubscribe, 5000);
-                    });
-                }
-                return () => this.unsubscribe(subscriber);
+    get size() {
+        return this.entries.size;
+    }
+
+    /**
+     * Keeps the cache coherent with the server while there are subscribers
+     *
+     * @returns function which removes the subscriber
+     */
+    subscribe(subscriber: unknown) {
+        if (!this.subscribers.has(subscriber)) {
+            this.subscribers.add(subscriber);
+            if (this.unsubscribeTimer) {
+                clearTimeout(this.unsubscribeTimer);
+                this.unsubscribeTimer = undefined;
+            } else if (this.subscribers.size === 1 && !this.deregister && !this.releaseLock) {
+                this.listen();
             }
         }
+        return () => this.unsubscribe(subscriber);
+    }
+
+    unsubscribe(subscriber: unknown) {
+        if (this.subscribers.delete(subscriber) && !this.subscribers.size) {
+            // gives other pages a chance to subscribe before the notifications are closed
+            this.unsubscribeTimer = setTimeout(() => {
+                this.unsubscribeTimer = undefined;
+                this.stopListening();
+            }, resourceCacheSettings.unsubscribeDelay);
+        }
+    }
+
+    get(id: string): T | undefined {
+        const entry = this.entries.get(id);
+        if (entry) {
+            // move to the most recently used end
+            this.entries.delete(id);
+            this.entries.set(id, entry);
+            return entry.item;
+        }
+    }
+
+    has(id: string) {
+        return this.entries.has(id);
+    }
+
+    set(id: string, item: T) {
+        this.delete(id);
+        const entry = { item, bytes: estimateBytes(item), generation: this.generation };
+        this.entries.set(id, entry);
+        this.bytes += entry.bytes;
+        this.evict();
+        return this;
+    }
+
+    delete(id: string) {
+        const entry = this.entries.get(id);
+        if (entry) {
+            this.entries.delete(id);
+            this.bytes -= entry.bytes;
+            return true;
+        }
+        return false;
+    }
 
-        unsubscribe(subscriber) {
-            if (this.subscribers.delete(subscriber) && !this.subscribers.size) {
-                this.deregister();
-                this.clear();
+    clear() {
+        this.entries.clear();
+        this.bytes = 0;
+    }
+
+    /**
+     * Loads the items which are not cached or may be stale, ids requested in the same tick are loaded together
+     */
+    loadItems(ids: string[]): Promise<void[]> {
+        const promises = new Set<Promise<void>>();
+        for (const id of ids) {
+            const entry = this.entries.get(id);
+            if (entry && entry.generation === this.generation) continue;
+
+            const loading = this.loading.get(id);
+            if (loading) {
+                promises.add(loading);
+            } else {
+                this.pending.add(id);
+                promises.add(this.scheduleLoad(id));
             }
         }
+        return Promise.all(Array.from(promises));
+    }
 
-        updateHandler(event, item, attributes) {
-            if (event.name === 'update') {
-                const originalXid = attributes.originalXid;
-                // only add to cache if it is already in there
-                if (this.delete(originalXid || item.getOriginalId())) {
-                    this.set(item.getOriginalId(), item);
+    private scheduleLoad(id: string) {
+        if (!this.pendingPromise) {
+            this.pendingPromise = new Promise<void>((resolve) => setTimeout(resolve)).then(() => {
+                const ids = Array.from(this.pending);
+                this.pending = new Set();
+                this.pendingPromise = undefined;
+                return this.load(ids);
+            });
+        }
+        this.loading.set(id, this.pendingPromise);
+        return this.pendingPromise;
+    }
+
+    private async load(ids: string[]) {
+        const generation = this.generation;
+        const { batchSize } = resourceCacheSettings;
+        const batches: string[][] = [];
+        for (let i = 0; i < ids.length; i += batchSize) {
+            batches.push(ids.slice(i, i + batchSize));
+        }
+
+        try {
+            const results = await Promise.all(batches.map((batch) => this.resourceService.buildQuery()
+                .in(this.resourceService.idProperty, batch)
+                .query()));
+
+            const loaded: unknown[] = [];
+            const found = new Set<string>();
+            for (const item of ([] as T[]).concat(...results)) {
+                const id = item.getOriginalId();
+                found.add(id);
+                // an update notification received while loading is newer, a missed one makes the item stale
+                if (generation === this.generation) {
+                    this.set(id, item);
+                    loaded.push(item);
                 }
-            } else if (event.name === 'delete') {
-                this.delete(item.getOriginalId());
             }
-        }
+            // items which were not returned must not exist
+            ids.filter((id) => !found.has(id)).forEach((id) => this.delete(id));
 
-        get(id) {
-            const result = super.get(id);
-            if (!(result instanceof LoadingValue)) {
-                return result;
+            if (loaded.length) {
+                this.post({ type: 'loaded', items: loaded });
             }
+        } finally {
+            ids.forEach((id) => this.loading.delete(id));
         }
+    }
 
-        has(id) {
-            return super.has(id) && !(this.get(id) instanceof LoadingValue);
+    private evict() {
+        for (const [id, entry] of this.entries) {
+            if (this.entries.size <= this.maxSize && this.bytes <= this.maxBytes) break;
+            this.entries.delete(id);
+            this.bytes -= entry.bytes;
         }
+    }
 
-        loadItems(ids) {
-            const promises = new Set();
+    /**
+     * Subscribe to the server's change notifications, only one tab does so if the browser supports it
+     */
+    private listen() {
+        if (!this.channel || !locks) {
+            this.subscribeToServer();
+            return;
+        }
 
-            const missingIds = new Set(ids.filter(id => {
-                if (super.has(id)) {
-                    const value = super.get(id);
-                    if (value instanceof LoadingValue) {
-                        promises.add(value.promise);
-                    }
-                    return false;
-                }
-                return true;
-            }));
-
-            if (missingIds.size) {
-                const idsToLoad = Array.from(missingIds);
-                const promise = this.resourceService.buildQuery()
-                    .in(this.resourceService.idProperty, idsToLoad)
-                    .query().then(items => {
-                        const loaded = new Map(items.map(item => [item.getOriginalId(), item]));
-                        idsToLoad.forEach(id => {
-                            const item = loaded.get(id);
-                            if (item) {
-                                this.set(id, item);
-                            } else {
-                                // item must not exist, remove promise
-                                this.delete(id);
-                            }
-                        });
-                    }, () => {
-                        // clear promises on error
-                        idsToLoad.forEach(id => this.delete(id));
-                    });
-
-                idsToLoad.forEach(id => this.set(id, new LoadingValue(id, promise)));
-                promises.add(promise);
+        let release!: () => void;
+        const released = new Promise<void>((resolve) => (release = resolve));
+        this.releaseLock = release;
+        locks.request(this.lockName, () => {
+            // became the leader, the previous leader may have closed before forwarding every notification
+            if (this.releaseLock === release) {
+                this.generation++;
+                this.subscribeToServer();
+            }
+            return released;
+        }).catch(() => {
+            if (this.releaseLock === release) {
+                this.subscribeToServer();
             }
+        });
+    }
+
+    private stopListening() {
+        if (this.deregister) {
+            this.deregister();
+            this.deregister = undefined;
+        }
+        if (this.releaseLock) {
+            this.releaseLock();
+            this.releaseLock = undefined;
+        }
+        // keep the items so pages can render immediately, but reload them before they are trusted again
+        this.generation++;
+    }
+
+    private subscribeToServer() {
+        if (this.deregister) return;
+        this.deregister = this.resourceService.notificationManager.subscribe((event, item, attributes) => {
+            const id = (attributes && attributes.originalXid) || item.getOriginalId();
+            if (event.name === 'update') {
+                this.updateHandler(id, item);
+                this.post({ type: 'update', id, item });
+            } else if (event.name === 'delete') {
+                this.delete(id);
+                this.post({ type: 'delete', id });
+            }
+        });
+    }
 
-            return $q.all(Array.from(promises));
+    private updateHandler(id: string, item: T) {
+        // only add to cache if it is already in there
+        if (this.delete(id)) {
+            this.set(item.getOriginalId(), item);
         }
     }
 
-    return ResourceCache;
+    private messageHandler(message: Message) {
+        const Resource = this.resourceService;
+        if (message.type === 'update') {
+            this.updateHandler(message.id, new Resource(message.item));
+        } else if (message.type === 'delete') {
+            this.delete(message.id);
+        } else if (message.type === 'loaded' && (this.deregister || this.releaseLock)) {
+            // only kept while this tab receives the notifications, otherwise the items could go stale
+            for (const properties of message.items) {
+                if (this.entries.size >= this.maxSize) break;
+                const item = new Resource(properties);
+                const id = item.getOriginalId();
+                if (!this.entries.has(id)) {
+                    this.set(id, item);
+                }
+            }
+        }
+    }
+
+    private post(message: Message) {
+        if (this.channel) {
+            try {
+                this.channel.postMessage(JSON.parse(JSON.stringify(message)));
+            } catch (e) {
+                // items which can't be cloned are simply not shared
+            }
+        }
+    }
 }
 
-export default resourceCacheFactory;
\ No newline at end of file
+export default ResourceCache;
@@ -44,6 +44,7 @@ const useTranslationStore = defineStore('translationStore',()=>{
         
         const clearLoadedNamespaces = () => {
             Object.keys(loadedNamespaces).forEach(key => delete loadedNamespaces[key]);
+            loadedBundles.clear();
         }
         
         const loadTranslations = (data:Locale_Translations) => {
@@ -66,6 +67,21 @@ const useTranslationStore = defineStore('translationStore',()=>{
         }
     
        const translationsUrl = '/rest/latest/translations';
+       const bundlesUrl = '/rest/latest/vui-bootstrap/translations';
+       const loadedBundles = new Set<string>();
+
+       /**
+        * Bundles are addressed by the hash of their content and are served with an immutable cache header,
+        * so after the first session the browser answers these requests from its own cache.
+        */
+       const loadBundles = async (hashes:(string|undefined)[]) => {
+            const pending = hashes.filter((hash):hash is string => !!hash && !loadedBundles.has(hash));
+            const responses = await Promise.all(pending.map(hash => axios.get<Locale_Translations>(`${bundlesUrl}/${encodeURIComponent(hash)}`)));
+            responses.forEach((response, i) => {
+                loadTranslations(response.data);
+                loadedBundles.add(pending[i]);
+            });
+       }
             
          
        const tr=(key:string|string[], args:string|string[]|undefined)=> {
@@ -216,6 +232,7 @@ const useTranslationStore = defineStore('translationStore',()=>{
             });   
             return {
                 loadTranslations,
+                loadBundles,
                 tr,
                 trSync
             }
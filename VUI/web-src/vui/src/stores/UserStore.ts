@@ -4,12 +4,13 @@ import { User, UserModel, UserResource } from '@/types/User';
 import { Util } from '@/composables/Util';
 import { axios } from '@/boot/axios';
 import { AxiosHeaders, AxiosRequestConfig } from 'axios';
-import { Ref, computed, ref } from 'vue';
+import { Ref, computed, ref, watch } from 'vue';
 import { VUISettings } from '@/types/VUISettings';
 import { DateTime, Zone } from 'luxon';
 import constants from '@/boot/constants';
 import { useEventBusStore } from './EventBusStore';
 import Cldr from 'cldrjs';
+import PointValueRangeCache from '@/services/PointValueRangeCache';
 
 interface Credentials {
     username: string;
@@ -28,6 +29,8 @@ const useUserStore = defineStore('userStore', () => {
     const { $get, $save, $update, $delete } = userResource;
     const lastUpgradeTime = ref<DateTime>();
     const current = ref<UserModel>();
+    // cached point values belong to the user who loaded them
+    watch(() => current.value?.id, (id) => PointValueRangeCache.setUser(id), { immediate: true });
     const ensureXsrfToken = async (req: AxiosRequestConfig) => {
         // ensures there is a CSRF protection cookie set before logging in
         const xsrfCookie = (req.headers as AxiosHeaders)['X-CSRF-TOKEN']; // $cookies.get($http.defaults.xsrfCookieName);
@@ -264,7 +267,10 @@ if (!angular.equals(user, currentUser)) {
     };
 
     const logout = async (username: { username: string }) => {
-        return await axios.post('/rest/latest/logout', username);
+        const resp = await axios.post('/rest/latest/logout', username);
+        // like the logout interceptor, this also deletes the user's cached point values
+        setCurrentUser(null);
+        return resp;
         /* method: 'POST',
         isArray: false,
         interceptor: {
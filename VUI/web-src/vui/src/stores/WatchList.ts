@@ -6,9 +6,9 @@ import angular from 'angular';
 import query from 'rql/query';
 
 WatchListFactory.$inject = ['$resource', 'maUtil', '$http', 'maPoint', '$q',
-    '$interpolate', '$sce', '$parse', 'maRqlBuilder', 'maUser'];
+    '$interpolate', '$sce', '$parse', 'maRqlBuilder', 'maUser', 'maPointEventManager'];
 function WatchListFactory($resource, maUtil, $http, Point, $q,
-        $interpolate, $sce, $parse, RqlBuilder, User) {
+        $interpolate, $sce, $parse, RqlBuilder, User, pointEventManager) {
 
     const defaultProperties = {
         name: '',
@@ -155,6 +155,41 @@ function WatchListFactory($resource, maUtil, $http, Point, $q,
             }
         },
         
+        /**
+         * Loads the current value of every point in one request and applies it to the points. Subscriptions made
+         * afterwards resume from the snapshot so no value is missed and unchanged values are not sent again.
+         */
+        getSnapshot(points = this.points, paramValues = this.defaultParamValues()) {
+            let url;
+            if (this.type === 'static') {
+                url = `/rest/latest/vui-dashboard/snapshot/watch-list/${encodeURIComponent(this.xid)}`;
+            } else {
+                let query;
+                try {
+                    query = this.getQuery(paramValues);
+                } catch (e) {
+                    return $q.reject(e);
+                }
+                if (query == null) {
+                    return $q.when({ timestamp: Date.now(), points: [] });
+                }
+                url = '/rest/latest/vui-dashboard/snapshot?' + query.toString();
+            }
+
+            return $http.get(url).then(response => {
+                const pointsByXid = new Map((points || []).map(pt => [pt.xid, pt]));
+                for (const payload of response.data.points) {
+                    const pt = pointsByXid.get(payload.xid);
+                    if (pt) {
+                        pt.websocketHandler(payload, 'REGISTERED');
+                        pt.quality = payload.quality;
+                    }
+                    pointEventManager.resumeFrom(payload.xid, payload.version);
+                }
+                return response.data;
+            });
+        },
+
         interpolateQuery(params) {
             params = params || {};
             const parsed = new query.Query(this.query);
@@ -6,7 +6,7 @@ interface PostLoginData {
     coreLicenseType: null;
     menu: Menu;
     pages: Pages;
-    translations: Translations2;
+    translationsBundle: string;
     vendor: string;
     vendorUrl: string;
     aggregationEnabled: boolean;
@@ -14,7 +14,7 @@ export interface PreLoginData {
     notFoundUri: string;
     logoutSuccessUri: string;
     oauth2Clients: any[];
-    translations:Locale_Translations
+    translationsBundle: string;
 }
 
 export interface AngularJSModules {